@@ -0,0 +1,89 @@
+package ml.karmaconfigs.remote.messaging.benchmark;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.MessageInput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message encoding and decoding cost, for
+ * both wire formats and different payload sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"16", "1024", "16384", "262144"})
+    public int size;
+
+    @Param({"SERIALIZED", "BINARY"})
+    public WireFormat format;
+
+    private MessageOutput output;
+    private byte[] compiled;
+
+    /**
+     * Build the benchmarked message
+     */
+    @Setup
+    public void setup() {
+        byte[] payload = new byte[size];
+        new Random(size).nextBytes(payload);
+
+        output = format.create();
+        output.write("TAG", "BENCHMARK");
+        output.write("SEQUENCE", 1234567L);
+        output.write("ENABLED", true);
+        output.write("PAYLOAD", payload);
+
+        compiled = output.compile();
+    }
+
+    /**
+     * Compile the message
+     *
+     * @return the compiled message
+     */
+    @Benchmark
+    public byte[] compile() {
+        return output.compile();
+    }
+
+    /**
+     * Decode the compiled message and read
+     * all its fields
+     *
+     * @param blackhole the values consumer
+     */
+    @Benchmark
+    public void decode(final Blackhole blackhole) {
+        MessageInput input = WireFormat.read(compiled);
+
+        blackhole.consume(input.getString("TAG"));
+        blackhole.consume(input.getNumber("SEQUENCE"));
+        blackhole.consume(input.getBoolean("ENABLED"));
+        blackhole.consume(input.getBytes("PAYLOAD"));
+    }
+}
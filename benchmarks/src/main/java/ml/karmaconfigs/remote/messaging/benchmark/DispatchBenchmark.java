@@ -0,0 +1,175 @@
+package ml.karmaconfigs.remote.messaging.benchmark;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.listener.RemoteListener;
+import ml.karmaconfigs.remote.messaging.listener.RemoteMessagingListener;
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
+import ml.karmaconfigs.remote.messaging.listener.event.server.ClientConnectEvent;
+import ml.karmaconfigs.remote.messaging.listener.event.server.ClientMessageEvent;
+import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
+import ml.karmaconfigs.remote.messaging.remote.RemoteServer;
+import ml.karmaconfigs.remote.messaging.util.message.MessageDataInput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageDataOutput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost of calling an event on the registered
+ * listeners, every listener handles the event
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private final static LongAdder handled = new LongAdder();
+
+    @Param({"1", "10", "100"})
+    public int listeners;
+
+    private final List<UUID> registered = new ArrayList<>();
+    private final EventDispatcher dispatcher = EventDispatcher.inline();
+    private ClientMessageEvent event;
+
+    /**
+     * Register the listeners and build the
+     * dispatched event
+     *
+     * @throws Exception if the local address can't be resolved
+     */
+    @Setup
+    public void setup() throws Exception {
+        for (int i = 0; i < listeners; i++)
+            registered.add(RemoteListener.register(new Handler()));
+
+        InetAddress local = InetAddress.getLoopbackAddress();
+        RemoteClient client = new RemoteClient() {
+            @Override
+            public String getName() {
+                return "benchmark";
+            }
+
+            @Override
+            public String getMAC() {
+                return "00-00-00-00-00-00";
+            }
+
+            @Override
+            public InetAddress getHost() {
+                return local;
+            }
+
+            @Override
+            public int getPort() {
+                return 49305;
+            }
+
+            @Override
+            public boolean sendMessage(final MessageOutput message) {
+                return true;
+            }
+        };
+        RemoteServer server = new RemoteServer() {
+            @Override
+            public InetAddress getHost() {
+                return local;
+            }
+
+            @Override
+            public String getMAC() {
+                return "00-00-00-00-00-01";
+            }
+
+            @Override
+            public int getPort() {
+                return 49305;
+            }
+
+            @Override
+            public boolean sendMessage(final byte[] message) {
+                return true;
+            }
+        };
+
+        MessageOutput output = new MessageDataOutput();
+        output.write("TAG", "BENCHMARK");
+
+        event = new ClientMessageEvent(client, server, new MessageDataInput(output));
+    }
+
+    /**
+     * Un register the listeners
+     */
+    @TearDown
+    public void tearDown() {
+        for (UUID id : registered)
+            RemoteListener.unRegister(id);
+
+        registered.clear();
+    }
+
+    /**
+     * Call the event directly
+     */
+    @Benchmark
+    public void call() {
+        RemoteListener.callServerEvent(event);
+    }
+
+    /**
+     * Call the event through the inline dispatcher,
+     * as the workers do by default
+     */
+    @Benchmark
+    public void dispatch() {
+        dispatcher.dispatch(this, () -> RemoteListener.callServerEvent(event));
+    }
+
+    /**
+     * Benchmark listener
+     */
+    public static class Handler implements RemoteMessagingListener {
+
+        /**
+         * Handle the benchmarked event
+         *
+         * @param e the event
+         */
+        public void onMessage(final ClientMessageEvent e) {
+            handled.increment();
+        }
+
+        /**
+         * Handle an event that is never called, so the
+         * dispatch must skip it
+         *
+         * @param e the event
+         */
+        public void onConnect(final ClientConnectEvent e) {
+            handled.decrement();
+        }
+    }
+}
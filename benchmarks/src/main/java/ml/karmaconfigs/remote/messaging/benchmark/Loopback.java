@@ -0,0 +1,249 @@
+package ml.karmaconfigs.remote.messaging.benchmark;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
+import ml.karmaconfigs.remote.messaging.Factory;
+import ml.karmaconfigs.remote.messaging.SSLFactory;
+import ml.karmaconfigs.remote.messaging.platform.Client;
+import ml.karmaconfigs.remote.messaging.platform.SecureClient;
+import ml.karmaconfigs.remote.messaging.platform.Server;
+import ml.karmaconfigs.remote.messaging.util.WorkLevel;
+import ml.karmaconfigs.remote.messaging.util.rpc.Responder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * A server and its clients connected through
+ * the loopback interface
+ */
+public final class Loopback {
+
+    private final static AtomicInteger ports = new AtomicInteger(49600);
+
+    private final static String PASSWORD = "benchmark";
+    private final static String NAME = "benchmark";
+    private final static String EXTENSION = "pfx";
+    private final static String TYPE = "PKCS12";
+
+    private final static int BATCH = 50;
+    private final static long TIMEOUT = 30;
+
+    private final Server server;
+    private final Client[] clients;
+    private final Path certificates;
+
+    /**
+     * Start a server and connect the clients to it
+     *
+     * @param transport the transport
+     * @param amount the amount of clients
+     * @param coalesce the writes coalesce size, 1 to
+     *                 flush every message
+     * @param responder the server responder
+     * @throws Exception if the server can't be started or
+     * a client can't connect
+     */
+    public Loopback(final Transport transport, final int amount, final int coalesce, final Responder responder) throws Exception {
+        int port = ports.getAndIncrement();
+
+        SSLFactory secure = null;
+        Factory factory = null;
+        if (transport == Transport.SSL) {
+            certificates = Files.createTempDirectory("remote-messaging-benchmark");
+            generate(certificates);
+
+            secure = new SSLFactory(PASSWORD, NAME, EXTENSION, TYPE);
+            server = secure.createServer("127.0.0.1", port).certsLocation(certificates);
+        } else {
+            certificates = null;
+
+            factory = new Factory(transport == Transport.TCP ? WorkLevel.TCP : WorkLevel.RUDP);
+            server = factory.createServer("127.0.0.1", port);
+        }
+
+        server.watermarks(1 << 24, 1 << 26).coalesce(coalesce, 0).respond(responder);
+        if (!await(server.start()))
+            throw new IllegalStateException("Benchmark server did not start on port " + port);
+
+        clients = new Client[amount];
+        for (int i = 0; i < amount; i++) {
+            Client client;
+            if (secure != null) {
+                SecureClient ssl = secure.createClient("127.0.0.1", port, 0);
+                client = ssl.certsLocation(certificates);
+            } else {
+                client = factory.createClient("127.0.0.1", port, 0);
+            }
+
+            clients[i] = client.watermarks(1 << 24, 1 << 26).coalesce(coalesce, 0);
+        }
+
+        //The server accepts a limited amount of pending connections, so
+        //the clients connect in batches
+        for (int start = 0; start < amount; start += BATCH) {
+            List<CompletableFuture<Boolean>> batch = new ArrayList<>();
+            for (int i = start; i < Math.min(amount, start + BATCH); i++)
+                batch.add(future(clients[i].connect()));
+
+            for (CompletableFuture<Boolean> connected : batch) {
+                if (!connected.get(TIMEOUT, TimeUnit.SECONDS))
+                    throw new IllegalStateException("Benchmark client could not connect to port " + port);
+            }
+        }
+    }
+
+    /**
+     * Get the server
+     *
+     * @return the server
+     */
+    public Server getServer() {
+        return server;
+    }
+
+    /**
+     * Get a client
+     *
+     * @param index the client index, wrapped to
+     *              the clients amount
+     * @return the client
+     */
+    public Client getClient(final int index) {
+        return clients[Math.floorMod(index, clients.length)];
+    }
+
+    /**
+     * Get the clients amount
+     *
+     * @return the clients amount
+     */
+    public int getClients() {
+        return clients.length;
+    }
+
+    /**
+     * Close the clients and the server
+     */
+    public void close() {
+        for (Client client : clients) {
+            if (client != null)
+                client.close();
+        }
+        server.close();
+
+        if (certificates != null) {
+            try (Stream<Path> files = Files.walk(certificates)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Wait for a scheduler result
+     *
+     * @param scheduler the scheduler
+     * @return the result
+     * @throws Exception if the result didn't arrive in time
+     */
+    private static boolean await(final LateScheduler<Boolean> scheduler) throws Exception {
+        Boolean result = future(scheduler).get(TIMEOUT, TimeUnit.SECONDS);
+        return result != null && result;
+    }
+
+    /**
+     * Adapt a scheduler to a future
+     *
+     * @param scheduler the scheduler
+     * @param <T> the result type
+     * @return the result future
+     */
+    static <T> CompletableFuture<T> future(final LateScheduler<T> scheduler) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        scheduler.whenComplete((result, error) -> {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Generate a self signed certificate and its trust
+     * store with the JDK keytool
+     *
+     * @param location the certificates location
+     * @throws Exception if the certificates can't be generated
+     */
+    private static void generate(final Path location) throws Exception {
+        String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        String store = location.resolve(NAME + "." + EXTENSION).toString();
+        String trusted = location.resolve(NAME + "_trusted." + EXTENSION).toString();
+        String certificate = location.resolve(NAME + ".crt").toString();
+        File log = location.resolve("keytool.log").toFile();
+
+        run(log, keytool, "-genkeypair", "-alias", NAME, "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                "-dname", "CN=localhost", "-storetype", TYPE, "-keystore", store, "-storepass", PASSWORD, "-keypass", PASSWORD);
+        run(log, keytool, "-exportcert", "-alias", NAME, "-keystore", store, "-storetype", TYPE, "-storepass", PASSWORD, "-file", certificate);
+        run(log, keytool, "-importcert", "-noprompt", "-alias", NAME, "-file", certificate,
+                "-storetype", TYPE, "-keystore", trusted, "-storepass", PASSWORD);
+    }
+
+    /**
+     * Run a command
+     *
+     * @param log the command output file
+     * @param command the command
+     * @throws Exception if the command fails
+     */
+    private static void run(final File log, final String... command) throws Exception {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.appendTo(log)).start();
+        if (process.waitFor() != 0)
+            throw new IllegalStateException("Command failed: " + String.join(" ", command));
+    }
+
+    /**
+     * Benchmarked transports
+     */
+    public enum Transport {
+        /**
+         * Plain TCP
+         */
+        TCP,
+        /**
+         * TCP over TLS
+         */
+        SSL,
+        /**
+         * Reliable, ordered UDP
+         */
+        RUDP
+    }
+}
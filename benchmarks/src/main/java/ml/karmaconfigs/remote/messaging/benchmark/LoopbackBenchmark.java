@@ -0,0 +1,98 @@
+package ml.karmaconfigs.remote.messaging.benchmark;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.platform.Client;
+import ml.karmaconfigs.remote.messaging.util.message.MessageBinaryOutput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageInput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request round trips through the loopback interface,
+ * the server answers every request with its number.
+ * <p>
+ * The sample time mode reports the round trip
+ * percentiles ( p50, p99, p99.9 )
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoopbackBenchmark {
+
+    @Param({"TCP", "SSL", "RUDP"})
+    public Loopback.Transport transport;
+
+    @Param({"1", "100", "1000"})
+    public int clients;
+
+    private Loopback loopback;
+
+    /**
+     * Connect the clients
+     *
+     * @throws Exception if the clients can't connect
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        loopback = new Loopback(transport, clients, 1, (client, request, response) -> {
+            MessageOutput output = new MessageBinaryOutput();
+            output.write("R", request.getNumber("N"));
+
+            response.complete(output);
+        });
+    }
+
+    /**
+     * Close the clients and the server
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        loopback.close();
+    }
+
+    /**
+     * Send a request and wait for its response
+     *
+     * @param caller the calling thread state
+     * @return the response
+     * @throws Exception if the request fails
+     */
+    @Benchmark
+    public MessageInput request(final Caller caller) throws Exception {
+        Client client = loopback.getClient(caller.next++);
+
+        MessageOutput output = new MessageBinaryOutput();
+        output.write("N", caller.next);
+
+        return Loopback.future(client.request(output, 10, TimeUnit.SECONDS).getResult()).get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Benchmark thread state, every thread goes through
+     * the clients starting at a different one
+     */
+    @State(Scope.Thread)
+    public static class Caller {
+
+        int next = ThreadLocalRandom.current().nextInt(1 << 16);
+    }
+}
@@ -0,0 +1,128 @@
+package ml.karmaconfigs.remote.messaging.benchmark;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.listener.RemoteListener;
+import ml.karmaconfigs.remote.messaging.listener.RemoteMessagingListener;
+import ml.karmaconfigs.remote.messaging.listener.event.server.ClientMessageEvent;
+import ml.karmaconfigs.remote.messaging.platform.Client;
+import ml.karmaconfigs.remote.messaging.util.message.MessageBinaryOutput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One way messages through the loopback interface, with
+ * and without coalescing the client writes. Every invocation
+ * sends a burst of messages and waits until the server
+ * received all of them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StreamBenchmark {
+
+    private final static int BURST = 1000;
+    private final static long TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private final static LongAdder received = new LongAdder();
+
+    @Param({"TCP", "SSL", "RUDP"})
+    public Loopback.Transport transport;
+
+    @Param({"1", "65536"})
+    public int coalesce;
+
+    @Param({"64", "1024"})
+    public int size;
+
+    private Loopback loopback;
+    private UUID listener;
+    private byte[] message;
+    private long sent = 0;
+
+    /**
+     * Connect the client and start counting
+     * the received messages
+     *
+     * @throws Exception if the client can't connect
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        received.reset();
+        listener = RemoteListener.register(new Counter());
+        loopback = new Loopback(transport, 1, coalesce, null);
+
+        MessageOutput output = new MessageBinaryOutput();
+        output.write("PAYLOAD", new byte[size]);
+        message = output.compile();
+    }
+
+    /**
+     * Close the client and the server
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        loopback.close();
+        RemoteListener.unRegister(listener);
+    }
+
+    /**
+     * Send a burst of messages and wait
+     * until the server receives them
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void stream() {
+        Client client = loopback.getClient(0);
+
+        for (int i = 0; i < BURST; i++) {
+            while (!client.isWritable())
+                Thread.yield();
+
+            client.send(message);
+        }
+        sent += BURST;
+
+        long start = System.nanoTime();
+        while (received.sum() < sent) {
+            if (System.nanoTime() - start > TIMEOUT)
+                throw new IllegalStateException("The server received " + received.sum() + " of " + sent + " messages");
+
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Received messages counter
+     */
+    public static class Counter implements RemoteMessagingListener {
+
+        /**
+         * Count a received message
+         *
+         * @param e the event
+         */
+        public void onMessage(final ClientMessageEvent e) {
+            received.increment();
+        }
+    }
+}
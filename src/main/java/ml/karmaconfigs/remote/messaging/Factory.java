@@ -16,9 +16,12 @@ package ml.karmaconfigs.remote.messaging;
 
 import ml.karmaconfigs.remote.messaging.platform.Client;
 import ml.karmaconfigs.remote.messaging.platform.Server;
+import ml.karmaconfigs.remote.messaging.util.Delivery;
 import ml.karmaconfigs.remote.messaging.util.WorkLevel;
 import ml.karmaconfigs.remote.messaging.worker.tcp.TCPClient;
 import ml.karmaconfigs.remote.messaging.worker.tcp.TCPServer;
+import ml.karmaconfigs.remote.messaging.worker.udp.UDPClient;
+import ml.karmaconfigs.remote.messaging.worker.udp.UDPServer;
 
 /**
  * Remote messaging factory
@@ -40,15 +43,18 @@ public final class Factory {
      * Create a new client
      *
      * @return a new client
-     * @throws IllegalArgumentException if work level is UDP
+     * @throws IllegalArgumentException if work level is not supported
      */
     public Client createClient() throws IllegalArgumentException {
         switch (level) {
             case TCP:
                 return new TCPClient();
             case UDP:
+                return new UDPClient();
+            case RUDP:
+                return new UDPClient().delivery(Delivery.ORDERED);
             default:
-                throw new IllegalArgumentException("UDP client is under maintenance and is not available");
+                throw new IllegalArgumentException("Unsupported work level: " + level);
         }
     }
 
@@ -57,15 +63,18 @@ public final class Factory {
      *
      * @param target_port the server port
      * @return a new client
-     * @throws IllegalArgumentException if work level is UDP
+     * @throws IllegalArgumentException if work level is not supported
      */
     public Client createClient(final int target_port) throws IllegalArgumentException {
         switch (level) {
             case TCP:
                 return new TCPClient("127.0.0.1", target_port);
             case UDP:
+                return new UDPClient("127.0.0.1", target_port);
+            case RUDP:
+                return new UDPClient("127.0.0.1", target_port).delivery(Delivery.ORDERED);
             default:
-                throw new IllegalArgumentException("UDP client is under maintenance and is not available");
+                throw new IllegalArgumentException("Unsupported work level: " + level);
         }
     }
 
@@ -75,15 +84,18 @@ public final class Factory {
      * @param target_host the server host
      * @param target_port the server port
      * @return a new client
-     * @throws IllegalArgumentException if work level is UDP
+     * @throws IllegalArgumentException if work level is not supported
      */
     public Client createClient(final String target_host, final int target_port) throws IllegalArgumentException {
         switch (level) {
             case TCP:
                 return new TCPClient(target_host, target_port);
             case UDP:
+                return new UDPClient(target_host, target_port);
+            case RUDP:
+                return new UDPClient(target_host, target_port).delivery(Delivery.ORDERED);
             default:
-                throw new IllegalArgumentException("UDP client is under maintenance and is not available");
+                throw new IllegalArgumentException("Unsupported work level: " + level);
         }
     }
 
@@ -94,15 +106,18 @@ public final class Factory {
      * @param target_port the server port
      * @param local_port the client port
      * @return a new client
-     * @throws IllegalArgumentException if work level is UDP
+     * @throws IllegalArgumentException if work level is not supported
      */
     public Client createClient(final String target_host, final int target_port, final int local_port) throws IllegalArgumentException {
         switch (level) {
             case TCP:
                 return new TCPClient(local_port, target_host, target_port);
             case UDP:
+                return new UDPClient(local_port, target_host, target_port);
+            case RUDP:
+                return new UDPClient(local_port, target_host, target_port).delivery(Delivery.ORDERED);
             default:
-                throw new IllegalArgumentException("UDP client is under maintenance and is not available");
+                throw new IllegalArgumentException("Unsupported work level: " + level);
         }
     }
 
@@ -110,15 +125,18 @@ public final class Factory {
      * Create a new server
      *
      * @return a new server
-     * @throws IllegalArgumentException if work level is UDP
+     * @throws IllegalArgumentException if work level is not supported
      */
     public Server createServer() throws IllegalArgumentException {
         switch (level) {
             case TCP:
                 return new TCPServer();
             case UDP:
+                return new UDPServer();
+            case RUDP:
+                return new UDPServer().delivery(Delivery.ORDERED);
             default:
-                throw new IllegalArgumentException("UDP server is under maintenance and is not available");
+                throw new IllegalArgumentException("Unsupported work level: " + level);
         }
     }
 
@@ -127,15 +145,18 @@ public final class Factory {
      *
      * @param target_port the server port
      * @return a new server
-     * @throws IllegalArgumentException if work level is UDP
+     * @throws IllegalArgumentException if work level is not supported
      */
     public Server createServer(final int target_port) throws IllegalArgumentException {
         switch (level) {
             case TCP:
                 return new TCPServer(target_port);
             case UDP:
+                return new UDPServer(target_port);
+            case RUDP:
+                return new UDPServer(target_port).delivery(Delivery.ORDERED);
             default:
-                throw new IllegalArgumentException("UDP server is under maintenance and is not available");
+                throw new IllegalArgumentException("Unsupported work level: " + level);
         }
     }
 
@@ -145,15 +166,18 @@ public final class Factory {
      * @param target_host the server address
      * @param target_port the server port
      * @return a new server
-     * @throws IllegalArgumentException if work level is UDP
+     * @throws IllegalArgumentException if work level is not supported
      */
     public Server createServer(final String target_host, final int target_port) throws IllegalArgumentException {
         switch (level) {
             case TCP:
                 return new TCPServer(target_host, target_port);
             case UDP:
+                return new UDPServer(target_host, target_port);
+            case RUDP:
+                return new UDPServer(target_host, target_port).delivery(Delivery.ORDERED);
             default:
-                throw new IllegalArgumentException("UDP server is under maintenance and is not available");
+                throw new IllegalArgumentException("Unsupported work level: " + level);
         }
     }
 }
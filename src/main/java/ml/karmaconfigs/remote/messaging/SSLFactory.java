@@ -16,6 +16,7 @@ package ml.karmaconfigs.remote.messaging;
 
 import ml.karmaconfigs.remote.messaging.platform.SecureClient;
 import ml.karmaconfigs.remote.messaging.platform.SecureServer;
+import ml.karmaconfigs.remote.messaging.util.ssl.SecureContext;
 import ml.karmaconfigs.remote.messaging.worker.ssl.SSLClient;
 import ml.karmaconfigs.remote.messaging.worker.ssl.SSLServer;
 
@@ -24,10 +25,7 @@ import ml.karmaconfigs.remote.messaging.worker.ssl.SSLServer;
  */
 public final class SSLFactory {
 
-    private final String password;
-    private final String name;
-    private final String extension;
-    private final String type;
+    private final SecureContext context;
 
     /**
      * Initialize the factory
@@ -38,10 +36,34 @@ public final class SSLFactory {
      * @param tp the certificate type
      */
     public SSLFactory(final String pwd, final String nm, final String ext, final String tp) {
-        password = pwd;
-        name = nm;
-        extension = ext;
-        type = tp;
+        context = new SecureContext(pwd, nm, ext, tp);
+    }
+
+    /**
+     * Set the session cache of the factory workers. The
+     * sessions are kept while the factory is alive, so the
+     * clients resume them when reconnecting
+     *
+     * @param size the max amount of cached sessions, 0
+     *             for no limit
+     * @param timeout the time a cached session can be
+     *                resumed, in seconds, 0 for no limit
+     * @return this instance
+     */
+    public SSLFactory sessions(final int size, final int timeout) {
+        context.sessions(size, timeout);
+
+        return this;
+    }
+
+    /**
+     * Get the secure context shared by the
+     * factory workers
+     *
+     * @return the secure context
+     */
+    public SecureContext getContext() {
+        return context;
     }
 
     /**
@@ -50,7 +72,7 @@ public final class SSLFactory {
      * @return a new client
      */
     public SecureClient createClient() {
-        return new SSLClient(password, name, extension, type);
+        return new SSLClient(context);
     }
 
     /**
@@ -60,7 +82,7 @@ public final class SSLFactory {
      * @return a new client
      */
     public SecureClient createClient(final int target_port) {
-        return new SSLClient(password, name, extension, type, "127.0.0.1", target_port);
+        return new SSLClient(context, "127.0.0.1", target_port);
     }
 
     /**
@@ -71,7 +93,7 @@ public final class SSLFactory {
      * @return a new client
      */
     public SecureClient createClient(final String target_host, final int target_port) {
-        return new SSLClient(password, name, extension, type, target_host, target_port);
+        return new SSLClient(context, target_host, target_port);
     }
 
     /**
@@ -83,7 +105,7 @@ public final class SSLFactory {
      * @return a new client
      */
     public SecureClient createClient(final String target_host, final int target_port, final int local_port) {
-        return new SSLClient(password, name, extension, type, local_port, target_host, target_port);
+        return new SSLClient(context, local_port, target_host, target_port);
     }
 
     /**
@@ -92,7 +114,7 @@ public final class SSLFactory {
      * @return a new server
      */
     public SecureServer createServer() {
-        return new SSLServer(password, name, extension, type);
+        return new SSLServer(context);
     }
 
     /**
@@ -102,7 +124,7 @@ public final class SSLFactory {
      * @return a new server
      */
     public SecureServer createServer(final int target_port) throws IllegalArgumentException {
-        return new SSLServer(password, name, extension, type, target_port);
+        return new SSLServer(context, target_port);
     }
 
     /**
@@ -113,6 +135,6 @@ public final class SSLFactory {
      * @return a new server
      */
     public SecureServer createServer(final String target_host, final int target_port) {
-        return new SSLServer(password, name, extension, type, target_host, target_port);
+        return new SSLServer(context, target_host, target_port);
     }
 }
@@ -14,17 +14,26 @@ package ml.karmaconfigs.remote.messaging.listener;
  * the version number 2.1.]
  */
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.util.Map;
-import java.util.UUID;
+import java.lang.reflect.Modifier;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Remote message event listener handler
+ * <p>
+ * Listener methods are resolved once when the listener is
+ * registered, and the handlers of each event class are cached
+ * until a listener is registered or un registered
  */
 public final class RemoteListener {
 
-    private final static Map<UUID, RemoteMessagingListener> listeners = new ConcurrentHashMap<>();
+    private final static Map<UUID, Handler[]> listeners = new ConcurrentHashMap<>();
+
+    private static volatile Map<Class<?>, Handler[]> dispatch = new ConcurrentHashMap<>();
 
     /**
      * Register a new listener
@@ -35,7 +44,8 @@ public final class RemoteListener {
     public static UUID register(final RemoteMessagingListener listener) {
         UUID random = UUID.randomUUID();
 
-        listeners.put(random, listener);
+        listeners.put(random, resolve(listener));
+        dispatch = new ConcurrentHashMap<>();
 
         return random;
     }
@@ -46,7 +56,8 @@ public final class RemoteListener {
      * @param listenerId the listener ID
      */
     public static void unRegister(final UUID listenerId) {
-        listeners.remove(listenerId);
+        if (listeners.remove(listenerId) != null)
+            dispatch = new ConcurrentHashMap<>();
     }
 
     /**
@@ -55,24 +66,7 @@ public final class RemoteListener {
      * @param event the event to call
      */
     public static void callServerEvent(final ServerEvent event) {
-        try {
-            for (RemoteMessagingListener listener : listeners.values()) {
-                Class<?> clazz = listener.getClass();
-
-                Method[] methods = clazz.getDeclaredMethods();
-                for (Method method : methods) {
-                    if (method.getParameterTypes().length == 1) {
-                        Class<?> type = method.getParameterTypes()[0];
-
-                        if (event.getClass().isAssignableFrom(type)) {
-                            method.invoke(listener, event);
-                        }
-                    }
-                }
-            }
-        } catch (Throwable ex) {
-            ex.printStackTrace();
-        }
+        call(event);
     }
 
     /**
@@ -81,23 +75,95 @@ public final class RemoteListener {
      * @param event the event to call
      */
     public static void callClientEvent(final ClientEvent event) {
-        try {
-            for (RemoteMessagingListener listener : listeners.values()) {
-                Class<?> clazz = listener.getClass();
-
-                Method[] methods = clazz.getDeclaredMethods();
-                for (Method method : methods) {
-                    if (method.getParameterTypes().length == 1) {
-                        Class<?> type = method.getParameterTypes()[0];
-
-                        if (event.getClass().isAssignableFrom(type)) {
-                            method.invoke(listener, event);
-                        }
-                    }
+        call(event);
+    }
+
+    /**
+     * Call an event on every listener method
+     * that handles it
+     *
+     * @param event the event to call
+     */
+    private static void call(final Object event) {
+        Map<Class<?>, Handler[]> table = dispatch;
+        Handler[] handlers = table.computeIfAbsent(event.getClass(), RemoteListener::handlers);
+
+        for (Handler handler : handlers) {
+            try {
+                handler.invoker.invokeExact(event);
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Get the handlers of an event class
+     *
+     * @param event the event class
+     * @return the event handlers
+     */
+    private static Handler[] handlers(final Class<?> event) {
+        List<Handler> handlers = new ArrayList<>();
+        for (Handler[] registered : listeners.values()) {
+            for (Handler handler : registered) {
+                if (event.isAssignableFrom(handler.type))
+                    handlers.add(handler);
+            }
+        }
+
+        return handlers.toArray(new Handler[0]);
+    }
+
+    /**
+     * Resolve the methods of a listener that
+     * can handle an event
+     *
+     * @param listener the listener
+     * @return the listener handlers
+     */
+    private static Handler[] resolve(final RemoteMessagingListener listener) {
+        List<Handler> handlers = new ArrayList<>();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+        for (Method method : listener.getClass().getDeclaredMethods()) {
+            if (method.getParameterTypes().length == 1 && !method.isSynthetic()) {
+                try {
+                    method.setAccessible(true);
+
+                    MethodHandle invoker = lookup.unreflect(method);
+                    if (!Modifier.isStatic(method.getModifiers()))
+                        invoker = invoker.bindTo(listener);
+
+                    invoker = invoker.asType(MethodType.methodType(void.class, Object.class));
+
+                    handlers.add(new Handler(method.getParameterTypes()[0], invoker));
+                } catch (Throwable ex) {
+                    ex.printStackTrace();
                 }
             }
-        } catch (Throwable ex) {
-            ex.printStackTrace();
+        }
+
+        return handlers.toArray(new Handler[0]);
+    }
+
+    /**
+     * Listener method bound to its listener
+     */
+    private final static class Handler {
+
+        private final Class<?> type;
+        private final MethodHandle invoker;
+
+        /**
+         * Initialize the handler
+         *
+         * @param event the handled event class
+         * @param method the bound listener method
+         */
+        Handler(final Class<?> event, final MethodHandle method) {
+            type = event;
+            invoker = method;
         }
     }
 }
@@ -0,0 +1,342 @@
+package ml.karmaconfigs.remote.messaging.listener.dispatch;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.listener.ClientEvent;
+import ml.karmaconfigs.remote.messaging.listener.RemoteListener;
+import ml.karmaconfigs.remote.messaging.listener.ServerEvent;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor used by servers and clients to call
+ * the listener events.
+ * <p>
+ * An inline dispatcher calls the events from the I/O thread
+ * that received them. A pooled dispatcher hands them to a
+ * shared pool, and a striped dispatcher hands every event of
+ * the same key ( the client ) to the same thread, so the events
+ * of a client keep their order while different clients are
+ * handled in parallel. Queued dispatchers use a bounded queue
+ * and apply their {@link OverflowPolicy} when it's full, which
+ * is {@link OverflowPolicy#DISCARD} unless specified, so a slow
+ * listener never stalls the I/O threads
+ */
+public final class EventDispatcher {
+
+    private final static EventDispatcher INLINE = new EventDispatcher(new ThreadPoolExecutor[0], new AtomicLong());
+
+    private final ThreadPoolExecutor[] executors;
+    private final AtomicLong dropped;
+
+    /**
+     * Initialize the event dispatcher
+     *
+     * @param workers the dispatcher executors
+     * @param discarded the dropped events counter
+     */
+    private EventDispatcher(final ThreadPoolExecutor[] workers, final AtomicLong discarded) {
+        executors = workers;
+        dropped = discarded;
+    }
+
+    /**
+     * Get the inline dispatcher, events are called
+     * from the I/O thread that received them
+     *
+     * @return the inline dispatcher
+     */
+    public static EventDispatcher inline() {
+        return INLINE;
+    }
+
+    /**
+     * Create a dispatcher that calls the events
+     * from a shared pool, without any order. The
+     * events dispatched while the queue is full are
+     * dropped
+     *
+     * @param threads the amount of threads
+     * @param capacity the max amount of queued events
+     * @return the pooled dispatcher
+     */
+    public static EventDispatcher pool(final int threads, final int capacity) {
+        return pool(threads, capacity, OverflowPolicy.DISCARD);
+    }
+
+    /**
+     * Create a dispatcher that calls the events
+     * from a shared pool, without any order
+     *
+     * @param threads the amount of threads
+     * @param capacity the max amount of queued events
+     * @param policy what to do when the queue is full
+     * @return the pooled dispatcher
+     */
+    public static EventDispatcher pool(final int threads, final int capacity, final OverflowPolicy policy) {
+        AtomicLong dropped = new AtomicLong();
+        int size = Math.max(1, threads);
+        return new EventDispatcher(new ThreadPoolExecutor[]{create("Event dispatcher", size, capacity, policy, dropped)}, dropped);
+    }
+
+    /**
+     * Create a dispatcher that calls the events of the
+     * same key in order, and the events of different keys
+     * in parallel. The events dispatched while a queue
+     * is full are dropped
+     *
+     * @param threads the amount of threads
+     * @param capacity the max amount of queued events per thread
+     * @return the striped dispatcher
+     */
+    public static EventDispatcher striped(final int threads, final int capacity) {
+        return striped(threads, capacity, OverflowPolicy.DISCARD);
+    }
+
+    /**
+     * Create a dispatcher that calls the events of the
+     * same key in order, and the events of different keys
+     * in parallel. The order is only kept while the queues
+     * don't overflow
+     *
+     * @param threads the amount of threads
+     * @param capacity the max amount of queued events per thread
+     * @param policy what to do when a queue is full
+     * @return the striped dispatcher
+     */
+    public static EventDispatcher striped(final int threads, final int capacity, final OverflowPolicy policy) {
+        AtomicLong dropped = new AtomicLong();
+        ThreadPoolExecutor[] workers = new ThreadPoolExecutor[Math.max(1, threads)];
+        for (int i = 0; i < workers.length; i++)
+            workers[i] = create("Event dispatcher #" + i, 1, capacity, policy, dropped);
+
+        return new EventDispatcher(workers, dropped);
+    }
+
+    /**
+     * Dispatch an event
+     *
+     * @param key the event key, events with the same key
+     *            are called in order by striped dispatchers
+     * @param event the event call
+     */
+    public void dispatch(final Object key, final Runnable event) {
+        if (executors.length == 0) {
+            event.run();
+            return;
+        }
+
+        ThreadPoolExecutor executor = executors[0];
+        if (executors.length > 1 && key != null) {
+            int hash = key.hashCode();
+            hash ^= (hash >>> 16);
+            executor = executors[Math.abs(hash % executors.length)];
+        }
+
+        try {
+            executor.execute(event);
+        } catch (RejectedExecutionException ex) {
+            //The dispatcher has been shut down
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Dispatch a server event, timing its listeners
+     *
+     * @param key the event key, events with the same key
+     *            are called in order by striped dispatchers
+     * @param event the event
+     * @param metrics the metrics that record the time the
+     *                listeners took
+     */
+    public void dispatch(final Object key, final ServerEvent event, final Metrics metrics) {
+        timed(key, event, metrics);
+    }
+
+    /**
+     * Dispatch a client event, timing its listeners
+     *
+     * @param key the event key, events with the same key
+     *            are called in order by striped dispatchers
+     * @param event the event
+     * @param metrics the metrics that record the time the
+     *                listeners took
+     */
+    public void dispatch(final Object key, final ClientEvent event, final Metrics metrics) {
+        timed(key, event, metrics);
+    }
+
+    /**
+     * Dispatch a task, timing it as an event
+     *
+     * @param key the task key, tasks with the same key
+     *            are called in order by striped dispatchers
+     * @param task the task
+     * @param metrics the metrics that record the time the
+     *                task took
+     */
+    public void dispatch(final Object key, final Runnable task, final Metrics metrics) {
+        timed(key, task, metrics);
+    }
+
+    /**
+     * Get the amount of events waiting
+     * to be called
+     *
+     * @return the amount of queued events
+     */
+    public int pending() {
+        int pending = 0;
+        for (ThreadPoolExecutor executor : executors)
+            pending += executor.getQueue().size();
+
+        return pending;
+    }
+
+    /**
+     * Get the amount of events that have been dropped
+     * because their queue was full or the dispatcher was
+     * shut down
+     *
+     * @return the amount of dropped events
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop the dispatcher, already queued events
+     * are still called
+     */
+    public void shutdown() {
+        for (ThreadPoolExecutor executor : executors)
+            executor.shutdown();
+    }
+
+    /**
+     * Dispatch a timed event. The event itself is queued
+     * with its metrics, so it's timed by the worker that
+     * calls it without wrapping it
+     *
+     * @param key the event key
+     * @param event the server event, client event or task
+     * @param metrics the event metrics
+     */
+    private void timed(final Object key, final Object event, final Metrics metrics) {
+        if (executors.length == 0) {
+            Call.call(event, metrics);
+        } else {
+            dispatch(key, new Call(event, metrics));
+        }
+    }
+
+    /**
+     * Create an executor
+     *
+     * @param name the executor threads name
+     * @param threads the amount of threads
+     * @param capacity the queue capacity
+     * @param policy the overflow policy
+     * @param dropped the dropped events counter
+     * @return the executor
+     */
+    private static ThreadPoolExecutor create(final String name, final int threads, final int capacity, final OverflowPolicy policy, final AtomicLong dropped) {
+        RejectedExecutionHandler handler;
+        switch (policy) {
+            case CALLER_RUNS:
+                handler = new ThreadPoolExecutor.CallerRunsPolicy();
+                break;
+            case DISCARD_OLDEST:
+                handler = (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        dropped.incrementAndGet();
+                        return;
+                    }
+
+                    if (executor.getQueue().poll() != null)
+                        dropped.incrementAndGet();
+
+                    executor.execute(task);
+                };
+                break;
+            case DISCARD:
+            default:
+                handler = (task, executor) -> dropped.incrementAndGet();
+                break;
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = (task) -> {
+            Thread thread = new Thread(task, (threads > 1 ? name + " #" + count.getAndIncrement() : name));
+            thread.setDaemon(true);
+
+            return thread;
+        };
+
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, capacity)), factory, handler);
+    }
+
+    /**
+     * Queued event and the metrics that time it
+     */
+    private final static class Call implements Runnable {
+
+        private final Object event;
+        private final Metrics metrics;
+
+        /**
+         * Initialize the event call
+         *
+         * @param called the server event, client event or task
+         * @param owner the event metrics
+         */
+        Call(final Object called, final Metrics owner) {
+            event = called;
+            metrics = owner;
+        }
+
+        @Override
+        public void run() {
+            call(event, metrics);
+        }
+
+        /**
+         * Call the listeners of an event, timing them
+         *
+         * @param event the server event, client event or task
+         * @param metrics the event metrics
+         */
+        static void call(final Object event, final Metrics metrics) {
+            long start = System.nanoTime();
+            try {
+                if (event instanceof ServerEvent) {
+                    RemoteListener.callServerEvent((ServerEvent) event);
+                } else {
+                    if (event instanceof ClientEvent) {
+                        RemoteListener.callClientEvent((ClientEvent) event);
+                    } else {
+                        ((Runnable) event).run();
+                    }
+                }
+            } finally {
+                metrics.dispatched(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ml.karmaconfigs.remote.messaging.listener.dispatch;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+/**
+ * What an {@link EventDispatcher} does when its
+ * queue is full
+ */
+public enum OverflowPolicy {
+    /**
+     * Run the event in the thread that dispatched it. The
+     * event is not lost but it's unordered: it runs before
+     * the older queued events of its key, and a slow listener
+     * stalls the I/O thread
+     */
+    CALLER_RUNS,
+    /**
+     * Drop the new event, dropped events are
+     * counted by the dispatcher. The default
+     * policy
+     */
+    DISCARD,
+    /**
+     * Drop the oldest queued event and queue the new
+     * one, dropped events are counted by the dispatcher
+     */
+    DISCARD_OLDEST
+}
@@ -16,9 +16,20 @@ package ml.karmaconfigs.remote.messaging.platform;
 
 import ml.karmaconfigs.api.common.karma.KarmaSource;
 import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
 import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
 import ml.karmaconfigs.remote.messaging.remote.RemoteServer;
 import ml.karmaconfigs.remote.messaging.util.WorkLevel;
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+import ml.karmaconfigs.remote.messaging.util.reconnect.ReconnectPolicy;
+import ml.karmaconfigs.remote.messaging.util.rpc.Request;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Remote message client interface
@@ -33,6 +44,98 @@ public abstract class Client extends RemoteClient implements KarmaSource {
      */
     public abstract Client debug(final boolean status);
 
+    /**
+     * Set the preferred message wire format, the final
+     * format is negotiated with the server when connecting
+     *
+     * @param format the preferred wire format
+     * @return this instance
+     */
+    public abstract Client format(final WireFormat format);
+
+    /**
+     * Set the executor that will call the listener
+     * events, inline by default
+     *
+     * @param executor the event dispatcher
+     * @return this instance
+     */
+    public abstract Client dispatcher(final EventDispatcher executor);
+
+    /**
+     * Set how the server should acknowledge the
+     * messages of this client, {@link AckPolicy#each()}
+     * by default. The policy is sent when connecting
+     *
+     * @param policy the ack policy
+     * @return this instance
+     * @throws IllegalArgumentException if the policy is none
+     * and the client replays its messages
+     */
+    public abstract Client acknowledge(final AckPolicy policy);
+
+    /**
+     * Set the outbound queue watermarks. Messages sent
+     * while the queue is over the high watermark are discarded
+     * until the queue is drained under the low watermark
+     *
+     * @param low the low watermark, in bytes
+     * @param high the high watermark, in bytes
+     * @return this instance
+     */
+    public abstract Client watermarks(final int low, final int high);
+
+    /**
+     * Set how the queued messages are flushed. Messages
+     * queued together are written with a single system
+     * call, up to the byte cap
+     *
+     * @param bytes the max amount of bytes written at once
+     * @param linger the time a message waits for more messages
+     *               before being flushed, in microseconds, 0 to
+     *               flush as soon as possible
+     * @return this instance
+     */
+    public abstract Client coalesce(final int bytes, final long linger);
+
+    /**
+     * Set how long connecting can take. If a limit is
+     * exceeded, the connect result completes with false and
+     * a {@link ml.karmaconfigs.remote.messaging.util.ConnectTimeoutException}
+     *
+     * @param connect the time to establish the connection,
+     *                0 for no limit
+     * @param handshake the time the server has to accept the
+     *                  connect request once connected, 0 for
+     *                  no limit
+     * @param unit the time unit
+     * @return this instance
+     */
+    public abstract Client timeout(final long connect, final long handshake, final TimeUnit unit);
+
+    /**
+     * Set how the client reconnects when the connection is
+     * lost. Messages sent while reconnecting, and those the
+     * server has not acknowledged yet, are replayed once the
+     * server accepts the client again. Must be set before
+     * connecting
+     *
+     * @param policy the reconnect policy
+     * @return this instance
+     * @throws IllegalArgumentException if the policy replays
+     * messages and the ack policy is none
+     */
+    public abstract Client reconnect(final ReconnectPolicy policy);
+
+    /**
+     * Set the listener that is called every time the
+     * client stops or starts accepting messages
+     *
+     * @param listener the writability listener
+     * @return this instance
+     */
+    public abstract Client writability(final @Nullable Consumer<Boolean> listener);
+
     /**
      * Try to connect to the server
      *
@@ -76,6 +179,24 @@ public abstract class Client extends RemoteClient implements KarmaSource {
      */
     public abstract WorkLevel getWorkLevel();
 
+    /**
+     * Get the sequence of the last message acknowledged
+     * by the server. Messages are numbered from 1 in the
+     * order they are sent since the client connected
+     *
+     * @return the last acknowledged message
+     */
+    public abstract long getAcknowledged();
+
+    /**
+     * Get the client metrics: frames and bytes in and out,
+     * encode, decode and listeners dispatch times, queued
+     * bytes and pending acks
+     *
+     * @return the client metrics
+     */
+    public abstract Metrics metrics();
+
     /**
      * Get if the client is trying to connect to the
      * server
@@ -101,12 +222,36 @@ public abstract class Client extends RemoteClient implements KarmaSource {
     public abstract void rename(final String name);
 
     /**
-     * Send data to the server
+     * Send data to the server. The data is discarded if
+     * the client is not writable, see {@link #isWritable()}
      *
      * @param data the data to send
      */
     public abstract void send(final byte[] data);
 
+    /**
+     * Send a request to the server and wait 30
+     * seconds for its response
+     *
+     * @param data the request data
+     * @return the request
+     */
+    public Request request(final MessageOutput data) {
+        return request(data, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Send a request to the server. Many requests can be
+     * waiting for their response at the same time
+     *
+     * @param data the request data
+     * @param timeout the max time to wait for the
+     *                response, 0 to wait forever
+     * @param unit the timeout unit
+     * @return the request
+     */
+    public abstract Request request(final MessageOutput data, final long timeout, final TimeUnit unit);
+
     /**
      * Close the connection
      */
@@ -1,6 +1,15 @@
 package ml.karmaconfigs.remote.messaging.platform;
 
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.util.reconnect.ReconnectPolicy;
+import ml.karmaconfigs.remote.messaging.util.ssl.SecureContext;
+import org.jetbrains.annotations.Nullable;
+
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public abstract class SecureClient extends Client {
 
@@ -12,6 +21,98 @@ public abstract class SecureClient extends Client {
      */
     public abstract SecureClient debug(final boolean status);
 
+    /**
+     * Set the preferred message wire format, the final
+     * format is negotiated with the server when connecting
+     *
+     * @param format the preferred wire format
+     * @return this instance
+     */
+    public abstract SecureClient format(final WireFormat format);
+
+    /**
+     * Set the executor that will call the listener
+     * events, inline by default
+     *
+     * @param executor the event dispatcher
+     * @return this instance
+     */
+    public abstract SecureClient dispatcher(final EventDispatcher executor);
+
+    /**
+     * Set how the server should acknowledge the
+     * messages of this client, {@link AckPolicy#each()}
+     * by default. The policy is sent when connecting
+     *
+     * @param policy the ack policy
+     * @return this instance
+     * @throws IllegalArgumentException if the policy is none
+     * and the client replays its messages
+     */
+    public abstract SecureClient acknowledge(final AckPolicy policy);
+
+    /**
+     * Set the outbound queue watermarks. Messages sent
+     * while the queue is over the high watermark are discarded
+     * until the queue is drained under the low watermark
+     *
+     * @param low the low watermark, in bytes
+     * @param high the high watermark, in bytes
+     * @return this instance
+     */
+    public abstract SecureClient watermarks(final int low, final int high);
+
+    /**
+     * Set how the queued messages are flushed. Messages
+     * queued together are written with a single system
+     * call, up to the byte cap
+     *
+     * @param bytes the max amount of bytes written at once
+     * @param linger the time a message waits for more messages
+     *               before being flushed, in microseconds, 0 to
+     *               flush as soon as possible
+     * @return this instance
+     */
+    public abstract SecureClient coalesce(final int bytes, final long linger);
+
+    /**
+     * Set how long connecting can take. If a limit is
+     * exceeded, the connect result completes with false and
+     * a {@link ml.karmaconfigs.remote.messaging.util.ConnectTimeoutException}
+     *
+     * @param connect the time to establish the connection,
+     *                0 for no limit
+     * @param handshake the time the server has to accept the
+     *                  connect request once connected, 0 for
+     *                  no limit
+     * @param unit the time unit
+     * @return this instance
+     */
+    public abstract SecureClient timeout(final long connect, final long handshake, final TimeUnit unit);
+
+    /**
+     * Set how the client reconnects when the connection is
+     * lost. Messages sent while reconnecting, and those the
+     * server has not acknowledged yet, are replayed once the
+     * server accepts the client again. Must be set before
+     * connecting
+     *
+     * @param policy the reconnect policy
+     * @return this instance
+     * @throws IllegalArgumentException if the policy replays
+     * messages and the ack policy is none
+     */
+    public abstract SecureClient reconnect(final ReconnectPolicy policy);
+
+    /**
+     * Set the listener that is called every time the
+     * client stops or starts accepting messages
+     *
+     * @param listener the writability listener
+     * @return this instance
+     */
+    public abstract SecureClient writability(final @Nullable Consumer<Boolean> listener);
+
     /**
      * Set the current protocol
      *
@@ -27,4 +128,12 @@ public abstract class SecureClient extends Client {
      * @return the certificates location
      */
     public abstract SecureClient certsLocation(final Path location);
+
+    /**
+     * Get the secure context, shared with every
+     * secure worker created by the same factory
+     *
+     * @return the secure context
+     */
+    public abstract SecureContext getContext();
 }
@@ -14,7 +14,17 @@ package ml.karmaconfigs.remote.messaging.platform;
  * the version number 2.1.]
  */
 
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
+import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+import ml.karmaconfigs.remote.messaging.util.admission.AdmissionPolicy;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.util.rpc.Responder;
+import ml.karmaconfigs.remote.messaging.util.ssl.SecureContext;
+import org.jetbrains.annotations.Nullable;
+
 import java.nio.file.Path;
+import java.util.function.BiConsumer;
 
 /**
  * Remote messaging SSL server interface
@@ -29,6 +39,96 @@ public abstract class SecureServer extends Server {
      */
     public abstract SecureServer debug(final boolean status);
 
+    /**
+     * Set the amount of event loops the server
+     * will use to handle its clients
+     *
+     * @param threads the amount of event loops, if lower
+     *                than 1, one per available processor
+     * @return this instance
+     */
+    public abstract SecureServer workers(final int threads);
+
+    /**
+     * Set the preferred message wire format, the final
+     * format is negotiated with the client when connecting
+     *
+     * @param format the preferred wire format
+     * @return this instance
+     */
+    public abstract SecureServer format(final WireFormat format);
+
+    /**
+     * Set the executor that will call the listener
+     * events, inline by default
+     *
+     * @param executor the event dispatcher
+     * @return this instance
+     */
+    public abstract SecureServer dispatcher(final EventDispatcher executor);
+
+    /**
+     * Set the ack policy for the clients that don't
+     * ask for one when connecting, {@link AckPolicy#each()}
+     * by default
+     *
+     * @param policy the default ack policy
+     * @return this instance
+     */
+    public abstract SecureServer acknowledge(final AckPolicy policy);
+
+    /**
+     * Set which connections the server admits,
+     * {@link AdmissionPolicy#unlimited()} by default
+     *
+     * @param policy the admission policy
+     * @return this instance
+     */
+    public abstract SecureServer admission(final AdmissionPolicy policy);
+
+    /**
+     * Set the outbound queue watermarks of every client.
+     * Messages sent to a client whose queue is over the high
+     * watermark are rejected until the queue is drained under
+     * the low watermark
+     *
+     * @param low the low watermark, in bytes
+     * @param high the high watermark, in bytes
+     * @return this instance
+     */
+    public abstract SecureServer watermarks(final int low, final int high);
+
+    /**
+     * Set how the queued messages are flushed. Messages
+     * queued together are written with a single system
+     * call, up to the byte cap
+     *
+     * @param bytes the max amount of bytes written at once
+     * @param linger the time a message waits for more messages
+     *               before being flushed, in microseconds, 0 to
+     *               flush as soon as possible
+     * @return this instance
+     */
+    public abstract SecureServer coalesce(final int bytes, final long linger);
+
+    /**
+     * Set the listener that is called every time a
+     * client stops or starts accepting messages
+     *
+     * @param listener the writability listener
+     * @return this instance
+     */
+    public abstract SecureServer writability(final @Nullable BiConsumer<RemoteClient, Boolean> listener);
+
+    /**
+     * Set the handler of the client requests
+     *
+     * @param responder the request handler, null
+     *                  to reject every request
+     * @return this instance
+     */
+    public abstract SecureServer respond(final @Nullable Responder responder);
+
     /**
      * Set the current protocol
      *
@@ -68,4 +168,12 @@ public abstract class SecureServer extends Server {
      * @return the certificates location
      */
     public abstract SecureServer certsLocation(final Path location);
+
+    /**
+     * Get the secure context, shared with every
+     * secure worker created by the same factory
+     *
+     * @return the secure context
+     */
+    public abstract SecureContext getContext();
 }
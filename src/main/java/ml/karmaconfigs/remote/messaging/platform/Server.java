@@ -16,13 +16,21 @@ package ml.karmaconfigs.remote.messaging.platform;
 
 import ml.karmaconfigs.api.common.karma.KarmaSource;
 import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
 import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
 import ml.karmaconfigs.remote.messaging.remote.RemoteServer;
 import ml.karmaconfigs.remote.messaging.util.WorkLevel;
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+import ml.karmaconfigs.remote.messaging.util.admission.AdmissionPolicy;
 import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+import ml.karmaconfigs.remote.messaging.util.rpc.Responder;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * Remote message server interface
@@ -37,6 +45,96 @@ public abstract class Server extends RemoteServer implements KarmaSource {
      */
     public abstract Server debug(final boolean status);
 
+    /**
+     * Set the amount of event loops the server
+     * will use to handle its clients
+     *
+     * @param threads the amount of event loops, if lower
+     *                than 1, one per available processor
+     * @return this instance
+     */
+    public abstract Server workers(final int threads);
+
+    /**
+     * Set the preferred message wire format, the final
+     * format is negotiated with the client when connecting
+     *
+     * @param format the preferred wire format
+     * @return this instance
+     */
+    public abstract Server format(final WireFormat format);
+
+    /**
+     * Set the executor that will call the listener
+     * events, inline by default
+     *
+     * @param executor the event dispatcher
+     * @return this instance
+     */
+    public abstract Server dispatcher(final EventDispatcher executor);
+
+    /**
+     * Set the ack policy for the clients that don't
+     * ask for one when connecting, {@link AckPolicy#each()}
+     * by default
+     *
+     * @param policy the default ack policy
+     * @return this instance
+     */
+    public abstract Server acknowledge(final AckPolicy policy);
+
+    /**
+     * Set which connections the server admits,
+     * {@link AdmissionPolicy#unlimited()} by default
+     *
+     * @param policy the admission policy
+     * @return this instance
+     */
+    public abstract Server admission(final AdmissionPolicy policy);
+
+    /**
+     * Set the outbound queue watermarks of every client.
+     * Messages sent to a client whose queue is over the high
+     * watermark are rejected until the queue is drained under
+     * the low watermark
+     *
+     * @param low the low watermark, in bytes
+     * @param high the high watermark, in bytes
+     * @return this instance
+     */
+    public abstract Server watermarks(final int low, final int high);
+
+    /**
+     * Set how the queued messages are flushed. Messages
+     * queued together are written with a single system
+     * call, up to the byte cap
+     *
+     * @param bytes the max amount of bytes written at once
+     * @param linger the time a message waits for more messages
+     *               before being flushed, in microseconds, 0 to
+     *               flush as soon as possible
+     * @return this instance
+     */
+    public abstract Server coalesce(final int bytes, final long linger);
+
+    /**
+     * Set the listener that is called every time a
+     * client stops or starts accepting messages
+     *
+     * @param listener the writability listener
+     * @return this instance
+     */
+    public abstract Server writability(final @Nullable BiConsumer<RemoteClient, Boolean> listener);
+
+    /**
+     * Set the handler of the client requests
+     *
+     * @param responder the request handler, null
+     *                  to reject every request
+     * @return this instance
+     */
+    public abstract Server respond(final @Nullable Responder responder);
+
     /**
      * Try to start the server
      *
@@ -73,6 +171,15 @@ public abstract class Server extends RemoteServer implements KarmaSource {
      */
     public abstract WorkLevel getWorkLevel();
 
+    /**
+     * Get the server metrics: frames and bytes in and out,
+     * encode, decode and listeners dispatch times, queued
+     * bytes and pending acks
+     *
+     * @return the server metrics
+     */
+    public abstract Metrics metrics();
+
     /**
      * Completely close the server
      */
@@ -98,16 +205,49 @@ public abstract class Server extends RemoteServer implements KarmaSource {
      * Send a message to each connected client
      *
      * @param data the data to send
+     * @return the amount of clients the message has
+     * been sent to
+     */
+    public LateScheduler<Integer> broadcast(final MessageOutput data) {
+        return broadcast(data, null);
+    }
+
+    /**
+     * Send a message to each connected client
+     *
+     * @param data the data to send
+     * @param report called for each client with if the
+     *               message could be sent to it or not, it
+     *               may be called from an I/O thread
+     * @return the amount of clients the message has
+     * been sent to
+     */
+    public abstract LateScheduler<Integer> broadcast(final MessageOutput data, final @Nullable BiConsumer<RemoteClient, Boolean> report);
+
+    /**
+     * Redirect a message to the specified client
+     *
+     * @param name the client name or MAC address
+     * @param data the message
+     * @return the amount of clients the message has
+     * been sent to
      */
-    public abstract void broadcast(final MessageOutput data);
+    public LateScheduler<Integer> redirect(final String name, final MessageOutput data) {
+        return redirect(name, data, null);
+    }
 
     /**
      * Redirect a message to the specified client
      *
-     * @param name the client name
+     * @param name the client name or MAC address
      * @param data the message
+     * @param report called for each client with if the
+     *               message could be sent to it or not, it
+     *               may be called from an I/O thread
+     * @return the amount of clients the message has
+     * been sent to
      */
-    public abstract void redirect(final String name, final MessageOutput data);
+    public abstract LateScheduler<Integer> redirect(final String name, final MessageOutput data, final @Nullable BiConsumer<RemoteClient, Boolean> report);
 
     /**
      * Ban an address from the server
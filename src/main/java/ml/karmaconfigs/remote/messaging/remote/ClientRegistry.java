@@ -0,0 +1,233 @@
+package ml.karmaconfigs.remote.messaging.remote;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the clients of a server, indexed by
+ * their address, name and MAC address.
+ * <p>
+ * Updates are serialized, lookups are lock free
+ *
+ * @param <T> the client type
+ */
+public final class ClientRegistry<T extends RemoteClient> {
+
+    private final Map<String, T> addresses = new ConcurrentHashMap<>();
+    private final Map<String, Set<T>> names = new ConcurrentHashMap<>();
+    private final Map<String, Set<T>> macs = new ConcurrentHashMap<>();
+
+    /**
+     * Get the registry key of an address
+     *
+     * @param address the client address
+     * @param port the client port
+     * @return the address key
+     */
+    public static String address(final InetAddress address, final int port) {
+        return address.getHostAddress() + "/" + port;
+    }
+
+    /**
+     * Get the registry key of a client
+     *
+     * @param client the client
+     * @return the client address key
+     */
+    public static String address(final RemoteClient client) {
+        return address(client.getHost(), client.getPort());
+    }
+
+    /**
+     * Register a client, replacing the client
+     * that had the same address
+     *
+     * @param address the client address key
+     * @param client the client
+     * @return the replaced client
+     */
+    public synchronized T put(final String address, final T client) {
+        T old = addresses.put(address, client);
+        if (old != null)
+            unIndex(old);
+
+        index(names, client.getName(), client);
+        index(macs, client.getMAC(), client);
+
+        return old;
+    }
+
+    /**
+     * Remove a client
+     *
+     * @param address the client address key
+     * @return the removed client
+     */
+    public synchronized T remove(final String address) {
+        T old = addresses.remove(address);
+        if (old != null)
+            unIndex(old);
+
+        return old;
+    }
+
+    /**
+     * Remove every client
+     */
+    public synchronized void clear() {
+        addresses.clear();
+        names.clear();
+        macs.clear();
+    }
+
+    /**
+     * Get a client by its address
+     *
+     * @param address the client address key
+     * @return the client or null
+     */
+    public T get(final String address) {
+        return addresses.get(address);
+    }
+
+    /**
+     * Get the clients with a name
+     *
+     * @param name the client name
+     * @return the clients with that name
+     */
+    public Set<T> byName(final String name) {
+        return lookup(names, name);
+    }
+
+    /**
+     * Get the clients with a MAC address
+     *
+     * @param mac the client MAC address
+     * @return the clients with that MAC address
+     */
+    public Set<T> byMAC(final String mac) {
+        return lookup(macs, mac);
+    }
+
+    /**
+     * Get the clients with a name or MAC address
+     *
+     * @param name the client name or MAC address
+     * @return the matching clients
+     */
+    public Set<T> find(final String name) {
+        Set<T> named = byName(name);
+        Set<T> mac = byMAC(name);
+        if (mac.isEmpty())
+            return named;
+        if (named.isEmpty())
+            return mac;
+
+        Set<T> result = new HashSet<>(named);
+        result.addAll(mac);
+
+        return result;
+    }
+
+    /**
+     * Get the registered addresses
+     *
+     * @return the client address keys
+     */
+    public Set<String> addresses() {
+        return Collections.unmodifiableSet(addresses.keySet());
+    }
+
+    /**
+     * Get all the clients
+     *
+     * @return the clients
+     */
+    public Collection<T> values() {
+        return Collections.unmodifiableCollection(addresses.values());
+    }
+
+    /**
+     * Get the amount of clients
+     *
+     * @return the amount of clients
+     */
+    public int size() {
+        return addresses.size();
+    }
+
+    /**
+     * Remove a client from the secondary indexes
+     *
+     * @param client the client
+     */
+    private void unIndex(final T client) {
+        unIndex(names, client.getName(), client);
+        unIndex(macs, client.getMAC(), client);
+    }
+
+    /**
+     * Add a client to an index
+     *
+     * @param index the index
+     * @param key the client key
+     * @param client the client
+     */
+    private static <T> void index(final Map<String, Set<T>> index, final String key, final T client) {
+        if (key != null)
+            index.computeIfAbsent(key, (k) -> ConcurrentHashMap.newKeySet()).add(client);
+    }
+
+    /**
+     * Remove a client from an index
+     *
+     * @param index the index
+     * @param key the client key
+     * @param client the client
+     */
+    private static <T> void unIndex(final Map<String, Set<T>> index, final String key, final T client) {
+        if (key == null)
+            return;
+
+        Set<T> clients = index.get(key);
+        if (clients != null) {
+            clients.remove(client);
+            if (clients.isEmpty())
+                index.remove(key);
+        }
+    }
+
+    /**
+     * Look up an index
+     *
+     * @param index the index
+     * @param key the key
+     * @return the clients with that key
+     */
+    private static <T> Set<T> lookup(final Map<String, Set<T>> index, final String key) {
+        if (key == null)
+            return Collections.emptySet();
+
+        Set<T> clients = index.get(key);
+        if (clients == null)
+            return Collections.emptySet();
+
+        return Collections.unmodifiableSet(clients);
+    }
+}
@@ -59,6 +59,17 @@ public abstract class RemoteClient {
      */
     public abstract boolean sendMessage(final MessageOutput message);
 
+    /**
+     * Get if a message can be sent to the client
+     * without waiting for the previous ones to be
+     * written
+     *
+     * @return if the client is writable
+     */
+    public boolean isWritable() {
+        return true;
+    }
+
     /**
      * Returns a string representation of the object. In general, the
      * {@code toString} method returns a string that
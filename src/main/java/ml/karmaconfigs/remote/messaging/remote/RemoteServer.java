@@ -50,6 +50,17 @@ public abstract class RemoteServer {
      */
     public abstract boolean sendMessage(final byte[] message);
 
+    /**
+     * Get if a message can be sent to the server
+     * without waiting for the previous ones to be
+     * written
+     *
+     * @return if the server is writable
+     */
+    public boolean isWritable() {
+        return true;
+    }
+
     /**
      * Returns a string representation of the object. In general, the
      * {@code toString} method returns a string that
@@ -0,0 +1,49 @@
+package ml.karmaconfigs.remote.messaging.util;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Thrown when a client could not connect to
+ * its server in time
+ */
+public final class ConnectTimeoutException extends SocketTimeoutException {
+
+    private final boolean handshake;
+
+    /**
+     * Initialize the exception
+     *
+     * @param message the exception message
+     * @param accepting if the connection was established
+     *                  but the server did not accept the
+     *                  connect request in time
+     */
+    public ConnectTimeoutException(final String message, final boolean accepting) {
+        super(message);
+        handshake = accepting;
+    }
+
+    /**
+     * Get if the connection was established but the
+     * server did not accept the connect request in time
+     *
+     * @return if the handshake timed out
+     */
+    public boolean isHandshake() {
+        return handshake;
+    }
+}
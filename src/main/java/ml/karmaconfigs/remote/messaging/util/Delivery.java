@@ -0,0 +1,48 @@
+package ml.karmaconfigs.remote.messaging.util;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+/**
+ * Delivery guarantees of the datagram messages
+ */
+public enum Delivery {
+    /**
+     * Messages are sent once, and may be lost,
+     * duplicated or reordered
+     */
+    UNRELIABLE,
+    /**
+     * Messages are acknowledged and retransmitted
+     * until they arrive, and are delivered as soon as
+     * they arrive, in any order
+     */
+    UNORDERED,
+    /**
+     * Messages are acknowledged and retransmitted
+     * until they arrive, and are delivered in the
+     * order they were sent
+     */
+    ORDERED;
+
+    /**
+     * Get if the delivery retransmits the
+     * lost messages
+     *
+     * @return if the delivery is reliable
+     */
+    public boolean isReliable() {
+        return this != UNRELIABLE;
+    }
+}
@@ -0,0 +1,194 @@
+package ml.karmaconfigs.remote.messaging.util;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Enumeration;
+
+/**
+ * Local node identity ( MAC address ).
+ * <p>
+ * The MAC address is resolved only once and cached, as
+ * every message sent carries it. If it can't be resolved,
+ * a stable fallback id is used instead
+ */
+public final class NodeIdentity {
+
+    private final static char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static volatile String identity = null;
+    private static volatile String fallback = null;
+    private static volatile boolean generated = false;
+
+    /**
+     * Initialize the node identity
+     */
+    private NodeIdentity() {}
+
+    /**
+     * Get the local node MAC address
+     *
+     * @return the local MAC address or the
+     * fallback id if it couldn't be resolved
+     */
+    public static String get() {
+        String current = identity;
+        if (current == null) {
+            synchronized (NodeIdentity.class) {
+                current = identity;
+                if (current == null) {
+                    current = resolve();
+                    identity = current;
+                }
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Resolve again the local MAC address, for
+     * example after a network interface change
+     *
+     * @return the local MAC address or the
+     * fallback id if it couldn't be resolved
+     */
+    public static String refresh() {
+        synchronized (NodeIdentity.class) {
+            identity = resolve();
+            return identity;
+        }
+    }
+
+    /**
+     * Set the id to use when the MAC address can't
+     * be resolved. Must be set before the identity is
+     * first resolved, as it's cached from then on
+     *
+     * @param id the fallback id, null to generate
+     *           one from the host name
+     * @throws IllegalStateException if the identity has
+     * already been resolved
+     */
+    public static void setFallback(final @Nullable String id) throws IllegalStateException {
+        synchronized (NodeIdentity.class) {
+            if (identity != null)
+                throw new IllegalStateException("The node identity has already been resolved as " + identity);
+
+            fallback = id;
+        }
+    }
+
+    /**
+     * Get if the identity is the fallback id
+     * because the MAC address couldn't be resolved
+     *
+     * @return if the identity is the fallback id
+     */
+    public static boolean isFallback() {
+        get();
+        return generated;
+    }
+
+    /**
+     * Resolve the local MAC address
+     *
+     * @return the local MAC address
+     */
+    private static String resolve() {
+        try {
+            byte[] address = null;
+
+            NetworkInterface network = NetworkInterface.getByInetAddress(InetAddress.getLocalHost());
+            if (network != null)
+                address = network.getHardwareAddress();
+
+            if (address == null || address.length == 0) {
+                Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+                while (interfaces != null && interfaces.hasMoreElements() && (address == null || address.length == 0)) {
+                    NetworkInterface current = interfaces.nextElement();
+                    if (!current.isLoopback() && !current.isVirtual())
+                        address = current.getHardwareAddress();
+                }
+            }
+
+            if (address != null && address.length > 0) {
+                generated = false;
+                return format(address);
+            }
+        } catch (Throwable ignored) {}
+
+        String id = fallback;
+        if (id == null)
+            id = generate();
+
+        generated = true;
+        return id;
+    }
+
+    /**
+     * Generate a stable id from the host and user
+     * name. The id looks like a locally administered
+     * MAC address, so it won't collide with a real one
+     *
+     * @return the generated id
+     */
+    private static String generate() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Throwable ex) {
+            host = "localhost";
+        }
+
+        byte[] address = new byte[6];
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((host + "/" + System.getProperty("user.name", "")).getBytes(StandardCharsets.UTF_8));
+            System.arraycopy(hash, 0, address, 0, address.length);
+        } catch (Throwable ex) {
+            int hash = host.hashCode();
+            for (int i = 0; i < address.length; i++)
+                address[i] = (byte) (hash >>> (i * 5));
+        }
+
+        address[0] = (byte) ((address[0] | 0x02) & 0xFE);
+        return format(address);
+    }
+
+    /**
+     * Format a hardware address
+     *
+     * @param address the address
+     * @return the formatted address
+     */
+    private static String format(final byte[] address) {
+        char[] chars = new char[address.length * 3 - 1];
+        for (int i = 0; i < address.length; i++) {
+            int offset = i * 3;
+            chars[offset] = HEX[(address[i] >> 4) & 0x0F];
+            chars[offset + 1] = HEX[address[i] & 0x0F];
+            if (i < address.length - 1)
+                chars[offset + 2] = ':';
+        }
+
+        return new String(chars);
+    }
+}
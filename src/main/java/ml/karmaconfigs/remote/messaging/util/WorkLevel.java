@@ -24,5 +24,10 @@ public enum WorkLevel {
     /**
      * UDP protocol
      */
-    UDP
+    UDP,
+    /**
+     * UDP protocol with acknowledged and
+     * retransmitted, ordered messages
+     */
+    RUDP
 }
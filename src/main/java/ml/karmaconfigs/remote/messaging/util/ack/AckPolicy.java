@@ -0,0 +1,181 @@
+package ml.karmaconfigs.remote.messaging.util.ack;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.MessageInput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * How the server acknowledges the messages
+ * it receives from a client.
+ * <p>
+ * The client asks for a policy when connecting, clients
+ * that don't ask for one get the server default policy
+ */
+public final class AckPolicy {
+
+    private final static AckPolicy NONE = new AckPolicy(Mode.NONE, 0, 0);
+    private final static AckPolicy EACH = new AckPolicy(Mode.EACH, 1, 0);
+
+    private final Mode mode;
+    private final int messages;
+    private final long interval;
+
+    /**
+     * Initialize the ack policy
+     *
+     * @param type the ack mode
+     * @param amount the messages per ack
+     * @param millis the max time between acks
+     */
+    private AckPolicy(final Mode type, final int amount, final long millis) {
+        mode = type;
+        messages = amount;
+        interval = millis;
+    }
+
+    /**
+     * Messages are never acknowledged
+     *
+     * @return the fire and forget policy
+     */
+    public static AckPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * Every message is acknowledged, the
+     * legacy behaviour
+     *
+     * @return the per message policy
+     */
+    public static AckPolicy each() {
+        return EACH;
+    }
+
+    /**
+     * Messages are acknowledged in batches, a single
+     * ack carries the sequence of the last received
+     * message
+     *
+     * @param messages the amount of messages per ack
+     * @param millis the max time a received message
+     *               waits for its ack, 0 to wait for
+     *               the batch to be full
+     * @return the cumulative policy
+     */
+    public static AckPolicy cumulative(final int messages, final long millis) {
+        return new AckPolicy(Mode.CUMULATIVE, Math.max(1, messages), Math.max(0, millis));
+    }
+
+    /**
+     * Get the ack mode
+     *
+     * @return the ack mode
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Get the amount of messages per ack
+     *
+     * @return the messages per ack
+     */
+    public int getMessages() {
+        return messages;
+    }
+
+    /**
+     * Get the max time between a message
+     * and its ack
+     *
+     * @return the ack interval in milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Write the policy into a message
+     *
+     * @param output the message
+     */
+    public void write(final MessageOutput output) {
+        output.write("ACK_MODE", mode.name());
+        output.write("ACK_MESSAGES", messages);
+        output.write("ACK_INTERVAL", interval);
+    }
+
+    /**
+     * Read a policy from a message
+     *
+     * @param input the message
+     * @return the policy or null if the message
+     * does not have any
+     */
+    @Nullable
+    public static AckPolicy read(final MessageInput input) {
+        String name = input.getString("ACK_MODE");
+        if (name == null)
+            return null;
+
+        switch (name.toUpperCase()) {
+            case "NONE":
+                return NONE;
+            case "EACH":
+                return EACH;
+            case "CUMULATIVE":
+                Number amount = input.getNumber("ACK_MESSAGES");
+                Number millis = input.getNumber("ACK_INTERVAL");
+
+                return cumulative((amount != null ? amount.intValue() : 1), (millis != null ? millis.longValue() : 0));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns a string representation of the object
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        if (mode == Mode.CUMULATIVE)
+            return mode.name() + "[" + messages + " messages, " + interval + " ms]";
+
+        return mode.name();
+    }
+
+    /**
+     * Ack modes
+     */
+    public enum Mode {
+        /**
+         * Fire and forget
+         */
+        NONE,
+        /**
+         * One ack every N messages or T ms
+         */
+        CUMULATIVE,
+        /**
+         * One ack per message
+         */
+        EACH
+    }
+}
@@ -0,0 +1,99 @@
+package ml.karmaconfigs.remote.messaging.util.ack;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Server side ack state of the clients that can
+ * reconnect, identified by their session.
+ * <p>
+ * The state of a lost connection is kept for a while, so
+ * once the client reconnects the messages it replays that
+ * were already received are dropped. Only the most recently
+ * lost sessions are kept
+ */
+public final class AckSessions {
+
+    private final Map<String, String> active = new HashMap<>();
+    private final LinkedHashMap<String, AckTracker> lost;
+
+    /**
+     * Initialize the ack sessions
+     *
+     * @param size the max amount of lost sessions
+     *             that are kept
+     */
+    public AckSessions(final int size) {
+        lost = new LinkedHashMap<String, AckTracker>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, AckTracker> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * Get the ack state of a new connection
+     *
+     * @param connection the connection name
+     * @param session the client session, null if the
+     *                client does not reconnect
+     * @param policy the connection ack policy
+     * @return the connection ack state
+     */
+    public synchronized AckTracker resume(final String connection, final @Nullable String session, final AckPolicy policy) {
+        if (session == null) {
+            active.remove(connection);
+            return new AckTracker(policy);
+        }
+
+        active.put(connection, session);
+
+        //Requests are not numbered, they must not take the sequence of the next message
+        AckTracker tracker = lost.remove(session);
+        if (tracker == null || tracker.getPolicy().getMode() != policy.getMode())
+            tracker = new AckTracker(policy, true);
+
+        return tracker;
+    }
+
+    /**
+     * Keep the ack state of a lost connection,
+     * if the client can reconnect
+     *
+     * @param connection the connection name
+     * @param tracker the connection ack state
+     */
+    public synchronized void retain(final String connection, final @Nullable AckTracker tracker) {
+        String session = active.remove(connection);
+        if (session != null && tracker != null)
+            lost.put(session, tracker);
+    }
+
+    /**
+     * Forget the session of a connection the client
+     * closed, it won't reconnect
+     *
+     * @param connection the connection name
+     */
+    public synchronized void forget(final String connection) {
+        active.remove(connection);
+    }
+}
@@ -0,0 +1,189 @@
+package ml.karmaconfigs.remote.messaging.util.ack;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+/**
+ * Server side ack state of a client connection.
+ * <p>
+ * Every received message gets the next sequence number,
+ * starting from 1. An ack carries the sequence of the last
+ * received message, so it acknowledges every message
+ * before it too.
+ * <p>
+ * Clients that reconnect number their messages themselves,
+ * and replay the ones that were not acknowledged, so the
+ * messages that were already received are dropped
+ */
+public final class AckTracker {
+
+    private final AckPolicy policy;
+
+    private long received = 0;
+    private long acknowledged = 0;
+    private long pending_since = 0;
+    private boolean scheduled = false;
+    private boolean sequenced;
+    private boolean repeat = false;
+
+    /**
+     * Initialize the ack tracker
+     *
+     * @param ackPolicy the connection ack policy
+     */
+    public AckTracker(final AckPolicy ackPolicy) {
+        this(ackPolicy, false);
+    }
+
+    /**
+     * Initialize the ack tracker
+     *
+     * @param ackPolicy the connection ack policy
+     * @param sequenced if the client numbers its messages, messages
+     *                  without a sequence, as requests, are then
+     *                  never tracked
+     */
+    public AckTracker(final AckPolicy ackPolicy, final boolean sequenced) {
+        policy = ackPolicy;
+        this.sequenced = sequenced;
+    }
+
+    /**
+     * Get the connection ack policy
+     *
+     * @return the ack policy
+     */
+    public AckPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Get the amount of received messages that
+     * have not been acknowledged yet
+     *
+     * @return the pending acks
+     */
+    public synchronized long getPending() {
+        return received - acknowledged;
+    }
+
+    /**
+     * Register a received message
+     *
+     * @return if the ack must be sent now
+     */
+    public synchronized boolean received() {
+        received++;
+
+        switch (policy.getMode()) {
+            case EACH:
+                return true;
+            case CUMULATIVE:
+                long now = System.currentTimeMillis();
+                if (received - acknowledged == 1)
+                    pending_since = now;
+
+                return received - acknowledged >= policy.getMessages() ||
+                        (policy.getInterval() > 0 && now - pending_since >= policy.getInterval());
+            case NONE:
+            default:
+                acknowledged = received;
+                return false;
+        }
+    }
+
+    /**
+     * Get if a delayed ack must be scheduled for the
+     * messages waiting for their ack. Only one delayed
+     * ack is scheduled at a time
+     *
+     * @return if a delayed ack should be scheduled
+     */
+    public synchronized boolean schedule() {
+        if (scheduled || policy.getMode() != AckPolicy.Mode.CUMULATIVE || policy.getInterval() <= 0 || received == acknowledged)
+            return false;
+
+        scheduled = true;
+        return true;
+    }
+
+    /**
+     * Register the sequence of the next received message,
+     * before calling {@link #received()}. Once a message has
+     * a sequence, or if the tracker was created sequenced,
+     * messages without one are not tracked
+     *
+     * @param sequence the message sequence
+     * @return if the message is new, false if it has
+     * already been received
+     */
+    public synchronized boolean sequence(final long sequence) {
+        if (sequence <= received) {
+            //The ack of a replayed message was probably lost, so it's sent again
+            repeat = policy.getMode() != AckPolicy.Mode.NONE;
+            return false;
+        }
+
+        if (received == 0) {
+            //A session resumed on a new server, the previous messages are not pending
+            acknowledged = sequence - 1;
+        }
+
+        sequenced = true;
+        received = sequence - 1;
+        return true;
+    }
+
+    /**
+     * Get if a sequenced message can be received. A message
+     * whose sequence skips a message that has not been received
+     * can't, acknowledging it would also acknowledge the skipped
+     * message, which the client would then never replay. A new
+     * tracker takes any sequence, as a resumed session may have
+     * started on another server
+     *
+     * @param sequence the message sequence
+     * @return if the message follows the received ones
+     */
+    public synchronized boolean follows(final long sequence) {
+        return received == 0 || sequence <= received + 1;
+    }
+
+    /**
+     * Get if the messages carry their own
+     * sequence
+     *
+     * @return if the messages are sequenced
+     */
+    public synchronized boolean isSequenced() {
+        return sequenced;
+    }
+
+    /**
+     * Acknowledge every received message
+     *
+     * @return the sequence to acknowledge or -1
+     * if there's nothing to acknowledge
+     */
+    public synchronized long acknowledge() {
+        scheduled = false;
+        if (received == acknowledged && !repeat)
+            return -1;
+
+        repeat = false;
+
+        acknowledged = received;
+        return acknowledged;
+    }
+}
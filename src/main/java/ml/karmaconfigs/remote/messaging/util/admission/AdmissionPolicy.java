@@ -0,0 +1,167 @@
+package ml.karmaconfigs.remote.messaging.util.admission;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+/**
+ * Which connections a server admits.
+ * <p>
+ * Connections over any of the limits are declined as soon
+ * as they are accepted ( or, for the per MAC limit, as soon
+ * as the client identifies itself ), before any connect event
+ * is called. Limits of 0 mean no limit
+ */
+public final class AdmissionPolicy {
+
+    private final static AdmissionPolicy UNLIMITED = new AdmissionPolicy(0, 0, 0, 0, 0);
+
+    private final int connections;
+    private final int per_address;
+    private final int per_mac;
+    private final double rate;
+    private final int burst;
+
+    /**
+     * Initialize the admission policy
+     *
+     * @param max the max amount of connections
+     * @param address the max amount of connections per address
+     * @param mac the max amount of connections per MAC
+     * @param perSecond the connections accepted per second
+     * @param size the connections accepted at once
+     */
+    private AdmissionPolicy(final int max, final int address, final int mac, final double perSecond, final int size) {
+        connections = max;
+        per_address = address;
+        per_mac = mac;
+        rate = perSecond;
+        burst = size;
+    }
+
+    /**
+     * Every connection is admitted, the
+     * legacy behaviour
+     *
+     * @return the unlimited policy
+     */
+    public static AdmissionPolicy unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Limit the amount of connections
+     *
+     * @param max the max amount of connections
+     * @return the new policy
+     */
+    public AdmissionPolicy connections(final int max) {
+        return new AdmissionPolicy(Math.max(0, max), per_address, per_mac, rate, burst);
+    }
+
+    /**
+     * Limit the amount of connections from
+     * the same address
+     *
+     * @param max the max amount of connections
+     *            per address
+     * @return the new policy
+     */
+    public AdmissionPolicy perAddress(final int max) {
+        return new AdmissionPolicy(connections, Math.max(0, max), per_mac, rate, burst);
+    }
+
+    /**
+     * Limit the amount of connections from
+     * the same MAC
+     *
+     * @param max the max amount of connections
+     *            per MAC
+     * @return the new policy
+     */
+    public AdmissionPolicy perMAC(final int max) {
+        return new AdmissionPolicy(connections, per_address, Math.max(0, max), rate, burst);
+    }
+
+    /**
+     * Limit how fast new connections are accepted, with
+     * a token bucket that is refilled over time
+     *
+     * @param perSecond the connections accepted per second,
+     *                  0 for no limit
+     * @param size the connections that can be accepted at
+     *             once, after a quiet period
+     * @return the new policy
+     */
+    public AdmissionPolicy rate(final double perSecond, final int size) {
+        return new AdmissionPolicy(connections, per_address, per_mac, Math.max(0, perSecond), Math.max(1, size));
+    }
+
+    /**
+     * Get the max amount of connections
+     *
+     * @return the max amount of connections
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Get the max amount of connections
+     * per address
+     *
+     * @return the max connections per address
+     */
+    public int getPerAddress() {
+        return per_address;
+    }
+
+    /**
+     * Get the max amount of connections
+     * per MAC
+     *
+     * @return the max connections per MAC
+     */
+    public int getPerMAC() {
+        return per_mac;
+    }
+
+    /**
+     * Get the connections accepted per second
+     *
+     * @return the connections per second
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Get the connections that can be
+     * accepted at once
+     *
+     * @return the rate burst
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Returns a string representation of the object
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        return "AdmissionPolicy[connections " + connections + ", per address " + per_address + ", per MAC " + per_mac + ", rate " + rate + "/s ( burst " + burst + " )]";
+    }
+}
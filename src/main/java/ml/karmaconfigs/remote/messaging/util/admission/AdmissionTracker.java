@@ -0,0 +1,213 @@
+package ml.karmaconfigs.remote.messaging.util.admission;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Server side admission state: the open connections,
+ * per address and per MAC, and the connect rate bucket.
+ * <p>
+ * A connection is admitted once when accepted and, optionally,
+ * identified once its MAC is known. Every admitted connection
+ * must be released when it closes
+ */
+public final class AdmissionTracker {
+
+    private final Map<InetAddress, Integer> addresses = new HashMap<>();
+    private final Map<String, Integer> macs = new HashMap<>();
+    private final Map<InetSocketAddress, String> identified = new HashMap<>();
+
+    private volatile AdmissionPolicy policy;
+
+    private int connections = 0;
+    private double tokens = -1;
+    private long refilled = 0;
+
+    private long declined = 0;
+
+    /**
+     * Initialize the admission tracker
+     *
+     * @param admissionPolicy the admission policy
+     */
+    public AdmissionTracker(final AdmissionPolicy admissionPolicy) {
+        policy = admissionPolicy;
+    }
+
+    /**
+     * Change the admission policy, the already admitted
+     * connections are kept
+     *
+     * @param admissionPolicy the new admission policy
+     */
+    public synchronized void setPolicy(final AdmissionPolicy admissionPolicy) {
+        policy = admissionPolicy;
+        tokens = -1;
+    }
+
+    /**
+     * Get the admission policy
+     *
+     * @return the admission policy
+     */
+    public AdmissionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Admit a new connection
+     *
+     * @param remote the connection remote address
+     * @return null if the connection has been admitted,
+     * or the reason it has been declined
+     */
+    @Nullable
+    public synchronized String admit(final InetSocketAddress remote) {
+        InetAddress address = remote.getAddress();
+        AdmissionPolicy current = policy;
+
+        if (current.getConnections() > 0 && connections >= current.getConnections())
+            return decline("The server is full");
+
+        int from = addresses.getOrDefault(address, 0);
+        if (current.getPerAddress() > 0 && from >= current.getPerAddress())
+            return decline("Too many connections from your address");
+
+        if (current.getRate() > 0) {
+            long now = System.nanoTime();
+            if (tokens < 0) {
+                tokens = current.getBurst();
+            } else {
+                tokens = Math.min(current.getBurst(), tokens + (now - refilled) / 1e9 * current.getRate());
+            }
+            refilled = now;
+
+            if (tokens < 1)
+                return decline("The server is receiving too many connections, try again later");
+
+            tokens--;
+        }
+
+        connections++;
+        addresses.put(address, from + 1);
+        return null;
+    }
+
+    /**
+     * Identify an admitted connection by its MAC. Identifying
+     * the same connection again with the same MAC does nothing
+     *
+     * @param remote the connection remote address
+     * @param mac the connection MAC, a connection without
+     *            MAC is always declined
+     * @return null if the connection has been identified,
+     * or the reason it has been declined
+     */
+    @Nullable
+    public synchronized String identify(final InetSocketAddress remote, final @Nullable String mac) {
+        if (mac == null)
+            return decline("The client did not identify itself");
+
+        String previous = identified.get(remote);
+        if (mac.equals(previous))
+            return null;
+
+        int from = macs.getOrDefault(mac, 0);
+        if (policy.getPerMAC() > 0 && from >= policy.getPerMAC())
+            return decline("Too many connections from your client");
+
+        if (previous != null)
+            forget(previous);
+
+        identified.put(remote, mac);
+        macs.put(mac, from + 1);
+        return null;
+    }
+
+    /**
+     * Release an admitted connection
+     *
+     * @param remote the connection remote address
+     */
+    public synchronized void release(final InetSocketAddress remote) {
+        connections = Math.max(0, connections - 1);
+
+        InetAddress address = remote.getAddress();
+        Integer from = addresses.get(address);
+        if (from != null) {
+            if (from <= 1) {
+                addresses.remove(address);
+            } else {
+                addresses.put(address, from - 1);
+            }
+        }
+
+        String mac = identified.remove(remote);
+        if (mac != null)
+            forget(mac);
+    }
+
+    /**
+     * Get the amount of admitted connections
+     *
+     * @return the admitted connections
+     */
+    public synchronized int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Get the amount of declined connections
+     *
+     * @return the declined connections
+     */
+    public synchronized long getDeclined() {
+        return declined;
+    }
+
+    /**
+     * Remove a connection from its MAC count
+     *
+     * @param mac the connection MAC
+     */
+    private void forget(final String mac) {
+        Integer from = macs.get(mac);
+        if (from == null)
+            return;
+
+        if (from <= 1) {
+            macs.remove(mac);
+        } else {
+            macs.put(mac, from - 1);
+        }
+    }
+
+    /**
+     * Count a declined connection
+     *
+     * @param reason the decline reason
+     * @return the decline reason
+     */
+    private String decline(final String reason) {
+        declined++;
+        return reason;
+    }
+}
@@ -0,0 +1,284 @@
+package ml.karmaconfigs.remote.messaging.util.buffer;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size classed pool of direct buffers used by the socket
+ * reads and writes.
+ * <p>
+ * Every thread keeps a small cache of released buffers, and
+ * the buffers that don't fit there go to a shared arena, so
+ * the loop threads almost never allocate once warmed up. Buffers
+ * bigger than the largest size class are not pooled.
+ * <p>
+ * A released buffer must not be used anymore, nor released
+ * again, as it would end up shared by two owners. With leak
+ * detection enabled, releasing a pooled buffer twice fails,
+ * and every acquired buffer that is garbage collected without
+ * being released is reported with the trace of the code that
+ * acquired it
+ */
+public final class BufferPool {
+
+    private final static int[] SIZES = {1024, 4 * 1024, 16 * 1024, 64 * 1024};
+    private final static int THREAD_CACHE = 8;
+    private final static int ARENA = 64;
+
+    /**
+     * Largest pooled buffer size
+     */
+    public final static int MAX_SIZE = SIZES[SIZES.length - 1];
+
+    @SuppressWarnings("unchecked")
+    private final static Queue<ByteBuffer>[] arena = new Queue[SIZES.length];
+    private final static AtomicInteger[] arena_size = new AtomicInteger[SIZES.length];
+
+    private final static ThreadLocal<ArrayDeque<ByteBuffer>[]> cache = ThreadLocal.withInitial(BufferPool::createCache);
+    private final static Set<Pooled> pooled = ConcurrentHashMap.newKeySet();
+
+    private final static Set<Leak> tracked = ConcurrentHashMap.newKeySet();
+    private final static ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<>();
+    private final static AtomicLong allocated = new AtomicLong(0);
+
+    private static volatile boolean debug = Boolean.getBoolean("remotemessaging.leaks");
+
+    static {
+        for (int i = 0; i < SIZES.length; i++) {
+            arena[i] = new ConcurrentLinkedQueue<>();
+            arena_size[i] = new AtomicInteger(0);
+        }
+    }
+
+    /**
+     * Initialize the buffer pool
+     */
+    private BufferPool() {}
+
+    /**
+     * Set the leak detection status. It can also be
+     * enabled with the remotemessaging.leaks system
+     * property
+     *
+     * @param status the leak detection status
+     */
+    public static void debug(final boolean status) {
+        debug = status;
+    }
+
+    /**
+     * Get the amount of direct buffers the
+     * pool has allocated
+     *
+     * @return the allocated buffers
+     */
+    public static long getAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * Get a direct buffer
+     *
+     * @param size the min buffer size
+     * @return a cleared direct buffer of at least
+     * the specified size
+     */
+    public static ByteBuffer acquire(final int size) {
+        int index = index(size);
+
+        ByteBuffer buffer = null;
+        if (index != -1) {
+            buffer = cache.get()[index].pollFirst();
+            if (buffer == null) {
+                buffer = arena[index].poll();
+                if (buffer != null)
+                    arena_size[index].decrementAndGet();
+            }
+
+            //Only tracked while leak detection is enabled
+            if (buffer != null && !pooled.isEmpty())
+                pooled.remove(new Pooled(buffer));
+        }
+
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(index != -1 ? SIZES[index] : size);
+            allocated.incrementAndGet();
+        }
+
+        buffer.clear();
+        if (debug) {
+            report();
+            tracked.add(new Leak(buffer, collected));
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool
+     *
+     * @param buffer the buffer
+     * @throws IllegalStateException if leak detection is
+     * enabled and the buffer is already in the pool
+     */
+    public static void release(final ByteBuffer buffer) throws IllegalStateException {
+        if (buffer == null)
+            return;
+
+        Pooled entry = null;
+        if (debug) {
+            entry = new Pooled(buffer);
+            if (pooled.contains(entry))
+                throw new IllegalStateException("The buffer has already been released");
+        }
+
+        if (!tracked.isEmpty()) {
+            for (Leak leak : tracked) {
+                if (leak.get() == buffer) {
+                    tracked.remove(leak);
+                    leak.clear();
+                    break;
+                }
+            }
+
+            report();
+        }
+
+        if (!buffer.isDirect() || buffer.isReadOnly())
+            return;
+
+        int index = index(buffer.capacity());
+        if (index == -1 || SIZES[index] != buffer.capacity())
+            return;
+
+        if (entry != null && !pooled.add(entry))
+            throw new IllegalStateException("The buffer has already been released");
+
+        ArrayDeque<ByteBuffer> local = cache.get()[index];
+        if (local.size() < THREAD_CACHE) {
+            local.addFirst(buffer);
+            return;
+        }
+
+        if (arena_size[index].incrementAndGet() <= ARENA) {
+            arena[index].add(buffer);
+        } else {
+            //The pool is full, the buffer is left to the garbage collector
+            arena_size[index].decrementAndGet();
+            if (entry != null)
+                pooled.remove(entry);
+        }
+    }
+
+    /**
+     * Report the buffers that have been collected
+     * without being released
+     */
+    private static void report() {
+        Leak leak;
+        while ((leak = (Leak) collected.poll()) != null) {
+            if (tracked.remove(leak)) {
+                System.err.println("A pooled buffer was garbage collected without being released");
+                leak.site.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Get the size class of a size
+     *
+     * @param size the size
+     * @return the size class index or -1 if the
+     * size is bigger than every size class
+     */
+    private static int index(final int size) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (size <= SIZES[i])
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Create a thread cache
+     *
+     * @return the thread cache
+     */
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<ByteBuffer>[] createCache() {
+        ArrayDeque<ByteBuffer>[] local = new ArrayDeque[SIZES.length];
+        for (int i = 0; i < SIZES.length; i++)
+            local[i] = new ArrayDeque<>(THREAD_CACHE);
+
+        return local;
+    }
+
+    /**
+     * Buffer in the pool, compared by identity as
+     * buffers are equal if their content is
+     */
+    private final static class Pooled {
+
+        private final ByteBuffer buffer;
+
+        /**
+         * Initialize the pooled buffer
+         *
+         * @param pooled the buffer
+         */
+        Pooled(final ByteBuffer pooled) {
+            buffer = pooled;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(buffer);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof Pooled && ((Pooled) other).buffer == buffer;
+        }
+    }
+
+    /**
+     * Acquired buffer tracked by the leak detection
+     */
+    private final static class Leak extends WeakReference<ByteBuffer> {
+
+        private final Throwable site = new Throwable("Buffer acquired here");
+
+        /**
+         * Initialize the leak tracker
+         *
+         * @param buffer the acquired buffer
+         * @param queue the collected buffers queue
+         */
+        Leak(final ByteBuffer buffer, final ReferenceQueue<ByteBuffer> queue) {
+            super(buffer, queue);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ml.karmaconfigs.remote.messaging.util.frame;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Frame codec. Every frame on the wire is an unsigned
+ * varint with the payload length followed by the payload
+ * itself, so frames can contain any byte
+ */
+public final class FrameCodec {
+
+    /**
+     * Max allowed frame payload ( 16 MB )
+     */
+    public final static int MAX_FRAME = 16 * 1024 * 1024;
+
+    /**
+     * Encode a frame
+     *
+     * @param payload the frame payload
+     * @return the frame ready to be written
+     */
+    public static ByteBuffer encode(final byte[] payload) {
+        return encode(payload, 0, payload.length);
+    }
+
+    /**
+     * Encode a frame
+     *
+     * @param payload the frame payload
+     * @param offset the payload start
+     * @param length the payload length
+     * @return the frame ready to be written
+     */
+    public static ByteBuffer encode(final byte[] payload, final int offset, final int length) {
+        ByteBuffer frame = ByteBuffer.allocate(varIntSize(length) + length);
+        writeVarInt(frame, length);
+        frame.put(payload, offset, length);
+        frame.flip();
+
+        return frame;
+    }
+
+    /**
+     * Copy the payload of a decoded frame
+     *
+     * @param frame the frame
+     * @return the frame payload
+     */
+    public static byte[] payload(final ByteBuffer frame) {
+        byte[] data = new byte[frame.remaining()];
+        frame.duplicate().get(data);
+
+        return data;
+    }
+
+    /**
+     * Get the amount of bytes a varint needs
+     *
+     * @param value the value
+     * @return the varint size
+     */
+    public static int varIntSize(final int value) {
+        if ((value & (~0 << 7)) == 0) return 1;
+        if ((value & (~0 << 14)) == 0) return 2;
+        if ((value & (~0 << 21)) == 0) return 3;
+        if ((value & (~0 << 28)) == 0) return 4;
+        return 5;
+    }
+
+    /**
+     * Write an unsigned varint
+     *
+     * @param buffer the buffer
+     * @param value the value
+     */
+    public static void writeVarInt(final ByteBuffer buffer, final int value) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            buffer.put((byte) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+
+        buffer.put((byte) remaining);
+    }
+
+    /**
+     * Read an unsigned varint. If the varint is not
+     * complete the buffer position is left untouched
+     *
+     * @param buffer the buffer
+     * @return the value, or -1 if there are not enough
+     * bytes to read it
+     * @throws FrameException if the varint is malformed
+     */
+    public static int readVarInt(final ByteBuffer buffer) throws FrameException {
+        int start = buffer.position();
+        int value = 0;
+
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                buffer.position(start);
+                return -1;
+            }
+
+            byte current = buffer.get();
+            value |= (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                if (value < 0)
+                    throw new FrameException("Negative varint");
+
+                return value;
+            }
+        }
+
+        throw new FrameException("Varint is too long");
+    }
+}
@@ -0,0 +1,160 @@
+package ml.karmaconfigs.remote.messaging.util.frame;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Frame decoder. Accumulates partial reads and splits
+ * coalesced frames.
+ * <p>
+ * Decoded frames are read-only slices of the receive buffer,
+ * no payload is copied. Once a frame has been handed out its
+ * bytes are never written again: new data is appended after
+ * them, and when the buffer is full the incomplete tail is moved
+ * to a new buffer, so frames stay valid after the decode call
+ * returns and a buffer is only allocated every time the previous
+ * one is full
+ */
+public final class FrameDecoder {
+
+    private final int capacity;
+    private final int max_frame;
+
+    private ByteBuffer buffer;
+    private int start = 0;
+    private boolean shared = false;
+
+    /**
+     * Initialize the frame decoder
+     */
+    public FrameDecoder() {
+        this(8192, FrameCodec.MAX_FRAME);
+    }
+
+    /**
+     * Initialize the frame decoder
+     *
+     * @param initial the receive buffer initial capacity
+     * @param max the max allowed frame payload
+     */
+    public FrameDecoder(final int initial, final int max) {
+        capacity = initial;
+        max_frame = max;
+        buffer = ByteBuffer.allocate(initial);
+    }
+
+    /**
+     * Get the buffer where the received data must
+     * be written into
+     *
+     * @return the receive buffer, always with free space
+     */
+    public ByteBuffer buffer() {
+        if (!buffer.hasRemaining()) {
+            int pending = buffer.position() - start;
+            relocate(start == 0 ? buffer.capacity() * 2 : pending + 1);
+        }
+
+        return buffer;
+    }
+
+    /**
+     * Append data to the receive buffer
+     *
+     * @param data the received data
+     */
+    public void feed(final ByteBuffer data) {
+        int limit = data.limit();
+        while (data.hasRemaining()) {
+            ByteBuffer target = buffer();
+
+            data.limit(data.position() + Math.min(target.remaining(), data.remaining()));
+            target.put(data);
+            data.limit(limit);
+        }
+    }
+
+    /**
+     * Extract all the complete frames of
+     * the receive buffer
+     *
+     * @param output the frame consumer
+     * @throws FrameException if a frame is not valid
+     */
+    public void decode(final Consumer<ByteBuffer> output) throws FrameException {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(buffer.position());
+        view.position(start);
+
+        int needed = 0;
+        while (view.hasRemaining()) {
+            int begin = view.position();
+            int length = FrameCodec.readVarInt(view);
+            if (length == -1)
+                break;
+
+            if (length > max_frame)
+                throw new FrameException("Frame of " + length + " bytes exceeds the max frame size (" + max_frame + ")");
+
+            if (view.remaining() < length) {
+                needed = (view.position() - begin) + length;
+                break;
+            }
+
+            ByteBuffer frame = view.slice();
+            frame.limit(length);
+            view.position(view.position() + length);
+
+            start = view.position();
+            shared = true;
+            output.accept(frame.asReadOnlyBuffer());
+        }
+
+        if (start == buffer.position() && !shared) {
+            start = 0;
+            buffer.clear();
+        } else {
+            if (needed > buffer.capacity() - start)
+                relocate(needed);
+        }
+    }
+
+    /**
+     * Move the incomplete tail to the buffer start, or
+     * to a new buffer if frames have been handed out from
+     * the current one or it's too small
+     *
+     * @param required the min amount of bytes the buffer
+     *                 must be able to hold
+     */
+    private void relocate(final int required) {
+        buffer.limit(buffer.position());
+        buffer.position(start);
+
+        if (shared || required > buffer.capacity()) {
+            ByteBuffer next = ByteBuffer.allocate(Math.max(capacity, Math.max(required, buffer.remaining())));
+            next.put(buffer);
+
+            buffer = next;
+            shared = false;
+        } else {
+            buffer.compact();
+        }
+
+        start = 0;
+    }
+}
@@ -0,0 +1,33 @@
+package ml.karmaconfigs.remote.messaging.util.frame;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.io.IOException;
+
+/**
+ * Thrown when the received data is not
+ * a valid frame
+ */
+public final class FrameException extends IOException {
+
+    /**
+     * Initialize the exception
+     *
+     * @param message the exception message
+     */
+    public FrameException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,576 @@
+package ml.karmaconfigs.remote.messaging.util.message;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.type.DataType;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary message format shared by {@link MessageBinaryOutput}
+ * and its readers.
+ * <p>
+ * A message is the {@link #MAGIC} byte, a varint with the amount
+ * of entries and then every entry as a tag byte, the key ( varint
+ * length + UTF-8 ) and the value. The low 3 bits of the tag are the
+ * {@link DataType} and the rest the value encoding:
+ * <ul>
+ *     <li>SEQUENCE: varint length + UTF-8</li>
+ *     <li>BOOLEAN: one byte</li>
+ *     <li>NUMBER: zig-zag varint for integers, IEEE bits for decimals,
+ *     two's complement bytes for big numbers</li>
+ *     <li>CHARACTER: varint length + UTF-16 code units</li>
+ *     <li>BYTE: varint length + raw bytes</li>
+ *     <li>SERIALIZABLE: varint length + UTF-8 for strings, java
+ *     serialization for anything else</li>
+ * </ul>
+ */
+final class BinaryFormat {
+
+    /**
+     * First byte of every binary message, it can't be the
+     * first byte of a serialized ( base64 ) message
+     */
+    final static byte MAGIC = (byte) 0xB1;
+
+    final static int TYPE_SERIALIZABLE = 0;
+    final static int TYPE_SEQUENCE = 1;
+    final static int TYPE_BOOLEAN = 2;
+    final static int TYPE_NUMBER = 3;
+    final static int TYPE_CHARACTER = 4;
+    final static int TYPE_BYTE = 5;
+
+    final static int NUMBER_INT = 0;
+    final static int NUMBER_LONG = 1;
+    final static int NUMBER_SHORT = 2;
+    final static int NUMBER_BYTE = 3;
+    final static int NUMBER_FLOAT = 4;
+    final static int NUMBER_DOUBLE = 5;
+    final static int NUMBER_BIG_INTEGER = 6;
+    final static int NUMBER_BIG_DECIMAL = 7;
+    final static int NUMBER_OBJECT = 8;
+
+    final static int SERIAL_OBJECT = 0;
+    final static int SERIAL_STRING = 1;
+
+    /**
+     * Get if the data is a binary message
+     *
+     * @param data the data
+     * @return if the data is a binary message
+     */
+    static boolean isBinary(final byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    /**
+     * Get if the data is a binary message
+     *
+     * @param data the data
+     * @return if the data is a binary message
+     */
+    static boolean isBinary(final ByteBuffer data) {
+        return data != null && data.hasRemaining() && data.get(data.position()) == MAGIC;
+    }
+
+    /**
+     * Get the data type of a tag
+     *
+     * @param tag the tag
+     * @return the tag data type
+     */
+    static DataType type(final int tag) throws IOException {
+        switch (tag & 0x07) {
+            case TYPE_SERIALIZABLE:
+                return DataType.SERIALIZABLE;
+            case TYPE_SEQUENCE:
+                return DataType.SEQUENCE;
+            case TYPE_BOOLEAN:
+                return DataType.BOOLEAN;
+            case TYPE_NUMBER:
+                return DataType.NUMBER;
+            case TYPE_CHARACTER:
+                return DataType.CHARACTER;
+            case TYPE_BYTE:
+                return DataType.BYTE;
+            default:
+                throw new IOException("Unknown data type: " + (tag & 0x07));
+        }
+    }
+
+    /**
+     * Write an entry
+     *
+     * @param writer the writer
+     * @param type the entry type
+     * @param key the entry key
+     * @param value the entry value
+     */
+    static void writeEntry(final Writer writer, final DataType type, final String key, final Object value) {
+        switch (type) {
+            case SEQUENCE:
+                writer.put(TYPE_SEQUENCE);
+                writer.putString(key);
+                writer.putString(value.toString());
+                break;
+            case BOOLEAN:
+                writer.put(TYPE_BOOLEAN);
+                writer.putString(key);
+                writer.put(Boolean.TRUE.equals(value) ? 1 : 0);
+                break;
+            case NUMBER:
+                writeNumber(writer, key, (Number) value);
+                break;
+            case CHARACTER:
+                char[] chars = (char[]) value;
+                writer.put(TYPE_CHARACTER);
+                writer.putString(key);
+                writer.putVarInt(chars.length);
+                for (char character : chars)
+                    writer.putShort(character);
+                break;
+            case BYTE:
+                byte[] bytes = (byte[]) value;
+                writer.put(TYPE_BYTE);
+                writer.putString(key);
+                writer.putVarInt(bytes.length);
+                writer.putBytes(bytes, 0, bytes.length);
+                break;
+            case SERIALIZABLE:
+            default:
+                if (value instanceof String) {
+                    writer.put(TYPE_SERIALIZABLE | (SERIAL_STRING << 3));
+                    writer.putString(key);
+                    writer.putString((String) value);
+                } else {
+                    byte[] serialized = serialize(value);
+                    writer.put(TYPE_SERIALIZABLE | (SERIAL_OBJECT << 3));
+                    writer.putString(key);
+                    writer.putVarInt(serialized.length);
+                    writer.putBytes(serialized, 0, serialized.length);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Write a number entry
+     *
+     * @param writer the writer
+     * @param key the entry key
+     * @param number the number
+     */
+    private static void writeNumber(final Writer writer, final String key, final Number number) {
+        if (number instanceof Integer) {
+            writer.put(TYPE_NUMBER | (NUMBER_INT << 3));
+            writer.putString(key);
+            writer.putVarLong(zigZag(number.intValue()));
+        } else if (number instanceof Long) {
+            writer.put(TYPE_NUMBER | (NUMBER_LONG << 3));
+            writer.putString(key);
+            writer.putVarLong(zigZag(number.longValue()));
+        } else if (number instanceof Short) {
+            writer.put(TYPE_NUMBER | (NUMBER_SHORT << 3));
+            writer.putString(key);
+            writer.putVarLong(zigZag(number.shortValue()));
+        } else if (number instanceof Byte) {
+            writer.put(TYPE_NUMBER | (NUMBER_BYTE << 3));
+            writer.putString(key);
+            writer.put(number.byteValue());
+        } else if (number instanceof Float) {
+            writer.put(TYPE_NUMBER | (NUMBER_FLOAT << 3));
+            writer.putString(key);
+            writer.putInt(Float.floatToRawIntBits(number.floatValue()));
+        } else if (number instanceof Double) {
+            writer.put(TYPE_NUMBER | (NUMBER_DOUBLE << 3));
+            writer.putString(key);
+            writer.putLong(Double.doubleToRawLongBits(number.doubleValue()));
+        } else if (number instanceof BigInteger) {
+            byte[] bytes = ((BigInteger) number).toByteArray();
+            writer.put(TYPE_NUMBER | (NUMBER_BIG_INTEGER << 3));
+            writer.putString(key);
+            writer.putVarInt(bytes.length);
+            writer.putBytes(bytes, 0, bytes.length);
+        } else if (number instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal) number;
+            byte[] bytes = decimal.unscaledValue().toByteArray();
+            writer.put(TYPE_NUMBER | (NUMBER_BIG_DECIMAL << 3));
+            writer.putString(key);
+            writer.putVarLong(zigZag(decimal.scale()));
+            writer.putVarInt(bytes.length);
+            writer.putBytes(bytes, 0, bytes.length);
+        } else {
+            byte[] serialized = serialize(number);
+            writer.put(TYPE_NUMBER | (NUMBER_OBJECT << 3));
+            writer.putString(key);
+            writer.putVarInt(serialized.length);
+            writer.putBytes(serialized, 0, serialized.length);
+        }
+    }
+
+    /**
+     * Read the value of an entry, the buffer must
+     * be placed right after the entry key
+     *
+     * @param buffer the buffer
+     * @param tag the entry tag
+     * @return the entry value
+     * @throws IOException if the value is not valid
+     */
+    static Object readValue(final ByteBuffer buffer, final int tag) throws IOException {
+        int encoding = tag >>> 3;
+
+        try {
+            switch (tag & 0x07) {
+                case TYPE_SEQUENCE:
+                    return readString(buffer);
+                case TYPE_BOOLEAN:
+                    return buffer.get() != 0;
+                case TYPE_NUMBER:
+                    switch (encoding) {
+                        case NUMBER_INT:
+                            return (int) unZigZag(readVarLong(buffer));
+                        case NUMBER_LONG:
+                            return unZigZag(readVarLong(buffer));
+                        case NUMBER_SHORT:
+                            return (short) unZigZag(readVarLong(buffer));
+                        case NUMBER_BYTE:
+                            return buffer.get();
+                        case NUMBER_FLOAT:
+                            return Float.intBitsToFloat(buffer.getInt());
+                        case NUMBER_DOUBLE:
+                            return Double.longBitsToDouble(buffer.getLong());
+                        case NUMBER_BIG_INTEGER:
+                            return new BigInteger(readBytes(buffer));
+                        case NUMBER_BIG_DECIMAL:
+                            int scale = (int) unZigZag(readVarLong(buffer));
+                            return new BigDecimal(new BigInteger(readBytes(buffer)), scale);
+                        case NUMBER_OBJECT:
+                            return deserialize(readBytes(buffer));
+                        default:
+                            throw new IOException("Unknown number encoding: " + encoding);
+                    }
+                case TYPE_CHARACTER:
+                    char[] chars = new char[readLength(buffer)];
+                    for (int i = 0; i < chars.length; i++)
+                        chars[i] = buffer.getChar();
+                    return chars;
+                case TYPE_BYTE:
+                    return readBytes(buffer);
+                case TYPE_SERIALIZABLE:
+                    if (encoding == SERIAL_STRING)
+                        return readString(buffer);
+
+                    return deserialize(readBytes(buffer));
+                default:
+                    throw new IOException("Unknown data type: " + (tag & 0x07));
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Truncated binary message", ex);
+        }
+    }
+
+    /**
+     * Skip the value of an entry, the buffer must
+     * be placed right after the entry key
+     *
+     * @param buffer the buffer
+     * @param tag the entry tag
+     * @throws IOException if the value is not valid
+     */
+    static void skipValue(final ByteBuffer buffer, final int tag) throws IOException {
+        int encoding = tag >>> 3;
+
+        try {
+            switch (tag & 0x07) {
+                case TYPE_BOOLEAN:
+                    skip(buffer, 1);
+                    break;
+                case TYPE_NUMBER:
+                    switch (encoding) {
+                        case NUMBER_INT:
+                        case NUMBER_LONG:
+                        case NUMBER_SHORT:
+                            readVarLong(buffer);
+                            break;
+                        case NUMBER_BYTE:
+                            skip(buffer, 1);
+                            break;
+                        case NUMBER_FLOAT:
+                            skip(buffer, 4);
+                            break;
+                        case NUMBER_DOUBLE:
+                            skip(buffer, 8);
+                            break;
+                        case NUMBER_BIG_DECIMAL:
+                            readVarLong(buffer);
+                            skip(buffer, readLength(buffer));
+                            break;
+                        case NUMBER_BIG_INTEGER:
+                        case NUMBER_OBJECT:
+                            skip(buffer, readLength(buffer));
+                            break;
+                        default:
+                            throw new IOException("Unknown number encoding: " + encoding);
+                    }
+                    break;
+                case TYPE_CHARACTER:
+                    skip(buffer, readLength(buffer) * 2);
+                    break;
+                case TYPE_SEQUENCE:
+                case TYPE_BYTE:
+                case TYPE_SERIALIZABLE:
+                    skip(buffer, readLength(buffer));
+                    break;
+                default:
+                    throw new IOException("Unknown data type: " + (tag & 0x07));
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Truncated binary message", ex);
+        }
+    }
+
+    /**
+     * Read a length prefixed UTF-8 string
+     *
+     * @param buffer the buffer
+     * @return the string
+     * @throws IOException if the string is not valid
+     */
+    static String readString(final ByteBuffer buffer) throws IOException {
+        int length = readLength(buffer);
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+
+            return value;
+        }
+
+        byte[] data = new byte[length];
+        buffer.get(data);
+
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read length prefixed bytes
+     *
+     * @param buffer the buffer
+     * @return the bytes
+     * @throws IOException if the length is not valid
+     */
+    static byte[] readBytes(final ByteBuffer buffer) throws IOException {
+        byte[] data = new byte[readLength(buffer)];
+        buffer.get(data);
+
+        return data;
+    }
+
+    /**
+     * Read a length, making sure the buffer
+     * contains that amount of bytes
+     *
+     * @param buffer the buffer
+     * @return the length
+     * @throws IOException if the length is not valid
+     */
+    static int readLength(final ByteBuffer buffer) throws IOException {
+        long length = readVarLong(buffer);
+        if (length < 0 || length > buffer.remaining())
+            throw new IOException("Truncated binary message");
+
+        return (int) length;
+    }
+
+    /**
+     * Read an unsigned varint
+     *
+     * @param buffer the buffer
+     * @return the value
+     * @throws IOException if the varint is too long
+     */
+    static long readVarLong(final ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte current = buffer.get();
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0)
+                return value;
+        }
+
+        throw new IOException("Varint is too long");
+    }
+
+    /**
+     * Skip bytes
+     *
+     * @param buffer the buffer
+     * @param amount the amount of bytes to skip
+     * @throws IOException if there are not enough bytes
+     */
+    private static void skip(final ByteBuffer buffer, final int amount) throws IOException {
+        if (amount < 0 || amount > buffer.remaining())
+            throw new IOException("Truncated binary message");
+
+        buffer.position(buffer.position() + amount);
+    }
+
+    /**
+     * Zig-zag encode a number
+     *
+     * @param value the number
+     * @return the encoded number
+     */
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Zig-zag decode a number
+     *
+     * @param value the encoded number
+     * @return the number
+     */
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Java serialize an object
+     *
+     * @param value the object
+     * @return the serialized object
+     */
+    private static byte[] serialize(final Object value) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (ObjectOutputStream stream = new ObjectOutputStream(out)) {
+                stream.writeObject(value);
+            }
+
+            return out.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Failed to serialize " + value.getClass().getName(), ex);
+        }
+    }
+
+    /**
+     * Java deserialize an object
+     *
+     * @param data the serialized object
+     * @return the object
+     * @throws IOException if the object can't be read
+     */
+    private static Object deserialize(final byte[] data) throws IOException {
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return stream.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Growable binary writer
+     */
+    static final class Writer {
+
+        private byte[] data;
+        private int size = 0;
+
+        /**
+         * Initialize the writer
+         *
+         * @param capacity the initial capacity
+         */
+        Writer(final int capacity) {
+            data = new byte[capacity];
+        }
+
+        void put(final int value) {
+            ensure(1);
+            data[size++] = (byte) value;
+        }
+
+        void putShort(final int value) {
+            ensure(2);
+            data[size++] = (byte) (value >>> 8);
+            data[size++] = (byte) value;
+        }
+
+        void putInt(final int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8)
+                data[size++] = (byte) (value >>> shift);
+        }
+
+        void putLong(final long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8)
+                data[size++] = (byte) (value >>> shift);
+        }
+
+        void putVarInt(final int value) {
+            putVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void putVarLong(final long value) {
+            ensure(10);
+
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                data[size++] = (byte) ((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+            data[size++] = (byte) remaining;
+        }
+
+        void putBytes(final byte[] bytes, final int offset, final int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
+        }
+
+        void putString(final String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarInt(bytes.length);
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        /**
+         * Get the written bytes
+         *
+         * @return the written bytes
+         */
+        byte[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+        /**
+         * Make room for more bytes
+         *
+         * @param amount the amount of bytes
+         */
+        private void ensure(final int amount) {
+            if (size + amount > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + amount));
+        }
+    }
+}
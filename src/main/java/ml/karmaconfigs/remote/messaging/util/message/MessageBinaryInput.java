@@ -0,0 +1,341 @@
+package ml.karmaconfigs.remote.messaging.util.message;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.type.DataType;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message input view over a binary message.
+ * <p>
+ * Only the entry offsets are indexed when the input is
+ * created, each value is decoded when it's requested. The
+ * data buffer is never copied so it must not be modified
+ * while the input is in use
+ */
+public class MessageBinaryInput extends MessageInput {
+
+    private final ByteBuffer data;
+
+    private final int[] tags;
+    private final int[] key_offsets;
+    private final int[] key_lengths;
+    private final int[] value_offsets;
+
+    /**
+     * Initialize the message input
+     *
+     * @param buffer the binary message, from its
+     *               position to its limit
+     * @throws IllegalArgumentException if the data is not a valid binary message
+     */
+    public MessageBinaryInput(final ByteBuffer buffer) {
+        super();
+        data = buffer.slice();
+
+        if (!BinaryFormat.isBinary(data))
+            throw new IllegalArgumentException("Data is not a binary message");
+
+        try {
+            ByteBuffer index = data.duplicate();
+            index.get();
+
+            long entries = BinaryFormat.readVarLong(index);
+            if (entries < 0 || entries > index.remaining())
+                throw new IOException("Invalid amount of entries: " + entries);
+
+            int size = (int) entries;
+            tags = new int[size];
+            key_offsets = new int[size];
+            key_lengths = new int[size];
+            value_offsets = new int[size];
+
+            for (int i = 0; i < size; i++) {
+                int tag = index.get() & 0xFF;
+                BinaryFormat.type(tag);
+
+                int length = BinaryFormat.readLength(index);
+                tags[i] = tag;
+                key_offsets[i] = index.position();
+                key_lengths[i] = length;
+
+                index.position(index.position() + length);
+                value_offsets[i] = index.position();
+
+                BinaryFormat.skipValue(index, tag);
+            }
+        } catch (IOException | RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid binary message", ex);
+        }
+    }
+
+    /**
+     * Initialize the message input
+     *
+     * @param compiled the binary message
+     * @throws IllegalArgumentException if the data is not a valid binary message
+     */
+    public MessageBinaryInput(final byte[] compiled) {
+        this(ByteBuffer.wrap(compiled));
+    }
+
+    /**
+     * Get if the buffer contains a binary message
+     *
+     * @param buffer the buffer
+     * @return if the buffer data is a binary message
+     */
+    public static boolean isBinary(final ByteBuffer buffer) {
+        return BinaryFormat.isBinary(buffer);
+    }
+
+    /**
+     * Get the data object
+     *
+     * @param key the data key
+     * @return the object
+     */
+    @Override
+    public @Nullable Serializable getSerialized(final String key) {
+        return (Serializable) value(key, BinaryFormat.TYPE_SERIALIZABLE);
+    }
+
+    /**
+     * Get the data object
+     *
+     * @param key the data key
+     * @return the object
+     */
+    @Override
+    public @Nullable CharSequence getSequence(final String key) {
+        return (CharSequence) value(key, BinaryFormat.TYPE_SEQUENCE);
+    }
+
+    /**
+     * Get the data object
+     *
+     * @param key the data key
+     * @return the object
+     */
+    @Override
+    public boolean getBoolean(final String key) {
+        int entry = find(key, BinaryFormat.TYPE_BOOLEAN);
+        return entry != -1 && data.get(value_offsets[entry]) != 0;
+    }
+
+    /**
+     * Get the data object
+     *
+     * @param key the data key
+     * @return the object
+     */
+    @Override
+    public @Nullable Number getNumber(final String key) {
+        return (Number) value(key, BinaryFormat.TYPE_NUMBER);
+    }
+
+    /**
+     * Get the data object
+     *
+     * @param key the data key
+     * @return the object
+     */
+    @Override
+    public char[] getCharacters(final String key) {
+        return (char[]) value(key, BinaryFormat.TYPE_CHARACTER);
+    }
+
+    /**
+     * Get the data object
+     *
+     * @param key the data key
+     * @return the object
+     */
+    @Override
+    public byte[] getBytes(final String key) {
+        return (byte[]) value(key, BinaryFormat.TYPE_BYTE);
+    }
+
+    /**
+     * Get the data object without copying it
+     *
+     * @param key the data key
+     * @return a read-only view of the bytes
+     */
+    @Override
+    public @Nullable ByteBuffer getBuffer(final String key) {
+        int entry = find(key, BinaryFormat.TYPE_BYTE);
+        if (entry == -1)
+            return null;
+
+        try {
+            ByteBuffer value = data.duplicate();
+            value.position(value_offsets[entry]);
+
+            int length = BinaryFormat.readLength(value);
+            ByteBuffer slice = value.slice();
+            slice.limit(length);
+
+            return slice.asReadOnlyBuffer();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Decode the whole message
+     *
+     * @return the message output
+     */
+    @Override
+    MessageOutput load() {
+        MessageOutput output = new MessageBinaryOutput();
+        for (int i = 0; i < tags.length; i++) {
+            try {
+                DataType type = BinaryFormat.type(tags[i]);
+                output.unsafeWrite(key(i), decode(i), type);
+            } catch (IOException ignored) {}
+        }
+
+        return output;
+    }
+
+    /**
+     * Returns a string representation of the object
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < tags.length; i++) {
+            try {
+                builder.append(BinaryFormat.type(tags[i]).name()).append("=").append(key(i)).append(";");
+            } catch (IOException ignored) {}
+        }
+
+        return getClass().getName() + "@" + Integer.toHexString(hashCode()) + "[" + builder + "]";
+    }
+
+    /**
+     * Decode the value of a key
+     *
+     * @param key the value key
+     * @param type the value type
+     * @return the value
+     */
+    @Nullable
+    private Object value(final String key, final int type) {
+        int entry = find(key, type);
+        if (entry == -1)
+            return null;
+
+        try {
+            return decode(entry);
+        } catch (IOException | ClassCastException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Decode the value of an entry
+     *
+     * @param entry the entry
+     * @return the entry value
+     * @throws IOException if the value is not valid
+     */
+    private Object decode(final int entry) throws IOException {
+        ByteBuffer value = data.duplicate();
+        value.position(value_offsets[entry]);
+
+        return BinaryFormat.readValue(value, tags[entry]);
+    }
+
+    /**
+     * Decode the key of an entry
+     *
+     * @param entry the entry
+     * @return the entry key
+     */
+    private String key(final int entry) {
+        byte[] key = new byte[key_lengths[entry]];
+        ByteBuffer value = data.duplicate();
+        value.position(key_offsets[entry]);
+        value.get(key);
+
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Find an entry
+     *
+     * @param key the entry key
+     * @param type the entry type
+     * @return the entry or -1 if it does not exist
+     */
+    private int find(final String key, final int type) {
+        for (int i = 0; i < tags.length; i++) {
+            if ((tags[i] & 0x07) == type && matches(key, i))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compare a key with the key of an entry
+     * without decoding it
+     *
+     * @param key the key
+     * @param entry the entry
+     * @return if the entry has that key
+     */
+    private boolean matches(final String key, final int entry) {
+        int offset = key_offsets[entry];
+        int length = key_lengths[entry];
+        if (key.length() > length)
+            return false;
+
+        boolean ascii = true;
+        for (int i = 0; i < key.length() && ascii; i++) {
+            char character = key.charAt(i);
+            if (character >= 0x80) {
+                ascii = false;
+            } else {
+                if (data.get(offset + i) != character)
+                    return false;
+            }
+        }
+
+        if (ascii)
+            return key.length() == length;
+
+        byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length != length)
+            return false;
+
+        for (int i = 0; i < length; i++) {
+            if (data.get(offset + i) != encoded[i])
+                return false;
+        }
+
+        return true;
+    }
+}
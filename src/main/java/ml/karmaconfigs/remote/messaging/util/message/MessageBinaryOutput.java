@@ -0,0 +1,313 @@
+package ml.karmaconfigs.remote.messaging.util.message;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.type.DataType;
+import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Message output compiled with the tagged binary
+ * format of {@link BinaryFormat} instead of java
+ * serialization + base64.
+ * <p>
+ * A message is meant to be written by a single thread,
+ * this output is not thread safe
+ */
+public class MessageBinaryOutput extends MessageOutput {
+
+    private final Map<DataType, Map<String, Object>> data = new EnumMap<>(DataType.class);
+
+    /**
+     * Create a new message binary output
+     */
+    public MessageBinaryOutput() {
+        super();
+    }
+
+    /**
+     * Create a new message binary output
+     *
+     * @param affiliate the owner data
+     * @param type the merge type
+     */
+    public MessageBinaryOutput(final MessageOutput affiliate, final MergeType type) {
+        super(affiliate, type);
+    }
+
+    /**
+     * Create a new message binary output
+     *
+     * @param compiled the owner data
+     * @param type the merge type
+     */
+    public MessageBinaryOutput(final byte[] compiled, final MergeType type) {
+        super(compiled, type);
+    }
+
+    /**
+     * Write data to the message input
+     *
+     * @param key  the data key
+     * @param data the data to write
+     */
+    @Override
+    public void writeSerializable(final String key, final Serializable data) {
+        put(DataType.SERIALIZABLE, key, data);
+    }
+
+    /**
+     * Write data to the message input
+     *
+     * @param key  the data key
+     * @param data the data ( character sequence ) to write
+     */
+    @Override
+    public void write(final String key, final CharSequence data) {
+        put(DataType.SEQUENCE, key, data);
+    }
+
+    /**
+     * Write data to the message input
+     *
+     * @param key  the data key
+     * @param data the data ( boolean ) to write
+     */
+    @Override
+    public void write(final String key, final boolean data) {
+        put(DataType.BOOLEAN, key, data);
+    }
+
+    /**
+     * Write data to the message input
+     *
+     * @param key    the data key
+     * @param number the data ( number ) to write
+     */
+    @Override
+    public void write(final String key, final Number number) {
+        put(DataType.NUMBER, key, number);
+    }
+
+    /**
+     * Write data to the message input
+     *
+     * @param key   the data key
+     * @param chars the data ( characters ) to write
+     */
+    @Override
+    public void write(final String key, final char... chars) {
+        put(DataType.CHARACTER, key, chars);
+    }
+
+    /**
+     * Write data to the message input
+     *
+     * @param key  the data key
+     * @param data the data ( bytes ) to write
+     */
+    @Override
+    public void write(final String key, final byte[] data) {
+        put(DataType.BYTE, key, data);
+    }
+
+    /**
+     * Write unsafely to the message input
+     *
+     * @param key  the data key
+     * @param data the data to write
+     * @param type the data type
+     */
+    @Override
+    public <T> void unsafeWrite(final String key, final T data, final DataType type) {
+        switch (type) {
+            case SERIALIZABLE:
+                if (data instanceof Serializable)
+                    put(type, key, data);
+                break;
+            case SEQUENCE:
+                if (data instanceof CharSequence)
+                    put(type, key, data);
+                break;
+            case BOOLEAN:
+                if (data instanceof Boolean)
+                    put(type, key, data);
+                break;
+            case NUMBER:
+                if (data instanceof Number)
+                    put(type, key, data);
+                break;
+            case CHARACTER:
+                if (data instanceof char[])
+                    put(type, key, data);
+                break;
+            case BYTE:
+                if (data instanceof byte[])
+                    put(type, key, data);
+                break;
+        }
+    }
+
+    /**
+     * Remove data from the specified type
+     *
+     * @param key  the data key
+     * @param type the data type
+     */
+    @Override
+    public void remove(final String key, final DataType type) {
+        Map<String, Object> values = data.get(type);
+        if (values != null)
+            values.remove(key);
+    }
+
+    /**
+     * Get all the data keys for the specified data type
+     *
+     * @param type the data type
+     * @return all the keys
+     */
+    @Override
+    public Set<String> getKeys(final DataType type) {
+        Map<String, Object> values = data.get(type);
+        if (values == null)
+            return Collections.emptySet();
+
+        return values.keySet();
+    }
+
+    /**
+     * Get if the message input contains the specified key
+     * in the specified data type
+     *
+     * @param key  the data key
+     * @param type the data type
+     * @return if the message input contains that data
+     */
+    @Override
+    public boolean contains(final String key, final DataType type) {
+        Map<String, Object> values = data.get(type);
+        return values != null && values.containsKey(key);
+    }
+
+    /**
+     * Get the data
+     *
+     * @param key  the data key
+     * @param type the data key
+     * @return the data
+     * <p>
+     * THIS SHOULD BE ALWAYS PACKAGE PRIVATE AS THE VALUES IN MESSAGE INPUT MAY CHANGE, IT'S UNSAFE
+     * TO RETRIEVE THEM AS IF YOU WERE USING {@link MessageInput}, IN WERE THE DATA IS FIXED TO
+     * KEY => VALUE ALWAYS
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    <T> T get(final String key, final DataType type) {
+        Map<String, Object> values = data.get(type);
+        if (values == null)
+            return null;
+
+        return (T) values.get(key);
+    }
+
+    /**
+     * Compile the message input
+     *
+     * @return the message input
+     */
+    @Override
+    public byte[] compile() {
+        mergeAffiliate();
+
+        int entries = 0;
+        for (Map<String, Object> values : data.values())
+            entries += values.size();
+
+        BinaryFormat.Writer writer = new BinaryFormat.Writer(16 + entries * 32);
+        writer.put(BinaryFormat.MAGIC);
+        writer.putVarInt(entries);
+
+        for (Map.Entry<DataType, Map<String, Object>> type : data.entrySet()) {
+            for (Map.Entry<String, Object> entry : type.getValue().entrySet())
+                BinaryFormat.writeEntry(writer, type.getKey(), entry.getKey(), entry.getValue());
+        }
+
+        return writer.toArray();
+    }
+
+    /**
+     * Get if the compiled message is a
+     * binary message
+     *
+     * @param compiled the compiled message
+     * @return if the message is binary
+     */
+    public static boolean isBinary(final byte[] compiled) {
+        return BinaryFormat.isBinary(compiled);
+    }
+
+    /**
+     * Load a compiled binary message
+     *
+     * @param compiled the compiled message
+     * @return the message output or null if the
+     * data is not a valid binary message
+     */
+    @Nullable
+    public static MessageBinaryOutput load(final byte[] compiled) {
+        if (!BinaryFormat.isBinary(compiled))
+            return null;
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(compiled);
+            buffer.get();
+
+            MessageBinaryOutput output = new MessageBinaryOutput();
+            long entries = BinaryFormat.readVarLong(buffer);
+            for (long i = 0; i < entries; i++) {
+                int tag = buffer.get() & 0xFF;
+                String key = BinaryFormat.readString(buffer);
+
+                output.put(BinaryFormat.type(tag), key, BinaryFormat.readValue(buffer, tag));
+            }
+
+            return output;
+        } catch (IOException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Store a value
+     *
+     * @param type the value type
+     * @param key the value key
+     * @param value the value
+     */
+    private void put(final DataType type, final String key, final Object value) {
+        if (value == null) {
+            remove(key, type);
+            return;
+        }
+
+        data.computeIfAbsent(type, (t) -> new LinkedHashMap<>()).put(key, value);
+    }
+}
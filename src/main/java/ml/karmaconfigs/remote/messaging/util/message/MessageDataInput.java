@@ -1,6 +1,5 @@
 package ml.karmaconfigs.remote.messaging.util.message;
 
-import ml.karmaconfigs.api.common.utils.string.StringUtils;
 import ml.karmaconfigs.remote.messaging.util.message.type.DataType;
 import org.jetbrains.annotations.Nullable;
 
@@ -18,8 +17,7 @@ public class MessageDataInput extends MessageInput {
      */
     public MessageDataInput(final byte[] data) {
         super(data);
-        String serialized = new String(data);
-        input = StringUtils.loadUnsafe(serialized);
+        input = getOutput();
     }
 
     /**
@@ -298,39 +298,7 @@ public class MessageDataOutput extends MessageOutput {
      */
     @Override
     public byte[] compile() {
-        MessageOutput affiliate = affiliate();
-        if (affiliate != null) {
-            MergeType merge = merge();
-            DataType[] types = DataType.values();
-
-            switch (merge) {
-                case REPLACE:
-                    for (DataType type : types) {
-                        Set<String> keys = affiliate.getKeys(type);
-                        keys.forEach((key) -> {
-                            if (contains(key, type)) {
-                                unsafeWrite(key, affiliate.get(key, type), type);
-                            }
-                        });
-                    }
-
-                    break;
-                case DIFFERENCE:
-                    for (DataType type : types) {
-                        Set<String> keys = affiliate.getKeys(type);
-                        keys.forEach((key) -> {
-                            if (!contains(key, type)) {
-                                unsafeWrite(key, affiliate.get(key, type), type);
-                            }
-                        });
-                    }
-
-                    break;
-                case NONE:
-                default:
-                    break;
-            }
-        }
+        mergeAffiliate();
 
         return StringUtils.serialize(this).getBytes(StandardCharsets.UTF_8);
     }
@@ -19,6 +19,7 @@ import ml.karmaconfigs.remote.messaging.util.message.type.DataType;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -28,7 +29,15 @@ import java.util.Set;
  */
 public abstract class MessageInput {
 
-    private final MessageOutput output;
+    private MessageOutput output;
+
+    /**
+     * Initialize a lazy message input, its message
+     * output will be loaded the first time it's requested
+     */
+    protected MessageInput() {
+        output = null;
+    }
 
     /**
      * Initialize the message input
@@ -121,15 +130,44 @@ public abstract class MessageInput {
      */
     public abstract byte[] getBytes(final String key);
 
+    /**
+     * Get the data object without copying it
+     * when possible
+     *
+     * @param key the data key
+     * @return a read-only view of the bytes
+     */
+    @Nullable
+    public ByteBuffer getBuffer(final String key) {
+        byte[] data = getBytes(key);
+        if (data != null)
+            return ByteBuffer.wrap(data).asReadOnlyBuffer();
+
+        return null;
+    }
+
     /**
      * Get the serialized message output
      *
      * @return the message output
      */
     public final MessageOutput getOutput() {
+        if (output == null)
+            output = load();
+
         return output;
     }
 
+    /**
+     * Load the message output of a lazy
+     * message input
+     *
+     * @return the message output
+     */
+    MessageOutput load() {
+        return null;
+    }
+
     /**
      * Clone the message input without the specified keys
      *
@@ -139,7 +177,7 @@ public abstract class MessageInput {
     public final MessageInput clone(final Map<DataType, Set<String>> remove) {
         MessageOutput out = new MessageDataOutput();
         for (DataType type : DataType.values()) {
-            output.getKeys(type).forEach((key) -> {
+            getOutput().getKeys(type).forEach((key) -> {
                 if (remove.containsKey(type)) {
                     Set<String> ignore = remove.getOrDefault(type, new HashSet<>());
                     if (!ignore.contains(key)) {
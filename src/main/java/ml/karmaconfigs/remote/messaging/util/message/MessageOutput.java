@@ -21,7 +21,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Serializable;
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 
 /**
@@ -58,8 +58,11 @@ public abstract class MessageOutput implements Serializable {
      * @param mt the merge type for the already existing message input
      */
     public MessageOutput(final byte[] merge, final MergeType mt) {
-        String serialized = new String(Base64.getDecoder().decode(merge));
-        origin = StringUtils.loadUnsafe(serialized);
+        if (BinaryFormat.isBinary(merge)) {
+            origin = MessageBinaryOutput.load(merge);
+        } else {
+            origin = StringUtils.loadUnsafe(new String(merge, StandardCharsets.UTF_8));
+        }
         type = mt;
     }
 
@@ -187,4 +190,44 @@ public abstract class MessageOutput implements Serializable {
     MessageOutput affiliate() {
         return origin;
     }
+
+    /**
+     * Merge the affiliated message input into this
+     * one, following the merge type
+     */
+    final void mergeAffiliate() {
+        MessageOutput affiliate = affiliate();
+        if (affiliate != null) {
+            MergeType merge = merge();
+            DataType[] types = DataType.values();
+
+            switch (merge) {
+                case REPLACE:
+                    for (DataType type : types) {
+                        Set<String> keys = affiliate.getKeys(type);
+                        keys.forEach((key) -> {
+                            if (contains(key, type)) {
+                                unsafeWrite(key, affiliate.get(key, type), type);
+                            }
+                        });
+                    }
+
+                    break;
+                case DIFFERENCE:
+                    for (DataType type : types) {
+                        Set<String> keys = affiliate.getKeys(type);
+                        keys.forEach((key) -> {
+                            if (!contains(key, type)) {
+                                unsafeWrite(key, affiliate.get(key, type), type);
+                            }
+                        });
+                    }
+
+                    break;
+                case NONE:
+                default:
+                    break;
+            }
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package ml.karmaconfigs.remote.messaging.util.message.type;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.*;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Format used to compile the messages sent
+ * through the wire.
+ * <p>
+ * The format is negotiated when the client connects, both
+ * sides will use {@link #SERIALIZED} unless both of them
+ * support and want {@link #BINARY}. Any format can always
+ * be read, as a binary message is recognized by its first byte
+ */
+public enum WireFormat {
+    /**
+     * Java serialization + base64, the
+     * legacy format
+     */
+    SERIALIZED,
+    /**
+     * Tagged binary format
+     */
+    BINARY;
+
+    /**
+     * Create a message output for this format
+     *
+     * @return a new message output
+     */
+    public MessageOutput create() {
+        if (this == BINARY)
+            return new MessageBinaryOutput();
+
+        return new MessageDataOutput();
+    }
+
+    /**
+     * Create a message output for this format
+     *
+     * @param affiliate the owner data
+     * @param type the merge type
+     * @return a new message output
+     */
+    public MessageOutput create(final MessageOutput affiliate, final MergeType type) {
+        if (this == BINARY)
+            return new MessageBinaryOutput(affiliate, type);
+
+        return new MessageDataOutput(affiliate, type);
+    }
+
+    /**
+     * Create a message output for this format
+     *
+     * @param compiled the owner data, in any format
+     * @param type the merge type
+     * @return a new message output
+     */
+    public MessageOutput create(final byte[] compiled, final MergeType type) {
+        if (this == BINARY)
+            return new MessageBinaryOutput(compiled, type);
+
+        return new MessageDataOutput(compiled, type);
+    }
+
+    /**
+     * Read a compiled message of any format
+     *
+     * @param data the compiled message
+     * @return the message input
+     */
+    public static MessageInput read(final byte[] data) {
+        if (of(data) == BINARY)
+            return new MessageBinaryInput(data);
+
+        return new MessageDataInput(data);
+    }
+
+    /**
+     * Read a compiled message of any format. Binary
+     * messages are read in place, without copying the
+     * buffer, so the buffer must not be modified while
+     * the message is in use
+     *
+     * @param data the compiled message
+     * @return the message input
+     */
+    public static MessageInput read(final ByteBuffer data) {
+        if (MessageBinaryInput.isBinary(data))
+            return new MessageBinaryInput(data);
+
+        byte[] payload = new byte[data.remaining()];
+        data.duplicate().get(payload);
+
+        return new MessageDataInput(payload);
+    }
+
+    /**
+     * Get the format of a compiled message
+     *
+     * @param data the compiled message
+     * @return the message format
+     */
+    public static WireFormat of(final byte[] data) {
+        if (MessageBinaryOutput.isBinary(data))
+            return BINARY;
+
+        return SERIALIZED;
+    }
+
+    /**
+     * Get the wire format based on its name
+     *
+     * @param name the format name
+     * @return the wire format, {@link #SERIALIZED} if
+     * the name is unknown
+     */
+    public static WireFormat fromName(final String name) {
+        if (name != null) {
+            for (WireFormat format : values()) {
+                if (format.name().equalsIgnoreCase(name))
+                    return format;
+            }
+        }
+
+        return SERIALIZED;
+    }
+}
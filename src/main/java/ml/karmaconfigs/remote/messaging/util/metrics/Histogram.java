@@ -0,0 +1,247 @@
+package ml.karmaconfigs.remote.messaging.util.metrics;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of positive values, usually
+ * nanoseconds.
+ * <p>
+ * Values are counted in log-linear buckets, like HDR histograms:
+ * every power of two is split in {@link #SUB_BUCKETS} buckets of the
+ * same width, so any value is reported with a relative error under
+ * 1 / {@link #SUB_BUCKETS}. Recording a value doesn't allocate
+ * nor lock, so it can be done from the I/O threads
+ */
+public final class Histogram {
+
+    private final static int SUB_BITS = 4;
+    private final static int MAX_EXPONENT = 40;
+
+    /**
+     * Buckets every power of two is split in
+     */
+    public final static int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final static int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a value
+     *
+     * @param value the value, negative values
+     *              are recorded as 0
+     */
+    public void record(final long value) {
+        long positive = Math.max(0, value);
+
+        counts.incrementAndGet(index(positive));
+        sum.add(positive);
+        min.accumulate(positive);
+        max.accumulate(positive);
+    }
+
+    /**
+     * Take a snapshot of the recorded values. Values
+     * recorded while the snapshot is taken may be missing
+     * from some of its statistics
+     *
+     * @return the histogram snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+
+        long lowest = min.get();
+        return new Snapshot(copy, total, sum.sum(), (lowest == Long.MAX_VALUE ? 0 : lowest), max.get());
+    }
+
+    /**
+     * Forget every recorded value
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+
+        sum.reset();
+        min.reset();
+        max.reset();
+    }
+
+    /**
+     * Get the bucket of a value
+     *
+     * @param value the value
+     * @return the value bucket
+     */
+    private static int index(final long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT)
+            return BUCKETS - 1;
+
+        int shift = exponent - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Get the highest value counted by a bucket
+     *
+     * @param index the bucket
+     * @return the bucket highest value
+     */
+    private static long highest(final int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        //The last bucket also counts every value over the max exponent
+        if (index == BUCKETS - 1)
+            return Long.MAX_VALUE;
+
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Recorded values of a histogram at some point
+     */
+    public final static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        /**
+         * Initialize the snapshot
+         *
+         * @param buckets the bucket counts
+         * @param total the amount of values
+         * @param added the sum of the values
+         * @param lowest the lowest value
+         * @param highest the highest value
+         */
+        Snapshot(final long[] buckets, final long total, final long added, final long lowest, final long highest) {
+            counts = buckets;
+            count = total;
+            sum = added;
+            min = lowest;
+            max = highest;
+        }
+
+        /**
+         * Get the amount of recorded values
+         *
+         * @return the recorded values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the lowest recorded value
+         *
+         * @return the lowest value
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * Get the highest recorded value
+         *
+         * @return the highest value
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Get the mean of the recorded values
+         *
+         * @return the mean value
+         */
+        public double getMean() {
+            return (count == 0 ? 0 : (double) sum / count);
+        }
+
+        /**
+         * Get the value under which a percentage of
+         * the recorded values are
+         *
+         * @param percentile the percentage, from 0 to 100
+         * @return the percentile value
+         */
+        public long getPercentile(final double percentile) {
+            if (count == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * count);
+            rank = Math.max(1, rank);
+
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.max(min, Math.min(max, highest(i)));
+            }
+
+            return max;
+        }
+
+        /**
+         * Get the median
+         *
+         * @return the 50th percentile
+         */
+        public long getP50() {
+            return getPercentile(50);
+        }
+
+        /**
+         * Get the 99th percentile
+         *
+         * @return the 99th percentile
+         */
+        public long getP99() {
+            return getPercentile(99);
+        }
+
+        /**
+         * Get the 99.9th percentile
+         *
+         * @return the 99.9th percentile
+         */
+        public long getP999() {
+            return getPercentile(99.9);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package ml.karmaconfigs.remote.messaging.util.metrics;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.MessageInput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Metrics of a server or a client.
+ * <p>
+ * Counters and histograms are lock free and never allocate
+ * while recording, so they are updated right from the I/O
+ * threads. Gauges are only read when a snapshot is taken. The
+ * metrics can optionally be exposed as a JMX MBean, whose
+ * attributes are read from a new snapshot every time
+ */
+public final class Metrics {
+
+    private final static Metrics NONE = new Metrics(false);
+    private final static LongSupplier ZERO = () -> 0;
+
+    private final boolean enabled;
+
+    private final LongAdder frames_in = new LongAdder();
+    private final LongAdder bytes_in = new LongAdder();
+    private final LongAdder frames_out = new LongAdder();
+    private final LongAdder bytes_out = new LongAdder();
+
+    private final Histogram encode = new Histogram();
+    private final Histogram decode = new Histogram();
+    private final Histogram dispatch = new Histogram();
+    private final Histogram connect = new Histogram();
+    private final Histogram handshake = new Histogram();
+
+    private volatile LongSupplier queued = ZERO;
+    private volatile LongSupplier acks = ZERO;
+
+    private ObjectName exposed = null;
+
+    /**
+     * Initialize the metrics
+     */
+    public Metrics() {
+        this(true);
+    }
+
+    /**
+     * Initialize the metrics
+     *
+     * @param status if the metrics record anything
+     */
+    private Metrics(final boolean status) {
+        enabled = status;
+    }
+
+    /**
+     * Get the metrics that don't record anything, used
+     * by the connections that don't belong to any worker
+     *
+     * @return the disabled metrics
+     */
+    public static Metrics none() {
+        return NONE;
+    }
+
+    /**
+     * Register a received frame
+     *
+     * @param bytes the frame size
+     */
+    public void received(final int bytes) {
+        if (!enabled)
+            return;
+
+        frames_in.increment();
+        bytes_in.add(bytes);
+    }
+
+    /**
+     * Register a written frame
+     *
+     * @param bytes the frame size
+     */
+    public void sent(final int bytes) {
+        if (!enabled)
+            return;
+
+        frames_out.increment();
+        bytes_out.add(bytes);
+    }
+
+    /**
+     * Compile a message, timing it
+     *
+     * @param message the message
+     * @return the compiled message
+     */
+    public byte[] encode(final MessageOutput message) {
+        if (!enabled)
+            return message.compile();
+
+        long start = System.nanoTime();
+        byte[] compiled = message.compile();
+        encode.record(System.nanoTime() - start);
+
+        return compiled;
+    }
+
+    /**
+     * Read a received message, timing it
+     *
+     * @param data the received message
+     * @return the message input
+     */
+    public MessageInput decode(final ByteBuffer data) {
+        if (!enabled)
+            return WireFormat.read(data);
+
+        long start = System.nanoTime();
+        MessageInput input = WireFormat.read(data);
+        decode.record(System.nanoTime() - start);
+
+        return input;
+    }
+
+    /**
+     * Register the listeners call of an event
+     *
+     * @param nanos the time the listeners took
+     */
+    public void dispatched(final long nanos) {
+        if (enabled)
+            dispatch.record(nanos);
+    }
+
+    /**
+     * Register a finished connect
+     *
+     * @param nanos the time the connect took
+     */
+    public void connected(final long nanos) {
+        if (enabled)
+            connect.record(nanos);
+    }
+
+    /**
+     * Register a finished TLS handshake
+     *
+     * @param nanos the time the handshake took
+     */
+    public void handshaked(final long nanos) {
+        if (enabled)
+            handshake.record(nanos);
+    }
+
+    /**
+     * Set the gauge of the bytes waiting to be written
+     *
+     * @param gauge the queued bytes gauge
+     * @return this instance
+     */
+    public Metrics queued(final @Nullable LongSupplier gauge) {
+        queued = (gauge != null ? gauge : ZERO);
+        return this;
+    }
+
+    /**
+     * Set the gauge of the messages waiting for
+     * their ack
+     *
+     * @param gauge the pending acks gauge
+     * @return this instance
+     */
+    public Metrics acks(final @Nullable LongSupplier gauge) {
+        acks = (gauge != null ? gauge : ZERO);
+        return this;
+    }
+
+    /**
+     * Take a snapshot of the metrics
+     *
+     * @return the metrics snapshot
+     */
+    public MetricsSnapshot snapshot() {
+        long queue = 0;
+        long pending = 0;
+        try {
+            queue = queued.getAsLong();
+            pending = acks.getAsLong();
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+        }
+
+        return new MetricsSnapshot(System.currentTimeMillis(),
+                frames_in.sum(), bytes_in.sum(), frames_out.sum(), bytes_out.sum(), queue, pending,
+                encode.snapshot(), decode.snapshot(), dispatch.snapshot(), connect.snapshot(), handshake.snapshot());
+    }
+
+    /**
+     * Reset the counters and histograms, the
+     * gauges are not affected
+     */
+    public void reset() {
+        frames_in.reset();
+        bytes_in.reset();
+        frames_out.reset();
+        bytes_out.reset();
+
+        encode.reset();
+        decode.reset();
+        dispatch.reset();
+        connect.reset();
+        handshake.reset();
+    }
+
+    /**
+     * Expose the metrics as a JMX MBean, named
+     * ml.karmaconfigs.remote.messaging:type=[type],name=[name]
+     *
+     * @param type the MBean type, for example Server
+     * @param name the MBean name
+     * @return if the metrics have been exposed
+     */
+    public synchronized boolean expose(final String type, final String name) {
+        conceal();
+
+        try {
+            ObjectName object = new ObjectName("ml.karmaconfigs.remote.messaging:type=" + type + ",name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new MetricsBean(this), object);
+
+            exposed = object;
+            return true;
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Remove the metrics MBean, if they
+     * were exposed
+     */
+    public synchronized void conceal() {
+        if (exposed == null)
+            return;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(exposed);
+        } catch (Throwable ignored) {}
+        exposed = null;
+    }
+}
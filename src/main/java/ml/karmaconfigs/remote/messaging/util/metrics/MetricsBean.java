@@ -0,0 +1,128 @@
+package ml.karmaconfigs.remote.messaging.util.metrics;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import javax.management.*;
+import java.util.Map;
+
+/**
+ * JMX view of some metrics, every attribute
+ * is read from a new snapshot
+ */
+final class MetricsBean implements DynamicMBean {
+
+    private final Metrics metrics;
+
+    /**
+     * Initialize the metrics bean
+     *
+     * @param source the exposed metrics
+     */
+    MetricsBean(final Metrics source) {
+        metrics = source;
+    }
+
+    /**
+     * Get an attribute value
+     *
+     * @param attribute the attribute name
+     * @return the attribute value
+     * @throws AttributeNotFoundException if the attribute doesn't exist
+     */
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        Number value = metrics.snapshot().toMap().get(attribute);
+        if (value == null)
+            throw new AttributeNotFoundException(attribute);
+
+        return value;
+    }
+
+    /**
+     * The metrics are read only
+     *
+     * @param attribute the attribute
+     * @throws AttributeNotFoundException always
+     */
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+    }
+
+    /**
+     * Get many attribute values, all
+     * from the same snapshot
+     *
+     * @param attributes the attribute names
+     * @return the attribute values
+     */
+    @Override
+    public AttributeList getAttributes(final String[] attributes) {
+        Map<String, Number> values = metrics.snapshot().toMap();
+
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            Number value = values.get(attribute);
+            if (value != null)
+                list.add(new Attribute(attribute, value));
+        }
+
+        return list;
+    }
+
+    /**
+     * The metrics are read only
+     *
+     * @param attributes the attributes
+     * @return an empty list
+     */
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    /**
+     * The metrics have no operations
+     *
+     * @param actionName the operation name
+     * @param params the operation parameters
+     * @param signature the operation signature
+     * @return nothing
+     * @throws ReflectionException always
+     */
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /**
+     * Get the bean description
+     *
+     * @return the bean description
+     */
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Number> values = metrics.snapshot().toMap();
+
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+        int index = 0;
+        for (Map.Entry<String, Number> entry : values.entrySet()) {
+            String type = entry.getValue().getClass().getName();
+            attributes[index++] = new MBeanAttributeInfo(entry.getKey(), type, entry.getKey(), true, false, false);
+        }
+
+        return new MBeanInfo(Metrics.class.getName(), "Remote messaging metrics", attributes, null, null, null);
+    }
+}
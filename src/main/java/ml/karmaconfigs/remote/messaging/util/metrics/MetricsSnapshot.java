@@ -0,0 +1,237 @@
+package ml.karmaconfigs.remote.messaging.util.metrics;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Metrics of a server or a client at some point.
+ * <p>
+ * Times are in nanoseconds, sizes in bytes
+ */
+public final class MetricsSnapshot {
+
+    private final long time;
+
+    private final long frames_in;
+    private final long bytes_in;
+    private final long frames_out;
+    private final long bytes_out;
+    private final long queued;
+    private final long acks;
+
+    private final Histogram.Snapshot encode;
+    private final Histogram.Snapshot decode;
+    private final Histogram.Snapshot dispatch;
+    private final Histogram.Snapshot connect;
+    private final Histogram.Snapshot handshake;
+
+    /**
+     * Initialize the snapshot
+     *
+     * @param taken the snapshot time, in milliseconds
+     * @param framesIn the received frames
+     * @param bytesIn the received bytes
+     * @param framesOut the written frames
+     * @param bytesOut the written bytes
+     * @param queue the bytes waiting to be written
+     * @param pending the messages waiting for their ack
+     * @param encoding the encode times
+     * @param decoding the decode times
+     * @param dispatching the listeners dispatch times
+     * @param connecting the connect times
+     * @param handshaking the TLS handshake times
+     */
+    MetricsSnapshot(final long taken,
+                    final long framesIn, final long bytesIn, final long framesOut, final long bytesOut, final long queue, final long pending,
+                    final Histogram.Snapshot encoding, final Histogram.Snapshot decoding, final Histogram.Snapshot dispatching,
+                    final Histogram.Snapshot connecting, final Histogram.Snapshot handshaking) {
+        time = taken;
+        frames_in = framesIn;
+        bytes_in = bytesIn;
+        frames_out = framesOut;
+        bytes_out = bytesOut;
+        queued = queue;
+        acks = pending;
+        encode = encoding;
+        decode = decoding;
+        dispatch = dispatching;
+        connect = connecting;
+        handshake = handshaking;
+    }
+
+    /**
+     * Get when the snapshot was taken
+     *
+     * @return the snapshot time, in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Get the amount of received frames
+     *
+     * @return the received frames
+     */
+    public long getFramesIn() {
+        return frames_in;
+    }
+
+    /**
+     * Get the amount of received bytes
+     *
+     * @return the received bytes
+     */
+    public long getBytesIn() {
+        return bytes_in;
+    }
+
+    /**
+     * Get the amount of written frames
+     *
+     * @return the written frames
+     */
+    public long getFramesOut() {
+        return frames_out;
+    }
+
+    /**
+     * Get the amount of written bytes
+     *
+     * @return the written bytes
+     */
+    public long getBytesOut() {
+        return bytes_out;
+    }
+
+    /**
+     * Get the amount of bytes waiting
+     * to be written
+     *
+     * @return the queued bytes
+     */
+    public long getQueued() {
+        return queued;
+    }
+
+    /**
+     * Get the amount of messages waiting
+     * for their ack
+     *
+     * @return the pending acks
+     */
+    public long getPendingAcks() {
+        return acks;
+    }
+
+    /**
+     * Get the message encode times
+     *
+     * @return the encode times
+     */
+    public Histogram.Snapshot getEncode() {
+        return encode;
+    }
+
+    /**
+     * Get the message decode times
+     *
+     * @return the decode times
+     */
+    public Histogram.Snapshot getDecode() {
+        return decode;
+    }
+
+    /**
+     * Get the time the listeners took
+     * to handle the events
+     *
+     * @return the dispatch times
+     */
+    public Histogram.Snapshot getDispatch() {
+        return dispatch;
+    }
+
+    /**
+     * Get the connect times
+     *
+     * @return the connect times
+     */
+    public Histogram.Snapshot getConnect() {
+        return connect;
+    }
+
+    /**
+     * Get the TLS handshake times
+     *
+     * @return the handshake times
+     */
+    public Histogram.Snapshot getHandshake() {
+        return handshake;
+    }
+
+    /**
+     * Get every metric by its name, histograms are
+     * flattened into their count, mean and percentiles
+     *
+     * @return the metrics values
+     */
+    public Map<String, Number> toMap() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        values.put("FramesIn", frames_in);
+        values.put("BytesIn", bytes_in);
+        values.put("FramesOut", frames_out);
+        values.put("BytesOut", bytes_out);
+        values.put("Queued", queued);
+        values.put("PendingAcks", acks);
+
+        flatten(values, "Encode", encode);
+        flatten(values, "Decode", decode);
+        flatten(values, "Dispatch", dispatch);
+        flatten(values, "Connect", connect);
+        flatten(values, "Handshake", handshake);
+
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Add the values of a histogram to a map
+     *
+     * @param values the map
+     * @param name the histogram name
+     * @param histogram the histogram
+     */
+    private static void flatten(final Map<String, Number> values, final String name, final Histogram.Snapshot histogram) {
+        values.put(name + "Count", histogram.getCount());
+        values.put(name + "Mean", histogram.getMean());
+        values.put(name + "P50", histogram.getP50());
+        values.put(name + "P99", histogram.getP99());
+        values.put(name + "P999", histogram.getP999());
+        values.put(name + "Max", histogram.getMax());
+    }
+
+    /**
+     * Get the snapshot as a string
+     *
+     * @return the snapshot string
+     */
+    @Override
+    public String toString() {
+        return "MetricsSnapshot" + toMap();
+    }
+}
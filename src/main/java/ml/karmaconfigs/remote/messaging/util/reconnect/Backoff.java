@@ -0,0 +1,106 @@
+package ml.karmaconfigs.remote.messaging.util.reconnect;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client side reconnect state: the attempts made since
+ * the connection was lost and the next scheduled attempt.
+ * <p>
+ * Attempts of every client are scheduled in a single shared
+ * timer thread
+ */
+public final class Backoff {
+
+    private final static ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor((task) -> {
+        Thread thread = new Thread(task, "RemoteMessaging Reconnect");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final ReconnectPolicy policy;
+
+    private int attempt = 0;
+    private ScheduledFuture<?> next = null;
+
+    /**
+     * Initialize the backoff
+     *
+     * @param reconnectPolicy the reconnect policy
+     */
+    public Backoff(final ReconnectPolicy reconnectPolicy) {
+        policy = reconnectPolicy;
+    }
+
+    /**
+     * Get the reconnect policy
+     *
+     * @return the reconnect policy
+     */
+    public ReconnectPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Schedule the next attempt
+     *
+     * @param task the attempt
+     * @return if the attempt has been scheduled, false
+     * if the policy does not allow more attempts
+     */
+    public synchronized boolean schedule(final Runnable task) {
+        if (!policy.isEnabled() || (policy.getAttempts() > 0 && attempt >= policy.getAttempts()))
+            return false;
+
+        long delay = policy.getDelay(attempt++);
+        next = TIMER.schedule(() -> {
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+
+        return true;
+    }
+
+    /**
+     * Get the attempts made since the
+     * connection was lost
+     *
+     * @return the attempts made
+     */
+    public synchronized int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Cancel the scheduled attempt and start
+     * counting the attempts again
+     */
+    public synchronized void reset() {
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+
+        attempt = 0;
+    }
+}
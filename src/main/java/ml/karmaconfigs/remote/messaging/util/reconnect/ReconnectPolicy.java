@@ -0,0 +1,199 @@
+package ml.karmaconfigs.remote.messaging.util.reconnect;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a client reconnects after losing the
+ * connection with its server.
+ * <p>
+ * Reconnect attempts wait an exponential backoff, doubled
+ * on each attempt up to a max, and randomized between its
+ * half and its full value, so clients that lost the same
+ * server don't reconnect all at once.
+ * <p>
+ * Messages sent while reconnecting, and messages the server
+ * has not acknowledged yet, are kept in a bounded replay buffer
+ * and sent again once the server accepts the new connection.
+ * The server drops the replayed messages it already received.
+ * Replaying needs the server to acknowledge the messages, so
+ * it can't be used with {@link AckPolicy#none()}
+ */
+public final class ReconnectPolicy {
+
+    private final static ReconnectPolicy NONE = new ReconnectPolicy(false, 0, 0, 0, 0);
+
+    private final boolean enabled;
+    private final long initial;
+    private final long max;
+    private final int attempts;
+    private final int replay;
+
+    /**
+     * Initialize the reconnect policy
+     *
+     * @param status if the client reconnects
+     * @param first the first backoff, in milliseconds
+     * @param limit the max backoff, in milliseconds
+     * @param tries the max amount of attempts
+     * @param messages the replay buffer size
+     */
+    private ReconnectPolicy(final boolean status, final long first, final long limit, final int tries, final int messages) {
+        enabled = status;
+        initial = first;
+        max = limit;
+        attempts = tries;
+        replay = messages;
+    }
+
+    /**
+     * The client never reconnects, the
+     * legacy behaviour
+     *
+     * @return the no reconnect policy
+     */
+    public static ReconnectPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * The client reconnects until it succeeds, with
+     * an exponential backoff. Up to 1024 messages are
+     * kept for replay
+     *
+     * @param initial the first backoff
+     * @param max the max backoff
+     * @param unit the backoff unit
+     * @return the backoff policy
+     */
+    public static ReconnectPolicy backoff(final long initial, final long max, final TimeUnit unit) {
+        long first = Math.max(1, unit.toMillis(initial));
+        return new ReconnectPolicy(true, first, Math.max(first, unit.toMillis(max)), 0, 1024);
+    }
+
+    /**
+     * Limit the amount of reconnect attempts
+     *
+     * @param tries the max amount of attempts,
+     *              0 for no limit
+     * @return the new policy
+     */
+    public ReconnectPolicy attempts(final int tries) {
+        return new ReconnectPolicy(enabled, initial, max, Math.max(0, tries), replay);
+    }
+
+    /**
+     * Set the replay buffer size. Once full, new
+     * messages are discarded, and the client is not
+     * writable, until the server acknowledges the
+     * oldest ones
+     *
+     * @param messages the max amount of messages kept
+     *                 for replay, 0 to not replay them
+     * @return the new policy
+     */
+    public ReconnectPolicy replay(final int messages) {
+        return new ReconnectPolicy(enabled, initial, max, attempts, Math.max(0, messages));
+    }
+
+    /**
+     * Get if the client reconnects
+     *
+     * @return if the client reconnects
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the first backoff
+     *
+     * @return the first backoff in milliseconds
+     */
+    public long getInitial() {
+        return initial;
+    }
+
+    /**
+     * Get the max backoff
+     *
+     * @return the max backoff in milliseconds
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Get the max amount of attempts
+     *
+     * @return the max amount of attempts, 0 if
+     * there's no limit
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Get if the client replays the messages
+     * the server has not acknowledged
+     *
+     * @return if the messages are replayed
+     */
+    public boolean isReplaying() {
+        return enabled && replay > 0;
+    }
+
+    /**
+     * Get the replay buffer size
+     *
+     * @return the max amount of messages kept
+     * for replay
+     */
+    public int getReplay() {
+        return replay;
+    }
+
+    /**
+     * Get the time to wait before an attempt
+     *
+     * @param attempt the attempt, from 0
+     * @return the backoff in milliseconds
+     */
+    public long getDelay(final int attempt) {
+        long backoff = max;
+        if (attempt < 62 && initial <= (max >> attempt))
+            backoff = initial << attempt;
+
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(backoff - half + 1);
+    }
+
+    /**
+     * Returns a string representation of the object
+     *
+     * @return a string representation of the object.
+     */
+    @Override
+    public String toString() {
+        if (!enabled)
+            return "ReconnectPolicy[NONE]";
+
+        return "ReconnectPolicy[" + initial + "-" + max + " ms, attempts " + attempts + ", replay " + replay + "]";
+    }
+}
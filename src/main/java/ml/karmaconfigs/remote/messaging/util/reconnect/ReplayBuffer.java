@@ -0,0 +1,160 @@
+package ml.karmaconfigs.remote.messaging.util.reconnect;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frames sent to the server that have not been
+ * acknowledged yet, in the order they were sent.
+ * <p>
+ * The buffer is bounded. Once full, new frames are rejected
+ * until the server acknowledges the oldest ones, as discarding
+ * those could lose messages the server never received
+ */
+public final class ReplayBuffer {
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final int capacity;
+
+    private long rejected = 0;
+
+    /**
+     * Initialize the replay buffer
+     *
+     * @param size the max amount of frames
+     */
+    public ReplayBuffer(final int size) {
+        capacity = size;
+    }
+
+    /**
+     * Get if a new frame can be kept. A frame that can't
+     * be kept is counted as rejected
+     *
+     * @return if a new frame can be added
+     */
+    public synchronized boolean accepts() {
+        if (isFull()) {
+            rejected++;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Keep a sent frame until it's acknowledged
+     *
+     * @param sequence the frame message sequence
+     * @param frame the frame, which is not modified
+     * @throws IllegalStateException if the buffer is full
+     */
+    public synchronized void add(final long sequence, final ByteBuffer frame) throws IllegalStateException {
+        if (capacity <= 0)
+            return;
+
+        if (entries.size() >= capacity)
+            throw new IllegalStateException("The replay buffer is full");
+
+        entries.add(new Entry(sequence, frame.asReadOnlyBuffer()));
+    }
+
+    /**
+     * Discard the acknowledged frames
+     *
+     * @param sequence the last acknowledged sequence
+     */
+    public synchronized void acknowledge(final long sequence) {
+        Entry entry;
+        while ((entry = entries.peek()) != null && entry.sequence <= sequence)
+            entries.poll();
+    }
+
+    /**
+     * Get the frames to replay, they are kept
+     * until acknowledged
+     *
+     * @return the frames to replay
+     */
+    public synchronized List<ByteBuffer> pending() {
+        List<ByteBuffer> frames = new ArrayList<>(entries.size());
+        for (Entry entry : entries)
+            frames.add(entry.frame.duplicate());
+
+        return frames;
+    }
+
+    /**
+     * Discard every frame
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the amount of frames waiting
+     * for their ack
+     *
+     * @return the amount of frames
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get if the buffer is full, new frames
+     * are rejected until the server acknowledges
+     * the oldest ones
+     *
+     * @return if the buffer is full
+     */
+    public synchronized boolean isFull() {
+        return capacity > 0 && entries.size() >= capacity;
+    }
+
+    /**
+     * Get the amount of frames rejected
+     * because the buffer was full
+     *
+     * @return the rejected frames
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * A frame waiting for its ack
+     */
+    private final static class Entry {
+
+        private final long sequence;
+        private final ByteBuffer frame;
+
+        /**
+         * Initialize the entry
+         *
+         * @param number the frame message sequence
+         * @param data the frame
+         */
+        private Entry(final long number, final ByteBuffer data) {
+            sequence = number;
+            frame = data;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package ml.karmaconfigs.remote.messaging.util.rpc;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
+import ml.karmaconfigs.api.common.timer.scheduler.worker.AsyncLateScheduler;
+import ml.karmaconfigs.remote.messaging.util.message.MessageInput;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Request sent to the server and waiting
+ * for its response
+ */
+public final class Request {
+
+    private final AtomicBoolean done = new AtomicBoolean(false);
+    private final LateScheduler<MessageInput> result = new AsyncLateScheduler<>();
+
+    private final RequestTable owner;
+    private final long id;
+
+    private volatile ScheduledFuture<?> timeout = null;
+
+    /**
+     * Initialize the request
+     *
+     * @param table the request table
+     * @param request_id the request correlation id
+     */
+    Request(final RequestTable table, final long request_id) {
+        owner = table;
+        id = request_id;
+    }
+
+    /**
+     * Get the request correlation id
+     *
+     * @return the request id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the request result. It completes with the server
+     * response, or with a null response and the error if the
+     * request failed, timed out or was cancelled
+     *
+     * @return the request result
+     */
+    public LateScheduler<MessageInput> getResult() {
+        return result;
+    }
+
+    /**
+     * Get if the request has already finished
+     *
+     * @return if the request is done
+     */
+    public boolean isDone() {
+        return done.get();
+    }
+
+    /**
+     * Cancel the request, its response will
+     * be ignored if it arrives
+     *
+     * @return if the request has been cancelled
+     */
+    public boolean cancel() {
+        return finish(null, new CancellationException("Request #" + id + " has been cancelled"));
+    }
+
+    /**
+     * Set the request timeout task
+     *
+     * @param task the timeout task
+     */
+    void setTimeout(final ScheduledFuture<?> task) {
+        timeout = task;
+        if (done.get())
+            task.cancel(false);
+    }
+
+    /**
+     * Finish the request
+     *
+     * @param response the response
+     * @param error the error
+     * @return if the request was still pending
+     */
+    boolean finish(final MessageInput response, final Throwable error) {
+        if (!done.compareAndSet(false, true))
+            return false;
+
+        owner.remove(id);
+
+        ScheduledFuture<?> task = timeout;
+        if (task != null)
+            task.cancel(false);
+
+        if (error == null) {
+            result.complete(response);
+        } else {
+            result.complete(null, error);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+package ml.karmaconfigs.remote.messaging.util.rpc;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.MessageInput;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests of a client waiting for their response.
+ * <p>
+ * Every request gets a correlation id that the server
+ * sends back with the response, so any amount of requests
+ * can be in flight over the same connection and their
+ * responses can arrive in any order
+ */
+public final class RequestTable {
+
+    private final static ScheduledThreadPoolExecutor timer;
+
+    static {
+        timer = new ScheduledThreadPoolExecutor(1, (task) -> {
+            Thread thread = new Thread(task, "Request timeout");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private final Map<Long, Request> pending = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong(0);
+
+    /**
+     * Create a new request
+     *
+     * @param timeout the max time to wait for the
+     *                response, 0 to wait forever
+     * @param unit the timeout unit
+     * @return the request
+     */
+    public Request create(final long timeout, final TimeUnit unit) {
+        Request request = new Request(this, ids.incrementAndGet());
+        pending.put(request.getId(), request);
+
+        if (timeout > 0) {
+            request.setTimeout(timer.schedule(() -> request.finish(null,
+                    new TimeoutException("Request #" + request.getId() + " timed out after " + unit.toMillis(timeout) + " ms")), timeout, unit));
+        }
+
+        return request;
+    }
+
+    /**
+     * Complete a request with its response
+     *
+     * @param id the request id
+     * @param response the response
+     * @return if the request was waiting for the response
+     */
+    public boolean complete(final long id, final MessageInput response) {
+        Request request = pending.get(id);
+        if (request == null)
+            return false;
+
+        String error = response.getString("RESPONSE_ERROR");
+        if (error != null)
+            return request.finish(null, new IOException(error));
+
+        return request.finish(response, null);
+    }
+
+    /**
+     * Fail a request
+     *
+     * @param id the request id
+     * @param error the failure reason
+     */
+    public void fail(final long id, final Throwable error) {
+        Request request = pending.get(id);
+        if (request != null)
+            request.finish(null, error);
+    }
+
+    /**
+     * Fail every pending request, for example
+     * when the connection closes
+     *
+     * @param reason the failure reason
+     */
+    public void failAll(final String reason) {
+        for (Request request : pending.values())
+            request.finish(null, new IOException(reason));
+    }
+
+    /**
+     * Get the amount of requests waiting
+     * for their response
+     *
+     * @return the pending requests
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Remove a finished request
+     *
+     * @param id the request id
+     */
+    void remove(final long id) {
+        pending.remove(id);
+    }
+}
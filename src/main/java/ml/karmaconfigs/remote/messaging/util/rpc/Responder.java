@@ -0,0 +1,38 @@
+package ml.karmaconfigs.remote.messaging.util.rpc;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
+import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
+import ml.karmaconfigs.remote.messaging.util.message.MessageInput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+
+/**
+ * Server side handler of client requests
+ */
+@FunctionalInterface
+public interface Responder {
+
+    /**
+     * Answer a client request. The response can be completed
+     * now or later from any thread, completing it with an error
+     * fails the request in the client
+     *
+     * @param client the client that sent the request
+     * @param request the request
+     * @param response the response to complete
+     */
+    void respond(final RemoteClient client, final MessageInput request, final LateScheduler<MessageOutput> response);
+}
@@ -0,0 +1,222 @@
+package ml.karmaconfigs.remote.messaging.util.ssl;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import javax.net.ssl.*;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared SSL context of the secure clients and servers
+ * that use the same certificates.
+ * <p>
+ * The key stores are loaded and the {@link SSLContext} is
+ * built only once per protocol and certificates location, so
+ * the sessions cached by the context survive reconnects. A
+ * client that reconnects to the same server resumes its previous
+ * session ( TLS 1.3 session tickets ) instead of doing a full
+ * handshake with client authentication
+ */
+public final class SecureContext {
+
+    private final Map<String, SSLContext> contexts = new HashMap<>();
+
+    private final AtomicLong full = new AtomicLong(0);
+    private final AtomicLong resumed = new AtomicLong(0);
+
+    private final String password;
+    private final String name;
+    private final String extension;
+    private final String type;
+
+    private int cache_size = 20480;
+    private int session_timeout = 86400;
+
+    /**
+     * Initialize the secure context
+     *
+     * @param pwd the certificate password
+     * @param nm the certificate base name
+     * @param ext the certificate file extension
+     * @param tp the certificate type
+     */
+    public SecureContext(final String pwd, final String nm, final String ext, final String tp) {
+        password = pwd;
+        name = nm;
+        extension = ext;
+        type = tp;
+    }
+
+    /**
+     * Set the session cache of the contexts, also
+     * applied to the already built contexts
+     *
+     * @param size the max amount of cached sessions, 0
+     *             for no limit
+     * @param timeout the time a cached session can be
+     *                resumed, in seconds, 0 for no limit
+     * @return this instance
+     */
+    public synchronized SecureContext sessions(final int size, final int timeout) {
+        cache_size = Math.max(0, size);
+        session_timeout = Math.max(0, timeout);
+
+        for (SSLContext context : contexts.values())
+            configure(context);
+
+        return this;
+    }
+
+    /**
+     * Get the SSL context for the specified protocol
+     * and certificates location, building it the first
+     * time
+     *
+     * @param protocol the context protocol
+     * @param location the certificates location
+     * @return the SSL context
+     * @throws Exception if the certificates can't be loaded
+     */
+    public synchronized SSLContext get(final String protocol, final Path location) throws Exception {
+        String key = protocol + "@" + location.toAbsolutePath().normalize();
+
+        SSLContext context = contexts.get(key);
+        if (context == null) {
+            context = build(protocol, location);
+            contexts.put(key, context);
+        }
+
+        return context;
+    }
+
+    /**
+     * Drop the built contexts and their cached sessions,
+     * so the certificates are loaded again the next time.
+     * Useful after renewing the certificates
+     */
+    public synchronized void invalidate() {
+        contexts.clear();
+    }
+
+    /**
+     * Register a finished handshake
+     *
+     * @param resumption if the handshake resumed a
+     *                   previous session
+     */
+    public void handshake(final boolean resumption) {
+        if (resumption) {
+            resumed.incrementAndGet();
+        } else {
+            full.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the amount of full handshakes
+     *
+     * @return the full handshakes
+     */
+    public long getFullHandshakes() {
+        return full.get();
+    }
+
+    /**
+     * Get the amount of handshakes that resumed
+     * a previous session
+     *
+     * @return the resumed handshakes
+     */
+    public long getResumedHandshakes() {
+        return resumed.get();
+    }
+
+    /**
+     * Get the resumed handshakes ratio
+     *
+     * @return the resumed handshakes ratio, from
+     * 0 to 1
+     */
+    public double getResumedRatio() {
+        long resumes = resumed.get();
+        long total = resumes + full.get();
+
+        return (total == 0 ? 0 : (double) resumes / total);
+    }
+
+    /**
+     * Build a SSL context
+     *
+     * @param protocol the context protocol
+     * @param location the certificates location
+     * @return the SSL context
+     * @throws Exception if the certificates can't be loaded
+     */
+    private SSLContext build(final String protocol, final Path location) throws Exception {
+        if (!Files.exists(location))
+            Files.createDirectories(location);
+
+        Path serverKeyStore = location.resolve(name + "." + extension);
+        Path trustedKeyStore = location.resolve(name + "_trusted." + extension);
+
+        KeyStore keyStore = KeyStore.getInstance(type);
+        try (InputStream internalStorage = new FileInputStream(serverKeyStore.toFile())) {
+            keyStore.load(internalStorage, password.toCharArray());
+        }
+
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, password.toCharArray());
+
+        KeyStore trustedStore = KeyStore.getInstance(type);
+        try (InputStream internalTruster = new FileInputStream(trustedKeyStore.toFile())) {
+            trustedStore.load(internalTruster, password.toCharArray());
+        }
+
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(trustedStore);
+
+        SSLContext context = SSLContext.getInstance(protocol);
+        context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), new SecureRandom());
+        configure(context);
+
+        return context;
+    }
+
+    /**
+     * Apply the session cache settings to a context
+     *
+     * @param context the context
+     */
+    private void configure(final SSLContext context) {
+        SSLSessionContext server = context.getServerSessionContext();
+        SSLSessionContext client = context.getClientSessionContext();
+
+        if (server != null) {
+            server.setSessionCacheSize(cache_size);
+            server.setSessionTimeout(session_timeout);
+        }
+        if (client != null) {
+            client.setSessionCacheSize(cache_size);
+            client.setSessionTimeout(session_timeout);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.admission.AdmissionTracker;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Accepts the connections of a server socket from its own
+ * event loop, so the server does not spin while waiting for
+ * clients.
+ * <p>
+ * Every accepted connection goes through the server admission
+ * tracker first. Declined connections are answered with the
+ * decline frame, if any, and closed without ever reaching the
+ * server workers
+ */
+public final class Acceptor implements ChannelHandler {
+
+    /**
+     * The pending connections queue size of the
+     * server sockets
+     */
+    public final static int BACKLOG = 1024;
+
+    private final static int BATCH = 64;
+    private final static long PAUSE = 100;
+    private final static long LINGER = 1000;
+
+    private final EventLoop loop;
+    private final ServerSocketChannel socket;
+    private final AdmissionTracker admission;
+    private final Function<String, ByteBuffer> decline;
+    private final Consumer<SocketChannel> accepted;
+
+    private BiConsumer<InetSocketAddress, String> declined = null;
+
+    /**
+     * Initialize the acceptor
+     *
+     * @param name the acceptor loop thread name
+     * @param channel the server socket, must be non-blocking
+     * @param tracker the server admission tracker
+     * @param frame the decline frame of each decline reason,
+     *              null to just close the declined connections
+     * @param handler the admitted connections handler, which
+     *                must release them from the tracker once
+     *                they are closed
+     * @throws IOException if the acceptor loop can't be opened
+     */
+    public Acceptor(final String name, final ServerSocketChannel channel, final AdmissionTracker tracker, final @Nullable Function<String, ByteBuffer> frame, final Consumer<SocketChannel> handler) throws IOException {
+        loop = new EventLoop(name);
+        socket = channel;
+        admission = tracker;
+        decline = frame;
+        accepted = handler;
+
+        loop.register(socket, SelectionKey.OP_ACCEPT, this);
+    }
+
+    /**
+     * Set the listener that is called every time a
+     * connection is declined
+     *
+     * @param listener the declined connections listener
+     */
+    public void onDecline(final @Nullable BiConsumer<InetSocketAddress, String> listener) {
+        declined = listener;
+    }
+
+    /**
+     * Stop accepting connections and close the
+     * server socket
+     */
+    public void shutdown() {
+        loop.shutdown();
+    }
+
+    /**
+     * The channel is ready to accept a connection
+     *
+     * @param key the channel selection key
+     * @throws Exception if something goes wrong
+     */
+    @Override
+    public void accept(final SelectionKey key) throws Exception {
+        for (int i = 0; i < BATCH; i++) {
+            SocketChannel channel = socket.accept();
+            if (channel == null)
+                return;
+
+            InetSocketAddress address;
+            try {
+                address = (InetSocketAddress) channel.getRemoteAddress();
+            } catch (Throwable ex) {
+                close(channel);
+                continue;
+            }
+            if (address == null) {
+                close(channel);
+                continue;
+            }
+
+            String reason = admission.admit(address);
+            if (reason == null) {
+                try {
+                    accepted.accept(channel);
+                } catch (Throwable ex) {
+                    ex.printStackTrace();
+
+                    admission.release(address);
+                    close(channel);
+                }
+            } else {
+                BiConsumer<InetSocketAddress, String> listener = declined;
+                if (listener != null)
+                    listener.accept(address, reason);
+
+                refuse(channel, reason);
+            }
+        }
+    }
+
+    /**
+     * Something went wrong while handling the channel
+     *
+     * @param key the channel selection key
+     * @param error the error
+     */
+    @Override
+    public void exception(final @Nullable SelectionKey key, final Throwable error) {
+        error.printStackTrace();
+
+        //Usually out of file descriptors, accepting again right away would fail the same way
+        if (key != null && key.isValid()) {
+            key.interestOps(0);
+            loop.schedule(() -> {
+                if (key.isValid())
+                    key.interestOps(SelectionKey.OP_ACCEPT);
+            }, PAUSE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Decline a connection
+     *
+     * @param channel the connection channel
+     * @param reason the decline reason
+     */
+    private void refuse(final SocketChannel channel, final String reason) {
+        if (decline == null) {
+            close(channel);
+            return;
+        }
+
+        try {
+            channel.configureBlocking(false);
+            channel.write(decline.apply(reason));
+            channel.shutdownOutput();
+
+            //Closing with unread data resets the connection, discarding the decline before the client reads it
+            loop.register(channel, SelectionKey.OP_READ, new Discard(channel));
+        } catch (Throwable ex) {
+            close(channel);
+        }
+    }
+
+    /**
+     * Close a channel
+     *
+     * @param channel the channel
+     */
+    private static void close(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (Throwable ignored) {}
+    }
+
+    /**
+     * Drains a declined connection until the client
+     * closes it, or for a while at most
+     */
+    private final class Discard implements ChannelHandler {
+
+        private final SocketChannel channel;
+
+        /**
+         * Initialize the discard handler
+         *
+         * @param target the declined connection
+         */
+        private Discard(final SocketChannel target) {
+            channel = target;
+        }
+
+        /**
+         * The channel has been registered in the loop
+         *
+         * @param key the channel selection key
+         */
+        @Override
+        public void registered(final SelectionKey key) {
+            loop.schedule(() -> close(channel), LINGER, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * The channel has data to read
+         *
+         * @param key the channel selection key
+         * @throws Exception if something goes wrong
+         */
+        @Override
+        public void read(final SelectionKey key) throws Exception {
+            int read;
+            do {
+                read = channel.read(loop.scratch());
+            } while (read > 0);
+
+            if (read == -1)
+                close(channel);
+        }
+
+        /**
+         * Something went wrong while handling the channel
+         *
+         * @param key the channel selection key
+         * @param error the error
+         */
+        @Override
+        public void exception(final @Nullable SelectionKey key, final Throwable error) {
+            close(channel);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * Selection key handler, attached to every channel
+ * registered in an {@link EventLoop}
+ */
+public interface ChannelHandler {
+
+    /**
+     * The channel has been registered in the loop
+     *
+     * @param key the channel selection key
+     */
+    default void registered(final SelectionKey key) {}
+
+    /**
+     * The channel is ready to accept a connection
+     *
+     * @param key the channel selection key
+     * @throws Exception if something goes wrong
+     */
+    default void accept(final SelectionKey key) throws Exception {}
+
+    /**
+     * The channel is ready to finish its connection
+     *
+     * @param key the channel selection key
+     * @throws Exception if something goes wrong
+     */
+    default void connect(final SelectionKey key) throws Exception {}
+
+    /**
+     * The channel has data to read
+     *
+     * @param key the channel selection key
+     * @throws Exception if something goes wrong
+     */
+    default void read(final SelectionKey key) throws Exception {}
+
+    /**
+     * The channel can be written again
+     *
+     * @param key the channel selection key
+     * @throws Exception if something goes wrong
+     */
+    default void write(final SelectionKey key) throws Exception {}
+
+    /**
+     * Something went wrong while handling the channel
+     *
+     * @param key the channel selection key
+     * @param error the error
+     */
+    void exception(final SelectionKey key, final Throwable error);
+}
@@ -0,0 +1,849 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.buffer.BufferPool;
+import ml.karmaconfigs.remote.messaging.util.frame.FrameDecoder;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+import org.jetbrains.annotations.Nullable;
+
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Stream connection driven by an {@link EventLoop}. Reads
+ * happen only when the selector reports data, and writes are
+ * queued and drained by the loop with OP_WRITE interest.
+ * <p>
+ * Received data is read into the loop direct buffer and split
+ * into frames by a {@link FrameDecoder}, and every written buffer
+ * must already be a frame.
+ * <p>
+ * The outbound queue is bounded by its watermarks. Once the
+ * queued bytes go over the high watermark the connection is
+ * not writable and new frames are rejected, until the queue
+ * is drained under the low watermark.
+ * <p>
+ * Queued frames are copied into a pooled direct buffer and
+ * written together with a single system call, up to the flush
+ * byte cap. Writes can optionally linger for a while before being
+ * flushed, so frames queued close in time share the same system
+ * call.
+ * <p>
+ * Secure connections wrap and unwrap every byte with their
+ * {@link SSLEngine} in the loop thread, frames are only written
+ * once the handshake has finished
+ */
+public final class Connection implements ChannelHandler {
+
+    private final static long FINISH_LINGER = 1000;
+
+    private final Queue<Pending> outbound = new ConcurrentLinkedQueue<>();
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicBoolean writable = new AtomicBoolean(true);
+    private final AtomicLong queued = new AtomicLong(0);
+
+    private final EventLoop loop;
+    private final SocketChannel channel;
+    private final InetSocketAddress remote;
+    private final ConnectionListener listener;
+    private final SecureLayer tls;
+
+    private SelectionKey key;
+    private final ByteBuffer[] gather = new ByteBuffer[16];
+    private ByteBuffer staging = null;
+    private int staged = 0;
+
+    private volatile int low_watermark = 32 * 1024;
+    private volatile int high_watermark = 64 * 1024;
+    private volatile Consumer<Boolean> writability = null;
+    private volatile Consumer<Boolean> handshake = null;
+
+    private volatile int flush_bytes = 64 * 1024;
+    private volatile long linger = 0;
+
+    private volatile Metrics metrics = Metrics.none();
+    private volatile Throwable cause = null;
+    private volatile boolean finishing = false;
+    private long handshake_start = 0;
+
+    private final Consumer<ByteBuffer> receiver = this::received;
+
+    /**
+     * Initialize the connection
+     *
+     * @param owner the connection event loop
+     * @param socket the connection socket
+     * @param handler the connection listener
+     * @throws IOException if the socket can't be configured
+     */
+    public Connection(final EventLoop owner, final SocketChannel socket, final ConnectionListener handler) throws IOException {
+        this(owner, socket, handler, null);
+    }
+
+    /**
+     * Initialize the connection
+     *
+     * @param owner the connection event loop
+     * @param socket the connection socket
+     * @param handler the connection listener
+     * @param engine the TLS engine, already configured for
+     *               the client or server mode, or null for a
+     *               plain connection
+     * @throws IOException if the socket can't be configured
+     */
+    public Connection(final EventLoop owner, final SocketChannel socket, final ConnectionListener handler, final @Nullable SSLEngine engine) throws IOException {
+        loop = owner;
+        channel = socket;
+        listener = handler;
+        tls = (engine != null ? new SecureLayer(this, socket, engine) : null);
+
+        channel.configureBlocking(false);
+        //Writes are already coalesced by the connection, delaying them again
+        //until the previous ones are acknowledged only adds latency
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        remote = (InetSocketAddress) channel.getRemoteAddress();
+    }
+
+    /**
+     * Start listening the connection. If the socket is
+     * still connecting, the connection is finished by the
+     * loop, and the frames written meanwhile are sent once
+     * connected
+     */
+    public void open() {
+        loop.register(channel, (channel.isConnectionPending() ? SelectionKey.OP_CONNECT : SelectionKey.OP_READ), this);
+    }
+
+    /**
+     * Get the connection socket
+     *
+     * @return the connection socket
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Get the connection remote address
+     *
+     * @return the connection remote address
+     */
+    public InetSocketAddress getRemote() {
+        return remote;
+    }
+
+    /**
+     * Get the connection event loop
+     *
+     * @return the connection event loop
+     */
+    public EventLoop getLoop() {
+        return loop;
+    }
+
+    /**
+     * Set the outbound queue watermarks
+     *
+     * @param low the queued bytes under which the
+     *            connection is writable again
+     * @param high the queued bytes over which the
+     *             connection is not writable
+     */
+    public void watermarks(final int low, final int high) {
+        high_watermark = Math.max(1, high);
+        low_watermark = Math.max(0, Math.min(low, high_watermark));
+    }
+
+    /**
+     * Set how the queued frames are flushed
+     *
+     * @param bytes the max amount of bytes written by
+     *              a single system call. Batches are never
+     *              bigger than {@link BufferPool#MAX_SIZE}
+     * @param micros the time a write waits for more frames
+     *               before being flushed, in microseconds. 0
+     *               flushes as soon as possible. The loop timers
+     *               have millisecond resolution, so any linger
+     *               is rounded up to the next millisecond
+     */
+    public void coalesce(final int bytes, final long micros) {
+        flush_bytes = Math.max(1, bytes);
+        linger = Math.max(0, micros);
+    }
+
+    /**
+     * Set the metrics that record the connection
+     * frames and handshake
+     *
+     * @param owner the metrics of the connection owner
+     */
+    public void metrics(final Metrics owner) {
+        metrics = owner;
+    }
+
+    /**
+     * Get the metrics that record the connection frames and handshake
+     *
+     * @return the connection metrics
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set the listener that is called every time the
+     * connection writability changes. It's called with
+     * false from the thread that filled the queue, and
+     * with true from the loop thread
+     *
+     * @param listener the writability listener
+     */
+    public void onWritability(final @Nullable Consumer<Boolean> listener) {
+        writability = listener;
+    }
+
+    /**
+     * Set the listener that is called from the loop thread
+     * when the TLS handshake finishes. It's called with true
+     * if the handshake resumed a previous session
+     *
+     * @param listener the handshake listener
+     */
+    public void onHandshake(final @Nullable Consumer<Boolean> listener) {
+        handshake = listener;
+    }
+
+    /**
+     * Get if the connection accepts more frames
+     *
+     * @return if the connection is writable
+     */
+    public boolean isWritable() {
+        return writable.get() && !closed.get();
+    }
+
+    /**
+     * Get the amount of bytes waiting
+     * to be written
+     *
+     * @return the queued bytes
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Get if the connection is still open
+     *
+     * @return if the connection is open
+     */
+    public boolean isOpen() {
+        return !closed.get() && channel.isOpen();
+    }
+
+    /**
+     * Get the error that closed the connection
+     *
+     * @return the error that closed the connection, null
+     * if it's still open or was closed without error
+     */
+    @Nullable
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * Queue a frame to be written into the connection
+     *
+     * @param data the frame to write
+     * @return if the data could be queued
+     */
+    public boolean write(final ByteBuffer data) {
+        return write(data, null);
+    }
+
+    /**
+     * Queue a frame to be written into the connection
+     *
+     * @param data the frame to write
+     * @param done called once the frame has been completely
+     *             written ( true ) or discarded because the
+     *             connection closed or was not writable ( false ).
+     *             It's called exactly once, usually from the loop
+     *             thread
+     * @return if the data could be queued, false if the connection
+     * is closed or the send would block
+     */
+    public boolean write(final ByteBuffer data, final @Nullable Consumer<Boolean> done) {
+        return queue(data, done, false);
+    }
+
+    /**
+     * Queue a frame to be written into the connection, even
+     * if the queue is over its high watermark. Meant for frames
+     * that can't be discarded, as replayed messages, whose
+     * amount is already bounded
+     *
+     * @param data the frame to write
+     * @return if the data could be queued, false if the
+     * connection is closed
+     */
+    public boolean force(final ByteBuffer data) {
+        return queue(data, null, true);
+    }
+
+    /**
+     * Queue a frame to be written into the connection
+     *
+     * @param data the frame to write
+     * @param done the frame write listener
+     * @param force if the frame is queued even if the
+     *              connection is not writable
+     * @return if the data could be queued
+     */
+    private boolean queue(final ByteBuffer data, final @Nullable Consumer<Boolean> done, final boolean force) {
+        if (closed.get() || (!force && !writable.get())) {
+            if (done != null)
+                done.accept(false);
+
+            return false;
+        }
+
+        int size = data.remaining();
+        outbound.add(new Pending(data, done));
+        if (queued.addAndGet(size) > high_watermark)
+            writable(false);
+
+        if (closed.get()) {
+            //The connection closed while queueing, release() may have already cleared the queue
+            discard();
+            return false;
+        }
+
+        long delay = linger;
+        if (delay > 0 && queued.get() >= flush_bytes)
+            delay = 0;
+
+        if (delay == 0 && loop.inLoop()) {
+            flush();
+        } else {
+            if (flushing.compareAndSet(false, true)) {
+                Runnable task = () -> {
+                    flushing.set(false);
+                    flush();
+                };
+
+                if (delay > 0) {
+                    loop.schedule(task, delay, TimeUnit.MICROSECONDS);
+                } else {
+                    loop.execute(task);
+                }
+            } else {
+                if (delay == 0 && linger > 0) {
+                    //The batch is already full, don't wait for the linger
+                    loop.execute(this::flush);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Write a last frame and close the connection once it has
+     * been written. The output is shut down first and the connection
+     * closes when the peer closes it too, or after a while at most,
+     * as closing with unread data resets the connection and discards
+     * the last frame before the peer reads it. Frames received
+     * meanwhile are ignored
+     *
+     * @param data the last frame
+     */
+    public void finish(final ByteBuffer data) {
+        finishing = true;
+
+        write(data, (written) -> {
+            if (!written) {
+                close();
+                return;
+            }
+
+            loop.execute(() -> {
+                try {
+                    //A TLS connection sends its close_notify once it's closed
+                    if (tls == null)
+                        channel.shutdownOutput();
+                } catch (Throwable ex) {
+                    close();
+                    return;
+                }
+
+                loop.schedule(this::close, FINISH_LINGER, TimeUnit.MILLISECONDS);
+            });
+        });
+    }
+
+    /**
+     * Close the connection
+     */
+    public void close() {
+        close(null);
+    }
+
+    /**
+     * Close the connection
+     *
+     * @param error the error that closed the
+     *              connection, if any
+     */
+    public void close(final @Nullable Throwable error) {
+        if (closed.compareAndSet(false, true)) {
+            cause = error;
+
+            if (loop.inLoop()) {
+                release();
+            } else {
+                loop.execute(this::release);
+            }
+        }
+    }
+
+    /**
+     * The channel has been registered in the loop
+     *
+     * @param key the channel selection key
+     */
+    @Override
+    public void registered(final SelectionKey key) {
+        this.key = key;
+
+        if (!channel.isConnectionPending())
+            established();
+    }
+
+    /**
+     * The channel is ready to finish its connection
+     *
+     * @param key the channel selection key
+     * @throws Exception if something goes wrong
+     */
+    @Override
+    public void connect(final SelectionKey key) throws Exception {
+        if (!channel.finishConnect())
+            return;
+
+        key.interestOps(SelectionKey.OP_READ);
+        established();
+    }
+
+    /**
+     * Start the TLS handshake, or send the queued
+     * frames, once the socket is connected
+     */
+    private void established() {
+        if (tls != null) {
+            handshake_start = System.nanoTime();
+            try {
+                tls.begin();
+            } catch (Throwable ex) {
+                close(ex);
+                return;
+            }
+
+            progress();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * The channel has data to read
+     *
+     * @param key the channel selection key
+     * @throws Exception if something goes wrong
+     */
+    @Override
+    public void read(final SelectionKey key) throws Exception {
+        if (tls != null) {
+            boolean open = tls.receive();
+            progress();
+
+            if (!open)
+                close();
+            return;
+        }
+
+        ByteBuffer scratch = loop.scratch();
+        int read = channel.read(scratch);
+
+        if (read == -1) {
+            close();
+            return;
+        }
+
+        if (read > 0) {
+            scratch.flip();
+            decoder.feed(scratch);
+            decoder.decode(receiver);
+        }
+    }
+
+    /**
+     * The channel can be written again
+     *
+     * @param key the channel selection key
+     */
+    @Override
+    public void write(final SelectionKey key) {
+        if (tls != null && !tls.isReady()) {
+            progress();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Something went wrong while handling the channel
+     *
+     * @param key the channel selection key
+     * @param error the error
+     */
+    @Override
+    public void exception(final SelectionKey key, final Throwable error) {
+        close(error);
+    }
+
+    /**
+     * Write as much queued data as the socket
+     * accepts, and wait for OP_WRITE if there's
+     * still data left
+     */
+    private void flush() {
+        if (key == null || !key.isValid() || closed.get() || !channel.isConnected() || (tls != null && !tls.isReady()))
+            return;
+
+        try {
+            if (tls != null) {
+                seal();
+                return;
+            }
+
+            while (true) {
+                if (staging == null) {
+                    if (outbound.isEmpty()) {
+                        interest(false);
+                        return;
+                    }
+
+                    staging = BufferPool.acquire(Math.min(flush_bytes, BufferPool.MAX_SIZE));
+                    staging.limit(Math.min(flush_bytes, staging.capacity()));
+                    stage();
+                    staging.flip();
+                }
+
+                channel.write(staging);
+                if (staging.hasRemaining()) {
+                    //The socket buffer is full
+                    interest(true);
+                    return;
+                }
+
+                BufferPool.release(staging);
+                staging = null;
+
+                Pending pending;
+                while (staged > 0 && (pending = outbound.poll()) != null) {
+                    staged--;
+                    metrics.sent(pending.size);
+                    if (queued.addAndGet(-pending.size) <= low_watermark)
+                        writable(true);
+
+                    pending.complete(true);
+                }
+                staged = 0;
+            }
+        } catch (Throwable ex) {
+            close();
+        }
+    }
+
+    /**
+     * Wrap the queued frames into TLS records and write
+     * them. The frames are wrapped right from the queue,
+     * without being staged first
+     *
+     * @throws IOException if something goes wrong
+     */
+    private void seal() throws IOException {
+        while (true) {
+            if (!tls.drain()) {
+                interest(true);
+                return;
+            }
+
+            //Every frame wrapped until now has been written
+            Pending pending;
+            while ((pending = outbound.peek()) != null && !pending.data.hasRemaining()) {
+                outbound.poll();
+                metrics.sent(pending.size);
+                if (queued.addAndGet(-pending.size) <= low_watermark)
+                    writable(true);
+
+                pending.complete(true);
+            }
+
+            int count = 0;
+            int bytes = 0;
+            for (Pending next : outbound) {
+                if (count == gather.length || bytes >= flush_bytes)
+                    break;
+
+                gather[count++] = next.data;
+                bytes += next.data.remaining();
+            }
+
+            if (count == 0) {
+                interest(false);
+                return;
+            }
+
+            boolean sent = tls.send(gather, count);
+            Arrays.fill(gather, 0, count, null);
+
+            if (!sent) {
+                //The socket buffer is full
+                interest(true);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drive the TLS handshake and unwrap the received
+     * data, then flush the queued frames once the handshake
+     * has finished
+     */
+    void progress() {
+        if (key == null || !key.isValid() || closed.get())
+            return;
+
+        try {
+            if (tls.handshake()) {
+                flush();
+            } else {
+                interest(tls.isPending());
+            }
+
+            if (tls.isFinished())
+                close();
+        } catch (Throwable ex) {
+            close(ex);
+        }
+    }
+
+    /**
+     * Notify the TLS handshake has finished
+     *
+     * @param resumed if the handshake resumed a
+     *                previous session
+     */
+    void handshaked(final boolean resumed) {
+        metrics.handshaked(System.nanoTime() - handshake_start);
+
+        Consumer<Boolean> listener = handshake;
+        if (listener != null) {
+            try {
+                listener.accept(resumed);
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Split received plain data into frames
+     *
+     * @param data the plain data
+     * @throws IOException if a frame is not valid
+     */
+    void deliver(final ByteBuffer data) throws IOException {
+        decoder.feed(data);
+        decoder.decode(receiver);
+    }
+
+    /**
+     * A frame has been received
+     *
+     * @param frame the frame
+     */
+    private void received(final ByteBuffer frame) {
+        if (finishing)
+            return;
+
+        metrics.received(frame.remaining());
+        listener.received(this, frame);
+    }
+
+    /**
+     * Update the write interest of the connection
+     *
+     * @param write if the loop must report when
+     *              the socket is writable
+     */
+    private void interest(final boolean write) {
+        if (write) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        } else {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Copy the queued frames into the staging buffer until
+     * it's full. The last copied frame may be copied only in
+     * part, the rest of it goes to the next batch
+     */
+    private void stage() {
+        for (Pending pending : outbound) {
+            ByteBuffer data = pending.data;
+
+            int limit = data.limit();
+            data.limit(data.position() + Math.min(data.remaining(), staging.remaining()));
+            staging.put(data);
+            data.limit(limit);
+
+            if (data.hasRemaining())
+                return;
+
+            staged++;
+            if (!staging.hasRemaining())
+                return;
+        }
+    }
+
+    /**
+     * Update the connection writability
+     *
+     * @param status the new writability
+     */
+    private void writable(final boolean status) {
+        if (!writable.compareAndSet(!status, status))
+            return;
+
+        Consumer<Boolean> listener = writability;
+        if (listener != null) {
+            try {
+                listener.accept(status);
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        //The queue may have changed while the status was updated
+        if (status && queued.get() > high_watermark) {
+            writable(false);
+        } else {
+            if (!status && queued.get() <= low_watermark)
+                writable(true);
+        }
+    }
+
+    /**
+     * Release the connection resources
+     */
+    private void release() {
+        closed.set(true);
+        discard();
+
+        BufferPool.release(staging);
+        staging = null;
+        staged = 0;
+
+        if (tls != null)
+            tls.close();
+
+        if (key != null)
+            key.cancel();
+
+        try {
+            channel.close();
+        } catch (Throwable ignored) {}
+
+        listener.closed(this);
+    }
+
+    /**
+     * Discard every queued frame
+     */
+    private void discard() {
+        Pending pending;
+        while ((pending = outbound.poll()) != null) {
+            queued.addAndGet(-pending.size);
+            pending.complete(false);
+        }
+    }
+
+    /**
+     * Queued frame
+     */
+    private final static class Pending {
+
+        private final ByteBuffer data;
+        private final Consumer<Boolean> done;
+        private final int size;
+
+        /**
+         * Initialize the queued frame
+         *
+         * @param frame the frame
+         * @param listener the frame write listener
+         */
+        Pending(final ByteBuffer frame, final Consumer<Boolean> listener) {
+            data = frame;
+            done = listener;
+            size = frame.remaining();
+        }
+
+        /**
+         * Notify the write result
+         *
+         * @param written if the frame has been written
+         */
+        void complete(final boolean written) {
+            if (done != null) {
+                try {
+                    done.accept(written);
+                } catch (Throwable ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+}
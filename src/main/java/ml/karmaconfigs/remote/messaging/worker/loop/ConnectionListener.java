@@ -0,0 +1,39 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * Connection events listener, always called
+ * from the connection event loop
+ */
+public interface ConnectionListener {
+
+    /**
+     * A frame has been received from the connection
+     *
+     * @param connection the connection
+     * @param data the frame payload
+     */
+    void received(final Connection connection, final ByteBuffer data);
+
+    /**
+     * The connection has been closed
+     *
+     * @param connection the connection
+     */
+    void closed(final Connection connection);
+}
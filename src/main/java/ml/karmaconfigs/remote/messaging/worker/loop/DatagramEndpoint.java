@@ -0,0 +1,1797 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.Delivery;
+import ml.karmaconfigs.remote.messaging.util.buffer.BufferPool;
+import ml.karmaconfigs.remote.messaging.util.frame.FrameCodec;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Datagram socket driven by an {@link EventLoop}. A single
+ * endpoint talks with every peer, messages are queued and sent
+ * by the loop, one or more datagrams per message.
+ * <p>
+ * Every datagram starts with a small header. Messages bigger
+ * than the MTU are split in fragments and reassembled by the
+ * receiver, a message is lost if any of its fragments is lost.
+ * Sequenced messages carry a per peer sequence number, so the
+ * receiver drops the messages older than the last one it has
+ * received, and reports the gaps as lost messages.
+ * <p>
+ * Reliable messages carry instead a per peer datagram sequence
+ * number. The receiver acknowledges them with its next expected
+ * sequence and a bitmap of the datagrams received after it, so
+ * the sender only retransmits the missing ones, once their
+ * retransmission timeout, estimated from the round trip time,
+ * expires, or as soon as three later datagrams are acknowledged.
+ * The datagrams in flight per peer are limited by a congestion
+ * window that grows with every acknowledgement and shrinks with
+ * every loss. Ordered messages are held by the receiver until
+ * every previous datagram has arrived
+ */
+public final class DatagramEndpoint implements ChannelHandler {
+
+    private final static int MARKER = 0xA0;
+    private final static int SEQUENCED = 0x01;
+    private final static int FRAGMENT = 0x02;
+    private final static int RELIABLE = 0x04;
+    private final static int ORDERED = 0x08;
+    private final static int ACK_MARKER = 0xB0;
+    private final static int MASK = 0x7FFFFFFF;
+
+    //Flags, epoch and sequence, fragment id, index and count
+    private final static int MAX_HEADER = 1 + 5 + 5 + 5 + 5 + 5;
+
+    private final static int MAX_FRAGMENTS = 4096;
+    private final static int MAX_ASSEMBLIES = 32;
+    private final static long ASSEMBLY_TIMEOUT = 5000;
+    private final static int READ_BUDGET = 64;
+    private final static int SOCKET_BUFFER = 1024 * 1024;
+
+    //Reliable datagrams, the window must be a power of 2
+    private final static int WINDOW = 1024;
+    private final static int INITIAL_WINDOW = 8;
+    private final static int MAX_TRANSMISSIONS = 10;
+    private final static int FAST_RETRANSMIT = 3;
+    private final static long INITIAL_RTO = 250;
+    private final static long MIN_RTO = 20;
+    private final static long MAX_RTO = 2000;
+    private final static long TICK = 10;
+
+    //Senders that are not known yet, such as clients that are still connecting
+    private final static int MAX_STRANGERS = 256;
+
+    private final Queue<Pending> outbound = new ConcurrentLinkedQueue<>();
+    private final Map<InetSocketAddress, Peer> peers = new HashMap<>();
+    private final Map<InetSocketAddress, Peer> strangers = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicBoolean writable = new AtomicBoolean(true);
+    private final AtomicLong queued = new AtomicLong(0);
+    private final AtomicLong lost = new AtomicLong(0);
+    private final AtomicLong retransmitted = new AtomicLong(0);
+    private final List<Peer> acking = new ArrayList<>();
+
+    private final EventLoop loop;
+    private final DatagramChannel channel;
+    private final DatagramListener listener;
+    private final int epoch = ThreadLocalRandom.current().nextInt() & MASK;
+
+    private SelectionKey key;
+    private EventLoop.Timeout ticker;
+    private EventLoop.Timeout sweeper;
+    private boolean blocked = false;
+    private int fragments = 0;
+
+    private volatile int mtu = 1400;
+    private volatile boolean fragmentation = true;
+    private volatile boolean sequencing = true;
+    private volatile Delivery delivery = Delivery.UNRELIABLE;
+
+    private volatile int low_watermark = 32 * 1024;
+    private volatile int high_watermark = 64 * 1024;
+    private volatile Consumer<Boolean> writability = null;
+    private volatile Metrics metrics = Metrics.none();
+    private volatile Predicate<InetSocketAddress> known = (address) -> true;
+    private volatile long expiry = 0;
+
+    /**
+     * Initialize the endpoint
+     *
+     * @param owner the endpoint event loop
+     * @param socket the endpoint socket, already bound
+     * @param handler the endpoint listener
+     * @throws IOException if the socket can't be configured
+     */
+    public DatagramEndpoint(final EventLoop owner, final DatagramChannel socket, final DatagramListener handler) throws IOException {
+        loop = owner;
+        channel = socket;
+        listener = handler;
+
+        channel.configureBlocking(false);
+
+        //A burst of datagrams is lost if it doesn't fit in the socket buffer
+        try {
+            if (channel.getOption(StandardSocketOptions.SO_RCVBUF) < SOCKET_BUFFER)
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_BUFFER);
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Start listening the endpoint
+     */
+    public void open() {
+        loop.register(channel, SelectionKey.OP_READ, this);
+    }
+
+    /**
+     * Get the endpoint socket
+     *
+     * @return the endpoint socket
+     */
+    public DatagramChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Get the endpoint event loop
+     *
+     * @return the endpoint event loop
+     */
+    public EventLoop getLoop() {
+        return loop;
+    }
+
+    /**
+     * Set the max size of the sent datagrams, including
+     * the header. Bigger messages are fragmented
+     *
+     * @param bytes the max datagram size
+     */
+    public void mtu(final int bytes) {
+        mtu = Math.max(MAX_HEADER + 1, Math.min(bytes, BufferPool.MAX_SIZE));
+    }
+
+    /**
+     * Set if the messages bigger than the MTU are
+     * fragmented, or discarded
+     *
+     * @param status the fragmentation status
+     */
+    public void fragmentation(final boolean status) {
+        fragmentation = status;
+    }
+
+    /**
+     * Set if the sent messages carry a sequence number,
+     * so the peers can drop the old messages and detect
+     * the lost ones
+     *
+     * @param status the sequencing status
+     */
+    public void sequencing(final boolean status) {
+        sequencing = status;
+    }
+
+    /**
+     * Set the delivery of the messages written
+     * without an explicit delivery. Messages are
+     * unreliable by default
+     *
+     * @param mode the default delivery
+     */
+    public void delivery(final Delivery mode) {
+        delivery = (mode != null ? mode : Delivery.UNRELIABLE);
+    }
+
+    /**
+     * Get the delivery of the messages written
+     * without an explicit delivery
+     *
+     * @return the default delivery
+     */
+    public Delivery getDelivery() {
+        return delivery;
+    }
+
+    /**
+     * Set the outbound queue watermarks
+     *
+     * @param low the queued bytes under which the
+     *            endpoint is writable again
+     * @param high the queued bytes over which the
+     *             endpoint is not writable
+     */
+    public void watermarks(final int low, final int high) {
+        high_watermark = Math.max(1, high);
+        low_watermark = Math.max(0, Math.min(low, high_watermark));
+
+        if (queued.get() > high_watermark) {
+            writable(false);
+        } else {
+            if (queued.get() <= low_watermark)
+                writable(true);
+        }
+    }
+
+    /**
+     * Set the listener that is called every time the
+     * endpoint writability changes. It's called with
+     * false from the thread that filled the queue, and
+     * with true from the loop thread
+     *
+     * @param listener the writability listener
+     */
+    public void onWritability(final @Nullable Consumer<Boolean> listener) {
+        writability = listener;
+    }
+
+    /**
+     * Get if the endpoint accepts more messages
+     *
+     * @return if the endpoint is writable
+     */
+    public boolean isWritable() {
+        return writable.get() && !closed.get();
+    }
+
+    /**
+     * Get if the endpoint is still open
+     *
+     * @return if the endpoint is open
+     */
+    public boolean isOpen() {
+        return !closed.get();
+    }
+
+    /**
+     * Set the metrics that record the endpoint
+     * messages
+     *
+     * @param owner the metrics of the endpoint owner
+     */
+    public void metrics(final Metrics owner) {
+        metrics = owner;
+    }
+
+    /**
+     * Get the metrics that record the endpoint messages
+     *
+     * @return the endpoint metrics
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set which peers are known. The state of the peers that
+     * are not known is kept only for the last senders, so
+     * datagrams from any address can't fill the endpoint
+     *
+     * @param filter the filter that tells if a peer is known
+     */
+    public void known(final @Nullable Predicate<InetSocketAddress> filter) {
+        known = (filter != null ? filter : (address) -> true);
+    }
+
+    /**
+     * Set after how long the peers that don't send anything
+     * are forgotten. Every expired peer is reported to the
+     * listener
+     *
+     * @param time the expiry time, 0 to never forget them
+     * @param unit the expiry time unit
+     */
+    public void expiry(final long time, final TimeUnit unit) {
+        expiry = unit.toNanos(Math.max(0, time));
+
+        loop.execute(() -> {
+            if (sweeper != null) {
+                sweeper.cancel();
+                sweeper = null;
+            }
+
+            if (expiry > 0 && !closed.get())
+                sweeper = loop.schedule(this::sweep, interval(), TimeUnit.NANOSECONDS);
+        });
+    }
+
+    /**
+     * Get the amount of bytes waiting
+     * to be sent
+     *
+     * @return the queued bytes
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Get the amount of sequenced messages that
+     * have been lost, from every peer
+     *
+     * @return the lost messages
+     */
+    public long getLost() {
+        return lost.get();
+    }
+
+    /**
+     * Get the amount of reliable datagrams that
+     * have been sent again, to every peer
+     *
+     * @return the retransmitted datagrams
+     */
+    public long getRetransmitted() {
+        return retransmitted.get();
+    }
+
+    /**
+     * Queue a message to be sent
+     *
+     * @param target the message target
+     * @param data the message
+     * @param done called once the message has been completely
+     *             sent ( true ) or discarded because the endpoint
+     *             closed, was not writable or the message is too
+     *             big ( false ). It's called exactly once, usually
+     *             from the loop thread
+     * @return if the message could be queued, false if the endpoint
+     * is closed or the send would block
+     */
+    public boolean write(final InetSocketAddress target, final ByteBuffer data, final @Nullable Consumer<Boolean> done) {
+        return write(target, data, delivery, done);
+    }
+
+    /**
+     * Queue a message to be sent
+     *
+     * @param target the message target
+     * @param data the message
+     * @param mode the message delivery
+     * @param done called once the message has been completely
+     *             sent, or acknowledged if reliable ( true ), or
+     *             discarded because the endpoint closed, was not
+     *             writable, the message is too big or the target
+     *             is unreachable ( false ). It's called exactly once,
+     *             usually from the loop thread
+     * @return if the message could be queued, false if the endpoint
+     * is closed or the send would block
+     */
+    public boolean write(final InetSocketAddress target, final ByteBuffer data, final Delivery mode, final @Nullable Consumer<Boolean> done) {
+        if (closed.get() || !writable.get()) {
+            if (done != null)
+                done.accept(false);
+
+            return false;
+        }
+
+        int size = data.remaining();
+        outbound.add(new Pending(target, data, mode, done));
+        if (queued.addAndGet(size) > high_watermark)
+            writable(false);
+
+        if (closed.get()) {
+            //The endpoint closed while queueing, release() may have already cleared the queue
+            discard();
+            return false;
+        }
+
+        if (loop.inLoop()) {
+            flush();
+        } else {
+            if (flushing.compareAndSet(false, true)) {
+                loop.execute(() -> {
+                    flushing.set(false);
+                    flush();
+                });
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Forget the state of a peer, so the next messages
+     * from and to it start a new sequence
+     *
+     * @param peer the peer
+     */
+    public void forget(final InetSocketAddress peer) {
+        loop.execute(() -> {
+            Peer state = peers.remove(peer);
+            strangers.remove(peer);
+            if (state != null)
+                drop(state);
+        });
+    }
+
+    /**
+     * Close the endpoint
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            //Always deferred, the endpoint may be iterating its peers
+            loop.execute(this::release);
+        }
+    }
+
+    /**
+     * The channel has been registered in the loop
+     *
+     * @param key the channel selection key
+     */
+    @Override
+    public void registered(final SelectionKey key) {
+        this.key = key;
+        flush();
+    }
+
+    /**
+     * The channel has datagrams to read
+     *
+     * @param key the channel selection key
+     * @throws Exception if something goes wrong
+     */
+    @Override
+    public void read(final SelectionKey key) throws Exception {
+        ByteBuffer scratch = loop.scratch();
+
+        for (int i = 0; i < READ_BUDGET && !closed.get(); i++) {
+            scratch.clear();
+
+            SocketAddress sender;
+            try {
+                sender = channel.receive(scratch);
+            } catch (PortUnreachableException ex) {
+                //A connected endpoint has lost its peer
+                if (channel.isConnected())
+                    throw ex;
+
+                continue;
+            }
+
+            if (sender == null)
+                break;
+
+            scratch.flip();
+            try {
+                unpack((InetSocketAddress) sender, scratch);
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        //A single acknowledgement per peer and read
+        for (Peer peer : acking) {
+            peer.acking = false;
+            acknowledge(peer);
+        }
+        acking.clear();
+    }
+
+    /**
+     * The channel can be written again
+     *
+     * @param key the channel selection key
+     */
+    @Override
+    public void write(final SelectionKey key) {
+        flush();
+    }
+
+    /**
+     * Something went wrong while handling the channel
+     *
+     * @param key the channel selection key
+     * @param error the error
+     */
+    @Override
+    public void exception(final SelectionKey key, final Throwable error) {
+        close();
+    }
+
+    /**
+     * Send as many queued messages as the socket
+     * accepts, and wait for OP_WRITE if there are
+     * still messages left
+     */
+    private void flush() {
+        if (key == null || !key.isValid() || closed.get())
+            return;
+
+        ByteBuffer packet = BufferPool.acquire(mtu);
+        try {
+            if (blocked) {
+                //The peers that filled the socket buffer go first
+                blocked = false;
+                for (Peer peer : new ArrayList<>(peers.values())) {
+                    if (!pump(peer)) {
+                        block();
+                        return;
+                    }
+                }
+            }
+
+            Pending pending;
+            while ((pending = outbound.peek()) != null) {
+                if (pending.mode.isReliable()) {
+                    //Reliable messages wait in their peer queue for the congestion window
+                    outbound.poll();
+
+                    Peer peer = peer(pending.target);
+                    peer.backlog.add(pending);
+                    if (!pump(peer)) {
+                        block();
+                        return;
+                    }
+
+                    continue;
+                }
+
+                boolean sent = false;
+
+                try {
+                    sent = send(pending, packet);
+                    if (!sent && pending.count != 0) {
+                        //The socket buffer is full
+                        interest(true);
+                        return;
+                    }
+                } catch (ClosedChannelException ex) {
+                    throw ex;
+                } catch (IOException ex) {
+                    //The message can't reach its target, the rest of the targets may be reachable
+                    sent = false;
+                }
+
+                outbound.poll();
+                finish(pending, sent);
+                if (closed.get())
+                    return;
+            }
+
+            interest(false);
+        } catch (ClosedChannelException ex) {
+            close();
+        } finally {
+            BufferPool.release(packet);
+        }
+    }
+
+    /**
+     * Wait for the socket buffer to have space
+     * for the reliable datagrams
+     */
+    private void block() {
+        blocked = true;
+        interest(true);
+    }
+
+    /**
+     * Prepare a message to be sent, splitting it
+     * in fragments if it's too big
+     *
+     * @param pending the message
+     * @param limit the max datagram size
+     * @return if the message can be sent, false if it's
+     * too big and can't be fragmented
+     */
+    private boolean prepare(final Pending pending, final int limit) {
+        int chunk = limit - MAX_HEADER;
+        int length = pending.data.remaining();
+
+        if (length + MAX_HEADER > limit) {
+            if (!fragmentation || (length + chunk - 1) / chunk > MAX_FRAGMENTS)
+                return false;
+
+            pending.count = (length + chunk - 1) / chunk;
+            pending.id = fragments;
+            fragments = (fragments + 1) & MASK;
+        } else {
+            pending.count = 1;
+        }
+
+        pending.chunk = chunk;
+        return true;
+    }
+
+    /**
+     * Send the datagrams of a message
+     *
+     * @param pending the message
+     * @param packet the datagram buffer
+     * @return if the whole message has been sent, false
+     * if the socket buffer is full or the message is too big,
+     * in which case its fragment count is 0
+     * @throws IOException if something goes wrong
+     */
+    private boolean send(final Pending pending, final ByteBuffer packet) throws IOException {
+        if (pending.count == 0) {
+            if (!prepare(pending, Math.min(mtu, packet.capacity())))
+                return false;
+
+            pending.sequenced = sequencing;
+            if (pending.sequenced)
+                pending.sequence = peer(pending.target).next();
+        }
+
+        while (pending.index < pending.count) {
+            packet.clear();
+
+            int flags = MARKER;
+            if (pending.sequenced)
+                flags |= SEQUENCED;
+            if (pending.count > 1)
+                flags |= FRAGMENT;
+
+            packet.put((byte) flags);
+            if (pending.sequenced) {
+                FrameCodec.writeVarInt(packet, epoch);
+                FrameCodec.writeVarInt(packet, pending.sequence);
+            }
+            fragment(pending, packet);
+
+            if (channel.send(packet, pending.target) == 0)
+                return false;
+
+            pending.index++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the current fragment of a message, after
+     * the datagram header, and prepare the datagram to
+     * be sent
+     *
+     * @param pending the message
+     * @param packet the datagram
+     */
+    private void fragment(final Pending pending, final ByteBuffer packet) {
+        if (pending.count > 1) {
+            FrameCodec.writeVarInt(packet, pending.id);
+            FrameCodec.writeVarInt(packet, pending.index);
+            FrameCodec.writeVarInt(packet, pending.count);
+        }
+
+        ByteBuffer data = pending.data;
+        int start = data.position() + pending.index * pending.chunk;
+        int length = Math.min(pending.chunk, data.limit() - start);
+
+        ByteBuffer part = data.duplicate();
+        part.position(start);
+        part.limit(start + length);
+        packet.put(part);
+        packet.flip();
+    }
+
+    /**
+     * Send the reliable messages of a peer while its
+     * congestion window allows it, the lost datagrams
+     * first
+     *
+     * @param peer the peer
+     * @return if the socket accepted every datagram, false
+     * if the socket buffer is full
+     * @throws ClosedChannelException if the socket is closed
+     */
+    private boolean pump(final Peer peer) throws ClosedChannelException {
+        if (peer.lost > 0) {
+            for (Segment segment : peer.flight.values()) {
+                if (peer.pipe >= peer.window() || peer.lost == 0)
+                    break;
+
+                if (segment.lost && !retransmit(peer, segment))
+                    return false;
+            }
+        }
+
+        while (!peer.backlog.isEmpty() && peer.pipe < peer.window()) {
+            Pending pending = peer.backlog.peek();
+            if (pending.count == 0 && !prepare(pending, mtu)) {
+                peer.backlog.poll();
+                finish(pending, false);
+                continue;
+            }
+
+            int sequence = peer.sent;
+
+            int flags = MARKER | RELIABLE;
+            if (pending.mode == Delivery.ORDERED)
+                flags |= ORDERED;
+            if (pending.count > 1)
+                flags |= FRAGMENT;
+
+            ByteBuffer packet = BufferPool.acquire(pending.chunk + MAX_HEADER);
+            packet.put((byte) flags);
+            FrameCodec.writeVarInt(packet, peer.stream);
+            FrameCodec.writeVarInt(packet, sequence);
+            fragment(pending, packet);
+
+            try {
+                if (channel.send(packet, peer.address) == 0) {
+                    BufferPool.release(packet);
+                    return false;
+                }
+            } catch (ClosedChannelException ex) {
+                BufferPool.release(packet);
+                throw ex;
+            } catch (IOException ex) {
+                //Handled as a lost datagram, it will be retransmitted
+            }
+
+            long now = System.nanoTime();
+            if (peer.flight.isEmpty())
+                peer.timer = now;
+
+            peer.flight.put(sequence, new Segment(sequence, pending, packet, now));
+            peer.sent = (sequence + 1) & MASK;
+            peer.pipe++;
+
+            pending.unacked++;
+            if (++pending.index == pending.count)
+                peer.backlog.poll();
+
+            if (ticker == null)
+                ticker = loop.schedule(this::tick, TICK, TimeUnit.MILLISECONDS);
+        }
+
+        return true;
+    }
+
+    /**
+     * Send again a lost reliable datagram
+     *
+     * @param peer the datagram target
+     * @param segment the datagram
+     * @return if the datagram has been sent, false if
+     * the socket buffer is full
+     * @throws ClosedChannelException if the socket is closed
+     */
+    private boolean retransmit(final Peer peer, final Segment segment) throws ClosedChannelException {
+        segment.packet.position(0);
+
+        try {
+            if (channel.send(segment.packet, peer.address) == 0)
+                return false;
+        } catch (ClosedChannelException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            //Lost again, the next timeout will retry it
+        }
+
+        segment.lost = false;
+        segment.skipped = 0;
+        segment.transmissions++;
+        peer.lost--;
+        peer.pipe++;
+        retransmitted.incrementAndGet();
+
+        return true;
+    }
+
+    /**
+     * Check the retransmission timer of the peers. When
+     * it expires, every datagram in flight is considered
+     * lost and retransmitted as the congestion window
+     * grows again, and the peers that don't acknowledge
+     * them after many attempts are discarded
+     */
+    private void tick() {
+        ticker = null;
+        if (closed.get())
+            return;
+
+        long now = System.nanoTime();
+        boolean waiting = false;
+        List<Peer> unreachable = new ArrayList<>();
+
+        try {
+            for (Peer peer : new ArrayList<>(peers.values())) {
+                if (peer.flight.isEmpty())
+                    continue;
+
+                waiting = true;
+                if (now - peer.timer < TimeUnit.MILLISECONDS.toNanos(peer.rto))
+                    continue;
+
+                Segment oldest = peer.flight.values().iterator().next();
+                if (oldest.transmissions >= MAX_TRANSMISSIONS) {
+                    unreachable.add(peer);
+                    continue;
+                }
+
+                for (Segment segment : peer.flight.values()) {
+                    if (!segment.lost) {
+                        segment.lost = true;
+                        peer.lost++;
+                    }
+                }
+                peer.pipe = 0;
+                peer.timeout();
+                peer.timer = now;
+
+                if (!pump(peer))
+                    block();
+            }
+        } catch (ClosedChannelException ex) {
+            close();
+            return;
+        }
+
+        for (Peer peer : unreachable) {
+            peers.remove(peer.address);
+            strangers.remove(peer.address);
+            drop(peer);
+
+            listener.unreachable(this, peer.address);
+        }
+
+        if (waiting && !closed.get() && ticker == null)
+            ticker = loop.schedule(this::tick, TICK, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Forget the peers that have not sent anything since
+     * the expiry time. The peers still waiting for the
+     * acknowledgement of reliable datagrams are left to
+     * the retransmission timer
+     */
+    private void sweep() {
+        sweeper = null;
+        long timeout = expiry;
+        if (closed.get() || timeout <= 0)
+            return;
+
+        long now = System.nanoTime();
+        List<Peer> expired = new ArrayList<>();
+        for (Peer peer : peers.values()) {
+            if (now - peer.active > timeout && peer.flight.isEmpty() && peer.backlog.isEmpty())
+                expired.add(peer);
+        }
+
+        for (Peer peer : expired) {
+            peers.remove(peer.address);
+            strangers.remove(peer.address);
+            drop(peer);
+
+            listener.expired(this, peer.address);
+        }
+
+        if (!closed.get())
+            sweeper = loop.schedule(this::sweep, interval(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the time between two expiry checks
+     *
+     * @return the time between checks in nanoseconds
+     */
+    private long interval() {
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(TICK), expiry / 4);
+    }
+
+    /**
+     * Process the acknowledgement of the reliable
+     * datagrams sent to a peer
+     *
+     * @param sender the acknowledgement sender
+     * @param data the acknowledgement
+     * @throws IOException if the datagram is not valid
+     */
+    private void acknowledged(final InetSocketAddress sender, final ByteBuffer data) throws IOException {
+        int stream = FrameCodec.readVarInt(data);
+        int next = FrameCodec.readVarInt(data);
+        if (stream == -1 || next == -1)
+            return;
+
+        Peer peer = peers.get(sender);
+        if (peer == null || peer.stream != stream)
+            return;
+
+        peer.active = System.nanoTime();
+
+        long now = System.nanoTime();
+        int outstanding = peer.flight.size();
+        List<Pending> delivered = new ArrayList<>();
+
+        //Every datagram before the next expected one
+        Iterator<Segment> iterator = peer.flight.values().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+
+            int delta = (next - segment.sequence) & MASK;
+            if (delta == 0 || delta > 0x3FFFFFFF)
+                break;
+
+            iterator.remove();
+            acknowledged(peer, segment, now, delivered);
+        }
+
+        //The datagrams received after the next expected one
+        int highest = -1;
+        for (int i = 0; data.hasRemaining(); i++) {
+            int bits = data.get() & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((bits & (1 << bit)) == 0)
+                    continue;
+
+                highest = (next + 1 + i * 8 + bit) & MASK;
+
+                Segment segment = peer.flight.remove(highest);
+                if (segment != null)
+                    acknowledged(peer, segment, now, delivered);
+            }
+        }
+
+        //The retransmission timer restarts with every new acknowledgement
+        if (peer.flight.size() < outstanding)
+            peer.timer = now;
+
+        if (peer.spurious) {
+            //The acknowledgements were late, the datagrams were not lost
+            peer.spurious = false;
+            peer.undo();
+
+            for (Segment segment : peer.flight.values()) {
+                if (segment.lost) {
+                    segment.lost = false;
+                    segment.skipped = 0;
+                    peer.lost--;
+                    peer.pipe++;
+                }
+            }
+        }
+
+        if (highest != -1) {
+            //The datagrams skipped by the later ones are probably lost
+            for (Segment segment : peer.flight.values()) {
+                int delta = (highest - segment.sequence) & MASK;
+                if (delta == 0 || delta > 0x3FFFFFFF)
+                    break;
+
+                if (!segment.lost && ++segment.skipped == FAST_RETRANSMIT) {
+                    segment.lost = true;
+                    peer.lost++;
+                    peer.pipe--;
+                    peer.loss(segment.sequence);
+                }
+            }
+        }
+
+        try {
+            if (!pump(peer))
+                block();
+        } catch (ClosedChannelException ex) {
+            close();
+        }
+
+        for (Pending pending : delivered)
+            finish(pending, true);
+    }
+
+    /**
+     * A reliable datagram has been acknowledged
+     *
+     * @param peer the datagram target
+     * @param segment the datagram
+     * @param now the current time, in nanos
+     * @param delivered the messages whose datagrams
+     *                  have been all acknowledged
+     */
+    private void acknowledged(final Peer peer, final Segment segment, final long now, final List<Pending> delivered) {
+        BufferPool.release(segment.packet);
+
+        if (segment.lost) {
+            //Arrived before being retransmitted
+            peer.lost--;
+            peer.spurious = true;
+        } else {
+            peer.pipe--;
+        }
+
+        //Retransmitted datagrams don't tell which transmission arrived
+        if (segment.transmissions == 1)
+            peer.sample(now - segment.sent);
+        peer.grow();
+
+        Pending pending = segment.pending;
+        if (--pending.unacked == 0 && pending.index == pending.count)
+            delivered.add(pending);
+    }
+
+    /**
+     * Send the acknowledgement of the reliable
+     * datagrams received from a peer
+     *
+     * @param peer the peer
+     */
+    private void acknowledge(final Peer peer) {
+        if (closed.get())
+            return;
+
+        int last = 0;
+        for (int i = 1; i < WINDOW; i++) {
+            if (peer.arrived(peer.expected + i))
+                last = i;
+        }
+
+        ByteBuffer packet = BufferPool.acquire(mtu);
+        try {
+            packet.put((byte) ACK_MARKER);
+            FrameCodec.writeVarInt(packet, peer.remote);
+            FrameCodec.writeVarInt(packet, peer.expected);
+
+            int bytes = Math.min((last + 7) / 8, packet.remaining());
+            for (int i = 0; i < bytes; i++) {
+                int bits = 0;
+                for (int bit = 0; bit < 8; bit++) {
+                    if (peer.arrived(peer.expected + 1 + i * 8 + bit))
+                        bits |= 1 << bit;
+                }
+
+                packet.put((byte) bits);
+            }
+            packet.flip();
+
+            channel.send(packet, peer.address);
+        } catch (IOException ignored) {
+            //The sender will retransmit and be acknowledged again
+        } finally {
+            BufferPool.release(packet);
+        }
+    }
+
+    /**
+     * Receive a reliable datagram
+     *
+     * @param peer the datagram sender
+     * @param flags the datagram flags
+     * @param data the datagram, after its flags
+     * @throws IOException if the datagram is not valid
+     */
+    private void receive(final Peer peer, final int flags, final ByteBuffer data) throws IOException {
+        int stream = FrameCodec.readVarInt(data);
+        int sequence = FrameCodec.readVarInt(data);
+        if (stream == -1 || sequence == -1)
+            return;
+
+        if (peer.remote != stream)
+            peer.reset(stream);
+
+        if (!peer.acking) {
+            peer.acking = true;
+            acking.add(peer);
+        }
+
+        int delta = (sequence - peer.expected) & MASK;
+        if (delta > 0x3FFFFFFF || delta >= WINDOW)
+            return;
+
+        if (delta != 0) {
+            if (peer.arrived(sequence))
+                return;
+
+            peer.receipts[sequence & (WINDOW - 1)] = true;
+            if ((flags & ORDERED) != 0) {
+                //Held until every previous datagram arrives
+                ByteBuffer copy = ByteBuffer.allocate(1 + data.remaining());
+                copy.put((byte) flags);
+                copy.put(data);
+                copy.flip();
+
+                peer.held.put(sequence, copy);
+                return;
+            }
+
+            deliver(peer, flags, data);
+            return;
+        }
+
+        peer.expected = (sequence + 1) & MASK;
+        try {
+            deliver(peer, flags, data);
+        } finally {
+            advance(peer);
+        }
+    }
+
+    /**
+     * Move the receive window past the reliable datagrams
+     * that arrived before the previous ones, delivering the
+     * ordered datagrams that were held
+     *
+     * @param peer the datagrams sender
+     */
+    private void advance(final Peer peer) {
+        while (peer.arrived(peer.expected)) {
+            int sequence = peer.expected;
+
+            peer.receipts[sequence & (WINDOW - 1)] = false;
+            peer.expected = (sequence + 1) & MASK;
+
+            ByteBuffer held = peer.held.remove(sequence);
+            if (held != null) {
+                try {
+                    deliver(peer, held.get() & 0xFF, held);
+                } catch (Throwable ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver the message of a reliable datagram,
+     * once reassembled
+     *
+     * @param peer the datagram sender
+     * @param flags the datagram flags
+     * @param data the datagram, after its reliable header
+     * @throws IOException if the datagram is not valid
+     */
+    private void deliver(final Peer peer, final int flags, final ByteBuffer data) throws IOException {
+        ByteBuffer message = data;
+        if ((flags & FRAGMENT) != 0) {
+            int id = FrameCodec.readVarInt(data);
+            int index = FrameCodec.readVarInt(data);
+            int count = FrameCodec.readVarInt(data);
+            if (id == -1 || index == -1 || count < 2 || count > MAX_FRAGMENTS || index >= count)
+                return;
+
+            message = peer.assemble(id, index, count, data, true);
+            if (message == null)
+                return;
+        }
+
+        metrics.received(message.remaining());
+        listener.received(this, peer.address, message);
+    }
+
+    /**
+     * Read the header of a received datagram and
+     * deliver its message
+     *
+     * @param sender the datagram sender
+     * @param data the datagram
+     * @throws IOException if the datagram is not valid
+     */
+    private void unpack(final InetSocketAddress sender, final ByteBuffer data) throws IOException {
+        if (!data.hasRemaining())
+            return;
+
+        int flags = data.get() & 0xFF;
+        if ((flags & 0xF0) == ACK_MARKER) {
+            acknowledged(sender, data);
+            return;
+        }
+        if ((flags & 0xF0) != MARKER)
+            return;
+
+        Peer peer = peer(sender);
+        peer.active = System.nanoTime();
+        if ((flags & RELIABLE) != 0) {
+            receive(peer, flags, data);
+            return;
+        }
+
+        int session = -1;
+        int sequence = -1;
+        if ((flags & SEQUENCED) != 0) {
+            session = FrameCodec.readVarInt(data);
+            sequence = FrameCodec.readVarInt(data);
+            if (session == -1 || sequence == -1)
+                return;
+        }
+
+        ByteBuffer message = data;
+        if ((flags & FRAGMENT) != 0) {
+            int id = FrameCodec.readVarInt(data);
+            int index = FrameCodec.readVarInt(data);
+            int count = FrameCodec.readVarInt(data);
+            if (id == -1 || index == -1 || count < 2 || count > MAX_FRAGMENTS || index >= count)
+                return;
+
+            message = peer.assemble(id, index, count, data, false);
+            if (message == null)
+                return;
+        }
+
+        if (sequence != -1) {
+            if (peer.epoch == session && peer.received != -1) {
+                int delta = (sequence - peer.received) & MASK;
+
+                //Duplicated or older than the last received message
+                if (delta == 0 || delta > 0x3FFFFFFF)
+                    return;
+
+                if (delta > 1) {
+                    lost.addAndGet(delta - 1);
+                    listener.lost(this, sender, delta - 1);
+                }
+            }
+
+            peer.epoch = session;
+            peer.received = sequence;
+        }
+
+        metrics.received(message.remaining());
+        listener.received(this, sender, message);
+    }
+
+    /**
+     * Get the state of a peer
+     *
+     * @param address the peer address
+     * @return the peer state
+     */
+    private Peer peer(final InetSocketAddress address) {
+        Peer peer = peers.get(address);
+        if (peer != null) {
+            if (peer.stranger) {
+                if (known.test(address)) {
+                    peer.stranger = false;
+                    strangers.remove(address);
+                } else {
+                    //Refresh its position, so the most recent strangers are kept
+                    strangers.get(address);
+                }
+            }
+
+            return peer;
+        }
+
+        peer = new Peer(address);
+        peer.active = System.nanoTime();
+        peers.put(address, peer);
+
+        if (!known.test(address)) {
+            peer.stranger = true;
+            strangers.put(address, peer);
+
+            if (strangers.size() > MAX_STRANGERS) {
+                Iterator<Peer> eldest = strangers.values().iterator();
+                Peer evicted = eldest.next();
+                eldest.remove();
+
+                peers.remove(evicted.address);
+                drop(evicted);
+            }
+        }
+
+        return peer;
+    }
+
+    /**
+     * Update the write interest of the endpoint
+     *
+     * @param write if the loop must report when
+     *              the socket is writable
+     */
+    private void interest(final boolean write) {
+        if (key == null || !key.isValid())
+            return;
+
+        if (write) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        } else {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Update the endpoint writability
+     *
+     * @param status the new writability
+     */
+    private void writable(final boolean status) {
+        if (!writable.compareAndSet(!status, status))
+            return;
+
+        Consumer<Boolean> listener = writability;
+        if (listener != null) {
+            try {
+                listener.accept(status);
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        //The queue may have changed while the status was updated
+        if (status && queued.get() > high_watermark) {
+            writable(false);
+        } else {
+            if (!status && queued.get() <= low_watermark)
+                writable(true);
+        }
+    }
+
+    /**
+     * Release the endpoint resources
+     */
+    private void release() {
+        closed.set(true);
+        discard();
+
+        List<Peer> dropped = new ArrayList<>(peers.values());
+        peers.clear();
+        strangers.clear();
+        acking.clear();
+        for (Peer peer : dropped)
+            drop(peer);
+
+        if (ticker != null) {
+            ticker.cancel();
+            ticker = null;
+        }
+
+        if (sweeper != null) {
+            sweeper.cancel();
+            sweeper = null;
+        }
+
+        if (key != null)
+            key.cancel();
+
+        try {
+            channel.close();
+        } catch (Throwable ignored) {}
+
+        listener.closed(this);
+    }
+
+    /**
+     * Discard every queued message
+     */
+    private void discard() {
+        Pending pending;
+        while ((pending = outbound.poll()) != null) {
+            pending.finished = true;
+            queued.addAndGet(-pending.size);
+            pending.complete(false);
+        }
+    }
+
+    /**
+     * Discard the reliable messages of a peer that
+     * have not been acknowledged yet
+     *
+     * @param peer the peer
+     */
+    private void drop(final Peer peer) {
+        List<Pending> failed = new ArrayList<>();
+        for (Segment segment : peer.flight.values()) {
+            BufferPool.release(segment.packet);
+            failed.add(segment.pending);
+        }
+        failed.addAll(peer.backlog);
+
+        peer.flight.clear();
+        peer.backlog.clear();
+        peer.held.clear();
+        peer.pipe = 0;
+        peer.lost = 0;
+
+        for (Pending pending : failed)
+            finish(pending, false);
+    }
+
+    /**
+     * Remove a message from the queued bytes, and
+     * notify its result
+     *
+     * @param pending the message
+     * @param result if the message has been sent
+     */
+    private void finish(final Pending pending, final boolean result) {
+        if (pending.finished)
+            return;
+
+        pending.finished = true;
+        if (result)
+            metrics.sent(pending.size);
+        if (queued.addAndGet(-pending.size) <= low_watermark)
+            writable(true);
+
+        pending.complete(result);
+    }
+
+    /**
+     * Queued message
+     */
+    private final static class Pending {
+
+        private final InetSocketAddress target;
+        private final ByteBuffer data;
+        private final Delivery mode;
+        private final Consumer<Boolean> done;
+        private final int size;
+
+        private boolean finished = false;
+        private boolean sequenced = false;
+        private int sequence = 0;
+        private int id = 0;
+        private int chunk = 0;
+        private int count = 0;
+        private int index = 0;
+        private int unacked = 0;
+
+        /**
+         * Initialize the queued message
+         *
+         * @param address the message target
+         * @param message the message
+         * @param delivery the message delivery
+         * @param listener the message send listener
+         */
+        Pending(final InetSocketAddress address, final ByteBuffer message, final Delivery delivery, final Consumer<Boolean> listener) {
+            target = address;
+            data = message;
+            mode = (delivery != null ? delivery : Delivery.UNRELIABLE);
+            done = listener;
+            size = message.remaining();
+        }
+
+        /**
+         * Notify the send result
+         *
+         * @param sent if the message has been sent
+         */
+        void complete(final boolean sent) {
+            if (done != null) {
+                try {
+                    done.accept(sent);
+                } catch (Throwable ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sequence, reassembly and reliability state of a peer
+     */
+    private final static class Peer {
+
+        private final InetSocketAddress address;
+        private final Map<Integer, Assembly> assemblies = new HashMap<>();
+
+        //Last time something has been received from the peer
+        private long active = 0;
+        private boolean stranger = false;
+
+        //Unreliable sequence
+        private int sequence = 0;
+        private int epoch = -1;
+        private int received = -1;
+
+        //Reliable datagrams sent to the peer
+        private final int stream = ThreadLocalRandom.current().nextInt() & MASK;
+        private final Queue<Pending> backlog = new ArrayDeque<>();
+        private final Map<Integer, Segment> flight = new LinkedHashMap<>();
+        private int sent = 0;
+        private int pipe = 0;
+        private int lost = 0;
+        private long timer = 0;
+        private int recover = 0;
+        private double window = INITIAL_WINDOW;
+        private double threshold = WINDOW;
+        private double previous_window = INITIAL_WINDOW;
+        private double previous_threshold = WINDOW;
+        private boolean spurious = false;
+        private double srtt = 0;
+        private double rttvar = 0;
+        private long rto = INITIAL_RTO;
+
+        //Reliable datagrams received from the peer
+        private final boolean[] receipts = new boolean[WINDOW];
+        private final Map<Integer, ByteBuffer> held = new HashMap<>();
+        private int remote = -1;
+        private int expected = 0;
+        private boolean acking = false;
+
+        /**
+         * Initialize the peer state
+         *
+         * @param target the peer address
+         */
+        Peer(final InetSocketAddress target) {
+            address = target;
+        }
+
+        /**
+         * Get the sequence of the next message
+         * sent to the peer
+         *
+         * @return the next sequence
+         */
+        int next() {
+            sequence = (sequence + 1) & MASK;
+            return sequence;
+        }
+
+        /**
+         * Get the amount of reliable datagrams
+         * that can be in flight
+         *
+         * @return the congestion window
+         */
+        int window() {
+            return Math.max(1, Math.min(WINDOW, (int) window));
+        }
+
+        /**
+         * Update the round trip time estimation
+         * and the retransmission timeout
+         *
+         * @param nanos the measured round trip time
+         */
+        void sample(final long nanos) {
+            double rtt = nanos / 1000000D;
+            if (srtt == 0) {
+                srtt = rtt;
+                rttvar = rtt / 2;
+            } else {
+                rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rtt);
+                srtt = 0.875 * srtt + 0.125 * rtt;
+            }
+
+            estimate();
+        }
+
+        /**
+         * Compute the retransmission timeout from
+         * the round trip time estimation
+         */
+        void estimate() {
+            if (srtt == 0) {
+                rto = INITIAL_RTO;
+            } else {
+                rto = Math.max(MIN_RTO, Math.min(MAX_RTO, (long) Math.ceil(srtt + Math.max(TICK, 4 * rttvar))));
+            }
+        }
+
+        /**
+         * Grow the congestion window after a
+         * datagram has been acknowledged
+         */
+        void grow() {
+            if (window < threshold) {
+                window += 1;
+            } else {
+                window += 1 / window;
+            }
+
+            window = Math.min(window, WINDOW);
+        }
+
+        /**
+         * Shrink the congestion window after a datagram
+         * has been skipped by the acknowledgements, once
+         * per window of datagrams
+         *
+         * @param datagram the lost datagram
+         */
+        void loss(final int datagram) {
+            if (((datagram - recover) & MASK) > 0x3FFFFFFF)
+                return;
+
+            previous_window = window;
+            previous_threshold = threshold;
+
+            threshold = Math.max(2, window / 2);
+            window = threshold;
+            recover = sent;
+        }
+
+        /**
+         * Restart the congestion window and back off
+         * the retransmission timeout after a datagram
+         * timed out
+         */
+        void timeout() {
+            if (window > 1) {
+                previous_window = window;
+                previous_threshold = threshold;
+            }
+
+            threshold = Math.max(2, window / 2);
+            window = 1;
+            rto = Math.min(MAX_RTO, rto * 2);
+            recover = sent;
+        }
+
+        /**
+         * Restore the congestion window and the retransmission
+         * timeout, the datagrams considered lost have been
+         * acknowledged before being retransmitted
+         */
+        void undo() {
+            window = Math.max(window, previous_window);
+            threshold = Math.max(threshold, previous_threshold);
+            estimate();
+        }
+
+        /**
+         * Get if a reliable datagram inside the receive
+         * window has been received
+         *
+         * @param datagram the datagram sequence
+         * @return if the datagram has been received
+         */
+        boolean arrived(final int datagram) {
+            return receipts[datagram & (WINDOW - 1)];
+        }
+
+        /**
+         * Start receiving a new reliable stream, the
+         * peer has restarted or forgotten this endpoint
+         *
+         * @param id the stream id
+         */
+        void reset(final int id) {
+            remote = id;
+            expected = 0;
+            Arrays.fill(receipts, false);
+            held.clear();
+            assemblies.values().removeIf((assembly) -> assembly.reliable);
+        }
+
+        /**
+         * Store a received fragment
+         *
+         * @param id the fragmented message id
+         * @param index the fragment index
+         * @param count the amount of fragments
+         * @param data the fragment
+         * @param reliable if the fragment is reliable, reliable
+         *                 fragments are never discarded as they
+         *                 are all retransmitted until they arrive
+         * @return the reassembled message, or null if
+         * there are fragments left
+         */
+        @Nullable
+        ByteBuffer assemble(final int id, final int index, final int count, final ByteBuffer data, final boolean reliable) {
+            long now = System.currentTimeMillis();
+
+            Iterator<Assembly> iterator = assemblies.values().iterator();
+            while (iterator.hasNext()) {
+                Assembly assembly = iterator.next();
+                if (!assembly.reliable && now - assembly.started > ASSEMBLY_TIMEOUT)
+                    iterator.remove();
+            }
+
+            Assembly assembly = assemblies.get(id);
+            if (assembly == null) {
+                if (!reliable && assemblies.size() >= MAX_ASSEMBLIES)
+                    return null;
+
+                assembly = new Assembly(count, now, reliable);
+                assemblies.put(id, assembly);
+            }
+
+            if (assembly.parts.length != count || assembly.parts[index] != null)
+                return null;
+
+            byte[] part = new byte[data.remaining()];
+            data.get(part);
+
+            assembly.parts[index] = part;
+            assembly.size += part.length;
+            if (assembly.size > FrameCodec.MAX_FRAME) {
+                assemblies.remove(id);
+                return null;
+            }
+
+            if (++assembly.received < count)
+                return null;
+
+            assemblies.remove(id);
+
+            ByteBuffer message = ByteBuffer.allocate(assembly.size);
+            for (byte[] received : assembly.parts)
+                message.put(received);
+            message.flip();
+
+            return message;
+        }
+    }
+
+    /**
+     * Fragmented message being reassembled
+     */
+    private final static class Assembly {
+
+        private final byte[][] parts;
+        private final long started;
+        private final boolean reliable;
+
+        private int received = 0;
+        private int size = 0;
+
+        /**
+         * Initialize the reassembly
+         *
+         * @param count the amount of fragments
+         * @param time the first fragment arrival
+         * @param retransmitted if the fragments are reliable
+         */
+        Assembly(final int count, final long time, final boolean retransmitted) {
+            parts = new byte[count][];
+            started = time;
+            reliable = retransmitted;
+        }
+    }
+
+    /**
+     * Reliable datagram waiting for its acknowledgement
+     */
+    private final static class Segment {
+
+        private final int sequence;
+        private final Pending pending;
+        private final ByteBuffer packet;
+
+        private final long sent;
+        private int transmissions = 1;
+        private int skipped = 0;
+        private boolean lost = false;
+
+        /**
+         * Initialize the reliable datagram
+         *
+         * @param number the datagram sequence
+         * @param message the datagram message
+         * @param datagram the datagram, kept to be retransmitted
+         * @param time the datagram send time, in nanos
+         */
+        Segment(final int number, final Pending message, final ByteBuffer datagram, final long time) {
+            sequence = number;
+            pending = message;
+            packet = datagram;
+            sent = time;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Datagram endpoint events listener, always called
+ * from the endpoint event loop
+ */
+public interface DatagramListener {
+
+    /**
+     * A message has been received
+     *
+     * @param endpoint the endpoint
+     * @param sender the message sender
+     * @param data the message, already reassembled
+     */
+    void received(final DatagramEndpoint endpoint, final InetSocketAddress sender, final ByteBuffer data);
+
+    /**
+     * Sequenced messages of a sender have been lost
+     *
+     * @param endpoint the endpoint
+     * @param sender the messages sender
+     * @param amount the amount of lost messages
+     */
+    default void lost(final DatagramEndpoint endpoint, final InetSocketAddress sender, final int amount) {}
+
+    /**
+     * A peer has not acknowledged the reliable messages
+     * sent to it, even after retransmitting them, so they
+     * have been discarded
+     *
+     * @param endpoint the endpoint
+     * @param peer the unreachable peer
+     */
+    default void unreachable(final DatagramEndpoint endpoint, final InetSocketAddress peer) {}
+
+    /**
+     * A peer has not sent anything since the endpoint
+     * expiry time, so it has been forgotten
+     *
+     * @param endpoint the endpoint
+     * @param peer the expired peer
+     */
+    default void expired(final DatagramEndpoint endpoint, final InetSocketAddress peer) {}
+
+    /**
+     * The endpoint has been closed
+     *
+     * @param endpoint the endpoint
+     */
+    void closed(final DatagramEndpoint endpoint);
+}
@@ -0,0 +1,314 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.buffer.BufferPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single threaded selector loop. Every channel registered
+ * in the loop is only touched from the loop thread, so a
+ * channel never needs a thread of its own
+ */
+public final class EventLoop implements Runnable {
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Timeout> timers = new PriorityQueue<>();
+    private final AtomicBoolean wakeup = new AtomicBoolean(false);
+
+    private final Selector selector;
+    private final Thread thread;
+
+    private ByteBuffer scratch = null;
+
+    private volatile boolean operative = true;
+
+    /**
+     * Initialize the event loop
+     *
+     * @param name the loop thread name
+     * @throws IOException if the selector can't be opened
+     */
+    public EventLoop(final String name) throws IOException {
+        selector = Selector.open();
+
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Register a channel in the loop
+     *
+     * @param channel the channel, must be non-blocking
+     * @param ops the channel interest
+     * @param handler the channel handler
+     */
+    public void register(final SelectableChannel channel, final int ops, final ChannelHandler handler) {
+        execute(() -> {
+            try {
+                SelectionKey key = channel.register(selector, ops, handler);
+                handler.registered(key);
+            } catch (Throwable ex) {
+                handler.exception(null, ex);
+            }
+        });
+    }
+
+    /**
+     * Run a task in the loop thread
+     *
+     * @param task the task to run
+     */
+    public void execute(final Runnable task) {
+        tasks.add(task);
+
+        if (!inLoop() && wakeup.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Run a task in the loop thread after a delay
+     *
+     * @param task the task to run
+     * @param delay the delay
+     * @param unit the delay unit
+     * @return the scheduled task
+     */
+    public Timeout schedule(final Runnable task, final long delay, final TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+        if (inLoop()) {
+            timers.add(timeout);
+        } else {
+            execute(() -> timers.add(timeout));
+        }
+
+        return timeout;
+    }
+
+    /**
+     * Get if the current thread is the
+     * loop thread
+     *
+     * @return if the caller is running in the loop
+     */
+    public boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Get the loop read buffer. The buffer is shared by
+     * every channel of the loop, so its data must be consumed
+     * before returning to the loop. Only the loop thread can
+     * use it
+     *
+     * @return the cleared read buffer
+     */
+    ByteBuffer scratch() {
+        if (scratch == null)
+            scratch = BufferPool.acquire(BufferPool.MAX_SIZE);
+
+        scratch.clear();
+        return scratch;
+    }
+
+    /**
+     * Stop the loop and close every channel
+     * registered on it
+     */
+    public void shutdown() {
+        operative = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Loop body
+     */
+    @Override
+    public void run() {
+        while (operative) {
+            try {
+                Timeout next = timers.peek();
+                if (!tasks.isEmpty()) {
+                    //Tasks queued by the loop itself don't wake up the selector
+                    selector.selectNow();
+                } else if (next == null) {
+                    selector.select();
+                } else {
+                    long wait = TimeUnit.NANOSECONDS.toMillis(next.deadline - System.nanoTime() + 999999);
+                    if (wait > 0) {
+                        selector.select(wait);
+                    } else {
+                        selector.selectNow();
+                    }
+                }
+                wakeup.set(false);
+
+                runTasks();
+                runTimers();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    handle(key);
+                }
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (Throwable ignored) {}
+        }
+
+        try {
+            selector.close();
+        } catch (Throwable ignored) {}
+
+        BufferPool.release(scratch);
+        scratch = null;
+    }
+
+    /**
+     * Run all the pending tasks
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Run all the expired timers
+     */
+    private void runTimers() {
+        long now = System.nanoTime();
+
+        Timeout timeout;
+        while ((timeout = timers.peek()) != null && timeout.deadline - now <= 0) {
+            timers.poll();
+            if (timeout.cancelled)
+                continue;
+
+            try {
+                timeout.task.run();
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Handle a ready selection key
+     *
+     * @param key the selection key
+     */
+    private void handle(final SelectionKey key) {
+        ChannelHandler handler = (ChannelHandler) key.attachment();
+
+        try {
+            if (!key.isValid())
+                return;
+
+            int ready = key.readyOps();
+            if ((ready & SelectionKey.OP_ACCEPT) != 0) {
+                handler.accept(key);
+            }
+            if (key.isValid() && (ready & SelectionKey.OP_CONNECT) != 0) {
+                handler.connect(key);
+            }
+            if (key.isValid() && (ready & SelectionKey.OP_READ) != 0) {
+                handler.read(key);
+            }
+            if (key.isValid() && (ready & SelectionKey.OP_WRITE) != 0) {
+                handler.write(key);
+            }
+        } catch (Throwable ex) {
+            handler.exception(key, ex);
+        }
+    }
+
+    /**
+     * Task scheduled to run in the loop after a delay
+     */
+    public final static class Timeout implements Comparable<Timeout> {
+
+        private final Runnable task;
+        private final long deadline;
+
+        private volatile boolean cancelled = false;
+
+        /**
+         * Initialize the timeout
+         *
+         * @param run the task to run
+         * @param time the task deadline, in nanos
+         */
+        private Timeout(final Runnable run, final long time) {
+            task = run;
+            deadline = time;
+        }
+
+        /**
+         * Cancel the task, it won't run if
+         * it has not run yet
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Get if the task has been cancelled
+         *
+         * @return if the task is cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Compare the deadline of two timeouts
+         *
+         * @param other the other timeout
+         * @return the comparison result
+         */
+        @Override
+        public int compareTo(final Timeout other) {
+            return Long.signum(deadline - other.deadline);
+        }
+    }
+}
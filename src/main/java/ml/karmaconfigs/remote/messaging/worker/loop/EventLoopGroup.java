@@ -0,0 +1,108 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of event loops, channels are spread
+ * between them in round-robin order.
+ * <p>
+ * Clients don't own their loops, every client connection
+ * runs in the {@link #shared()} group instead
+ */
+public final class EventLoopGroup {
+
+    private static volatile EventLoopGroup shared = null;
+
+    private final EventLoop[] loops;
+    private final AtomicInteger index = new AtomicInteger(0);
+
+    /**
+     * Initialize the loop group
+     *
+     * @param name the loop threads base name
+     * @param threads the amount of loops, if lower than 1
+     *                the amount of available processors
+     *                will be used
+     * @throws IOException if a loop selector can't be opened
+     */
+    public EventLoopGroup(final String name, final int threads) throws IOException {
+        int amount = (threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+
+        loops = new EventLoop[amount];
+        for (int i = 0; i < amount; i++) {
+            try {
+                loops[i] = new EventLoop(name + "-" + i);
+            } catch (IOException ex) {
+                for (int j = 0; j < i; j++)
+                    loops[j].shutdown();
+
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Get the loop group shared by every client. The group
+     * is created the first time a client connects and is never
+     * shut down, its loops are daemon threads that wait in their
+     * selector while there's nothing to do
+     *
+     * @return the shared loop group
+     * @throws IOException if a loop selector can't be opened
+     */
+    public static EventLoopGroup shared() throws IOException {
+        EventLoopGroup group = shared;
+        if (group == null) {
+            synchronized (EventLoopGroup.class) {
+                group = shared;
+                if (group == null) {
+                    group = new EventLoopGroup("Client", 0);
+                    shared = group;
+                }
+            }
+        }
+
+        return group;
+    }
+
+    /**
+     * Get the next event loop
+     *
+     * @return the next event loop
+     */
+    public EventLoop next() {
+        return loops[Math.abs(index.getAndIncrement() % loops.length)];
+    }
+
+    /**
+     * Get the amount of loops
+     *
+     * @return the amount of loops
+     */
+    public int size() {
+        return loops.length;
+    }
+
+    /**
+     * Stop all the event loops
+     */
+    public void shutdown() {
+        for (EventLoop loop : loops)
+            loop.shutdown();
+    }
+}
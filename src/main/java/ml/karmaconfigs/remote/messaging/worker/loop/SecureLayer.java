@@ -0,0 +1,363 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.buffer.BufferPool;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TLS layer of a {@link Connection}. Wraps the outgoing
+ * data and unwraps the incoming data with an {@link SSLEngine},
+ * always from the connection loop thread.
+ * <p>
+ * The engine delegated tasks ( certificate validation, key
+ * exchange... ) run in a shared worker pool, so a handshake
+ * never blocks the loop. The network buffers are taken from the
+ * {@link BufferPool} only while they hold data
+ */
+final class SecureLayer {
+
+    private final static ByteBuffer[] EMPTY = {ByteBuffer.allocate(0)};
+    private final static AtomicInteger ids = new AtomicInteger(0);
+
+    private final static ExecutorService tasks;
+
+    static {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (runnable) -> {
+            Thread thread = new Thread(runnable, "TLS Task-" + ids.getAndIncrement());
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        tasks = executor;
+    }
+
+    private final Connection owner;
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+
+    private ByteBuffer in = null;
+    private ByteBuffer out = null;
+
+    private boolean ready = false;
+    private boolean running = false;
+    private boolean finished = false;
+
+    private long started = 0;
+
+    /**
+     * Initialize the TLS layer
+     *
+     * @param connection the connection
+     * @param socket the connection socket
+     * @param ssl the connection engine, already configured
+     */
+    SecureLayer(final Connection connection, final SocketChannel socket, final SSLEngine ssl) {
+        owner = connection;
+        channel = socket;
+        engine = ssl;
+    }
+
+    /**
+     * Get if the initial handshake has finished
+     * and application data can be sent
+     *
+     * @return if the layer is ready
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Get if the peer has closed the TLS session
+     *
+     * @return if the inbound side is closed
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Get if there's wrapped data waiting for
+     * the socket to accept it
+     *
+     * @return if there's data to write
+     */
+    boolean isPending() {
+        return out != null;
+    }
+
+    /**
+     * Start the handshake
+     *
+     * @throws IOException if the handshake can't start
+     */
+    void begin() throws IOException {
+        started = System.currentTimeMillis();
+        engine.beginHandshake();
+    }
+
+    /**
+     * Drive the handshake as far as possible and unwrap
+     * the received data. Handshake messages are also exchanged
+     * after the initial handshake ( session tickets, key
+     * updates... )
+     *
+     * @return if the engine is not handshaking anymore
+     * @throws IOException if something goes wrong
+     */
+    boolean handshake() throws IOException {
+        while (true) {
+            if (!drain())
+                return false;
+
+            switch (engine.getHandshakeStatus()) {
+                case NEED_WRAP:
+                    wrap(EMPTY, 1);
+
+                    //A peer that closes mid handshake leaves the engine asking to wrap nothing forever
+                    if (out == null && (engine.isOutboundDone() || engine.isInboundDone()))
+                        throw new SSLException("The TLS session has been closed while handshaking");
+                    break;
+                case NEED_UNWRAP:
+                    if (!unwrap())
+                        return false;
+                    break;
+                case NEED_TASK:
+                    if (!running) {
+                        running = true;
+                        tasks.execute(() -> {
+                            Runnable task;
+                            while ((task = engine.getDelegatedTask()) != null)
+                                task.run();
+
+                            owner.getLoop().execute(() -> {
+                                running = false;
+                                owner.progress();
+                            });
+                        });
+                    }
+                    return false;
+                default:
+                    if (!ready) {
+                        ready = true;
+
+                        //A resumed session was created by a previous handshake
+                        owner.handshaked(engine.getSession().getCreationTime() < started);
+                    }
+
+                    //Unwrap the application data received with the handshake data
+                    if (!unwrap())
+                        return true;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Read the available data from the socket. The
+     * data is unwrapped by {@link #handshake()}
+     *
+     * @return false if the socket reached its end
+     * @throws IOException if something goes wrong
+     */
+    boolean receive() throws IOException {
+        if (in == null)
+            in = BufferPool.acquire(engine.getSession().getPacketBufferSize());
+
+        int read = channel.read(in);
+        if (in.position() == 0) {
+            BufferPool.release(in);
+            in = null;
+        }
+
+        if (read == -1) {
+            try {
+                engine.closeInbound();
+            } catch (SSLException ignored) {
+                //The peer didn't send close_notify
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Wrap application data and write it into the
+     * socket. The data is wrapped right from the buffers,
+     * a record can take data from many of them
+     *
+     * @param data the data to send
+     * @param length the amount of buffers to send
+     * @return if all the data has been wrapped and written
+     * @throws IOException if something goes wrong
+     */
+    boolean send(final ByteBuffer[] data, final int length) throws IOException {
+        if (!drain())
+            return false;
+
+        while (data[length - 1].hasRemaining()) {
+            wrap(data, length);
+            if (!drain())
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Write the pending wrapped data
+     *
+     * @return if there's nothing left to write
+     * @throws IOException if something goes wrong
+     */
+    boolean drain() throws IOException {
+        if (out == null)
+            return true;
+
+        channel.write(out);
+        if (out.hasRemaining())
+            return false;
+
+        BufferPool.release(out);
+        out = null;
+        return true;
+    }
+
+    /**
+     * Close the TLS session, trying to send
+     * the close_notify to the peer
+     */
+    void close() {
+        try {
+            engine.closeOutbound();
+            if (drain()) {
+                wrap(EMPTY, 1);
+                drain();
+            }
+        } catch (Throwable ignored) {}
+
+        release();
+    }
+
+    /**
+     * Release the network buffers
+     */
+    void release() {
+        BufferPool.release(in);
+        BufferPool.release(out);
+        in = null;
+        out = null;
+    }
+
+    /**
+     * Wrap data into the network output buffer,
+     * which must be empty
+     *
+     * @param data the data to wrap
+     * @param length the amount of buffers to wrap
+     * @throws IOException if something goes wrong
+     */
+    private void wrap(final ByteBuffer[] data, final int length) throws IOException {
+        ByteBuffer target = BufferPool.acquire(engine.getSession().getPacketBufferSize());
+
+        SSLEngineResult result = engine.wrap(data, 0, length, target);
+        target.flip();
+
+        if (target.hasRemaining()) {
+            out = target;
+        } else {
+            BufferPool.release(target);
+        }
+
+        switch (result.getStatus()) {
+            case BUFFER_OVERFLOW:
+                throw new SSLException("The TLS record does not fit in the network buffer");
+            case CLOSED:
+                if (data != EMPTY)
+                    throw new SSLException("The TLS session is closed");
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Unwrap the received data. The plain data is
+     * handed to the connection right away
+     *
+     * @return if the engine made any progress
+     * @throws IOException if something goes wrong
+     */
+    private boolean unwrap() throws IOException {
+        if (in == null || in.position() == 0)
+            return false;
+
+        ByteBuffer plain = owner.getLoop().scratch();
+
+        in.flip();
+        SSLEngineResult result = engine.unwrap(in, plain);
+        in.compact();
+
+        if (plain.position() > 0) {
+            plain.flip();
+            owner.deliver(plain);
+        }
+
+        switch (result.getStatus()) {
+            case BUFFER_UNDERFLOW:
+                int size = engine.getSession().getPacketBufferSize();
+                if (in.capacity() < size) {
+                    ByteBuffer grown = BufferPool.acquire(size);
+                    in.flip();
+                    grown.put(in);
+
+                    BufferPool.release(in);
+                    in = grown;
+                }
+                return false;
+            case BUFFER_OVERFLOW:
+                throw new SSLException("The TLS record does not fit in the application buffer");
+            case CLOSED:
+                finished = true;
+                break;
+            default:
+                break;
+        }
+
+        if (in.position() == 0) {
+            BufferPool.release(in);
+            in = null;
+        }
+
+        return !finished && (result.bytesConsumed() > 0 || result.bytesProduced() > 0);
+    }
+}
@@ -15,44 +15,59 @@ package ml.karmaconfigs.remote.messaging.worker.ssl;
  */
 
 import ml.karmaconfigs.api.common.Console;
-import ml.karmaconfigs.api.common.timer.SourceSimpleTimer;
 import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
-import ml.karmaconfigs.api.common.timer.scheduler.SimpleScheduler;
 import ml.karmaconfigs.api.common.timer.scheduler.worker.AsyncLateScheduler;
 import ml.karmaconfigs.api.common.utils.PrefixConsoleData;
 import ml.karmaconfigs.api.common.utils.enums.Level;
 import ml.karmaconfigs.api.common.utils.string.StringUtils;
-import ml.karmaconfigs.remote.messaging.listener.RemoteListener;
+import ml.karmaconfigs.remote.messaging.platform.SecureClient;
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
 import ml.karmaconfigs.remote.messaging.listener.event.client.ServerConnectEvent;
 import ml.karmaconfigs.remote.messaging.listener.event.client.ServerDisconnectEvent;
 import ml.karmaconfigs.remote.messaging.listener.event.client.ServerMessageEvent;
-import ml.karmaconfigs.remote.messaging.platform.SecureClient;
 import ml.karmaconfigs.remote.messaging.remote.RemoteServer;
+import ml.karmaconfigs.remote.messaging.util.ConnectTimeoutException;
+import ml.karmaconfigs.remote.messaging.util.NodeIdentity;
 import ml.karmaconfigs.remote.messaging.util.WorkLevel;
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+import ml.karmaconfigs.remote.messaging.util.frame.FrameCodec;
 import ml.karmaconfigs.remote.messaging.util.message.*;
 import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+import ml.karmaconfigs.remote.messaging.util.reconnect.Backoff;
+import ml.karmaconfigs.remote.messaging.util.reconnect.ReconnectPolicy;
+import ml.karmaconfigs.remote.messaging.util.reconnect.ReplayBuffer;
+import ml.karmaconfigs.remote.messaging.util.rpc.Request;
+import ml.karmaconfigs.remote.messaging.util.rpc.RequestTable;
+import ml.karmaconfigs.remote.messaging.util.ssl.SecureContext;
+import ml.karmaconfigs.remote.messaging.worker.loop.Connection;
+import ml.karmaconfigs.remote.messaging.worker.loop.ConnectionListener;
+import ml.karmaconfigs.remote.messaging.worker.loop.EventLoop;
+import ml.karmaconfigs.remote.messaging.worker.loop.EventLoopGroup;
 import ml.karmaconfigs.remote.messaging.worker.ssl.remote.SSLRemoteServer;
+import org.jetbrains.annotations.Nullable;
 
 import javax.net.ssl.*;
-import java.io.*;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.net.NetworkInterface;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Path;
-import java.security.KeyStore;
-import java.util.Collections;
-import java.util.Random;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Remote message client interface
  */
 public final class SSLClient extends SecureClient {
     
-    private final Set<byte[]> data_queue = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final RequestTable requests = new RequestTable();
 
     private RemoteServer remote = null;
 
@@ -62,43 +77,72 @@ public final class SSLClient extends SecureClient {
 
     private int sv_port = 49305;
     private int client = 49300;
-    private int disconnect = 10;
 
-    private boolean disconnecting = false;
     private boolean debug = false;
     private boolean operative = false;
     private boolean instant_close = false;
     private boolean award_connection = false;
     private boolean tryingConnect = true;
 
-    private SSLSocket socket;
+    private WireFormat format = WireFormat.BINARY;
+    private EventDispatcher dispatcher = EventDispatcher.inline();
+    private WireFormat wire = WireFormat.SERIALIZED;
+    private AckPolicy acknowledge = AckPolicy.each();
 
-    private final String password;
-    private final String name;
-    private final String extension;
-    private final String type;
-    private final Console console = new Console(this);
+    private volatile long acknowledged = 0;
+    private final AtomicLong sent = new AtomicLong(0);
+    private volatile long connect_start = 0;
+
+    private final Metrics metrics = new Metrics().queued(this::queued).acks(this::pending);
+
+    private volatile boolean closing = false;
+
+    private SocketChannel socket;
+    private EventLoop loop;
+    private volatile Connection connection;
+    private volatile LateScheduler<Boolean> connecting = null;
+
+    private volatile Consumer<Boolean> writability = null;
+    private int low_watermark = 32 * 1024;
+    private int high_watermark = 64 * 1024;
+    private int flush_bytes = 64 * 1024;
+    private long linger = 0;
+
+    private long connect_timeout = 10000;
+    private long handshake_timeout = 10000;
+
+    private volatile Backoff backoff = new Backoff(ReconnectPolicy.none());
+    private volatile ReplayBuffer replay = null;
+    private volatile boolean resuming = false;
+    private String session = null;
+
+    private final SecureContext secure;
 
     private String protocol = "TLSv1.3";
 
     private Path parent = getDataPath().resolve("certs");
 
+    private final ConnectionListener handler = new ConnectionListener() {
+        @Override
+        public void received(final Connection connection, final ByteBuffer data) {
+            process(data);
+        }
+
+        @Override
+        public void closed(final Connection connection) {
+            release();
+        }
+    };
+
+    private final Console console = new Console(this);
+
     /**
      * Initialize a default client that
      * will connect to local server at
      * default port 49305
      */
     public SSLClient(final String pwd, final String nm, final String ext, final String tp) {
-        PrefixConsoleData data = console.getData();
-        data.setOkPrefix("&3[SSL Client (&aOK&3)]&b ");
-        data.setInfoPrefix("&3[SSL Client (&7INFO&3)]&b ");
-        data.setWarnPrefix("&3[SSL Client (&eWARNING&3)]&b ");
-        data.setGravePrefix("&3[SSL Client (&4ERROR&3)]&b ");
-
-        password = pwd;
-        name = nm;
-        extension = ext;
-        type = tp;
+        this(new SecureContext(pwd, nm, ext, tp));
     }
 
     /**
@@ -109,19 +153,51 @@ public final class SSLClient extends SecureClient {
      * @param server_port the server port
      */
     public SSLClient(final String pwd, final String nm, final String ext, final String tp, final String server_host, final int server_port) {
-        server = server_host;
-        sv_port = server_port;
+        this(new SecureContext(pwd, nm, ext, tp), server_host, server_port);
+    }
+
+    /**
+     * Initialize a client with a custom port
+     * that will connect to the specified server at the
+     * specified port
+     *
+     * @param client_port the client port
+     * @param server_host the server
+     * @param server_port the server port
+     */
+    public SSLClient(final String pwd, final String nm, final String ext, final String tp, final int client_port, final String server_host, final int server_port) {
+        this(new SecureContext(pwd, nm, ext, tp), client_port, server_host, server_port);
+    }
 
+    /**
+     * Initialize a default client that
+     * will connect to local server at
+     * default port 49305
+     *
+     * @param ctx the shared secure context
+     */
+    public SSLClient(final SecureContext ctx) {
         PrefixConsoleData data = console.getData();
         data.setOkPrefix("&3[SSL Client (&aOK&3)]&b ");
         data.setInfoPrefix("&3[SSL Client (&7INFO&3)]&b ");
         data.setWarnPrefix("&3[SSL Client (&eWARNING&3)]&b ");
         data.setGravePrefix("&3[SSL Client (&4ERROR&3)]&b ");
 
-        password = pwd;
-        name = nm;
-        extension = ext;
-        type = tp;
+        secure = ctx;
+    }
+
+    /**
+     * Initialize a client that will connect
+     * to the specified server at specified port
+     *
+     * @param ctx the shared secure context
+     * @param server_host the server
+     * @param server_port the server port
+     */
+    public SSLClient(final SecureContext ctx, final String server_host, final int server_port) {
+        this(ctx);
+        server = server_host;
+        sv_port = server_port;
     }
 
     /**
@@ -129,25 +205,16 @@ public final class SSLClient extends SecureClient {
      * that will connect to the specified server at the
      * specified port
      *
+     * @param ctx the shared secure context
      * @param client_port the client port
      * @param server_host the server
      * @param server_port the server port
      */
-    public SSLClient(final String pwd, final String nm, final String ext, final String tp, final int client_port, final String server_host, final int server_port) {
+    public SSLClient(final SecureContext ctx, final int client_port, final String server_host, final int server_port) {
+        this(ctx);
         client = client_port;
         server = server_host;
         sv_port = server_port;
-
-        PrefixConsoleData data = console.getData();
-        data.setOkPrefix("&3[SSL Client (&aOK&3)]&b ");
-        data.setInfoPrefix("&3[SSL Client (&7INFO&3)]&b ");
-        data.setWarnPrefix("&3[SSL Client (&eWARNING&3)]&b ");
-        data.setGravePrefix("&3[SSL Client (&4ERROR&3)]&b ");
-
-        password = pwd;
-        name = nm;
-        extension = ext;
-        type = tp;
     }
 
     /**
@@ -163,6 +230,55 @@ public final class SSLClient extends SecureClient {
         return this;
     }
 
+    /**
+     * Set the preferred message wire format, the final
+     * format is negotiated with the server when connecting
+     *
+     * @param format the preferred wire format
+     * @return this instance
+     */
+    @Override
+    public SecureClient format(final WireFormat format) {
+        this.format = format;
+
+        return this;
+    }
+
+    /**
+     * Set the executor that will call the listener
+     * events, inline by default
+     *
+     * @param executor the event dispatcher
+     * @return this instance
+     */
+    @Override
+    public SecureClient dispatcher(final EventDispatcher executor) {
+        dispatcher = executor;
+
+        return this;
+    }
+
+    /**
+     * Set how the server should acknowledge the
+     * messages of this client, {@link AckPolicy#each()}
+     * by default. The policy is sent when connecting
+     *
+     * @param policy the ack policy
+     * @return this instance
+     * @throws IllegalArgumentException if the policy is none and
+     * the client replays its messages, as they would never be
+     * acknowledged
+     */
+    @Override
+    public SecureClient acknowledge(final AckPolicy policy) throws IllegalArgumentException {
+        if (policy.getMode() == AckPolicy.Mode.NONE && backoff.getPolicy().isReplaying())
+            throw new IllegalArgumentException("Cannot disable acks while the client replays its messages");
+
+        acknowledge = policy;
+
+        return this;
+    }
+
     /**
      * Set the current protocol
      *
@@ -189,6 +305,122 @@ public final class SSLClient extends SecureClient {
         return this;
     }
 
+    /**
+     * Get the secure context, shared with every
+     * secure worker created by the same factory
+     *
+     * @return the secure context
+     */
+    @Override
+    public SecureContext getContext() {
+        return secure;
+    }
+
+    /**
+     * Set the outbound queue watermarks. Messages sent
+     * while the queue is over the high watermark are discarded
+     * until the queue is drained under the low watermark
+     *
+     * @param low the low watermark, in bytes
+     * @param high the high watermark, in bytes
+     * @return this instance
+     */
+    @Override
+    public SecureClient watermarks(final int low, final int high) {
+        low_watermark = low;
+        high_watermark = high;
+
+        Connection current = connection;
+        if (current != null)
+            current.watermarks(low, high);
+
+        return this;
+    }
+
+    /**
+     * Set how the queued messages are flushed. Messages
+     * queued together are written with a single system
+     * call, up to the byte cap
+     *
+     * @param bytes the max amount of bytes written at once
+     * @param linger the time a message waits for more messages
+     *               before being flushed, in microseconds, 0 to
+     *               flush as soon as possible
+     * @return this instance
+     */
+    @Override
+    public SecureClient coalesce(final int bytes, final long linger) {
+        flush_bytes = bytes;
+        this.linger = linger;
+
+        Connection current = connection;
+        if (current != null)
+            current.coalesce(bytes, linger);
+
+        return this;
+    }
+
+    /**
+     * Set how long connecting can take. If a limit is
+     * exceeded, the connect result completes with false and
+     * a {@link ConnectTimeoutException}
+     *
+     * @param connect the time to establish the connection,
+     *                including the TLS handshake, 0 for no
+     *                limit
+     * @param handshake the time the server has to accept the
+     *                  connect request once connected, 0 for
+     *                  no limit
+     * @param unit the time unit
+     * @return this instance
+     */
+    @Override
+    public SecureClient timeout(final long connect, final long handshake, final TimeUnit unit) {
+        connect_timeout = unit.toMillis(Math.max(0, connect));
+        handshake_timeout = unit.toMillis(Math.max(0, handshake));
+
+        return this;
+    }
+
+    /**
+     * Set how the client reconnects when the connection is
+     * lost. Messages sent while reconnecting, and those the
+     * server has not acknowledged yet, are replayed once the
+     * server accepts the client again. Must be set before
+     * connecting
+     *
+     * @param policy the reconnect policy
+     * @return this instance
+     * @throws IllegalArgumentException if the policy replays
+     * messages and the client ack policy is none, as they
+     * would never be acknowledged
+     */
+    @Override
+    public SecureClient reconnect(final ReconnectPolicy policy) throws IllegalArgumentException {
+        if (policy.isReplaying() && acknowledge.getMode() == AckPolicy.Mode.NONE)
+            throw new IllegalArgumentException("Cannot replay messages that are not acknowledged, set an ack policy first");
+
+        backoff.reset();
+        backoff = new Backoff(policy);
+        replay = (policy.isEnabled() ? new ReplayBuffer(policy.getReplay()) : null);
+
+        return this;
+    }
+
+    /**
+     * Set the listener that is called every time the
+     * client stops or starts accepting messages
+     *
+     * @param listener the writability listener
+     * @return this instance
+     */
+    @Override
+    public SecureClient writability(final @Nullable Consumer<Boolean> listener) {
+        writability = listener;
+
+        return this;
+    }
+
     /**
      * Try to connect to the server
      *
@@ -197,312 +429,440 @@ public final class SSLClient extends SecureClient {
     @Override
     public LateScheduler<Boolean> connect() {
         if (!operative) {
+            //A new session, nothing from the previous one is replayed
+            backoff.reset();
+            resuming = false;
+            session = UUID.randomUUID().toString();
+            acknowledged = 0;
+            sent.set(0);
+
+            ReplayBuffer buffer = replay;
+            if (buffer != null)
+                buffer.clear();
+
+            return open(false);
+        }
+
+        return null;
+    }
+
+    /**
+     * Open a new connection with the server, keeping
+     * the current session
+     *
+     * @param resume if the connection is a reconnect attempt
+     * @return a completable future when the client connects
+     */
+    private LateScheduler<Boolean> open(final boolean resume) {
+        LateScheduler<Boolean> result = new AsyncLateScheduler<>();
+
+        EventLoop owner;
+        try {
+            owner = EventLoopGroup.shared().next();
+        } catch (Throwable ex) {
+            award_connection = false;
             tryingConnect = true;
-            disconnecting = false;
-            LateScheduler<Boolean> result = new AsyncLateScheduler<>();
 
-            Thread thread = new Thread(() -> {
-                try {
+            requests.failAll("Connection error: " + ex.getMessage());
+            result.complete(false, ex);
+            return result;
+        }
+
+        //The connection is opened from its loop, so connecting never blocks the caller
+        owner.execute(() -> {
+            try {
+                if (debug) {
+                    console.send("Initializing the connection with the server", Level.INFO);
+                }
+
+                wire = WireFormat.SERIALIZED;
+                connect_start = System.nanoTime();
+                closing = false;
+
+                SSLContext sc = secure.get(protocol, parent);
+                SSLEngine engine = sc.createSSLEngine(server, sv_port);
+                engine.setUseClientMode(true);
+
+                socket = SocketChannel.open();
+                //Reconnecting reuses the client port, which may still be closing
+                socket.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                socket.bind(new InetSocketAddress(client));
+                socket.configureBlocking(false);
+                if (!socket.connect(new InetSocketAddress(server, sv_port)) && debug) {
+                    console.send("Trying to establish a connection with {0}/{1}", Level.INFO, server, sv_port);
+                }
+
+                connecting = result;
+                loop = owner;
+                connection = new Connection(loop, socket, handler, engine);
+                connection.metrics(metrics);
+                connection.watermarks(low_watermark, high_watermark);
+                connection.coalesce(flush_bytes, linger);
+                connection.onWritability((status) -> {
+                    Consumer<Boolean> listener = writability;
+                    if (listener != null)
+                        listener.accept(status);
+                });
+                connection.onHandshake((resumed) -> {
+                    secure.handshake(resumed);
                     if (debug) {
-                        console.send("Initializing the connection with the server", Level.INFO);
+                        console.send("Finished a {0} TLS handshake with {1}/{2}", Level.INFO, (resumed ? "resumed" : "full"), server, sv_port);
                     }
+                });
+                connection.open();
 
-                    try {
-                        if (!Files.exists(parent))
-                            Files.createDirectories(parent);
+                award_connection = true;
+                tryingConnect = true;
+
+                if (instant_close || (resume && !resuming)) {
+                    instant_close = false;
+                    closing = true;
+                    connection.close();
+                    return;
+                }
+
+                if (debug) {
+                    console.send("The connection is being established, the client will wait for server confirmation, data can be started to be sent", Level.WARNING, server, sv_port);
+                }
+
+                MessageOutput output = new MessageDataOutput();
+                output.write("MAC", getMAC());
+                output.write("COMMAND_ENABLED", true);
+                output.write("COMMAND", "connect");
+                output.write("ARGUMENT", client_name);
+                if (!StringUtils.isNullOrEmpty(key)) {
+                    output.write("ACCESS_KEY", key);
+                }
+                if (format != WireFormat.SERIALIZED) {
+                    output.write("WIRE_FORMAT", format.name());
+                }
+                acknowledge.write(output);
+                if (replay != null) {
+                    output.write("SESSION", session);
+                }
+
+                Connection current = connection;
+                AtomicBoolean established = new AtomicBoolean(false);
+                if (connect_timeout > 0) {
+                    long timeout = connect_timeout;
+                    loop.schedule(() -> {
+                        if (!established.get() && connecting == result)
+                            current.close(new ConnectTimeoutException("Could not connect to " + server + "/" + sv_port + " in " + timeout + " ms", false));
+                    }, timeout, TimeUnit.MILLISECONDS);
+                }
+
+                //The connect request is sent as soon as the TLS handshake finishes
+                byte[] compile = output.compile();
+                current.write(FrameCodec.encode(compile), (written) -> {
+                    established.set(true);
+
+                    long timeout = handshake_timeout;
+                    if (written && timeout > 0) {
+                        current.getLoop().schedule(() -> {
+                            if (connecting == result)
+                                current.close(new ConnectTimeoutException("The server " + server + "/" + sv_port + " did not accept the connection in " + timeout + " ms", true));
+                        }, timeout, TimeUnit.MILLISECONDS);
+                    }
+                });
 
-                        Path serverKeyStore = parent.resolve(name + "." + extension);
-                        Path trustedKeyStore = parent.resolve(name + "_trusted." + extension);
+                tryingConnect = false;
+            } catch (Throwable ex) {
+                award_connection = false;
+                tryingConnect = true;
 
-                        InputStream internalStorage = new FileInputStream(serverKeyStore.toFile());
-                        InputStream internalTruster = new FileInputStream(trustedKeyStore.toFile());
+                requests.failAll("Connection error: " + ex.getMessage());
+                result.complete(false, ex);
+            }
+        });
 
-                        KeyStore keyStore = KeyStore.getInstance(type);
-                        keyStore.load(internalStorage, password.toCharArray());
+        return result;
+    }
 
-                        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-                        kmf.init(keyStore, password.toCharArray());
+    /**
+     * Process a frame received from the server
+     *
+     * @param frame the frame payload
+     */
+    private void process(final ByteBuffer frame) {
+        try {
+            MessageInput input = metrics.decode(frame);
+            if (!operative) {
+                handshake(input);
+                return;
+            }
 
-                        KeyStore trustedStore = KeyStore.getInstance(type);
-                        trustedStore.load(internalTruster, password.toCharArray());
+            String mac = input.getString("MAC");
+            boolean isCommand = input.getBoolean("COMMAND_ENABLED");
+            if (remote.getMAC().equals(mac)) {
+                if (isCommand) {
+                    String command = input.getString("COMMAND");
+                    String argument = input.getString("ARGUMENT");
 
-                        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-                        tmf.init(trustedStore);
+                    if (command != null && argument != null) {
+                        String data;
 
-                        SSLContext sc = SSLContext.getInstance(protocol);
+                        switch (command.toLowerCase()) {
+                            case "success":
+                                switch (argument.toLowerCase()) {
+                                    case "rename":
+                                        client_name = input.getString("ARGUMENT_DATA");
 
-                        TrustManager[] trustManagers = tmf.getTrustManagers();
-                        KeyManager[] keyManagers = kmf.getKeyManagers();
+                                        if (client_name != null && debug) {
+                                            console.send("Server accepted the new client name: {0}", Level.OK, client_name);
+                                        }
+                                        break;
+                                    case "message":
+                                        Number sequence = input.getNumber("ACK_SEQUENCE");
+                                        if (sequence != null) {
+                                            acknowledged = sequence.longValue();
+
+                                            ReplayBuffer buffer = replay;
+                                            if (buffer != null)
+                                                buffer.acknowledge(acknowledged);
+                                        }
 
-                        sc.init(keyManagers, trustManagers, null);
-                        SSLSocketFactory ssf = sc.getSocketFactory();
-                        try {
-                            socket = (SSLSocket) ssf.createSocket(server, sv_port, InetAddress.getLocalHost(), client);
-                        } catch (Throwable ex) {
-                            socket = (SSLSocket) ssf.createSocket(server, sv_port, InetAddress.getLoopbackAddress(), client);
+                                        if (debug) {
+                                            console.send("Server acknowledged messages up to #{0}", Level.INFO, acknowledged);
+                                        }
+                                        break;
+                                    case "unknown":
+                                        data = input.getString("ARGUMENT_DATA");
+
+                                        if (data != null && debug) {
+                                            String[] arg_data = data.split(",");
+
+                                            console.send("{0} ran custom command: {1} ( {2} )", Level.WARNING, arg_data[0], arg_data[1], arg_data[2]);
+                                        }
+                                        break;
+                                    default:
+                                        if (debug) {
+                                            console.send("Unknown command from server: {0} ( {1} )", Level.GRAVE, command, argument);
+                                        }
+                                        break;
+                                }
+                                break;
+                            case "failed":
+                                switch (argument.toLowerCase()) {
+                                    case "connect":
+                                        data = input.getString("ARGUMENT_DATA");
+                                        if (data != null) {
+                                            String[] connect_data = data.split(",");
+                                            String name = connect_data[0];
+                                            String reason = connect_data[1];
+
+                                            console.send("Server declined connection as {0}, because: {1}", Level.GRAVE, name, reason);
+
+                                            ServerDisconnectEvent connectEvent = new ServerDisconnectEvent(remote, this, reason);
+                                            dispatcher.dispatch(this, connectEvent, metrics);
+                                        }
+
+                                        break;
+                                    case "rename":
+                                        data = input.getString("ARGUMENT_DATA");
+                                        if (data != null) {
+                                            String[] rename_data = data.split(",");
+                                            console.send("Failed to change client name to {0}: {1}", Level.GRAVE, rename_data[0], rename_data[1]);
+                                        }
+
+                                        break;
+                                    case "disconnect":
+                                        data = input.getString("ARGUMENT_DATA");
+
+                                        if (data != null) {
+                                            console.send("Failed while trying to disconnect the server ( you've been disconnected anyway ): {0}", Level.GRAVE, data);
+
+                                            ServerDisconnectEvent disconnectEvent = new ServerDisconnectEvent(remote, this, "no server reason...");
+                                            dispatcher.dispatch(this, disconnectEvent, metrics);
+                                        }
+
+                                        break;
+                                    case "message":
+                                        data = input.getString("ARGUMENT_DATA");
+                                        if (data != null) {
+                                            console.send("Failed while trying to send a message to server: {0}", Level.GRAVE, data);
+                                        }
+                                        break;
+                                    case "unknown":
+                                        data = input.getString("ARGUMENT_DATA");
+                                        if (data != null) {
+                                            String[] unknown_data = data.split(",");
+                                            console.send("Failed while trying to execute custom command {0} with argument {1}: {2}", Level.GRAVE, unknown_data[0], unknown_data[1], unknown_data[2]);
+                                        }
+
+                                        break;
+                                    default:
+                                        if (debug) {
+                                            console.send("Unknown command from server: {0} ( {1} )", Level.WARNING, command, argument);
+                                        }
+                                        break;
+                                }
+                                break;
+                            case "disconnect":
+                                String reason = input.getString("ARGUMENT_DATA");
+                                if (reason != null) {
+                                    console.send("Connection killed by server: {0}", Level.GRAVE, reason);
+                                }
+
+                                ServerDisconnectEvent event = new ServerDisconnectEvent(remote, this, reason);
+                                dispatcher.dispatch(this, event, metrics);
+
+                                requests.failAll("Connection killed by server: " + reason);
+                                close();
+                                break;
                         }
+                    }
+                } else {
+                    Number response = input.getNumber("RESPONSE_ID");
+                    if (response != null) {
+                        requests.complete(response.longValue(), input);
+                    } else {
+                        ServerMessageEvent event = new ServerMessageEvent(remote, this, input);
+                        dispatcher.dispatch(this, event, metrics);
+                    }
+                }
+            }
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+        }
+    }
 
-                        socket.startHandshake();
-                    } catch (Throwable ex) {
-                        result.complete(false, ex);
-                        return;
+    /**
+     * Process the server answer to the connect
+     * request
+     *
+     * @param input the server answer
+     * @throws Throwable if something goes wrong
+     */
+    private void handshake(final MessageInput input) throws Throwable {
+        if (input.getBoolean("COMMAND_ENABLED")) {
+            String sequence = input.getString("COMMAND");
+            String mac = input.getString("MAC");
+            if (sequence != null && mac != null) {
+                if (sequence.equalsIgnoreCase("accept")) {
+                    if (format == WireFormat.BINARY) {
+                        wire = WireFormat.fromName(input.getString("WIRE_FORMAT"));
                     }
 
-                    award_connection = true;
+                    remote = new SSLRemoteServer(mac, InetAddress.getByName(server), sv_port, connection, wire);
 
                     if (debug) {
-                        console.send("The connection has been established but the client is still waiting for server confirmation, data can be started to be sent", Level.WARNING, server, sv_port);
+                        console.send("Connection has been validated by the server", Level.OK);
                     }
 
-                    try {
-                        while (award_connection) {
-                            if (instant_close) {
-                                tryingConnect = false;
-                                award_connection = false;
-                                operative = false;
-
-                                if (socket != null) {
-                                    try {
-                                        socket.close();
-                                    } catch (Throwable ignored) {
-                                    }
-                                }
-                                socket = null;
-                            }
+                    award_connection = false;
 
-                            if (tryingConnect) {
-                                MessageOutput output = new MessageDataOutput();
-                                output.write("MAC", getMAC());
-                                output.write("COMMAND_ENABLED", true);
-                                output.write("COMMAND", "connect");
-                                output.write("ARGUMENT", client_name);
-                                if (!StringUtils.isNullOrEmpty(key)) {
-                                    output.write("ACCESS_KEY", key);
-                                }
+                    ReplayBuffer buffer = replay;
+                    if (buffer != null) {
+                        List<ByteBuffer> frames;
+                        //The messages sent meanwhile are not written until the replayed ones are queued
+                        synchronized (buffer) {
+                            frames = buffer.pending();
 
-                                byte[] compile = output.compile();
+                            //Replayed messages can't be discarded, a gap would make the server drop the connection
+                            for (ByteBuffer frame : frames)
+                                connection.force(frame);
 
-                                PrintWriter writer = new PrintWriter(socket.getOutputStream());
-                                writer.println(new String(compile, StandardCharsets.UTF_8));
-                                writer.flush();
-                            }
+                            operative = true;
+                        }
 
-                            if (!operative) {
-                                if (socket != null) {
-                                    BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-                                    ByteBuffer readBuffer = ByteBuffer.wrap(reader.readLine().getBytes(StandardCharsets.UTF_8));
-
-                                    MessageInput input = new MessageDataInput(readBuffer.array());
-                                    if (input.getBoolean("COMMAND_ENABLED")) {
-                                        String sequence = input.getString("COMMAND");
-                                        String mac = input.getString("MAC");
-                                        if (sequence != null && mac != null) {
-                                            if (sequence.equalsIgnoreCase("accept")) {
-                                                remote = new SSLRemoteServer(mac, InetAddress.getByName(server), sv_port, socket);
-
-                                                if (debug) {
-                                                    console.send("Connection has been validated by the server", Level.OK);
-                                                }
-
-                                                for (byte[] data : data_queue) {
-                                                    ByteBuffer tmp = ByteBuffer.wrap(data);
-
-                                                    socket.getChannel().write(tmp);
-                                                    data_queue.remove(data);
-                                                }
-
-                                                award_connection = false;
-                                                operative = true;
-
-                                                ServerConnectEvent event = new ServerConnectEvent(remote, this);
-                                                RemoteListener.callClientEvent(event);
-                                            } else {
-                                                String argument = input.getString("ARGUMENT");
-                                                if (argument != null) {
-                                                    if (argument.equalsIgnoreCase("connect")) {
-                                                        instant_close = true;
-                                                        result.complete(false);
-
-                                                        String reason = input.getString("COMMAND_ARGUMENT");
-                                                        if (reason != null) {
-                                                            console.send("Connection has been declined by the server ({0})", Level.GRAVE, reason);
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
+                        if (!frames.isEmpty() && debug) {
+                            console.send("Replayed {0} messages the server had not acknowledged", Level.INFO, frames.size());
                         }
-                    } catch (Throwable ex) {
-                        ex.printStackTrace();
+                    } else {
+                        operative = true;
                     }
 
-                    result.complete(true);
+                    resuming = false;
+                    backoff.reset();
 
-                    try {
-                        while (operative) {
-                            if (socket != null) {
-                                if (!data_queue.isEmpty()) {
-                                    //We won't read requests from server until he processes all our requests
-
-                                    for (byte[] waiting : data_queue) {
-                                        PrintWriter writer = new PrintWriter(socket.getOutputStream());
-                                        writer.println(new String(waiting, StandardCharsets.UTF_8));
-                                        writer.flush();
-
-                                        System.out.println(new String(waiting, StandardCharsets.UTF_8));
-
-                                        data_queue.remove(waiting);
-                                    }
-                                } else {
-                                    if (remote != null) {
-                                        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-                                        ByteBuffer readBuffer = ByteBuffer.wrap(reader.readLine().getBytes(StandardCharsets.UTF_8));
-
-                                        MessageInput input = new MessageDataInput(readBuffer.array());
-                                        String mac = input.getString("MAC");
-                                        boolean isCommand = input.getBoolean("COMMAND_ENABLED");
-                                        if (remote.getMAC().equals(mac)) {
-                                            if (isCommand) {
-                                                String command = input.getString("COMMAND");
-                                                String argument = input.getString("ARGUMENT");
-
-                                                if (command != null && argument != null) {
-                                                    String data;
-
-                                                    switch (command.toLowerCase()) {
-                                                        case "success":
-                                                            switch (argument.toLowerCase()) {
-                                                                case "rename":
-                                                                    client_name = input.getString("ARGUMENT_DATA");
-
-                                                                    if (client_name != null && debug) {
-                                                                        console.send("Server accepted the new client name: {0}", Level.OK, client_name);
-                                                                    }
-                                                                    break;
-                                                                case "message":
-                                                                    data = input.getString("ARGUMENT_DATA");
-                                                                    if (data != null && debug) {
-                                                                        console.send("{0} to server: {1}", Level.INFO, data, new String(readBuffer.array()));
-                                                                    }
-                                                                    break;
-                                                                case "unknown":
-                                                                    data = input.getString("ARGUMENT_DATA");
-
-                                                                    if (data != null && debug) {
-                                                                        String[] arg_data = data.split(",");
-
-                                                                        console.send("{0} ran custom command: {1} ( {2} )", Level.WARNING, arg_data[0], arg_data[1], arg_data[2]);
-                                                                    }
-                                                                    break;
-                                                                default:
-                                                                    if (debug) {
-                                                                        console.send("Unknown command from server: {0} ( {1} )", Level.GRAVE, command, argument);
-                                                                    }
-                                                                    break;
-                                                            }
-                                                            break;
-                                                        case "failed":
-                                                            switch (argument.toLowerCase()) {
-                                                                case "connect":
-                                                                    data = input.getString("ARGUMENT_DATA");
-                                                                    if (data != null) {
-                                                                        String[] connect_data = data.split(",");
-                                                                        String name = connect_data[0];
-                                                                        String reason = connect_data[1];
-
-                                                                        console.send("Server declined connection as {0}, because: {1}", Level.GRAVE, name, reason);
-
-                                                                        ServerDisconnectEvent connectEvent = new ServerDisconnectEvent(remote, this, reason);
-                                                                        RemoteListener.callClientEvent(connectEvent);
-                                                                    }
-
-                                                                    break;
-                                                                case "rename":
-                                                                    data = input.getString("ARGUMENT_DATA");
-                                                                    if (data != null) {
-                                                                        String[] rename_data = data.split(",");
-                                                                        console.send("Failed to change client name to {0}: {1}", Level.GRAVE, rename_data[0], rename_data[1]);
-                                                                    }
-
-                                                                    break;
-                                                                case "disconnect":
-                                                                    data = input.getString("ARGUMENT_DATA");
-
-                                                                    if (data != null) {
-                                                                        console.send("Failed while trying to disconnect the server ( you've been disconnected anyway ): {0}", Level.GRAVE, data);
-
-                                                                        ServerDisconnectEvent disconnectEvent = new ServerDisconnectEvent(remote, this, "no server reason...");
-                                                                        RemoteListener.callClientEvent(disconnectEvent);
-                                                                    }
-
-                                                                    break;
-                                                                case "message":
-                                                                    data = input.getString("ARGUMENT_DATA");
-                                                                    if (data != null) {
-                                                                        console.send("Failed while trying to send a message to server: {0}", Level.GRAVE, data);
-                                                                    }
-                                                                    break;
-                                                                case "unknown":
-                                                                    data = input.getString("ARGUMENT_DATA");
-                                                                    if (data != null) {
-                                                                        String[] unknown_data = data.split(",");
-                                                                        console.send("Failed while trying to execute custom command {0} with argument {1}: {2}", Level.GRAVE, unknown_data[0], unknown_data[1], unknown_data[2]);
-                                                                    }
-
-                                                                    break;
-                                                                default:
-                                                                    if (debug) {
-                                                                        console.send("Unknown command from server: {0} ( {1} )", Level.WARNING, command, argument);
-                                                                    }
-                                                                    break;
-                                                            }
-                                                            break;
-                                                        case "disconnect":
-                                                            String reason = input.getString("ARGUMENT_DATA");
-                                                            if (reason != null) {
-                                                                console.send("Connection killed by server: {0}", Level.GRAVE, reason);
-                                                            }
-
-                                                            ServerDisconnectEvent event = new ServerDisconnectEvent(remote, this, reason);
-                                                            RemoteListener.callClientEvent(event);
-
-                                                            operative = false;
-                                                            award_connection = false;
-                                                            tryingConnect = true;
-
-                                                            socket.close();
-                                                            socket = null;
-
-                                                            disconnecting = false;
-
-                                                            break;
-                                                    }
-                                                }
-                                            } else {
-                                                ServerMessageEvent event = new ServerMessageEvent(remote, this, input);
-                                                RemoteListener.callClientEvent(event);
-                                            }
-                                        }
-                                    }
-                                }
+                    ServerConnectEvent event = new ServerConnectEvent(remote, this);
+                    dispatcher.dispatch(this, event, metrics);
+
+                    LateScheduler<Boolean> result = connecting;
+                    connecting = null;
+                    if (result != null) {
+                        metrics.connected(System.nanoTime() - connect_start);
+                        result.complete(true);
+                    }
+                } else {
+                    String argument = input.getString("ARGUMENT");
+                    if (argument != null) {
+                        if (argument.equalsIgnoreCase("connect")) {
+                            String reason = input.getString("COMMAND_ARGUMENT");
+                            if (reason != null) {
+                                console.send("Connection has been declined by the server ({0})", Level.GRAVE, reason);
                             }
+
+                            closing = true;
+                            connection.close();
                         }
-                    } catch (Throwable ex) {
-                        ex.printStackTrace();
                     }
-                } catch (Throwable ex) {
-                    result.complete(false, ex);
                 }
-            });
-            thread.start();
+            }
+        }
+    }
 
-            return result;
+    /**
+     * Release the connection resources once
+     * the connection has been closed
+     */
+    private void release() {
+        boolean connected = operative;
+
+        operative = false;
+        award_connection = false;
+        tryingConnect = true;
+
+        requests.failAll("Connection closed");
+
+        LateScheduler<Boolean> result = connecting;
+        connecting = null;
+        if (result != null)
+            result.complete(false, connection.getCause());
+
+        if (connected && !closing) {
+            ServerDisconnectEvent event = new ServerDisconnectEvent(remote, this, "Connection closed");
+            dispatcher.dispatch(this, event, metrics);
+
+            if (backoff.getPolicy().isEnabled()) {
+                resuming = true;
+                resume();
+            }
         }
+    }
 
-        return null;
+    /**
+     * Schedule the next reconnect attempt, until the
+     * server accepts the client again or the reconnect
+     * policy runs out of attempts
+     */
+    private void resume() {
+        if (!resuming)
+            return;
+
+        boolean scheduled = backoff.schedule(() -> {
+            if (!resuming)
+                return;
+
+            if (debug) {
+                console.send("Trying to reconnect to {0}/{1} ( attempt {2} )", Level.INFO, server, sv_port, backoff.getAttempt());
+            }
+
+            open(true).whenComplete((status, error) -> {
+                if (!Boolean.TRUE.equals(status))
+                    resume();
+            });
+        });
+
+        if (!scheduled) {
+            resuming = false;
+
+            ReplayBuffer buffer = replay;
+            if (buffer != null)
+                buffer.clear();
+
+            console.send("Gave up reconnecting to {0}/{1} after {2} attempts", Level.GRAVE, server, sv_port, backoff.getAttempt());
+        }
     }
 
     /**
@@ -538,21 +898,7 @@ public final class SSLClient extends SecureClient {
      */
     @Override
     public String getMAC() {
-        try {
-            NetworkInterface network = NetworkInterface.getByInetAddress(InetAddress.getLocalHost());
-            byte[] macArray = network.getHardwareAddress();
-
-            StringBuilder str = new StringBuilder();
-            for (int i = 0; i < macArray.length; i++) {
-                str.append(String.format("%02X%s", macArray[i], (i < macArray.length - 1) ? ":" : ""));
-            }
-
-            return str.toString();
-        } catch (Throwable ex) {
-            System.out.println("Failed to locate MAC address...");
-            System.exit(1);
-            return null;
-        }
+        return NodeIdentity.get();
     }
 
     /**
@@ -606,6 +952,28 @@ public final class SSLClient extends SecureClient {
         return WorkLevel.TCP;
     }
 
+    /**
+     * Get the sequence of the last message acknowledged
+     * by the server. Messages are numbered from 1 in the
+     * order they are sent since the client connected
+     *
+     * @return the last acknowledged message
+     */
+    @Override
+    public long getAcknowledged() {
+        return acknowledged;
+    }
+
+    /**
+     * Get the client metrics
+     *
+     * @return the client metrics
+     */
+    @Override
+    public Metrics metrics() {
+        return metrics;
+    }
+
     /**
      * Get if the client is trying to connect to the
      * server
@@ -615,7 +983,7 @@ public final class SSLClient extends SecureClient {
      */
     @Override
     public boolean isConnecting() {
-        return tryingConnect || award_connection;
+        return tryingConnect || award_connection || resuming;
     }
 
     /**
@@ -626,11 +994,26 @@ public final class SSLClient extends SecureClient {
      */
     @Override
     public boolean isConnected() {
-        try {
-            return socket.getInputStream().read() != -1;
-        } catch (Throwable ex) {
+        Connection current = connection;
+        return operative && current != null && current.isOpen();
+    }
+
+    /**
+     * Get if a message can be sent to the server
+     * without waiting for the previous ones to be
+     * written, or acknowledged if the replay buffer
+     * is full
+     *
+     * @return if the client is writable
+     */
+    @Override
+    public boolean isWritable() {
+        ReplayBuffer buffer = replay;
+        if (buffer != null && buffer.isFull())
             return false;
-        }
+
+        Connection current = connection;
+        return current != null && current.isWritable();
     }
 
     /**
@@ -643,25 +1026,17 @@ public final class SSLClient extends SecureClient {
         if (award_connection || operative) {
             client_name = name;
 
-            MessageOutput output = new MessageDataOutput();
+            MessageOutput output = wire.create();
             output.write("MAC", getMAC());
             output.write("COMMAND_ENABLED", true);
             output.write("COMMAND", "rename");
             output.write("ARGUMENT", client_name);
 
-            try {
-                if (debug) {
-                    console.send("Trying to inform the server about the name change request to {0}", Level.INFO, name);
-                }
-
-                byte[] compile = output.compile();
-
-                PrintWriter writer = new PrintWriter(socket.getOutputStream());
-                writer.println(new String(compile, StandardCharsets.UTF_8));
-                writer.flush();
-            } catch (Throwable ex) {
-                data_queue.add(output.compile());
+            if (debug) {
+                console.send("Trying to inform the server about the name change request to {0}", Level.INFO, name);
             }
+
+            write(output);
         }
     }
 
@@ -672,21 +1047,85 @@ public final class SSLClient extends SecureClient {
      */
     @Override
     public void send(final byte[] data) {
+        ReplayBuffer buffer = replay;
+        if (buffer != null) {
+            if (award_connection || operative || resuming) {
+                MessageOutput output = wire.create(data, MergeType.DIFFERENCE);
+                output.write("MAC", getMAC());
+                output.write("COMMAND_ENABLED", false);
+
+                synchronized (buffer) {
+                    if (!buffer.accepts()) {
+                        //Discarding the oldest messages instead would lose messages the server may have never received
+                        if (debug) {
+                            console.send("Discarding message, the replay buffer is full until the server acknowledges the pending messages", Level.GRAVE);
+                        }
+
+                        return;
+                    }
+
+                    long sequence = sent.get() + 1;
+                    output.write("SEQUENCE", sequence);
+
+                    try {
+                        ByteBuffer frame = FrameCodec.encode(metrics.encode(output));
+
+                        //Until the server accepts the client, the message is only kept for replay
+                        if (!operative || write(frame)) {
+                            buffer.add(sequence, frame);
+                            sent.set(sequence);
+                        }
+                    } catch (Throwable ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            }
+
+            return;
+        }
+
         if (award_connection || operative) {
-            MessageOutput output = new MessageDataOutput(data, MergeType.DIFFERENCE);
+            MessageOutput output = wire.create(data, MergeType.DIFFERENCE);
             output.write("MAC", getMAC());
             output.write("COMMAND_ENABLED", false);
 
-            try {
-                byte[] compile = output.compile();
+            if (write(output))
+                sent.incrementAndGet();
+        }
+    }
 
-                PrintWriter writer = new PrintWriter(socket.getOutputStream());
-                writer.println(new String(compile, StandardCharsets.UTF_8));
-                writer.flush();
-            } catch (Throwable ex) {
-                data_queue.add(output.compile());
-            }
+    /**
+     * Send a request to the server. Many requests can be
+     * waiting for their response at the same time
+     *
+     * @param data the request data
+     * @param timeout the max time to wait for the
+     *                response, 0 to wait forever
+     * @param unit the timeout unit
+     * @return the request
+     */
+    @Override
+    public Request request(final MessageOutput data, final long timeout, final TimeUnit unit) {
+        Request request = requests.create(timeout, unit);
+        if (!award_connection && !operative) {
+            requests.fail(request.getId(), new IOException("The client is not connected"));
+            return request;
         }
+
+        MessageOutput output = wire.create(data, MergeType.DIFFERENCE);
+        output.write("MAC", getMAC());
+        output.write("COMMAND_ENABLED", false);
+        output.write("REQUEST_ID", request.getId());
+
+        if (write(output)) {
+            //Requests are not sequenced when replaying, they fail once the connection is lost
+            if (replay == null)
+                sent.incrementAndGet();
+        } else {
+            requests.fail(request.getId(), new IOException("The client is not writable"));
+        }
+
+        return request;
     }
 
     /**
@@ -694,59 +1133,100 @@ public final class SSLClient extends SecureClient {
      */
     @Override
     public void close() {
-        if (operative) {
-            if (!disconnecting) {
+        boolean reconnecting = resuming;
+        if (reconnecting) {
+            //Stop reconnecting, the pending messages are discarded
+            resuming = false;
+            backoff.reset();
+
+            ReplayBuffer buffer = replay;
+            if (buffer != null)
+                buffer.clear();
+        }
+
+        Connection current = connection;
+        if (current != null && (operative || award_connection)) {
+            closing = true;
+
+            if (operative) {
                 try {
-                    MessageOutput output = new MessageDataOutput();
+                    MessageOutput output = wire.create();
                     output.write("MAC", getMAC());
                     output.write("COMMAND_ENABLED", true);
                     output.write("COMMAND", "disconnect");
                     output.write("ARGUMENT", "Client disconnect request");
 
-                    byte[] compile = output.compile();
-
-                    PrintWriter writer = new PrintWriter(socket.getOutputStream());
-                    writer.println(new String(compile, StandardCharsets.UTF_8));
-                    writer.flush();
-
-                    if (debug) {
-                        console.send("Trying to inform the server about the disconnect request. The client will wait for server response. If no response is given in 10 seconds the client will disconnect anyway", Level.INFO);
-                    }
-
-                    disconnect = 10;
-                    disconnecting = true;
-
-                    SimpleScheduler scheduler = new SourceSimpleTimer(this, 1, true).multiThreading(false);
-                    scheduler.restartAction(() -> {
-                        if (disconnecting) {
-                            if (disconnect == 0) {
-                                operative = false;
-                                award_connection = false;
-                                tryingConnect = true;
-
-                                try {
-                                    socket.close();
-                                } catch (Throwable ignored) {
-                                }
-                                socket = null;
-
-                                disconnecting = false;
-                            } else {
-                                disconnect--;
-                            }
-                        } else {
-                            scheduler.cancel();
-                        }
-                    });
+                    //The connection is closed once the server has been informed
+                    current.write(FrameCodec.encode(output.compile()), (written) -> current.close());
                 } catch (Throwable ex) {
                     ex.printStackTrace();
+                    current.close();
                 }
+            } else {
+                current.close();
             }
-        } else {
+        } else if (!reconnecting) {
             instant_close = true;
         }
     }
 
+    /**
+     * Queue a message to be sent to the server
+     *
+     * @param output the message
+     * @return if the message could be queued
+     */
+    private boolean write(final MessageOutput output) {
+        try {
+            return write(FrameCodec.encode(metrics.encode(output)));
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Queue an encoded message to be sent to the server
+     *
+     * @param frame the message frame
+     * @return if the message could be queued
+     */
+    private boolean write(final ByteBuffer frame) {
+        Connection current = connection;
+        if (current == null)
+            return false;
+
+        boolean queued = current.write(frame.duplicate());
+        if (!queued && debug) {
+            console.send("Discarding message because the server connection is not writable", Level.WARNING);
+        }
+
+        return queued;
+    }
+
+    /**
+     * Get the bytes waiting to be sent
+     *
+     * @return the queued bytes
+     */
+    private long queued() {
+        Connection current = connection;
+        return (current != null ? current.getQueued() : 0);
+    }
+
+    /**
+     * Get the messages sent since the client connected
+     * that the server has not acknowledged yet
+     *
+     * @return the pending acks
+     */
+    private long pending() {
+        if (acknowledge.getMode() == AckPolicy.Mode.NONE)
+            return 0;
+
+        return Math.max(0, sent.get() - acknowledged);
+    }
+
     /**
      * Karma source name
      *
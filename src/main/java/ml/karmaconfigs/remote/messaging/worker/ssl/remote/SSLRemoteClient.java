@@ -15,14 +15,17 @@ package ml.karmaconfigs.remote.messaging.worker.ssl.remote;
  */
 
 import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
-import ml.karmaconfigs.remote.messaging.util.message.MessageDataOutput;
+import ml.karmaconfigs.remote.messaging.util.NodeIdentity;
+import ml.karmaconfigs.remote.messaging.util.frame.FrameCodec;
 import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
 import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.worker.loop.Connection;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.PrintWriter;
 import java.net.InetAddress;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
 
 /**
  * Remote client information
@@ -33,7 +36,8 @@ public class SSLRemoteClient extends RemoteClient {
     private final String MAC;
     private final InetAddress host;
     private final int port;
-    private final Socket clientSocket;
+    private final Connection connection;
+    private final WireFormat format;
 
     /**
      * Initialize the remote client
@@ -42,14 +46,16 @@ public class SSLRemoteClient extends RemoteClient {
      * @param m the client MAC address
      * @param address the client address
      * @param incoming_port the client port
-     * @param socket the client active socket
+     * @param client_connection the client active connection
+     * @param wire the negotiated wire format
      */
-    public SSLRemoteClient(final String client, final String m, final InetAddress address, final int incoming_port, final Socket socket) {
+    public SSLRemoteClient(final String client, final String m, final InetAddress address, final int incoming_port, final Connection client_connection, final WireFormat wire) {
         name = client;
         MAC = m;
         host = address;
         port = incoming_port;
-        clientSocket = socket;
+        connection = client_connection;
+        format = wire;
     }
 
     /**
@@ -92,6 +98,37 @@ public class SSLRemoteClient extends RemoteClient {
         return port;
     }
 
+    /**
+     * Get the wire format negotiated with the client
+     *
+     * @return the client wire format
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Get if a message can be sent to the client
+     * without waiting for the previous ones to be
+     * written
+     *
+     * @return if the client is writable
+     */
+    @Override
+    public boolean isWritable() {
+        return connection.isWritable();
+    }
+
+    /**
+     * Get the amount of bytes waiting to
+     * be sent to the client
+     *
+     * @return the queued bytes
+     */
+    public long getQueued() {
+        return connection.getQueued();
+    }
+
     /**
      * Send a message to the client
      *
@@ -101,20 +138,30 @@ public class SSLRemoteClient extends RemoteClient {
     @Override
     public boolean sendMessage(final MessageOutput message) {
         try {
-            System.out.println("Sendin message");
-
-            MessageOutput output = new MessageDataOutput(message, MergeType.DIFFERENCE);
-            output.write("MAC", getMAC());
+            MessageOutput output = format.create(message, MergeType.DIFFERENCE);
+            //Clients only accept the messages that carry the server MAC
+            output.write("MAC", NodeIdentity.get());
             output.write("COMMAND_ENABLED", false);
 
-            byte[] compile = output.compile();
+            byte[] compile = connection.getMetrics().encode(output);
+            ByteBuffer buffer = FrameCodec.encode(compile);
 
-            PrintWriter writer = new PrintWriter(clientSocket.getOutputStream());
-            writer.println(new String(compile, StandardCharsets.UTF_8));
-            writer.flush();
-            return true;
+            return connection.write(buffer);
         } catch (Throwable ex) {
             return false;
         }
     }
+
+    /**
+     * Send an already encoded frame to the client
+     *
+     * @param frame the frame, compiled with the
+     *              client wire format
+     * @param done called once the frame has been written
+     *             or discarded
+     * @return if the frame could be sent
+     */
+    public boolean write(final ByteBuffer frame, final @Nullable Consumer<Boolean> done) {
+        return connection.write(frame, done);
+    }
 }
@@ -15,14 +15,15 @@ package ml.karmaconfigs.remote.messaging.worker.ssl.remote;
  */
 
 import ml.karmaconfigs.remote.messaging.remote.RemoteServer;
-import ml.karmaconfigs.remote.messaging.util.message.MessageDataOutput;
+import ml.karmaconfigs.remote.messaging.util.frame.FrameCodec;
 import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
 import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+
+import ml.karmaconfigs.remote.messaging.worker.loop.Connection;
 
-import java.io.PrintWriter;
 import java.net.InetAddress;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 
 /**
  * Remote server information
@@ -32,7 +33,8 @@ public class SSLRemoteServer extends RemoteServer {
     private final String MAC;
     private final InetAddress host;
     private final int port;
-    private final Socket serverSocket;
+    private final Connection connection;
+    private final WireFormat format;
 
     /**
      * Initialize the remote server
@@ -40,13 +42,15 @@ public class SSLRemoteServer extends RemoteServer {
      * @param m the server MAC address
      * @param address the server address
      * @param incoming_port the server port
-     * @param socket the server active socket
+     * @param server_connection the server active connection
+     * @param wire the negotiated wire format
      */
-    public SSLRemoteServer(final String m, final InetAddress address, final int incoming_port, final Socket socket) {
+    public SSLRemoteServer(final String m, final InetAddress address, final int incoming_port, final Connection server_connection, final WireFormat wire) {
         MAC = m;
         host = address;
         port = incoming_port;
-        serverSocket = socket;
+        connection = server_connection;
+        format = wire;
     }
 
     /**
@@ -79,6 +83,27 @@ public class SSLRemoteServer extends RemoteServer {
         return port;
     }
 
+    /**
+     * Get the wire format negotiated with the server
+     *
+     * @return the server wire format
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Get if a message can be sent to the server
+     * without waiting for the previous ones to be
+     * written
+     *
+     * @return if the server is writable
+     */
+    @Override
+    public boolean isWritable() {
+        return connection.isWritable();
+    }
+
     /**
      * Send a message to the server
      *
@@ -88,16 +113,14 @@ public class SSLRemoteServer extends RemoteServer {
     @Override
     public boolean sendMessage(final byte[] message) {
         try {
-            MessageOutput output = new MessageDataOutput(message, MergeType.DIFFERENCE);
+            MessageOutput output = format.create(message, MergeType.DIFFERENCE);
             output.write("MAC", getMAC());
             output.write("COMMAND_ENABLED", false);
 
             byte[] compile = output.compile();
+            ByteBuffer buffer = FrameCodec.encode(compile);
 
-            PrintWriter writer = new PrintWriter(serverSocket.getOutputStream());
-            writer.println(new String(compile, StandardCharsets.UTF_8));
-            writer.flush();
-            return true;
+            return connection.write(buffer);
         } catch (Throwable ex) {
             return false;
         }
@@ -17,47 +17,68 @@ package ml.karmaconfigs.remote.messaging.worker.tcp;
 import ml.karmaconfigs.api.common.Console;
 import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
 import ml.karmaconfigs.api.common.timer.scheduler.worker.AsyncLateScheduler;
-import ml.karmaconfigs.api.common.utils.ConcurrentList;
 import ml.karmaconfigs.api.common.utils.PrefixConsoleData;
 import ml.karmaconfigs.api.common.utils.enums.Level;
 import ml.karmaconfigs.api.common.utils.file.PathUtilities;
 import ml.karmaconfigs.api.common.utils.string.StringUtils;
 import ml.karmaconfigs.remote.messaging.platform.Server;
-import ml.karmaconfigs.remote.messaging.listener.RemoteListener;
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
 import ml.karmaconfigs.remote.messaging.listener.event.server.ClientCommandEvent;
 import ml.karmaconfigs.remote.messaging.listener.event.server.ClientConnectEvent;
 import ml.karmaconfigs.remote.messaging.listener.event.server.ClientDisconnectEvent;
 import ml.karmaconfigs.remote.messaging.listener.event.server.ClientMessageEvent;
+import ml.karmaconfigs.remote.messaging.remote.ClientRegistry;
 import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
 import ml.karmaconfigs.remote.messaging.util.DisconnectReason;
+import ml.karmaconfigs.remote.messaging.util.NodeIdentity;
 import ml.karmaconfigs.remote.messaging.util.WorkLevel;
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+import ml.karmaconfigs.remote.messaging.util.ack.AckSessions;
+import ml.karmaconfigs.remote.messaging.util.ack.AckTracker;
+import ml.karmaconfigs.remote.messaging.util.admission.AdmissionPolicy;
+import ml.karmaconfigs.remote.messaging.util.admission.AdmissionTracker;
+import ml.karmaconfigs.remote.messaging.util.frame.FrameCodec;
 import ml.karmaconfigs.remote.messaging.util.message.*;
+import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+import ml.karmaconfigs.remote.messaging.util.rpc.Responder;
+import ml.karmaconfigs.remote.messaging.worker.loop.Acceptor;
+import ml.karmaconfigs.remote.messaging.worker.loop.Connection;
+import ml.karmaconfigs.remote.messaging.worker.loop.ConnectionListener;
+import ml.karmaconfigs.remote.messaging.worker.loop.EventLoopGroup;
 import ml.karmaconfigs.remote.messaging.worker.tcp.remote.TCPRemoteClient;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.NetworkInterface;
 import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * Remote message client interface
  */
 public final class TCPServer extends Server {
     
-    private final List<MessageInput> queue = new ConcurrentList<>();
-
-    private final Map<String, RemoteClient> clients = new ConcurrentHashMap<>();
+    private final ClientRegistry<TCPRemoteClient> clients = new ClientRegistry<>();
 
     private final Set<String> banned = Collections.newSetFromMap(new ConcurrentHashMap<>());
     private final Set<String> connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Map<String, AckTracker> acks = new ConcurrentHashMap<>();
+    private final AckSessions sessions = new AckSessions(1024);
+    private final Map<String, ByteBuffer> declines = new ConcurrentHashMap<>();
+
+    private final AdmissionTracker admissions = new AdmissionTracker(AdmissionPolicy.unlimited());
+
+    private final Metrics metrics = new Metrics().queued(this::queued).acks(this::pending);
 
     private String server = "127.0.0.1";
 
@@ -67,11 +88,36 @@ public final class TCPServer extends Server {
     private boolean operative = false;
 
     private ServerSocketChannel socket;
-    private int processed = 0;
+    private Acceptor acceptor;
+    private EventLoopGroup group;
+    private int workers = 0;
 
     private String key = "";
 
+    private WireFormat format = WireFormat.BINARY;
+    private EventDispatcher dispatcher = EventDispatcher.inline();
+    private AckPolicy acknowledge = AckPolicy.each();
+    private Responder responder = null;
+    private BiConsumer<RemoteClient, Boolean> writability = null;
+
+    private int low_watermark = 32 * 1024;
+    private int high_watermark = 64 * 1024;
+    private int flush_bytes = 64 * 1024;
+    private long linger = 0;
+
     private final Console console = new Console(this);
+
+    private final ConnectionListener handler = new ConnectionListener() {
+        @Override
+        public void received(final Connection connection, final ByteBuffer data) {
+            process(connection, data);
+        }
+
+        @Override
+        public void closed(final Connection connection) {
+            release(connection);
+        }
+    };
     
     /**
      * Initialize a default client that
@@ -134,6 +180,143 @@ public final class TCPServer extends Server {
         return this;
     }
 
+    /**
+     * Set the amount of event loops the server
+     * will use to handle its clients
+     *
+     * @param threads the amount of event loops, if lower
+     *                than 1, one per available processor
+     * @return this instance
+     */
+    @Override
+    public Server workers(final int threads) {
+        workers = threads;
+
+        return this;
+    }
+
+    /**
+     * Set the preferred message wire format, the final
+     * format is negotiated with the client when connecting
+     *
+     * @param format the preferred wire format
+     * @return this instance
+     */
+    @Override
+    public Server format(final WireFormat format) {
+        this.format = format;
+
+        return this;
+    }
+
+    /**
+     * Set the executor that will call the listener
+     * events, inline by default
+     *
+     * @param executor the event dispatcher
+     * @return this instance
+     */
+    @Override
+    public Server dispatcher(final EventDispatcher executor) {
+        dispatcher = executor;
+
+        return this;
+    }
+
+    /**
+     * Set the ack policy for the clients that don't
+     * ask for one when connecting, {@link AckPolicy#each()}
+     * by default
+     *
+     * @param policy the default ack policy
+     * @return this instance
+     */
+    @Override
+    public Server acknowledge(final AckPolicy policy) {
+        acknowledge = policy;
+
+        return this;
+    }
+
+    /**
+     * Set which connections the server admits,
+     * {@link AdmissionPolicy#unlimited()} by default
+     *
+     * @param policy the admission policy
+     * @return this instance
+     */
+    @Override
+    public Server admission(final AdmissionPolicy policy) {
+        admissions.setPolicy(policy);
+
+        return this;
+    }
+
+    /**
+     * Set the handler of the client requests
+     *
+     * @param handler the request handler, null
+     *                to reject every request
+     * @return this instance
+     */
+    @Override
+    public Server respond(final @Nullable Responder handler) {
+        responder = handler;
+
+        return this;
+    }
+
+    /**
+     * Set the outbound queue watermarks of every client.
+     * Messages sent to a client whose queue is over the high
+     * watermark are rejected until the queue is drained under
+     * the low watermark
+     *
+     * @param low the low watermark, in bytes
+     * @param high the high watermark, in bytes
+     * @return this instance
+     */
+    @Override
+    public Server watermarks(final int low, final int high) {
+        low_watermark = low;
+        high_watermark = high;
+
+        return this;
+    }
+
+    /**
+     * Set how the queued messages are flushed. Messages
+     * queued together are written with a single system
+     * call, up to the byte cap
+     *
+     * @param bytes the max amount of bytes written at once
+     * @param linger the time a message waits for more messages
+     *               before being flushed, in microseconds, 0 to
+     *               flush as soon as possible
+     * @return this instance
+     */
+    @Override
+    public Server coalesce(final int bytes, final long linger) {
+        flush_bytes = bytes;
+        this.linger = linger;
+
+        return this;
+    }
+
+    /**
+     * Set the listener that is called every time a
+     * client stops or starts accepting messages
+     *
+     * @param listener the writability listener
+     * @return this instance
+     */
+    @Override
+    public Server writability(final @Nullable BiConsumer<RemoteClient, Boolean> listener) {
+        writability = listener;
+
+        return this;
+    }
+
     /**
      * Try to start the server
      *
@@ -146,231 +329,31 @@ public final class TCPServer extends Server {
 
             Thread thread = new Thread(() -> {
                 try {
-                    socket = ServerSocketChannel.open().bind(new InetSocketAddress(server, sv_port));
+                    socket = ServerSocketChannel.open().bind(new InetSocketAddress(server, sv_port), Acceptor.BACKLOG);
                     socket.configureBlocking(false);
 
-                    result.complete(true);
-
-                    operative = true;
-
-                    while (operative) {
+                    group = new EventLoopGroup("TCP Server", workers);
+                    acceptor = new Acceptor("TCP Server-acceptor", socket, admissions, this::decline, (channel) -> {
                         try {
-                            SocketChannel channel = socket.accept();
-                            if (channel != null) {
-                                new Thread(() -> {
-                                    while (channel.isConnected()) {
-                                        try {
-                                            //Allocate 512 of memory
-                                            ByteBuffer tmpBuffer = ByteBuffer.allocate(5120);
-                                            channel.read(tmpBuffer);
-
-                                            InetAddress incoming = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
-                                            int port = ((InetSocketAddress) channel.getRemoteAddress()).getPort();
-                                            String default_name = incoming.getHostAddress() + "/" + port;
-
-                                            ByteBuffer BUFFER = DataFixer.fixBuffer(tmpBuffer);
-
-                                            MessageInput input = new MessageDataInput(BUFFER.array());
-                                            if (!queue.isEmpty()) {
-                                                queue.add(input);
-                                                input = queue.get(0);
-                                            }
-
-                                            String mac = input.getString("MAC");
-
-                                            RemoteClient client = getClient(default_name, mac, incoming, port, channel);
-                                            if (input.getBoolean("COMMAND_ENABLED")) {
-                                                String command = input.getString("COMMAND");
-                                                String argument = input.getString("ARGUMENT");
-
-                                                if (command != null && argument != null) {
-                                                    switch (command.toLowerCase()) {
-                                                        case "connect":
-                                                            boolean sendDecline = true;
-                                                            boolean validKey = true;
-                                                            if (!banned.contains(mac)) {
-                                                                if (!StringUtils.isNullOrEmpty(key)) {
-                                                                    String provided = input.getString("ACCESS_KEY");
-                                                                    if (provided != null) {
-                                                                        //Basically, an 'access' password
-                                                                        validKey = provided.equals(key);
-                                                                    } else {
-                                                                        validKey = false;
-                                                                    }
-                                                                }
-
-                                                                if (validKey) {
-                                                                    sendDecline = false;
-                                                                    if (debug) {
-                                                                        console.send("Client {0} connected as {1}", Level.OK, default_name, argument);
-                                                                    }
-
-                                                                    client = new TCPRemoteClient(argument, mac, incoming, port, channel);
-                                                                    clients.put(default_name, client);
-                                                                    connections.add(default_name);
-
-                                                                    ClientConnectEvent event = new ClientConnectEvent(client, this);
-                                                                    RemoteListener.callServerEvent(event);
-
-                                                                    MessageOutput output = new MessageDataOutput();
-                                                                    output.write("MAC", getMAC());
-                                                                    output.write("COMMAND_ENABLED", true);
-                                                                    output.write("COMMAND", "accept");
-
-                                                                    byte[] compile = output.compile();
-                                                                    ByteBuffer writeBuffer = ByteBuffer.wrap(compile);
-
-                                                                    channel.write(writeBuffer);
-                                                                }
-                                                            }
-
-                                                            if (sendDecline) {
-                                                                MessageOutput output = new MessageDataOutput();
-                                                                output.write("MAC", getMAC());
-                                                                output.write("COMMAND_ENABLED", true);
-                                                                output.write("COMMAND", "decline");
-                                                                output.write("ARGUMENT", "connect");
-                                                                output.write("COMMAND_ARGUMENT", (validKey ? "You are banned from this server!" : "The provided access key is not valid for this server!"));
-
-                                                                byte[] compile = output.compile();
-                                                                ByteBuffer writeBuffer = ByteBuffer.wrap(compile);
-
-                                                                channel.write(writeBuffer);
-                                                            }
-                                                            break;
-                                                        case "rename":
-                                                            if (connections.contains(default_name)) {
-                                                                if (debug) {
-                                                                    console.send("Client {0} is now known as {1}", Level.WARNING, client.getName(), argument);
-                                                                }
-
-                                                                client = new TCPRemoteClient(argument, mac, incoming, port, channel);
-                                                                clients.put(default_name, client);
-
-                                                                ClientCommandEvent event = new ClientCommandEvent(client, this, command, argument);
-                                                                RemoteListener.callServerEvent(event);
-
-                                                                MessageOutput output = new MessageDataOutput();
-                                                                output.write("MAC", getMAC());
-                                                                output.write("COMMAND_ENABLED", true);
-                                                                output.write("COMMAND", "success");
-                                                                output.write("ARGUMENT", "rename");
-                                                                output.write("ARGUMENT_DATA", argument);
-
-                                                                byte[] compile = output.compile();
-                                                                ByteBuffer writeBuffer = ByteBuffer.wrap(compile);
-
-                                                                channel.write(writeBuffer);
-                                                            } else {
-                                                                MessageOutput output = new MessageDataOutput();
-                                                                output.write("MAC", getMAC());
-                                                                output.write("COMMAND_ENABLED", true);
-                                                                output.write("COMMAND", "failed");
-                                                                output.write("ARGUMENT", "rename");
-                                                                output.write("ARGUMENT_DATA", argument + "," + "You are not connected to this server!");
-
-                                                                byte[] compile = output.compile();
-                                                                ByteBuffer writeBuffer = ByteBuffer.wrap(compile);
-
-                                                                channel.write(writeBuffer);
-                                                            }
-                                                            break;
-                                                        case "disconnect":
-                                                            if (connections.contains(default_name)) {
-                                                                if (debug) {
-                                                                    console.send("Client {0} left the server ( {1} )", Level.WARNING, client.getName(), argument);
-                                                                }
-
-                                                                clients.remove(default_name);
-                                                                connections.remove(default_name);
-
-                                                                ClientDisconnectEvent event = new ClientDisconnectEvent(client, this, DisconnectReason.KILLED_BY_CLIENT, argument);
-                                                                RemoteListener.callServerEvent(event);
-                                                            } else {
-                                                                MessageOutput output = new MessageDataOutput();
-                                                                output.write("MAC", getMAC());
-                                                                output.write("COMMAND_ENABLED", true);
-                                                                output.write("COMMAND", "failed");
-                                                                output.write("ARGUMENT", "disconnect");
-                                                                output.write("ARGUMENT_DATA", "You are not connected to this server!");
-
-                                                                byte[] compile = output.compile();
-                                                                ByteBuffer writeBuffer = ByteBuffer.wrap(compile);
-
-                                                                channel.write(writeBuffer);
-                                                            }
-                                                            break;
-                                                        default:
-                                                            if (connections.contains(default_name)) {
-                                                                if (debug) {
-                                                                    console.send("Unknown command from {0}: {1} ( {2} )", Level.WARNING, client.getName(), command, argument);
-                                                                }
-
-                                                                ClientCommandEvent event = new ClientCommandEvent(client, this, command, argument);
-                                                                RemoteListener.callServerEvent(event);
-                                                            } else {
-                                                                MessageOutput output = new MessageDataOutput();
-                                                                output.write("MAC", getMAC());
-                                                                output.write("COMMAND_ENABLED", true);
-                                                                output.write("COMMAND", "failed");
-                                                                output.write("ARGUMENT", "unknown");
-                                                                output.write("ARGUMENT_DATA", command + "," + argument + "," + "You are not connected to this server!");
-
-                                                                byte[] compile = output.compile();
-                                                                ByteBuffer writeBuffer = ByteBuffer.wrap(compile);
-
-                                                                channel.write(writeBuffer);
-                                                            }
-                                                            break;
-                                                    }
-                                                }
-                                            } else {
-                                                if (connections.contains(default_name)) {
-                                                    MessageOutput output = new MessageDataOutput();
-                                                    output.write("MAC", getMAC());
-                                                    output.write("COMMAND_ENABLED", true);
-                                                    output.write("COMMAND", "success");
-                                                    output.write("ARGUMENT", "message");
-                                                    output.write("ARGUMENT_DATA", client.getName());
-
-                                                    byte[] compile = output.compile();
-                                                    ByteBuffer writeBuffer = ByteBuffer.wrap(compile);
-
-                                                    channel.write(writeBuffer);
-
-                                                    ClientMessageEvent event = new ClientMessageEvent(client, this, input);
-                                                    RemoteListener.callServerEvent(event);
-                                                } else {
-                                                    if (debug) {
-                                                        console.send("Denying message from {0} because he's not connected to server", Level.INFO, default_name);
-                                                    }
-
-                                                    MessageOutput output = new MessageDataOutput();
-                                                    output.write("MAC", getMAC());
-                                                    output.write("COMMAND_ENABLED", true);
-                                                    output.write("COMMAND", "failed");
-                                                    output.write("ARGUMENT", "message");
-                                                    output.write("ARGUMENT_DATA", "You are not connected to this server!");
-
-                                                    byte[] compile = output.compile();
-                                                    ByteBuffer writeBuffer = ByteBuffer.wrap(compile);
-
-                                                    channel.write(writeBuffer);
-                                                }
-                                            }
-                                        } catch (Throwable ex) {
-                                            ex.printStackTrace();
-                                        }
-
-                                        processed++;
-                                    }
-                                }).start();
-                            }
+                            Connection connection = new Connection(group.next(), channel, handler);
+                            connection.metrics(metrics);
+                            connection.watermarks(low_watermark, high_watermark);
+                            connection.coalesce(flush_bytes, linger);
+                            connection.onWritability((status) -> writable(connection, status));
+                            connection.open();
                         } catch (Throwable ex) {
-                            ex.printStackTrace();
-                            System.exit(1);
+                            throw new IllegalStateException(ex);
                         }
-                    }
+                    });
+                    acceptor.onDecline((address, reason) -> {
+                        if (debug) {
+                            console.send("Declined connection from {0} ( {1} )", Level.WARNING, address, reason);
+                        }
+                    });
+
+                    operative = true;
+
+                    result.complete(true);
                 } catch (Throwable ex) {
                     result.complete(false);
                 }
@@ -424,21 +407,7 @@ public final class TCPServer extends Server {
      */
     @Override
     public String getMAC() {
-        try {
-            NetworkInterface network = NetworkInterface.getByInetAddress(InetAddress.getLocalHost());
-            byte[] macArray = network.getHardwareAddress();
-
-            StringBuilder str = new StringBuilder();
-            for (int i = 0; i < macArray.length; i++) {
-                str.append(String.format("%02X%s", macArray[i], (i < macArray.length - 1) ? ":" : ""));
-            }
-
-            return str.toString();
-        } catch (Throwable ex) {
-            System.out.println("Failed to locate MAC address...");
-            System.exit(1);
-            return null;
-        }
+        return NodeIdentity.get();
     }
 
     /**
@@ -482,6 +451,16 @@ public final class TCPServer extends Server {
         return WorkLevel.TCP;
     }
 
+    /**
+     * Get the server metrics
+     *
+     * @return the server metrics
+     */
+    @Override
+    public Metrics metrics() {
+        return metrics;
+    }
+
     /**
      * Close the connection
      */
@@ -489,6 +468,18 @@ public final class TCPServer extends Server {
     public void close() {
         operative = false;
 
+        if (acceptor != null) {
+            acceptor.shutdown();
+        }
+        if (group != null) {
+            group.shutdown();
+        }
+
+        //The clients can resume their sessions once the server starts again
+        for (String default_name : new ArrayList<>(acks.keySet())) {
+            sessions.retain(default_name, acks.remove(default_name));
+        }
+
         try {
             socket.close();
         } catch (Throwable ex) {
@@ -542,133 +533,537 @@ public final class TCPServer extends Server {
      * Send a message to each connected client
      *
      * @param data the data to send
+     * @param report called for each client with if the
+     *               message could be sent to it or not, it
+     *               may be called from an I/O thread
+     * @return the amount of clients the message has
+     * been sent to
      */
     @Override
-    public void broadcast(final MessageOutput data) {
-        int max = queue.size();
-        int expected = processed + max;
-        new Thread(() -> {
-            long wait = 0;
+    public LateScheduler<Integer> broadcast(final MessageOutput data, final @Nullable BiConsumer<RemoteClient, Boolean> report) {
+        List<TCPRemoteClient> targets = new ArrayList<>();
+        for (String default_name : connections) {
+            TCPRemoteClient client = clients.get(default_name);
+            if (client != null)
+                targets.add(client);
+        }
 
-            //Before doing anything, we must make sure the queue is not busy, if that's the case
-            //the server will keep this thread busy until it can proceed, based on the moment max tasks
-            //and on the moment executed tasks
-            while (processed < expected) {
-                wait++;
-            }
+        return send("everyone", targets, data, report);
+    }
 
-            if (debug) {
-                long sec = TimeUnit.MILLISECONDS.toSeconds(wait);
+    /**
+     * Redirect a message to the specified client
+     *
+     * @param name the client name or MAC address
+     * @param data the message
+     * @param report called for each client with if the
+     *               message could be sent to it or not, it
+     *               may be called from an I/O thread
+     * @return the amount of clients the message has
+     * been sent to
+     */
+    @Override
+    public LateScheduler<Integer> redirect(final String name, final MessageOutput data, final @Nullable BiConsumer<RemoteClient, Boolean> report) {
+        List<TCPRemoteClient> targets = new ArrayList<>();
+        for (TCPRemoteClient client : clients.find(name)) {
+            if (connections.contains(ClientRegistry.address(client)))
+                targets.add(client);
+        }
 
-                console.send("Sent message to everyone after {0} {1}", Level.OK, (sec > 0 ? sec : wait), (sec > 0 ? "seconds" : "ms"));
-            }
+        return send(name, targets, data, report);
+    }
 
-            for (RemoteClient client : clients.values()) {
-                client.sendMessage(data);
-            }
-        }).start();
+    /**
+     * Ban an address from the server
+     *
+     * @param macAddresses the addresses to ban
+     */
+    @Override
+    public void ban(final String... macAddresses) {
+        banned.addAll(Arrays.asList(macAddresses));
+
+        for (String mac : macAddresses) {
+            for (TCPRemoteClient client : clients.byMAC(mac))
+                disconnect(client, "You have been banned from this server!");
+        }
     }
 
     /**
-     * Redirect a message to the specified client
+     * Kick an address from the server
      *
-     * @param name the client name
-     * @param data the message
+     * @param macAddresses the addresses to kick
      */
     @Override
-    public void redirect(final String name, final MessageOutput data) {
-        int max = queue.size();
-        int expected = processed + max;
-        new Thread(() -> {
-            long wait = 0;
+    public void kick(final String... macAddresses) {
+        for (String mac : macAddresses) {
+            for (TCPRemoteClient client : clients.byMAC(mac))
+                disconnect(client, "You have been kicked from this server!");
+        }
+    }
+
+    /**
+     * Unban an address from the server
+     *
+     * @param macAddresses the addresses to unban
+     */
+    @Override
+    public void unBan(final String... macAddresses) {
+        Arrays.asList(macAddresses).forEach(banned::remove);
+    }
+
+    /**
+     * Process the data received from a client
+     *
+     * @param connection the client connection
+     * @param data the received data
+     */
+    private void process(final Connection connection, final ByteBuffer data) {
+        try {
+            InetAddress incoming = connection.getRemote().getAddress();
+            int port = connection.getRemote().getPort();
+            String default_name = ClientRegistry.address(incoming, port);
+
+            MessageInput input = metrics.decode(data);
+
+            String mac = input.getString("MAC");
+
+            TCPRemoteClient client = getClient(default_name, mac, incoming, port, connection);
+            WireFormat wire = client.getFormat();
+            if (input.getBoolean("COMMAND_ENABLED")) {
+                String command = input.getString("COMMAND");
+                String argument = input.getString("ARGUMENT");
+
+                if (command != null && argument != null) {
+                    switch (command.toLowerCase()) {
+                        case "connect":
+                            String declined = null;
+                            boolean validKey = true;
+                            if (mac == null) {
+                                declined = "The client did not identify itself!";
+                            } else if (banned.contains(mac)) {
+                                declined = "You are banned from this server!";
+                            } else {
+                                if (!StringUtils.isNullOrEmpty(key)) {
+                                    String provided = input.getString("ACCESS_KEY");
+                                    if (provided != null) {
+                                        //Basically, an 'access' password
+                                        validKey = provided.equals(key);
+                                    } else {
+                                        validKey = false;
+                                    }
+                                }
+
+                                if (!validKey) {
+                                    declined = "The provided access key is not valid for this server!";
+                                } else {
+                                    declined = admissions.identify(connection.getRemote(), mac);
+                                }
+
+                                if (declined == null) {
+                                    if (debug) {
+                                        console.send("Client {0} connected as {1}", Level.OK, default_name, argument);
+                                    }
+
+                                    wire = WireFormat.SERIALIZED;
+                                    if (format == WireFormat.BINARY && WireFormat.fromName(input.getString("WIRE_FORMAT")) == WireFormat.BINARY)
+                                        wire = WireFormat.BINARY;
+
+                                    AckPolicy policy = AckPolicy.read(input);
+                                    if (policy == null)
+                                        policy = acknowledge;
+
+                                    client = new TCPRemoteClient(argument, mac, incoming, port, connection, wire);
+                                    clients.put(default_name, client);
+                                    connections.add(default_name);
+                                    acks.put(default_name, sessions.resume(default_name, input.getString("SESSION"), policy));
+
+                                    ClientConnectEvent event = new ClientConnectEvent(client, this);
+                                    dispatcher.dispatch(default_name, event, metrics);
 
-            //Before doing anything, we must make sure the queue is not busy, if that's the case
-            //the server will keep this thread busy until it can proceed, based on the moment max tasks
-            //and on the moment executed tasks
-            while (processed < expected) {
-                wait++;
+                                    //The handshake is always serialized, so clients that don't know the binary format can read it
+                                    MessageOutput output = new MessageDataOutput();
+                                    output.write("MAC", getMAC());
+                                    output.write("COMMAND_ENABLED", true);
+                                    output.write("COMMAND", "accept");
+                                    output.write("WIRE_FORMAT", wire.name());
+
+                                    byte[] compile = output.compile();
+                                    ByteBuffer writeBuffer = FrameCodec.encode(compile);
+
+                                    connection.write(writeBuffer);
+                                }
+                            }
+
+                            if (declined != null) {
+                                if (debug) {
+                                    console.send("Declined connection from {0} ( {1} )", Level.WARNING, default_name, declined);
+                                }
+
+                                connection.finish(decline(declined));
+                            }
+                            break;
+                        case "rename":
+                            if (connections.contains(default_name)) {
+                                if (debug) {
+                                    console.send("Client {0} is now known as {1}", Level.WARNING, client.getName(), argument);
+                                }
+
+                                client = new TCPRemoteClient(argument, mac, incoming, port, connection, wire);
+                                clients.put(default_name, client);
+
+                                ClientCommandEvent event = new ClientCommandEvent(client, this, command, argument);
+                                dispatcher.dispatch(default_name, event, metrics);
+
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "success");
+                                output.write("ARGUMENT", "rename");
+                                output.write("ARGUMENT_DATA", argument);
+
+                                byte[] compile = output.compile();
+                                ByteBuffer writeBuffer = FrameCodec.encode(compile);
+
+                                connection.write(writeBuffer);
+                            } else {
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "failed");
+                                output.write("ARGUMENT", "rename");
+                                output.write("ARGUMENT_DATA", argument + "," + "You are not connected to this server!");
+
+                                byte[] compile = output.compile();
+                                ByteBuffer writeBuffer = FrameCodec.encode(compile);
+
+                                connection.write(writeBuffer);
+                            }
+                            break;
+                        case "disconnect":
+                            if (connections.contains(default_name)) {
+                                if (debug) {
+                                    console.send("Client {0} left the server ( {1} )", Level.WARNING, client.getName(), argument);
+                                }
+
+                                clients.remove(default_name);
+                                connections.remove(default_name);
+                                acks.remove(default_name);
+                                sessions.forget(default_name);
+
+                                ClientDisconnectEvent event = new ClientDisconnectEvent(client, this, DisconnectReason.KILLED_BY_CLIENT, argument);
+                                dispatcher.dispatch(default_name, event, metrics);
+                            } else {
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "failed");
+                                output.write("ARGUMENT", "disconnect");
+                                output.write("ARGUMENT_DATA", "You are not connected to this server!");
+
+                                byte[] compile = output.compile();
+                                ByteBuffer writeBuffer = FrameCodec.encode(compile);
+
+                                connection.write(writeBuffer);
+                            }
+                            break;
+                        default:
+                            if (connections.contains(default_name)) {
+                                if (debug) {
+                                    console.send("Unknown command from {0}: {1} ( {2} )", Level.WARNING, client.getName(), command, argument);
+                                }
+
+                                ClientCommandEvent event = new ClientCommandEvent(client, this, command, argument);
+                                dispatcher.dispatch(default_name, event, metrics);
+                            } else {
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "failed");
+                                output.write("ARGUMENT", "unknown");
+                                output.write("ARGUMENT_DATA", command + "," + argument + "," + "You are not connected to this server!");
+
+                                byte[] compile = output.compile();
+                                ByteBuffer writeBuffer = FrameCodec.encode(compile);
+
+                                connection.write(writeBuffer);
+                            }
+                            break;
+                    }
+                }
+            } else {
+                if (connections.contains(default_name)) {
+                    AckTracker tracker = acks.get(default_name);
+                    Number sequence = input.getNumber("SEQUENCE");
+                    boolean duplicate = false;
+                    if (tracker != null) {
+                        if (sequence != null && !tracker.follows(sequence.longValue())) {
+                            if (debug) {
+                                console.send("Closing connection of {0}, message #{1} skips messages that were not received", Level.WARNING, client.getName(), sequence);
+                            }
+
+                            //The client replays every message after the last acknowledged one once it reconnects
+                            connection.close();
+                            return;
+                        }
+
+                        if (sequence != null)
+                            duplicate = !tracker.sequence(sequence.longValue());
+
+                        if (duplicate) {
+                            acknowledge(client, tracker);
+                        } else if (sequence != null || !tracker.isSequenced()) {
+                            if (tracker.received()) {
+                                acknowledge(client, tracker);
+                            } else {
+                                if (tracker.schedule()) {
+                                    TCPRemoteClient owner = client;
+                                    connection.getLoop().schedule(() -> acknowledge(owner, tracker), tracker.getPolicy().getInterval(), TimeUnit.MILLISECONDS);
+                                }
+                            }
+                        }
+                    }
+
+                    if (duplicate) {
+                        if (debug) {
+                            console.send("Dropping message #{0} from {1}, it has already been received", Level.INFO, sequence, client.getName());
+                        }
+                    } else {
+                        Number request = input.getNumber("REQUEST_ID");
+                        if (request != null) {
+                            respond(client, request.longValue(), input);
+                        } else {
+                            ClientMessageEvent event = new ClientMessageEvent(client, this, input);
+                            dispatcher.dispatch(default_name, event, metrics);
+                        }
+                    }
+                } else {
+                    if (debug) {
+                        console.send("Denying message from {0} because he's not connected to server", Level.INFO, default_name);
+                    }
+
+                    MessageOutput output = wire.create();
+                    output.write("MAC", getMAC());
+                    output.write("COMMAND_ENABLED", true);
+                    output.write("COMMAND", "failed");
+                    output.write("ARGUMENT", "message");
+                    output.write("ARGUMENT_DATA", "You are not connected to this server!");
+
+                    byte[] compile = output.compile();
+                    ByteBuffer writeBuffer = FrameCodec.encode(compile);
+
+                    connection.write(writeBuffer);
+                }
             }
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+        }
+    }
 
-            if (debug) {
-                long sec = TimeUnit.MILLISECONDS.toSeconds(wait);
-                console.send("Sent message to {0} after {1} {2}", Level.OK, name, (sec > 0 ? sec : wait), (sec > 0 ? "seconds" : "ms"));
+    /**
+     * Send a message to the target clients. The message
+     * is compiled once per wire format and the same frame
+     * is shared by every target
+     *
+     * @param name the targets name, for debug
+     * @param targets the target clients
+     * @param data the message
+     * @param report the per client result listener
+     * @return the amount of clients the message has
+     * been sent to
+     */
+    private LateScheduler<Integer> send(final String name, final List<TCPRemoteClient> targets, final MessageOutput data, final @Nullable BiConsumer<RemoteClient, Boolean> report) {
+        LateScheduler<Integer> result = new AsyncLateScheduler<>();
+        if (targets.isEmpty()) {
+            result.complete(0);
+            return result;
+        }
+
+        ByteBuffer[] frames = new ByteBuffer[WireFormat.values().length];
+        AtomicInteger remaining = new AtomicInteger(targets.size());
+        AtomicInteger sent = new AtomicInteger(0);
+
+        for (TCPRemoteClient client : targets) {
+            WireFormat wire = client.getFormat();
+
+            ByteBuffer frame = frames[wire.ordinal()];
+            if (frame == null) {
+                MessageOutput output = wire.create(data, MergeType.DIFFERENCE);
+                output.write("MAC", getMAC());
+                output.write("COMMAND_ENABLED", false);
+
+                frame = FrameCodec.encode(metrics.encode(output)).asReadOnlyBuffer();
+                frames[wire.ordinal()] = frame;
             }
 
-            for (RemoteClient client : clients.values()) {
-                if (client.getName().equals(name) || client.getMAC().equals(name)) {
-                    client.sendMessage(data);
+            client.write(frame.duplicate(), (written) -> {
+                if (written)
+                    sent.incrementAndGet();
+
+                if (report != null) {
+                    try {
+                        report.accept(client, written);
+                    } catch (Throwable ex) {
+                        ex.printStackTrace();
+                    }
                 }
+
+                if (remaining.decrementAndGet() == 0) {
+                    if (debug) {
+                        console.send("Sent message to {0} ( {1} of {2} clients )", Level.OK, name, sent.get(), targets.size());
+                    }
+
+                    result.complete(sent.get());
+                }
+            });
+        }
+
+        return result;
+    }
+
+    /**
+     * Acknowledge the messages received from a client
+     *
+     * @param client the client
+     * @param tracker the client ack state
+     */
+    private void acknowledge(final TCPRemoteClient client, final AckTracker tracker) {
+        long sequence = tracker.acknowledge();
+        if (sequence == -1)
+            return;
+
+        MessageOutput output = client.getFormat().create();
+        output.write("MAC", getMAC());
+        output.write("COMMAND_ENABLED", true);
+        output.write("COMMAND", "success");
+        output.write("ARGUMENT", "message");
+        output.write("ARGUMENT_DATA", client.getName());
+        output.write("ACK_SEQUENCE", sequence);
+
+        client.write(FrameCodec.encode(output.compile()), null);
+    }
+
+    /**
+     * Answer a client request
+     *
+     * @param client the client
+     * @param id the request id
+     * @param request the request
+     */
+    private void respond(final TCPRemoteClient client, final long id, final MessageInput request) {
+        LateScheduler<MessageOutput> response = new AsyncLateScheduler<>();
+        response.whenComplete((output, error) -> {
+            MessageOutput reply = (output != null ? client.getFormat().create(output, MergeType.DIFFERENCE) : client.getFormat().create());
+            reply.write("MAC", getMAC());
+            reply.write("COMMAND_ENABLED", false);
+            reply.write("RESPONSE_ID", id);
+            if (error != null || output == null) {
+                reply.write("RESPONSE_ERROR", (error != null ? String.valueOf(error.getMessage()) : "Empty response"));
             }
-        }).start();
 
-        /*
-        Old method, efficient but had some problems
+            client.write(FrameCodec.encode(metrics.encode(reply)), null);
+        });
 
-        if (queue.isEmpty()) {
-            for (RemoteClient client : clients.values()) {
-                System.out.println(client.getName() + "/" + client.getMAC());
+        Responder handler = responder;
+        if (handler == null) {
+            response.complete(null, new UnsupportedOperationException("The server does not accept requests"));
+            return;
+        }
 
-                if (client.getName().equals(name) || client.getMAC().equals(name)) {
-                    client.sendMessage(data);
-                }
+        dispatcher.dispatch(ClientRegistry.address(client), () -> {
+            try {
+                handler.respond(client, request, response);
+            } catch (Throwable ex) {
+                response.complete(null, ex);
             }
-        }*/
+        }, metrics);
     }
 
     /**
-     * Ban an address from the server
+     * Ask a client to disconnect
      *
-     * @param macAddresses the addresses to ban
+     * @param client the client
+     * @param reason the disconnect reason
      */
-    @Override
-    public void ban(final String... macAddresses) {
-        banned.addAll(Arrays.asList(macAddresses));
+    private void disconnect(final TCPRemoteClient client, final String reason) {
+        MessageOutput output = client.getFormat().create();
+        output.write("MAC", getMAC());
+        output.write("COMMAND_ENABLED", true);
+        output.write("COMMAND", "DISCONNECT");
+        output.write("ARGUMENT", "");
+        output.write("ARGUMENT_DATA", reason);
+
+        client.write(FrameCodec.encode(output.compile()), null);
+    }
 
-        for (RemoteClient client : clients.values()) {
-            if (banned.contains(client.getMAC())) {
-                MessageOutput output = new MessageDataOutput();
-                output.write("MAC", getMAC());
-                output.write("COMMAND_ENABLED", true);
-                output.write("COMMAND", "DISCONNECT");
-                output.write("ARGUMENT", "");
-                output.write("ARGUMENT_DATA", "You have been banned from this server!");
+    /**
+     * Notify the writability change of a client
+     *
+     * @param connection the client connection
+     * @param status if the client is writable
+     */
+    private void writable(final Connection connection, final boolean status) {
+        BiConsumer<RemoteClient, Boolean> listener = writability;
+        if (listener == null)
+            return;
+
+        InetSocketAddress address = connection.getRemote();
+        String default_name = ClientRegistry.address(address.getAddress(), address.getPort());
 
-                client.sendMessage(output);
+        TCPRemoteClient client = clients.get(default_name);
+        if (client != null && connections.contains(default_name)) {
+            if (debug) {
+                console.send("Client {0} is {1} writable", Level.INFO, client.getName(), (status ? "now" : "no longer"));
             }
+
+            listener.accept(client, status);
         }
     }
 
     /**
-     * Kick an address from the server
+     * Remove the client of a closed connection
      *
-     * @param macAddresses the addresses to kick
+     * @param connection the client connection
      */
-    @Override
-    public void kick(final String... macAddresses) {
-        List<String> macs = Arrays.asList(macAddresses);
+    private void release(final Connection connection) {
+        InetSocketAddress address = connection.getRemote();
+        String default_name = ClientRegistry.address(address.getAddress(), address.getPort());
 
-        for (RemoteClient client : clients.values()) {
-            if (macs.contains(client.getMAC())) {
-                MessageOutput output = new MessageDataOutput();
-                output.write("MAC", getMAC());
-                output.write("COMMAND_ENABLED", true);
-                output.write("COMMAND", "DISCONNECT");
-                output.write("ARGUMENT", "");
-                output.write("ARGUMENT_DATA", "You have been kicked from this server!");
+        admissions.release(address);
 
-                client.sendMessage(output);
+        RemoteClient client = clients.remove(default_name);
+        sessions.retain(default_name, acks.remove(default_name));
+        if (connections.remove(default_name) && client != null) {
+            if (debug) {
+                console.send("Client {0} left the server ( {1} )", Level.WARNING, client.getName(), "Connection closed");
             }
+
+            ClientDisconnectEvent event = new ClientDisconnectEvent(client, this, DisconnectReason.UNKNOWN, "Connection closed");
+            dispatcher.dispatch(default_name, event, metrics);
         }
     }
 
     /**
-     * Unban an address from the server
+     * Get the frame that declines a connection. The
+     * frame is always serialized, so clients that don't know
+     * the binary format can read it, and it's compiled only once
+     * per reason
      *
-     * @param macAddresses the addresses to unban
+     * @param reason the decline reason
+     * @return the decline frame
      */
-    @Override
-    public void unBan(final String... macAddresses) {
-        Arrays.asList(macAddresses).forEach(banned::remove);
+    private ByteBuffer decline(final String reason) {
+        ByteBuffer frame = declines.computeIfAbsent(reason, (argument) -> {
+            MessageOutput output = new MessageDataOutput();
+            output.write("MAC", getMAC());
+            output.write("COMMAND_ENABLED", true);
+            output.write("COMMAND", "decline");
+            output.write("ARGUMENT", "connect");
+            output.write("COMMAND_ARGUMENT", argument);
+
+            return FrameCodec.encode(output.compile()).asReadOnlyBuffer();
+        });
+
+        return frame.duplicate();
     }
 
     /**
@@ -677,19 +1072,49 @@ public final class TCPServer extends Server {
      * @param name the client name
      * @param address the client address
      * @param port the client port
-     * @param socket the client socket
+     * @param connection the client connection
      * @return the client
      */
-    private RemoteClient getClient(final String name, final String mac, final InetAddress address, final int port, final SocketChannel socket) {
-        RemoteClient client = clients.getOrDefault(address.getHostAddress() + "/" + port, null);
+    private TCPRemoteClient getClient(final String name, final String mac, final InetAddress address, final int port, final Connection connection) {
+        String default_name = ClientRegistry.address(address, port);
+
+        TCPRemoteClient client = clients.get(default_name);
         if (client == null) {
-            client = new TCPRemoteClient(name, mac, address, port, socket);
-            clients.put(address.getHostAddress() + "/" + port, client);
+            client = new TCPRemoteClient(name, mac, address, port, connection, WireFormat.SERIALIZED);
+            clients.put(default_name, client);
         }
 
         return client;
     }
 
+    /**
+     * Get the bytes waiting to be sent
+     * to every client
+     *
+     * @return the queued bytes
+     */
+    private long queued() {
+        long queued = 0;
+        for (TCPRemoteClient client : clients.values())
+            queued += client.getQueued();
+
+        return queued;
+    }
+
+    /**
+     * Get the messages received from every client
+     * that have not been acknowledged yet
+     *
+     * @return the pending acks
+     */
+    private long pending() {
+        long pending = 0;
+        for (AckTracker tracker : acks.values())
+            pending += tracker.getPending();
+
+        return pending;
+    }
+
     /**
      * Karma source name
      *
@@ -15,13 +15,17 @@ package ml.karmaconfigs.remote.messaging.worker.tcp.remote;
  */
 
 import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
-import ml.karmaconfigs.remote.messaging.util.message.MessageDataOutput;
+import ml.karmaconfigs.remote.messaging.util.NodeIdentity;
+import ml.karmaconfigs.remote.messaging.util.frame.FrameCodec;
 import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
 import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.worker.loop.Connection;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
 
 /**
  * Remote client information
@@ -32,7 +36,8 @@ public final class TCPRemoteClient extends RemoteClient {
     private final String MAC;
     private final InetAddress host;
     private final int port;
-    private final SocketChannel clientSocket;
+    private final Connection connection;
+    private final WireFormat format;
 
     /**
      * Initialize the remote client
@@ -41,14 +46,16 @@ public final class TCPRemoteClient extends RemoteClient {
      * @param m the client MAC address
      * @param address the client address
      * @param incoming_port the client port
-     * @param socket the client active socket
+     * @param client_connection the client active connection
+     * @param wire the negotiated wire format
      */
-    public TCPRemoteClient(final String client, final String m, final InetAddress address, final int incoming_port, final SocketChannel socket) {
+    public TCPRemoteClient(final String client, final String m, final InetAddress address, final int incoming_port, final Connection client_connection, final WireFormat wire) {
         name = client;
         MAC = m;
         host = address;
         port = incoming_port;
-        clientSocket = socket;
+        connection = client_connection;
+        format = wire;
     }
 
     /**
@@ -91,6 +98,37 @@ public final class TCPRemoteClient extends RemoteClient {
         return port;
     }
 
+    /**
+     * Get the wire format negotiated with the client
+     *
+     * @return the client wire format
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Get if a message can be sent to the client
+     * without waiting for the previous ones to be
+     * written
+     *
+     * @return if the client is writable
+     */
+    @Override
+    public boolean isWritable() {
+        return connection.isWritable();
+    }
+
+    /**
+     * Get the amount of bytes waiting to
+     * be sent to the client
+     *
+     * @return the queued bytes
+     */
+    public long getQueued() {
+        return connection.getQueued();
+    }
+
     /**
      * Send a message to the client
      *
@@ -100,17 +138,30 @@ public final class TCPRemoteClient extends RemoteClient {
     @Override
     public boolean sendMessage(final MessageOutput message) {
         try {
-            MessageOutput output = new MessageDataOutput(message, MergeType.DIFFERENCE);
-            output.write("MAC", getMAC());
+            MessageOutput output = format.create(message, MergeType.DIFFERENCE);
+            //Clients only accept the messages that carry the server MAC
+            output.write("MAC", NodeIdentity.get());
             output.write("COMMAND_ENABLED", false);
 
-            byte[] compile = output.compile();
-            ByteBuffer buffer = ByteBuffer.wrap(compile);
+            byte[] compile = connection.getMetrics().encode(output);
+            ByteBuffer buffer = FrameCodec.encode(compile);
 
-            clientSocket.write(buffer);
-            return true;
+            return connection.write(buffer);
         } catch (Throwable ex) {
             return false;
         }
     }
+
+    /**
+     * Send an already encoded frame to the client
+     *
+     * @param frame the frame, compiled with the
+     *              client wire format
+     * @param done called once the frame has been written
+     *             or discarded
+     * @return if the frame could be sent
+     */
+    public boolean write(final ByteBuffer frame, final @Nullable Consumer<Boolean> done) {
+        return connection.write(frame, done);
+    }
 }
@@ -15,13 +15,15 @@ package ml.karmaconfigs.remote.messaging.worker.tcp.remote;
  */
 
 import ml.karmaconfigs.remote.messaging.remote.RemoteServer;
-import ml.karmaconfigs.remote.messaging.util.message.MessageDataOutput;
+import ml.karmaconfigs.remote.messaging.util.frame.FrameCodec;
 import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
 import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+
+import ml.karmaconfigs.remote.messaging.worker.loop.Connection;
 
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
 
 /**
  * Remote server information
@@ -31,7 +33,8 @@ public final class TCPRemoteServer extends RemoteServer {
     private final String MAC;
     private final InetAddress host;
     private final int port;
-    private final SocketChannel serverSocket;
+    private final Connection connection;
+    private final WireFormat format;
 
     /**
      * Initialize the remote server
@@ -39,13 +42,15 @@ public final class TCPRemoteServer extends RemoteServer {
      * @param m the server MAC address
      * @param address the server address
      * @param incoming_port the server port
-     * @param socket the server active socket
+     * @param server_connection the server active connection
+     * @param wire the negotiated wire format
      */
-    public TCPRemoteServer(final String m, final InetAddress address, final int incoming_port, final SocketChannel socket) {
+    public TCPRemoteServer(final String m, final InetAddress address, final int incoming_port, final Connection server_connection, final WireFormat wire) {
         MAC = m;
         host = address;
         port = incoming_port;
-        serverSocket = socket;
+        connection = server_connection;
+        format = wire;
     }
 
     /**
@@ -78,6 +83,27 @@ public final class TCPRemoteServer extends RemoteServer {
         return port;
     }
 
+    /**
+     * Get the wire format negotiated with the server
+     *
+     * @return the server wire format
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Get if a message can be sent to the server
+     * without waiting for the previous ones to be
+     * written
+     *
+     * @return if the server is writable
+     */
+    @Override
+    public boolean isWritable() {
+        return connection.isWritable();
+    }
+
     /**
      * Send a message to the server
      *
@@ -87,15 +113,14 @@ public final class TCPRemoteServer extends RemoteServer {
     @Override
     public boolean sendMessage(final byte[] message) {
         try {
-            MessageOutput output = new MessageDataOutput(message, MergeType.DIFFERENCE);
+            MessageOutput output = format.create(message, MergeType.DIFFERENCE);
             output.write("MAC", getMAC());
             output.write("COMMAND_ENABLED", false);
 
             byte[] compile = output.compile();
-            ByteBuffer buffer = ByteBuffer.wrap(compile);
+            ByteBuffer buffer = FrameCodec.encode(compile);
 
-            serverSocket.write(buffer);
-            return true;
+            return connection.write(buffer);
         } catch (Throwable ex) {
             return false;
         }
@@ -0,0 +1,1155 @@
+package ml.karmaconfigs.remote.messaging.worker.udp;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.api.common.Console;
+import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
+import ml.karmaconfigs.api.common.timer.scheduler.worker.AsyncLateScheduler;
+import ml.karmaconfigs.api.common.utils.PrefixConsoleData;
+import ml.karmaconfigs.api.common.utils.enums.Level;
+import ml.karmaconfigs.api.common.utils.string.StringUtils;
+import ml.karmaconfigs.remote.messaging.platform.Client;
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
+import ml.karmaconfigs.remote.messaging.listener.event.client.ServerConnectEvent;
+import ml.karmaconfigs.remote.messaging.listener.event.client.ServerDisconnectEvent;
+import ml.karmaconfigs.remote.messaging.listener.event.client.ServerMessageEvent;
+import ml.karmaconfigs.remote.messaging.remote.RemoteServer;
+import ml.karmaconfigs.remote.messaging.util.Delivery;
+import ml.karmaconfigs.remote.messaging.util.ConnectTimeoutException;
+import ml.karmaconfigs.remote.messaging.util.NodeIdentity;
+import ml.karmaconfigs.remote.messaging.util.WorkLevel;
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+import ml.karmaconfigs.remote.messaging.util.message.*;
+import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+import ml.karmaconfigs.remote.messaging.util.reconnect.ReconnectPolicy;
+import ml.karmaconfigs.remote.messaging.util.rpc.Request;
+import ml.karmaconfigs.remote.messaging.util.rpc.RequestTable;
+import ml.karmaconfigs.remote.messaging.worker.loop.DatagramEndpoint;
+import ml.karmaconfigs.remote.messaging.worker.loop.DatagramListener;
+import ml.karmaconfigs.remote.messaging.worker.loop.EventLoop;
+import ml.karmaconfigs.remote.messaging.worker.loop.EventLoopGroup;
+import ml.karmaconfigs.remote.messaging.worker.udp.remote.UDPRemoteServer;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Remote message client interface
+ */
+public final class UDPClient extends Client {
+
+    private final static long CONNECT_INTERVAL = 500;
+    private final static long KEEPALIVE_INTERVAL = 5000;
+    
+    private final RequestTable requests = new RequestTable();
+
+    private RemoteServer remote = null;
+
+    private String client_name = "client_" + new Random().nextInt(Integer.MAX_VALUE);
+    private String server = "127.0.0.1";
+    private String key = "";
+
+    private int sv_port = 49305;
+    private int client = 49300;
+
+    private boolean debug = false;
+    private boolean operative = false;
+    private boolean instant_close = false;
+    private boolean award_connection = false;
+    private boolean tryingConnect = true;
+
+    private WireFormat format = WireFormat.BINARY;
+    private EventDispatcher dispatcher = EventDispatcher.inline();
+    private WireFormat wire = WireFormat.SERIALIZED;
+    private AckPolicy acknowledge = AckPolicy.each();
+
+    private volatile long acknowledged = 0;
+    private final AtomicLong sent = new AtomicLong(0);
+    private volatile long connect_start = 0;
+
+    private final Metrics metrics = new Metrics().queued(this::queued).acks(this::pending);
+
+    private volatile boolean closing = false;
+
+    private DatagramChannel socket;
+    private EventLoop loop;
+    private InetSocketAddress target;
+    private volatile DatagramEndpoint endpoint;
+    private volatile LateScheduler<Boolean> connecting = null;
+    private volatile Throwable failure = null;
+
+    private long handshake_timeout = 5000;
+
+    private volatile Consumer<Boolean> writability = null;
+    private int low_watermark = 32 * 1024;
+    private int high_watermark = 64 * 1024;
+
+    private int mtu = 1400;
+    private boolean fragmentation = true;
+    private boolean sequencing = true;
+    private Delivery delivery = Delivery.UNRELIABLE;
+
+    private final DatagramListener handler = new DatagramListener() {
+        @Override
+        public void received(final DatagramEndpoint endpoint, final InetSocketAddress sender, final ByteBuffer data) {
+            process(data);
+        }
+
+        @Override
+        public void lost(final DatagramEndpoint endpoint, final InetSocketAddress sender, final int amount) {
+            if (debug) {
+                console.send("Lost {0} messages from the server", Level.WARNING, amount);
+            }
+        }
+
+        @Override
+        public void unreachable(final DatagramEndpoint endpoint, final InetSocketAddress peer) {
+            console.send("The server {0}/{1} did not acknowledge the sent messages", Level.GRAVE, server, sv_port);
+
+            endpoint.close();
+        }
+
+        @Override
+        public void closed(final DatagramEndpoint endpoint) {
+            release();
+        }
+    };
+
+    private final Console console = new Console(this);
+
+    /**
+     * Initialize a default client that
+     * will connect to local server at
+     * default port 49305
+     */
+    public UDPClient() {
+        PrefixConsoleData data = console.getData();
+        data.setOkPrefix("&3[UDP Client (&aOK&3)]&b ");
+        data.setInfoPrefix("&3[UDP Client (&7INFO&3)]&b ");
+        data.setWarnPrefix("&3[UDP Client (&eWARNING&3)]&b ");
+        data.setGravePrefix("&3[UDP Client (&4ERROR&3)]&b ");
+    }
+
+    /**
+     * Initialize a client that will connect
+     * to the specified server at specified port
+     *
+     * @param server_host the server
+     * @param server_port the server port
+     */
+    public UDPClient(final String server_host, final int server_port) {
+        server = server_host;
+        sv_port = server_port;
+
+        PrefixConsoleData data = console.getData();
+        data.setOkPrefix("&3[UDP Client (&aOK&3)]&b ");
+        data.setInfoPrefix("&3[UDP Client (&7INFO&3)]&b ");
+        data.setWarnPrefix("&3[UDP Client (&eWARNING&3)]&b ");
+        data.setGravePrefix("&3[UDP Client (&4ERROR&3)]&b ");
+    }
+
+    /**
+     * Initialize a client with a custom port
+     * that will connect to the specified server at the
+     * specified port
+     *
+     * @param client_port the client port
+     * @param server_host the server
+     * @param server_port the server port
+     */
+    public UDPClient(final int client_port, final String server_host, final int server_port) {
+        client = client_port;
+        server = server_host;
+        sv_port = server_port;
+
+        PrefixConsoleData data = console.getData();
+        data.setOkPrefix("&3[UDP Client (&aOK&3)]&b ");
+        data.setInfoPrefix("&3[UDP Client (&7INFO&3)]&b ");
+        data.setWarnPrefix("&3[UDP Client (&eWARNING&3)]&b ");
+        data.setGravePrefix("&3[UDP Client (&4ERROR&3)]&b ");
+    }
+
+    /**
+     * Set the client debug status
+     *
+     * @param status the client debug status
+     * @return this instance
+     */
+    @Override
+    public Client debug(final boolean status) {
+        debug = status;
+
+        return this;
+    }
+
+    /**
+     * Set the preferred message wire format, the final
+     * format is negotiated with the server when connecting
+     *
+     * @param format the preferred wire format
+     * @return this instance
+     */
+    @Override
+    public Client format(final WireFormat format) {
+        this.format = format;
+
+        return this;
+    }
+
+    /**
+     * Set the executor that will call the listener
+     * events, inline by default
+     *
+     * @param executor the event dispatcher
+     * @return this instance
+     */
+    @Override
+    public Client dispatcher(final EventDispatcher executor) {
+        dispatcher = executor;
+
+        return this;
+    }
+
+    /**
+     * Set how the server should acknowledge the
+     * messages of this client, {@link AckPolicy#each()}
+     * by default. The policy is sent when connecting
+     *
+     * @param policy the ack policy
+     * @return this instance
+     */
+    @Override
+    public Client acknowledge(final AckPolicy policy) {
+        acknowledge = policy;
+
+        return this;
+    }
+
+    /**
+     * Set the outbound queue watermarks. Messages sent
+     * while the queue is over the high watermark are discarded
+     * until the queue is drained under the low watermark
+     *
+     * @param low the low watermark, in bytes
+     * @param high the high watermark, in bytes
+     * @return this instance
+     */
+    @Override
+    public Client watermarks(final int low, final int high) {
+        low_watermark = low;
+        high_watermark = high;
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.watermarks(low, high);
+
+        return this;
+    }
+
+    /**
+     * Set how the queued messages are flushed. UDP messages
+     * are always sent in their own datagrams as soon as
+     * possible, so this has no effect
+     *
+     * @param bytes the max amount of bytes written at once
+     * @param linger the time a message waits for more messages
+     *               before being flushed, in microseconds, 0 to
+     *               flush as soon as possible
+     * @return this instance
+     */
+    @Override
+    public Client coalesce(final int bytes, final long linger) {
+        return this;
+    }
+
+    /**
+     * Set the max size of the sent datagrams. Bigger
+     * messages are fragmented, 1400 bytes by default
+     *
+     * @param bytes the max datagram size
+     * @return this instance
+     */
+    public UDPClient mtu(final int bytes) {
+        mtu = bytes;
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.mtu(bytes);
+
+        return this;
+    }
+
+    /**
+     * Set if the messages bigger than the MTU are
+     * fragmented and reassembled by the server, or
+     * discarded. Enabled by default
+     *
+     * @param status the fragmentation status
+     * @return this instance
+     */
+    public UDPClient fragmentation(final boolean status) {
+        fragmentation = status;
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.fragmentation(status);
+
+        return this;
+    }
+
+    /**
+     * Set if the sent messages carry a sequence number,
+     * so the server drops the messages that arrive after a
+     * newer one and detects the lost ones. Enabled by default
+     *
+     * @param status the sequencing status
+     * @return this instance
+     */
+    public UDPClient sequencing(final boolean status) {
+        sequencing = status;
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.sequencing(status);
+
+        return this;
+    }
+
+    /**
+     * Set the delivery of the sent messages. Reliable
+     * messages are acknowledged by the server and
+     * retransmitted until they arrive. Unreliable by
+     * default
+     *
+     * @param mode the messages delivery
+     * @return this instance
+     */
+    public UDPClient delivery(final Delivery mode) {
+        delivery = (mode != null ? mode : Delivery.UNRELIABLE);
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.delivery(delivery);
+
+        return this;
+    }
+
+    /**
+     * Get the amount of reliable datagrams that have
+     * been sent again to the server
+     *
+     * @return the retransmitted datagrams
+     */
+    public long getRetransmitted() {
+        DatagramEndpoint current = endpoint;
+        return (current != null ? current.getRetransmitted() : 0);
+    }
+
+    /**
+     * Get the amount of sequenced messages sent
+     * by the server that have been lost
+     *
+     * @return the lost messages
+     */
+    public long getLost() {
+        DatagramEndpoint current = endpoint;
+        return (current != null ? current.getLost() : 0);
+    }
+
+    /**
+     * Set how long connecting can take. If the limit is
+     * exceeded, the connect result completes with false and
+     * a {@link ConnectTimeoutException}
+     *
+     * @param connect ignored, datagram clients don't
+     *                establish a connection
+     * @param handshake the time the server has to accept
+     *                  the connect request, 0 for no limit
+     * @param unit the time unit
+     * @return this instance
+     */
+    @Override
+    public Client timeout(final long connect, final long handshake, final TimeUnit unit) {
+        handshake_timeout = unit.toMillis(Math.max(0, handshake));
+
+        return this;
+    }
+
+    /**
+     * Set how the client reconnects when the connection is
+     * lost
+     *
+     * @param policy ignored, datagram clients don't hold a
+     *               connection to lose. Use {@link #delivery(Delivery)}
+     *               to retransmit lost messages instead
+     * @return this instance
+     */
+    @Override
+    public Client reconnect(final ReconnectPolicy policy) {
+        return this;
+    }
+
+    /**
+     * Set the listener that is called every time the
+     * client stops or starts accepting messages
+     *
+     * @param listener the writability listener
+     * @return this instance
+     */
+    @Override
+    public Client writability(final @Nullable Consumer<Boolean> listener) {
+        writability = listener;
+
+        return this;
+    }
+
+    /**
+     * Try to connect to the server
+     *
+     * @return a completable future when the client connects
+     */
+    @Override
+    public LateScheduler<Boolean> connect() {
+        if (!operative) {
+            LateScheduler<Boolean> result = new AsyncLateScheduler<>();
+
+            EventLoop owner;
+            try {
+                owner = EventLoopGroup.shared().next();
+            } catch (Throwable ex) {
+                award_connection = false;
+                tryingConnect = true;
+
+                requests.failAll("Connection error: " + ex.getMessage());
+                result.complete(false, ex);
+                return result;
+            }
+
+            //The connection is opened from its loop, so connecting never blocks the caller
+            owner.execute(() -> {
+                try {
+                    if (debug) {
+                        console.send("Initializing the connection with the server", Level.INFO);
+                    }
+
+                    wire = WireFormat.SERIALIZED;
+                    acknowledged = 0;
+                    sent.set(0);
+                    connect_start = System.nanoTime();
+                    closing = false;
+                    failure = null;
+
+                    target = new InetSocketAddress(server, sv_port);
+                    socket = DatagramChannel.open().bind(new InetSocketAddress(client));
+                    socket.connect(target);
+
+                    connecting = result;
+                    loop = owner;
+                    endpoint = new DatagramEndpoint(loop, socket, handler);
+                    endpoint.metrics(metrics);
+                    endpoint.watermarks(low_watermark, high_watermark);
+                    endpoint.mtu(mtu);
+                    endpoint.fragmentation(fragmentation);
+                    endpoint.sequencing(sequencing);
+                    endpoint.delivery(delivery);
+                    endpoint.onWritability((status) -> {
+                        Consumer<Boolean> listener = writability;
+                        if (listener != null)
+                            listener.accept(status);
+                    });
+                    endpoint.open();
+
+                    award_connection = true;
+                    tryingConnect = true;
+
+                    if (instant_close) {
+                        instant_close = false;
+                        closing = true;
+                        endpoint.close();
+                        return;
+                    }
+
+                    if (debug) {
+                        console.send("Trying to establish a connection with {0}/{1}, data can be started to be sent", Level.INFO, server, sv_port);
+                    }
+
+                    MessageOutput output = new MessageDataOutput();
+                    output.write("MAC", getMAC());
+                    output.write("COMMAND_ENABLED", true);
+                    output.write("COMMAND", "connect");
+                    output.write("ARGUMENT", client_name);
+                    if (!StringUtils.isNullOrEmpty(key)) {
+                        output.write("ACCESS_KEY", key);
+                    }
+                    if (format != WireFormat.SERIALIZED) {
+                        output.write("WIRE_FORMAT", format.name());
+                    }
+                    acknowledge.write(output);
+
+                    DatagramEndpoint current = endpoint;
+                    if (handshake_timeout > 0) {
+                        long timeout = handshake_timeout;
+                        loop.schedule(() -> {
+                            if (connecting == result) {
+                                console.send("The server {0}/{1} did not answer the connection request", Level.GRAVE, server, sv_port);
+
+                                failure = new ConnectTimeoutException("The server " + server + "/" + sv_port + " did not accept the connection in " + timeout + " ms", true);
+                                closing = true;
+                                current.close();
+                            }
+                        }, timeout, TimeUnit.MILLISECONDS);
+                    }
+
+                    request(current, output.compile());
+
+                    tryingConnect = false;
+                } catch (Throwable ex) {
+                    award_connection = false;
+                    tryingConnect = true;
+
+                    requests.failAll("Connection error: " + ex.getMessage());
+                    result.complete(false, ex);
+                }
+            });
+
+            return result;
+        }
+
+        return null;
+    }
+
+    /**
+     * Send the connect request, and send it again while
+     * the server doesn't answer, as unreliable datagrams
+     * can be lost
+     *
+     * @param current the client endpoint
+     * @param request the connect request
+     */
+    private void request(final DatagramEndpoint current, final byte[] request) {
+        if (operative || !current.isOpen())
+            return;
+
+        current.write(target, ByteBuffer.wrap(request), null);
+
+        //Reliable requests are retransmitted by the endpoint itself
+        if (!current.getDelivery().isReliable())
+            current.getLoop().schedule(() -> request(current, request), CONNECT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Tell the server the client is still there, so
+     * it doesn't forget the client while it's silent
+     *
+     * @param current the client endpoint
+     * @param keepalive the keepalive command
+     */
+    private void keepalive(final DatagramEndpoint current, final byte[] keepalive) {
+        if (!operative || current != endpoint || !current.isOpen())
+            return;
+
+        //A lost keepalive doesn't need to be sent again, the next one comes soon
+        current.write(target, ByteBuffer.wrap(keepalive), Delivery.UNRELIABLE, null);
+        current.getLoop().schedule(() -> keepalive(current, keepalive), KEEPALIVE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Process a message received from the server
+     *
+     * @param message the message
+     */
+    private void process(final ByteBuffer message) {
+        try {
+            MessageInput input = metrics.decode(message);
+            if (!operative) {
+                handshake(input);
+                return;
+            }
+
+            String mac = input.getString("MAC");
+            boolean isCommand = input.getBoolean("COMMAND_ENABLED");
+            if (remote.getMAC().equals(mac)) {
+                if (isCommand) {
+                    String command = input.getString("COMMAND");
+                    String argument = input.getString("ARGUMENT");
+
+                    if (command != null && argument != null) {
+                        String data;
+
+                        switch (command.toLowerCase()) {
+                            case "success":
+                                switch (argument.toLowerCase()) {
+                                    case "rename":
+                                        client_name = input.getString("ARGUMENT_DATA");
+
+                                        if (client_name != null && debug) {
+                                            console.send("Server accepted the new client name: {0}", Level.OK, client_name);
+                                        }
+                                        break;
+                                    case "message":
+                                        Number sequence = input.getNumber("ACK_SEQUENCE");
+                                        if (sequence != null) {
+                                            acknowledged = sequence.longValue();
+                                        }
+
+                                        if (debug) {
+                                            console.send("Server acknowledged messages up to #{0}", Level.INFO, acknowledged);
+                                        }
+                                        break;
+                                    case "unknown":
+                                        data = input.getString("ARGUMENT_DATA");
+
+                                        if (data != null && debug) {
+                                            String[] arg_data = data.split(",");
+
+                                            console.send("{0} ran custom command: {1} ( {2} )", Level.WARNING, arg_data[0], arg_data[1], arg_data[2]);
+                                        }
+                                        break;
+                                    default:
+                                        if (debug) {
+                                            console.send("Unknown command from server: {0} ( {1} )", Level.GRAVE, command, argument);
+                                        }
+                                        break;
+                                }
+                                break;
+                            case "failed":
+                                switch (argument.toLowerCase()) {
+                                    case "connect":
+                                        data = input.getString("ARGUMENT_DATA");
+                                        if (data != null) {
+                                            String[] connect_data = data.split(",");
+                                            String name = connect_data[0];
+                                            String reason = connect_data[1];
+
+                                            console.send("Server declined connection as {0}, because: {1}", Level.GRAVE, name, reason);
+
+                                            ServerDisconnectEvent connectEvent = new ServerDisconnectEvent(remote, this, reason);
+                                            dispatcher.dispatch(this, connectEvent, metrics);
+                                        }
+
+                                        break;
+                                    case "rename":
+                                        data = input.getString("ARGUMENT_DATA");
+                                        if (data != null) {
+                                            String[] rename_data = data.split(",");
+                                            console.send("Failed to change client name to {0}: {1}", Level.GRAVE, rename_data[0], rename_data[1]);
+                                        }
+
+                                        break;
+                                    case "disconnect":
+                                        data = input.getString("ARGUMENT_DATA");
+
+                                        if (data != null) {
+                                            console.send("Failed while trying to disconnect the server ( you've been disconnected anyway ): {0}", Level.GRAVE, data);
+
+                                            ServerDisconnectEvent disconnectEvent = new ServerDisconnectEvent(remote, this, "no server reason...");
+                                            dispatcher.dispatch(this, disconnectEvent, metrics);
+                                        }
+
+                                        break;
+                                    case "message":
+                                        data = input.getString("ARGUMENT_DATA");
+                                        if (data != null) {
+                                            console.send("Failed while trying to send a message to server: {0}", Level.GRAVE, data);
+                                        }
+                                        break;
+                                    case "unknown":
+                                        data = input.getString("ARGUMENT_DATA");
+                                        if (data != null) {
+                                            String[] unknown_data = data.split(",");
+                                            console.send("Failed while trying to execute custom command {0} with argument {1}: {2}", Level.GRAVE, unknown_data[0], unknown_data[1], unknown_data[2]);
+                                        }
+
+                                        break;
+                                    default:
+                                        if (debug) {
+                                            console.send("Unknown command from server: {0} ( {1} )", Level.WARNING, command, argument);
+                                        }
+                                        break;
+                                }
+                                break;
+                            case "disconnect":
+                                String reason = input.getString("ARGUMENT_DATA");
+                                if (reason != null) {
+                                    console.send("Connection killed by server: {0}", Level.GRAVE, reason);
+                                }
+
+                                ServerDisconnectEvent event = new ServerDisconnectEvent(remote, this, reason);
+                                dispatcher.dispatch(this, event, metrics);
+
+                                requests.failAll("Connection killed by server: " + reason);
+                                close();
+                                break;
+                        }
+                    }
+                } else {
+                    Number response = input.getNumber("RESPONSE_ID");
+                    if (response != null) {
+                        requests.complete(response.longValue(), input);
+                    } else {
+                        ServerMessageEvent event = new ServerMessageEvent(remote, this, input);
+                        dispatcher.dispatch(this, event, metrics);
+                    }
+                }
+            }
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Process the server answer to the connect
+     * request
+     *
+     * @param input the server answer
+     * @throws Throwable if something goes wrong
+     */
+    private void handshake(final MessageInput input) throws Throwable {
+        if (input.getBoolean("COMMAND_ENABLED")) {
+            String sequence = input.getString("COMMAND");
+            String mac = input.getString("MAC");
+            if (sequence != null && mac != null) {
+                if (sequence.equalsIgnoreCase("accept")) {
+                    if (format == WireFormat.BINARY) {
+                        wire = WireFormat.fromName(input.getString("WIRE_FORMAT"));
+                    }
+
+                    remote = new UDPRemoteServer(mac, InetAddress.getByName(server), sv_port, endpoint, wire);
+
+                    if (debug) {
+                        console.send("Connection has been validated by the server", Level.OK);
+                    }
+
+                    award_connection = false;
+                    operative = true;
+
+                    MessageOutput keepalive = wire.create();
+                    keepalive.write("MAC", getMAC());
+                    keepalive.write("COMMAND_ENABLED", true);
+                    keepalive.write("COMMAND", "keepalive");
+                    keepalive.write("ARGUMENT", "Client keepalive");
+
+                    DatagramEndpoint current = endpoint;
+                    byte[] compile = keepalive.compile();
+                    current.getLoop().schedule(() -> keepalive(current, compile), KEEPALIVE_INTERVAL, TimeUnit.MILLISECONDS);
+
+                    ServerConnectEvent event = new ServerConnectEvent(remote, this);
+                    dispatcher.dispatch(this, event, metrics);
+
+                    LateScheduler<Boolean> result = connecting;
+                    connecting = null;
+                    if (result != null) {
+                        metrics.connected(System.nanoTime() - connect_start);
+                        result.complete(true);
+                    }
+                } else {
+                    String argument = input.getString("ARGUMENT");
+                    if (argument != null) {
+                        if (argument.equalsIgnoreCase("connect")) {
+                            String reason = input.getString("COMMAND_ARGUMENT");
+                            if (reason != null) {
+                                console.send("Connection has been declined by the server ({0})", Level.GRAVE, reason);
+                            }
+
+                            closing = true;
+                            endpoint.close();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Release the connection resources once
+     * the endpoint has been closed
+     */
+    private void release() {
+        boolean connected = operative;
+
+        operative = false;
+        award_connection = false;
+        tryingConnect = true;
+
+        requests.failAll("Connection closed");
+
+        LateScheduler<Boolean> result = connecting;
+        connecting = null;
+        if (result != null)
+            result.complete(false, failure);
+
+        if (connected && !closing) {
+            ServerDisconnectEvent event = new ServerDisconnectEvent(remote, this, "Connection closed");
+            dispatcher.dispatch(this, event, metrics);
+        }
+    }
+
+    /**
+     * Try to connect to the server
+     *
+     * @param accessKey the server access key
+     * @return a completable future when the client connects
+     */
+    @Override
+    public LateScheduler<Boolean> connect(final String accessKey) {
+        if (!operative) {
+            key = accessKey;
+            return connect();
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the client name
+     *
+     * @return the client name
+     */
+    @Override
+    public String getName() {
+        return client_name;
+    }
+
+    /**
+     * Get the client MAC address
+     *
+     * @return the client MAC address
+     */
+    @Override
+    public String getMAC() {
+        return NodeIdentity.get();
+    }
+
+    /**
+     * Get the client address
+     *
+     * @return the client address
+     */
+    @Override
+    public InetAddress getHost() {
+        return InetAddress.getLoopbackAddress();
+    }
+
+    /**
+     * Get the client port
+     *
+     * @return the client port
+     */
+    @Override
+    public int getPort() {
+        return client;
+    }
+
+    /**
+     * Send a message to the client
+     *
+     * @param message the message to send
+     * @return if the message could be sent
+     */
+    @Override
+    public boolean sendMessage(MessageOutput message) {
+        return false;
+    }
+
+    /**
+     * Get the connected remote server
+     *
+     * @return the connected remote server
+     */
+    @Override
+    public RemoteServer getServer() {
+        return remote;
+    }
+
+    /**
+     * Get the client work level
+     *
+     * @return the client work level
+     */
+    @Override
+    public WorkLevel getWorkLevel() {
+        return (delivery.isReliable() ? WorkLevel.RUDP : WorkLevel.UDP);
+    }
+
+    /**
+     * Get the sequence of the last message acknowledged
+     * by the server. Messages are numbered from 1 in the
+     * order they are sent since the client connected
+     *
+     * @return the last acknowledged message
+     */
+    @Override
+    public long getAcknowledged() {
+        return acknowledged;
+    }
+
+    /**
+     * Get the client metrics
+     *
+     * @return the client metrics
+     */
+    @Override
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Get if the client is trying to connect to the
+     * server
+     *
+     * @return if the client is trying to connect to
+     * the server
+     */
+    @Override
+    public boolean isConnecting() {
+        return tryingConnect || award_connection;
+    }
+
+    /**
+     * Get if the client is completely connected
+     * to the server
+     *
+     * @return if the client is connected
+     */
+    @Override
+    public boolean isConnected() {
+        DatagramEndpoint current = endpoint;
+        return operative && current != null && current.isOpen();
+    }
+
+    /**
+     * Get if a message can be sent to the server
+     * without waiting for the previous ones to be
+     * written
+     *
+     * @return if the client is writable
+     */
+    @Override
+    public boolean isWritable() {
+        DatagramEndpoint current = endpoint;
+        return current != null && current.isWritable();
+    }
+
+    /**
+     * Rename the client on the server interface
+     *
+     * @param name the client name
+     */
+    @Override
+    public void rename(final String name) {
+        if (award_connection || operative) {
+            client_name = name;
+
+            MessageOutput output = wire.create();
+            output.write("MAC", getMAC());
+            output.write("COMMAND_ENABLED", true);
+            output.write("COMMAND", "rename");
+            output.write("ARGUMENT", client_name);
+
+            if (debug) {
+                console.send("Trying to inform the server about the name change request to {0}", Level.INFO, name);
+            }
+
+            write(output);
+        }
+    }
+
+    /**
+     * Send data to the server
+     *
+     * @param data the data to send
+     */
+    @Override
+    public void send(final byte[] data) {
+        if (award_connection || operative) {
+            MessageOutput output = wire.create(data, MergeType.DIFFERENCE);
+            output.write("MAC", getMAC());
+            output.write("COMMAND_ENABLED", false);
+
+            if (write(output))
+                sent.incrementAndGet();
+        }
+    }
+
+    /**
+     * Send a request to the server. Many requests can be
+     * waiting for their response at the same time
+     *
+     * @param data the request data
+     * @param timeout the max time to wait for the
+     *                response, 0 to wait forever
+     * @param unit the timeout unit
+     * @return the request
+     */
+    @Override
+    public Request request(final MessageOutput data, final long timeout, final TimeUnit unit) {
+        Request request = requests.create(timeout, unit);
+        if (!award_connection && !operative) {
+            requests.fail(request.getId(), new IOException("The client is not connected"));
+            return request;
+        }
+
+        MessageOutput output = wire.create(data, MergeType.DIFFERENCE);
+        output.write("MAC", getMAC());
+        output.write("COMMAND_ENABLED", false);
+        output.write("REQUEST_ID", request.getId());
+
+        if (write(output)) {
+            sent.incrementAndGet();
+        } else {
+            requests.fail(request.getId(), new IOException("The client is not writable"));
+        }
+
+        return request;
+    }
+
+    /**
+     * Close the connection
+     */
+    @Override
+    public void close() {
+        DatagramEndpoint current = endpoint;
+        if (current != null && (operative || award_connection)) {
+            closing = true;
+
+            if (operative) {
+                try {
+                    MessageOutput output = wire.create();
+                    output.write("MAC", getMAC());
+                    output.write("COMMAND_ENABLED", true);
+                    output.write("COMMAND", "disconnect");
+                    output.write("ARGUMENT", "Client disconnect request");
+
+                    //The endpoint is closed once the request has been sent
+                    current.write(target, ByteBuffer.wrap(output.compile()), (sent) -> current.close());
+                } catch (Throwable ex) {
+                    ex.printStackTrace();
+                    current.close();
+                }
+            } else {
+                current.close();
+            }
+        } else {
+            instant_close = true;
+        }
+    }
+
+    /**
+     * Queue a message to be sent to the server
+     *
+     * @param output the message
+     * @return if the message could be queued
+     */
+    private boolean write(final MessageOutput output) {
+        DatagramEndpoint current = endpoint;
+        if (current == null)
+            return false;
+
+        try {
+            boolean queued = current.write(target, ByteBuffer.wrap(metrics.encode(output)), null);
+            if (!queued && debug) {
+                console.send("Discarding message because the server connection is not writable", Level.WARNING);
+            }
+
+            return queued;
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Get the bytes waiting to be sent
+     *
+     * @return the queued bytes
+     */
+    private long queued() {
+        DatagramEndpoint current = endpoint;
+        return (current != null ? current.getQueued() : 0);
+    }
+
+    /**
+     * Get the messages sent since the client connected
+     * that the server has not acknowledged yet
+     *
+     * @return the pending acks
+     */
+    private long pending() {
+        if (acknowledge.getMode() == AckPolicy.Mode.NONE)
+            return 0;
+
+        return Math.max(0, sent.get() - acknowledged);
+    }
+
+    /**
+     * Karma source name
+     *
+     * @return the source name
+     */
+    @Override
+    public String name() {
+        return "UDP Client";
+    }
+
+    /**
+     * Karma source version
+     *
+     * @return the source version
+     */
+    @Override
+    public String version() {
+        return "0";
+    }
+
+    /**
+     * Karma source description
+     *
+     * @return the source description
+     */
+    @Override
+    public String description() {
+        return "UDP client to connect to a UDP server that has been created with RemoteMessaging API";
+    }
+
+    /**
+     * Karma source authors
+     *
+     * @return the source authors
+     */
+    @Override
+    public String[] authors() {
+        return new String[]{"KarmaDev"};
+    }
+
+    /**
+     * Karma source update URL
+     *
+     * @return the source update URL
+     */
+    @Override
+    public String updateURL() {
+        return null;
+    }
+}
@@ -0,0 +1,1296 @@
+package ml.karmaconfigs.remote.messaging.worker.udp;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.api.common.Console;
+import ml.karmaconfigs.api.common.timer.scheduler.LateScheduler;
+import ml.karmaconfigs.api.common.timer.scheduler.worker.AsyncLateScheduler;
+import ml.karmaconfigs.api.common.utils.PrefixConsoleData;
+import ml.karmaconfigs.api.common.utils.enums.Level;
+import ml.karmaconfigs.api.common.utils.file.PathUtilities;
+import ml.karmaconfigs.api.common.utils.string.StringUtils;
+import ml.karmaconfigs.remote.messaging.platform.Server;
+import ml.karmaconfigs.remote.messaging.listener.dispatch.EventDispatcher;
+import ml.karmaconfigs.remote.messaging.listener.event.server.ClientCommandEvent;
+import ml.karmaconfigs.remote.messaging.listener.event.server.ClientConnectEvent;
+import ml.karmaconfigs.remote.messaging.listener.event.server.ClientDisconnectEvent;
+import ml.karmaconfigs.remote.messaging.listener.event.server.ClientMessageEvent;
+import ml.karmaconfigs.remote.messaging.remote.ClientRegistry;
+import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
+import ml.karmaconfigs.remote.messaging.util.DisconnectReason;
+import ml.karmaconfigs.remote.messaging.util.Delivery;
+import ml.karmaconfigs.remote.messaging.util.NodeIdentity;
+import ml.karmaconfigs.remote.messaging.util.WorkLevel;
+import ml.karmaconfigs.remote.messaging.util.ack.AckPolicy;
+import ml.karmaconfigs.remote.messaging.util.ack.AckTracker;
+import ml.karmaconfigs.remote.messaging.util.admission.AdmissionPolicy;
+import ml.karmaconfigs.remote.messaging.util.admission.AdmissionTracker;
+import ml.karmaconfigs.remote.messaging.util.message.*;
+import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.util.metrics.Metrics;
+import ml.karmaconfigs.remote.messaging.util.rpc.Responder;
+import ml.karmaconfigs.remote.messaging.worker.loop.DatagramEndpoint;
+import ml.karmaconfigs.remote.messaging.worker.loop.DatagramListener;
+import ml.karmaconfigs.remote.messaging.worker.loop.EventLoop;
+import ml.karmaconfigs.remote.messaging.worker.udp.remote.UDPRemoteClient;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Remote message server interface. Every client is
+ * served from a single datagram socket
+ */
+public final class UDPServer extends Server {
+
+    //Clients send a keepalive every few seconds, so the silent ones are gone
+    private final static long EXPIRY = 30000;
+
+    private final ClientRegistry<UDPRemoteClient> clients = new ClientRegistry<>();
+
+    private final Set<String> banned = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Set<String> connections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final Map<String, AckTracker> acks = new ConcurrentHashMap<>();
+    private final Map<String, ByteBuffer> declines = new ConcurrentHashMap<>();
+
+    private final AdmissionTracker admissions = new AdmissionTracker(AdmissionPolicy.unlimited());
+
+    private final Metrics metrics = new Metrics().queued(this::queued).acks(this::pending);
+
+    private String server = "127.0.0.1";
+
+    private int sv_port = 49305;
+
+    private boolean debug = false;
+    private boolean operative = false;
+
+    private DatagramChannel socket;
+    private EventLoop loop;
+    private volatile DatagramEndpoint endpoint;
+    private int workers = 0;
+
+    private String key = "";
+
+    private WireFormat format = WireFormat.BINARY;
+    private EventDispatcher dispatcher = EventDispatcher.inline();
+    private AckPolicy acknowledge = AckPolicy.each();
+    private Responder responder = null;
+    private BiConsumer<RemoteClient, Boolean> writability = null;
+
+    private int low_watermark = 32 * 1024;
+    private int high_watermark = 64 * 1024;
+    private int mtu = 1400;
+    private boolean fragmentation = true;
+    private boolean sequencing = true;
+    private Delivery delivery = Delivery.UNRELIABLE;
+
+    private final Console console = new Console(this);
+
+    private final DatagramListener handler = new DatagramListener() {
+        @Override
+        public void received(final DatagramEndpoint endpoint, final InetSocketAddress sender, final ByteBuffer data) {
+            process(sender, data);
+        }
+
+        @Override
+        public void lost(final DatagramEndpoint endpoint, final InetSocketAddress sender, final int amount) {
+            if (debug) {
+                console.send("Lost {0} messages from {1}", Level.WARNING, amount, ClientRegistry.address(sender.getAddress(), sender.getPort()));
+            }
+        }
+
+        @Override
+        public void unreachable(final DatagramEndpoint endpoint, final InetSocketAddress peer) {
+            leave(peer, "Client unreachable");
+        }
+
+        @Override
+        public void expired(final DatagramEndpoint endpoint, final InetSocketAddress peer) {
+            leave(peer, "Client timed out");
+        }
+
+        @Override
+        public void closed(final DatagramEndpoint endpoint) {
+            release();
+        }
+    };
+    
+    /**
+     * Initialize a default client that
+     * will connect to local server at
+     * default port 49305
+     */
+    public UDPServer() {
+        PrefixConsoleData data = console.getData();
+        data.setOkPrefix("&3[UDP Server (&aOK&3)]&b ");
+        data.setInfoPrefix("&3[UDP Server (&7INFO&3)]&b ");
+        data.setWarnPrefix("&3[UDP Server (&eWARNING&3)]&b ");
+        data.setGravePrefix("&3[UDP Server (&4ERROR&3)]&b ");
+    }
+
+    /**
+     * Initialize a client with a custom port
+     * that will connect to the specified server at the
+     * specified port
+     *
+     * @param port the server port
+     */
+    public UDPServer(final int port) {
+        sv_port = port;
+
+        PrefixConsoleData data = console.getData();
+        data.setOkPrefix("&3[UDP Server (&aOK&3)]&b ");
+        data.setInfoPrefix("&3[UDP Server (&7INFO&3)]&b ");
+        data.setWarnPrefix("&3[UDP Server (&eWARNING&3)]&b ");
+        data.setGravePrefix("&3[UDP Server (&4ERROR&3)]&b ");
+    }
+
+    /**
+     * Initialize a client that will connect
+     * to the specified server at specified port
+     *
+     * @param host the server
+     * @param port the server port
+     */
+    public UDPServer(final String host, final int port) {
+        server = host;
+        sv_port = port;
+
+        PrefixConsoleData data = console.getData();
+        data.setOkPrefix("&3[UDP Server (&aOK&3)]&b ");
+        data.setInfoPrefix("&3[UDP Server (&7INFO&3)]&b ");
+        data.setWarnPrefix("&3[UDP Server (&eWARNING&3)]&b ");
+        data.setGravePrefix("&3[UDP Server (&4ERROR&3)]&b ");
+    }
+
+    /**
+     * Set the server debug status
+     *
+     * @param status the server debug status
+     * @return this instance
+     */
+    @Override
+    public Server debug(final boolean status) {
+        debug = status;
+
+        return this;
+    }
+
+    /**
+     * Set the amount of event loops the server
+     * will use to handle its clients. UDP servers
+     * always use a single loop, as every client is
+     * served from the same socket
+     *
+     * @param threads the amount of event loops, if lower
+     *                than 1, one per available processor
+     * @return this instance
+     */
+    @Override
+    public Server workers(final int threads) {
+        workers = threads;
+
+        return this;
+    }
+
+    /**
+     * Set the preferred message wire format, the final
+     * format is negotiated with the client when connecting
+     *
+     * @param format the preferred wire format
+     * @return this instance
+     */
+    @Override
+    public Server format(final WireFormat format) {
+        this.format = format;
+
+        return this;
+    }
+
+    /**
+     * Set the executor that will call the listener
+     * events, inline by default
+     *
+     * @param executor the event dispatcher
+     * @return this instance
+     */
+    @Override
+    public Server dispatcher(final EventDispatcher executor) {
+        dispatcher = executor;
+
+        return this;
+    }
+
+    /**
+     * Set the ack policy for the clients that don't
+     * ask for one when connecting, {@link AckPolicy#each()}
+     * by default
+     *
+     * @param policy the default ack policy
+     * @return this instance
+     */
+    @Override
+    public Server acknowledge(final AckPolicy policy) {
+        acknowledge = policy;
+
+        return this;
+    }
+
+    /**
+     * Set which connections the server admits,
+     * {@link AdmissionPolicy#unlimited()} by default.
+     * Datagram clients are admitted when they send their
+     * connect request
+     *
+     * @param policy the admission policy
+     * @return this instance
+     */
+    @Override
+    public Server admission(final AdmissionPolicy policy) {
+        admissions.setPolicy(policy);
+
+        return this;
+    }
+
+    /**
+     * Set the handler of the client requests
+     *
+     * @param handler the request handler, null
+     *                to reject every request
+     * @return this instance
+     */
+    @Override
+    public Server respond(final @Nullable Responder handler) {
+        responder = handler;
+
+        return this;
+    }
+
+    /**
+     * Set the outbound queue watermarks of every client.
+     * Messages sent to a client whose queue is over the high
+     * watermark are rejected until the queue is drained under
+     * the low watermark
+     *
+     * @param low the low watermark, in bytes
+     * @param high the high watermark, in bytes
+     * @return this instance
+     */
+    @Override
+    public Server watermarks(final int low, final int high) {
+        low_watermark = low;
+        high_watermark = high;
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.watermarks(low, high);
+
+        return this;
+    }
+
+    /**
+     * Set how the queued messages are flushed. UDP messages
+     * are always sent in their own datagrams as soon as
+     * possible, so this has no effect
+     *
+     * @param bytes the max amount of bytes written at once
+     * @param linger the time a message waits for more messages
+     *               before being flushed, in microseconds, 0 to
+     *               flush as soon as possible
+     * @return this instance
+     */
+    @Override
+    public Server coalesce(final int bytes, final long linger) {
+        return this;
+    }
+
+    /**
+     * Set the max size of the sent datagrams. Bigger
+     * messages are fragmented, 1400 bytes by default
+     *
+     * @param bytes the max datagram size
+     * @return this instance
+     */
+    public UDPServer mtu(final int bytes) {
+        mtu = bytes;
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.mtu(bytes);
+
+        return this;
+    }
+
+    /**
+     * Set if the messages bigger than the MTU are
+     * fragmented and reassembled by the clients, or
+     * discarded. Enabled by default
+     *
+     * @param status the fragmentation status
+     * @return this instance
+     */
+    public UDPServer fragmentation(final boolean status) {
+        fragmentation = status;
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.fragmentation(status);
+
+        return this;
+    }
+
+    /**
+     * Set if the sent messages carry a sequence number,
+     * so the clients drop the messages that arrive after a
+     * newer one and detect the lost ones. Enabled by default
+     *
+     * @param status the sequencing status
+     * @return this instance
+     */
+    public UDPServer sequencing(final boolean status) {
+        sequencing = status;
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.sequencing(status);
+
+        return this;
+    }
+
+    /**
+     * Set the delivery of the sent messages. Reliable
+     * messages are acknowledged by the clients and
+     * retransmitted until they arrive. Unreliable by
+     * default
+     *
+     * @param mode the messages delivery
+     * @return this instance
+     */
+    public UDPServer delivery(final Delivery mode) {
+        delivery = (mode != null ? mode : Delivery.UNRELIABLE);
+
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.delivery(delivery);
+
+        return this;
+    }
+
+    /**
+     * Get the amount of reliable datagrams that have
+     * been sent again to the clients
+     *
+     * @return the retransmitted datagrams
+     */
+    public long getRetransmitted() {
+        DatagramEndpoint current = endpoint;
+        return (current != null ? current.getRetransmitted() : 0);
+    }
+
+    /**
+     * Get the amount of sequenced messages sent
+     * by the clients that have been lost
+     *
+     * @return the lost messages
+     */
+    public long getLost() {
+        DatagramEndpoint current = endpoint;
+        return (current != null ? current.getLost() : 0);
+    }
+
+    /**
+     * Set the listener that is called every time a
+     * client stops or starts accepting messages
+     *
+     * @param listener the writability listener
+     * @return this instance
+     */
+    @Override
+    public Server writability(final @Nullable BiConsumer<RemoteClient, Boolean> listener) {
+        writability = listener;
+
+        return this;
+    }
+
+    /**
+     * Try to start the server
+     *
+     * @return a completable future when the server starts
+     */
+    @Override
+    public LateScheduler<Boolean> start() {
+        if (!operative) {
+            LateScheduler<Boolean> result = new AsyncLateScheduler<>();
+
+            Thread thread = new Thread(() -> {
+                try {
+                    socket = DatagramChannel.open().bind(new InetSocketAddress(server, sv_port));
+
+                    loop = new EventLoop("UDP Server");
+                    endpoint = new DatagramEndpoint(loop, socket, handler);
+                    endpoint.metrics(metrics);
+                    endpoint.watermarks(low_watermark, high_watermark);
+                    endpoint.mtu(mtu);
+                    endpoint.fragmentation(fragmentation);
+                    endpoint.sequencing(sequencing);
+                    endpoint.delivery(delivery);
+                    endpoint.onWritability(this::writable);
+                    endpoint.known((address) -> connections.contains(ClientRegistry.address(address.getAddress(), address.getPort())));
+                    endpoint.expiry(EXPIRY, TimeUnit.MILLISECONDS);
+                    endpoint.open();
+
+                    operative = true;
+
+                    result.complete(true);
+                } catch (Throwable ex) {
+                    result.complete(false, ex);
+                }
+            });
+            thread.start();
+
+            return result;
+        }
+
+        return null;
+    }
+
+    /**
+     * Try to start the server
+     *
+     * @param accessKey the server access key
+     * @return a completable future when the server starts
+     */
+    @Override
+    public LateScheduler<Boolean> start(final String accessKey) {
+        if (!operative) {
+            key = accessKey;
+            return start();
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the server address
+     *
+     * @return the server address
+     */
+    @Override
+    public InetAddress getHost() {
+        try {
+            try {
+                return InetAddress.getByName(server);
+            } catch (Throwable ignored) {}
+
+            return InetAddress.getLocalHost();
+        } catch (Throwable ex) {
+            return InetAddress.getLoopbackAddress();
+        }
+    }
+
+    /**
+     * Get the server MAC address
+     *
+     * @return the server MAC address
+     */
+    @Override
+    public String getMAC() {
+        return NodeIdentity.get();
+    }
+
+    /**
+     * Get the server port
+     *
+     * @return the server port
+     */
+    @Override
+    public int getPort() {
+        return sv_port;
+    }
+
+    /**
+     * Send a message to the server
+     *
+     * @param message the message to send
+     * @return if the message could be sent
+     */
+    @Override
+    public boolean sendMessage(byte[] message) {
+        return false;
+    }
+
+    /**
+     * Get the connected clients
+     *
+     * @return a list of connected clients
+     */
+    @Override
+    public Set<RemoteClient> getClients() {
+        return new HashSet<>(clients.values());
+    }
+
+    /**
+     * Get the client work level
+     *
+     * @return the client work level
+     */
+    @Override
+    public WorkLevel getWorkLevel() {
+        return (delivery.isReliable() ? WorkLevel.RUDP : WorkLevel.UDP);
+    }
+
+    /**
+     * Get the server metrics
+     *
+     * @return the server metrics
+     */
+    @Override
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Close the connection
+     */
+    @Override
+    public void close() {
+        DatagramEndpoint current = endpoint;
+        if (current != null)
+            current.close();
+    }
+
+    /**
+     * Export the list of bans
+     *
+     * @param destination the file were to store
+     *                    the ban list
+     */
+    @Override
+    public void exportBans(final Path destination) {
+        try {
+            PathUtilities.create(destination);
+
+            String serialized = StringUtils.serialize(new ArrayList<>(banned));
+            Files.write(destination, serialized.getBytes(), StandardOpenOption.CREATE);
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Load the list of bans
+     *
+     * @param bans the file were the banned mac
+     *             addresses are stored
+     */
+    @Override
+    public void loadBans(final Path bans) {
+        try {
+            PathUtilities.create(bans);
+
+            byte[] result = Files.readAllBytes(bans);
+            Object serialized = StringUtils.load(new String(result));
+
+            if (serialized instanceof ArrayList) {
+                ArrayList<?> list = (ArrayList<?>) serialized;
+                for (Object obj : list)
+                    ban(String.valueOf(obj));
+            }
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Send a message to each connected client
+     *
+     * @param data the data to send
+     * @param report called for each client with if the
+     *               message could be sent to it or not, it
+     *               may be called from an I/O thread
+     * @return the amount of clients the message has
+     * been sent to
+     */
+    @Override
+    public LateScheduler<Integer> broadcast(final MessageOutput data, final @Nullable BiConsumer<RemoteClient, Boolean> report) {
+        List<UDPRemoteClient> targets = new ArrayList<>();
+        for (String default_name : connections) {
+            UDPRemoteClient client = clients.get(default_name);
+            if (client != null)
+                targets.add(client);
+        }
+
+        return send("everyone", targets, data, report);
+    }
+
+    /**
+     * Redirect a message to the specified client
+     *
+     * @param name the client name or MAC address
+     * @param data the message
+     * @param report called for each client with if the
+     *               message could be sent to it or not, it
+     *               may be called from an I/O thread
+     * @return the amount of clients the message has
+     * been sent to
+     */
+    @Override
+    public LateScheduler<Integer> redirect(final String name, final MessageOutput data, final @Nullable BiConsumer<RemoteClient, Boolean> report) {
+        List<UDPRemoteClient> targets = new ArrayList<>();
+        for (UDPRemoteClient client : clients.find(name)) {
+            if (connections.contains(ClientRegistry.address(client)))
+                targets.add(client);
+        }
+
+        return send(name, targets, data, report);
+    }
+
+    /**
+     * Ban an address from the server
+     *
+     * @param macAddresses the addresses to ban
+     */
+    @Override
+    public void ban(final String... macAddresses) {
+        banned.addAll(Arrays.asList(macAddresses));
+
+        for (String mac : macAddresses) {
+            for (UDPRemoteClient client : clients.byMAC(mac))
+                disconnect(client, "You have been banned from this server!");
+        }
+    }
+
+    /**
+     * Kick an address from the server
+     *
+     * @param macAddresses the addresses to kick
+     */
+    @Override
+    public void kick(final String... macAddresses) {
+        for (String mac : macAddresses) {
+            for (UDPRemoteClient client : clients.byMAC(mac))
+                disconnect(client, "You have been kicked from this server!");
+        }
+    }
+
+    /**
+     * Unban an address from the server
+     *
+     * @param macAddresses the addresses to unban
+     */
+    @Override
+    public void unBan(final String... macAddresses) {
+        Arrays.asList(macAddresses).forEach(banned::remove);
+    }
+
+    /**
+     * Process the data received from a client
+     *
+     * @param sender the client address
+     * @param data the received data
+     */
+    private void process(final InetSocketAddress sender, final ByteBuffer data) {
+        try {
+            InetAddress incoming = sender.getAddress();
+            int port = sender.getPort();
+            String default_name = ClientRegistry.address(incoming, port);
+
+            MessageInput input = metrics.decode(data);
+
+            String mac = input.getString("MAC");
+
+            UDPRemoteClient client = getClient(default_name, mac, incoming, port);
+            WireFormat wire = client.getFormat();
+            if (input.getBoolean("COMMAND_ENABLED")) {
+                String command = input.getString("COMMAND");
+                String argument = input.getString("ARGUMENT");
+
+                if (command != null && argument != null) {
+                    switch (command.toLowerCase()) {
+                        case "connect":
+                            String declined = null;
+                            boolean validKey = true;
+                            if (mac == null) {
+                                declined = "The client did not identify itself!";
+                            } else if (banned.contains(mac)) {
+                                declined = "You are banned from this server!";
+                            } else {
+                                if (!StringUtils.isNullOrEmpty(key)) {
+                                    String provided = input.getString("ACCESS_KEY");
+                                    if (provided != null) {
+                                        //Basically, an 'access' password
+                                        validKey = provided.equals(key);
+                                    } else {
+                                        validKey = false;
+                                    }
+                                }
+
+                                if (!validKey) {
+                                    declined = "The provided access key is not valid for this server!";
+                                } else {
+                                    declined = admit(sender, default_name, mac);
+                                }
+
+                                if (declined == null) {
+                                    if (debug) {
+                                        console.send("Client {0} connected as {1}", Level.OK, default_name, argument);
+                                    }
+
+                                    wire = WireFormat.SERIALIZED;
+                                    if (format == WireFormat.BINARY && WireFormat.fromName(input.getString("WIRE_FORMAT")) == WireFormat.BINARY)
+                                        wire = WireFormat.BINARY;
+
+                                    AckPolicy policy = AckPolicy.read(input);
+                                    if (policy == null)
+                                        policy = acknowledge;
+
+                                    client = new UDPRemoteClient(argument, mac, incoming, port, endpoint, wire);
+                                    clients.put(default_name, client);
+
+                                    //The client repeats the connect request until it's accepted
+                                    if (connections.add(default_name)) {
+                                        acks.put(default_name, new AckTracker(policy));
+
+                                        ClientConnectEvent event = new ClientConnectEvent(client, this);
+                                        dispatcher.dispatch(default_name, event, metrics);
+                                    }
+
+                                    //The handshake is always serialized, so clients that don't know the binary format can read it
+                                    MessageOutput output = new MessageDataOutput();
+                                    output.write("MAC", getMAC());
+                                    output.write("COMMAND_ENABLED", true);
+                                    output.write("COMMAND", "accept");
+                                    output.write("WIRE_FORMAT", wire.name());
+
+                                    byte[] compile = output.compile();
+                                    endpoint.write(sender, ByteBuffer.wrap(compile), null);
+                                }
+                            }
+
+                            if (declined != null) {
+                                if (debug) {
+                                    console.send("Declined connection from {0} ( {1} )", Level.WARNING, default_name, declined);
+                                }
+
+                                endpoint.write(sender, decline(declined), null);
+                            }
+                            break;
+                        case "rename":
+                            if (connections.contains(default_name)) {
+                                if (debug) {
+                                    console.send("Client {0} is now known as {1}", Level.WARNING, client.getName(), argument);
+                                }
+
+                                client = new UDPRemoteClient(argument, mac, incoming, port, endpoint, wire);
+                                clients.put(default_name, client);
+
+                                ClientCommandEvent event = new ClientCommandEvent(client, this, command, argument);
+                                dispatcher.dispatch(default_name, event, metrics);
+
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "success");
+                                output.write("ARGUMENT", "rename");
+                                output.write("ARGUMENT_DATA", argument);
+
+                                byte[] compile = output.compile();
+                                endpoint.write(sender, ByteBuffer.wrap(compile), null);
+                            } else {
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "failed");
+                                output.write("ARGUMENT", "rename");
+                                output.write("ARGUMENT_DATA", argument + "," + "You are not connected to this server!");
+
+                                byte[] compile = output.compile();
+                                endpoint.write(sender, ByteBuffer.wrap(compile), null);
+                            }
+                            break;
+                        case "keepalive":
+                            //The client is still there, so the endpoint doesn't expire it
+                            if (!connections.contains(default_name)) {
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "disconnect");
+                                output.write("ARGUMENT", "keepalive");
+                                output.write("ARGUMENT_DATA", "You are not connected to this server!");
+
+                                byte[] compile = output.compile();
+                                endpoint.write(sender, ByteBuffer.wrap(compile), null);
+                            }
+                            break;
+                        case "disconnect":
+                            if (connections.contains(default_name)) {
+                                if (debug) {
+                                    console.send("Client {0} left the server ( {1} )", Level.WARNING, client.getName(), argument);
+                                }
+
+                                clients.remove(default_name);
+                                connections.remove(default_name);
+                                acks.remove(default_name);
+                                admissions.release(sender);
+                                endpoint.forget(sender);
+
+                                ClientDisconnectEvent event = new ClientDisconnectEvent(client, this, DisconnectReason.KILLED_BY_CLIENT, argument);
+                                dispatcher.dispatch(default_name, event, metrics);
+                            } else {
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "failed");
+                                output.write("ARGUMENT", "disconnect");
+                                output.write("ARGUMENT_DATA", "You are not connected to this server!");
+
+                                byte[] compile = output.compile();
+                                endpoint.write(sender, ByteBuffer.wrap(compile), null);
+                            }
+                            break;
+                        default:
+                            if (connections.contains(default_name)) {
+                                if (debug) {
+                                    console.send("Unknown command from {0}: {1} ( {2} )", Level.WARNING, client.getName(), command, argument);
+                                }
+
+                                ClientCommandEvent event = new ClientCommandEvent(client, this, command, argument);
+                                dispatcher.dispatch(default_name, event, metrics);
+                            } else {
+                                MessageOutput output = wire.create();
+                                output.write("MAC", getMAC());
+                                output.write("COMMAND_ENABLED", true);
+                                output.write("COMMAND", "failed");
+                                output.write("ARGUMENT", "unknown");
+                                output.write("ARGUMENT_DATA", command + "," + argument + "," + "You are not connected to this server!");
+
+                                byte[] compile = output.compile();
+                                endpoint.write(sender, ByteBuffer.wrap(compile), null);
+                            }
+                            break;
+                    }
+                }
+            } else {
+                if (connections.contains(default_name)) {
+                    AckTracker tracker = acks.get(default_name);
+                    if (tracker != null) {
+                        if (tracker.received()) {
+                            acknowledge(client, tracker);
+                        } else {
+                            if (tracker.schedule()) {
+                                UDPRemoteClient owner = client;
+                                loop.schedule(() -> acknowledge(owner, tracker), tracker.getPolicy().getInterval(), TimeUnit.MILLISECONDS);
+                            }
+                        }
+                    }
+
+                    Number request = input.getNumber("REQUEST_ID");
+                    if (request != null) {
+                        respond(client, request.longValue(), input);
+                    } else {
+                        ClientMessageEvent event = new ClientMessageEvent(client, this, input);
+                        dispatcher.dispatch(default_name, event, metrics);
+                    }
+                } else {
+                    if (debug) {
+                        console.send("Denying message from {0} because he's not connected to server", Level.INFO, default_name);
+                    }
+
+                    MessageOutput output = wire.create();
+                    output.write("MAC", getMAC());
+                    output.write("COMMAND_ENABLED", true);
+                    output.write("COMMAND", "failed");
+                    output.write("ARGUMENT", "message");
+                    output.write("ARGUMENT_DATA", "You are not connected to this server!");
+
+                    byte[] compile = output.compile();
+                    endpoint.write(sender, ByteBuffer.wrap(compile), null);
+                }
+            }
+        } catch (Throwable ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Send a message to the target clients. The message
+     * is compiled once per wire format and the same data
+     * is shared by every target
+     *
+     * @param name the targets name, for debug
+     * @param targets the target clients
+     * @param data the message
+     * @param report the per client result listener
+     * @return the amount of clients the message has
+     * been sent to
+     */
+    private LateScheduler<Integer> send(final String name, final List<UDPRemoteClient> targets, final MessageOutput data, final @Nullable BiConsumer<RemoteClient, Boolean> report) {
+        LateScheduler<Integer> result = new AsyncLateScheduler<>();
+        if (targets.isEmpty()) {
+            result.complete(0);
+            return result;
+        }
+
+        ByteBuffer[] frames = new ByteBuffer[WireFormat.values().length];
+        AtomicInteger remaining = new AtomicInteger(targets.size());
+        AtomicInteger sent = new AtomicInteger(0);
+
+        for (UDPRemoteClient client : targets) {
+            WireFormat wire = client.getFormat();
+
+            ByteBuffer frame = frames[wire.ordinal()];
+            if (frame == null) {
+                MessageOutput output = wire.create(data, MergeType.DIFFERENCE);
+                output.write("MAC", getMAC());
+                output.write("COMMAND_ENABLED", false);
+
+                frame = ByteBuffer.wrap(metrics.encode(output)).asReadOnlyBuffer();
+                frames[wire.ordinal()] = frame;
+            }
+
+            client.write(frame.duplicate(), (written) -> {
+                if (written)
+                    sent.incrementAndGet();
+
+                if (report != null) {
+                    try {
+                        report.accept(client, written);
+                    } catch (Throwable ex) {
+                        ex.printStackTrace();
+                    }
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    if (debug) {
+                        console.send("Sent message to {0} ( {1} of {2} clients )", Level.OK, name, sent.get(), targets.size());
+                    }
+
+                    result.complete(sent.get());
+                }
+            });
+        }
+
+        return result;
+    }
+
+    /**
+     * Acknowledge the messages received from a client
+     *
+     * @param client the client
+     * @param tracker the client ack state
+     */
+    private void acknowledge(final UDPRemoteClient client, final AckTracker tracker) {
+        long sequence = tracker.acknowledge();
+        if (sequence == -1)
+            return;
+
+        MessageOutput output = client.getFormat().create();
+        output.write("MAC", getMAC());
+        output.write("COMMAND_ENABLED", true);
+        output.write("COMMAND", "success");
+        output.write("ARGUMENT", "message");
+        output.write("ARGUMENT_DATA", client.getName());
+        output.write("ACK_SEQUENCE", sequence);
+
+        client.write(ByteBuffer.wrap(output.compile()), null);
+    }
+
+    /**
+     * Answer a client request
+     *
+     * @param client the client
+     * @param id the request id
+     * @param request the request
+     */
+    private void respond(final UDPRemoteClient client, final long id, final MessageInput request) {
+        LateScheduler<MessageOutput> response = new AsyncLateScheduler<>();
+        response.whenComplete((output, error) -> {
+            MessageOutput reply = (output != null ? client.getFormat().create(output, MergeType.DIFFERENCE) : client.getFormat().create());
+            reply.write("MAC", getMAC());
+            reply.write("COMMAND_ENABLED", false);
+            reply.write("RESPONSE_ID", id);
+            if (error != null || output == null) {
+                reply.write("RESPONSE_ERROR", (error != null ? String.valueOf(error.getMessage()) : "Empty response"));
+            }
+
+            client.write(ByteBuffer.wrap(metrics.encode(reply)), null);
+        });
+
+        Responder handler = responder;
+        if (handler == null) {
+            response.complete(null, new UnsupportedOperationException("The server does not accept requests"));
+            return;
+        }
+
+        dispatcher.dispatch(ClientRegistry.address(client), () -> {
+            try {
+                handler.respond(client, request, response);
+            } catch (Throwable ex) {
+                response.complete(null, ex);
+            }
+        }, metrics);
+    }
+
+    /**
+     * Ask a client to disconnect
+     *
+     * @param client the client
+     * @param reason the disconnect reason
+     */
+    private void disconnect(final UDPRemoteClient client, final String reason) {
+        MessageOutput output = client.getFormat().create();
+        output.write("MAC", getMAC());
+        output.write("COMMAND_ENABLED", true);
+        output.write("COMMAND", "DISCONNECT");
+        output.write("ARGUMENT", "");
+        output.write("ARGUMENT_DATA", reason);
+
+        client.write(ByteBuffer.wrap(output.compile()), null);
+    }
+
+    /**
+     * Notify the writability change of the server
+     * endpoint to every client
+     *
+     * @param status if the clients are writable
+     */
+    private void writable(final boolean status) {
+        BiConsumer<RemoteClient, Boolean> listener = writability;
+        if (listener == null)
+            return;
+
+        if (debug) {
+            console.send("Clients are {0} writable", Level.INFO, (status ? "now" : "no longer"));
+        }
+
+        for (String default_name : connections) {
+            UDPRemoteClient client = clients.get(default_name);
+            if (client != null)
+                listener.accept(client, status);
+        }
+    }
+
+    /**
+     * Remove every client once the server
+     * endpoint has been closed
+     */
+    private void release() {
+        operative = false;
+        loop.shutdown();
+
+        for (String default_name : connections) {
+            RemoteClient client = clients.remove(default_name);
+            acks.remove(default_name);
+            if (connections.remove(default_name) && client != null) {
+                admissions.release(new InetSocketAddress(client.getHost(), client.getPort()));
+                if (debug) {
+                    console.send("Client {0} left the server ( {1} )", Level.WARNING, client.getName(), "Server closed");
+                }
+
+                ClientDisconnectEvent event = new ClientDisconnectEvent(client, this, DisconnectReason.UNKNOWN, "Server closed");
+                dispatcher.dispatch(default_name, event, metrics);
+            }
+        }
+    }
+
+    /**
+     * Admit a client that asks to connect. The client
+     * repeats the request until it's accepted, so an already
+     * connected client is only identified again
+     *
+     * @param sender the client address
+     * @param default_name the client connection name
+     * @param mac the client MAC
+     * @return null if the client has been admitted, or
+     * the reason it has been declined
+     */
+    @Nullable
+    private String admit(final InetSocketAddress sender, final String default_name, final String mac) {
+        boolean connected = connections.contains(default_name);
+        if (!connected) {
+            String reason = admissions.admit(sender);
+            if (reason != null)
+                return reason;
+        }
+
+        String reason = admissions.identify(sender, mac);
+        if (reason != null && !connected)
+            admissions.release(sender);
+
+        return reason;
+    }
+
+    /**
+     * Get the datagram that declines a connection. The
+     * datagram is always serialized, so clients that don't know
+     * the binary format can read it, and it's compiled only once
+     * per reason
+     *
+     * @param reason the decline reason
+     * @return the decline datagram
+     */
+    private ByteBuffer decline(final String reason) {
+        ByteBuffer datagram = declines.computeIfAbsent(reason, (argument) -> {
+            MessageOutput output = new MessageDataOutput();
+            output.write("MAC", getMAC());
+            output.write("COMMAND_ENABLED", true);
+            output.write("COMMAND", "decline");
+            output.write("ARGUMENT", "connect");
+            output.write("COMMAND_ARGUMENT", argument);
+
+            return ByteBuffer.wrap(output.compile()).asReadOnlyBuffer();
+        });
+
+        return datagram.duplicate();
+    }
+
+    /**
+     * Get the client. The senders that have not connected
+     * are not registered, as anyone can send a datagram
+     *
+     * @param name the client name
+     * @param address the client address
+     * @param port the client port
+     * @return the client
+     */
+    private UDPRemoteClient getClient(final String name, final String mac, final InetAddress address, final int port) {
+        String default_name = ClientRegistry.address(address, port);
+
+        UDPRemoteClient client = clients.get(default_name);
+        if (client == null)
+            client = new UDPRemoteClient(name, mac, address, port, endpoint, WireFormat.SERIALIZED);
+
+        return client;
+    }
+
+    /**
+     * Remove a client the endpoint has forgotten
+     *
+     * @param peer the client address
+     * @param reason the disconnect reason
+     */
+    private void leave(final InetSocketAddress peer, final String reason) {
+        String default_name = ClientRegistry.address(peer.getAddress(), peer.getPort());
+
+        RemoteClient client = clients.remove(default_name);
+        acks.remove(default_name);
+        if (connections.remove(default_name) && client != null) {
+            admissions.release(peer);
+            if (debug) {
+                console.send("Client {0} left the server ( {1} )", Level.WARNING, client.getName(), reason);
+            }
+
+            ClientDisconnectEvent event = new ClientDisconnectEvent(client, this, DisconnectReason.UNKNOWN, reason);
+            dispatcher.dispatch(default_name, event, metrics);
+        }
+    }
+
+    /**
+     * Get the bytes waiting to be sent
+     * to every client
+     *
+     * @return the queued bytes
+     */
+    private long queued() {
+        DatagramEndpoint current = endpoint;
+        return (current != null ? current.getQueued() : 0);
+    }
+
+    /**
+     * Get the messages received from every client
+     * that have not been acknowledged yet
+     *
+     * @return the pending acks
+     */
+    private long pending() {
+        long pending = 0;
+        for (AckTracker tracker : acks.values())
+            pending += tracker.getPending();
+
+        return pending;
+    }
+
+    /**
+     * Karma source name
+     *
+     * @return the source name
+     */
+    @Override
+    public String name() {
+        return "UDP Server";
+    }
+
+    /**
+     * Karma source version
+     *
+     * @return the source version
+     */
+    @Override
+    public String version() {
+        return "0";
+    }
+
+    /**
+     * Karma source description
+     *
+     * @return the source description
+     */
+    @Override
+    public String description() {
+        return "UDP server to allow UDP Clients from RemoteMessaging API connect";
+    }
+
+    /**
+     * Karma source authors
+     *
+     * @return the source authors
+     */
+    @Override
+    public String[] authors() {
+        return new String[]{"KarmaDev"};
+    }
+
+    /**
+     * Karma source update URL
+     *
+     * @return the source update URL
+     */
+    @Override
+    public String updateURL() {
+        return null;
+    }
+
+    /**
+     * Get the source out
+     *
+     * @return the source out
+     */
+    @Override
+    public Console console() {
+        return console;
+    }
+}
@@ -0,0 +1,159 @@
+package ml.karmaconfigs.remote.messaging.worker.udp.remote;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.remote.RemoteClient;
+import ml.karmaconfigs.remote.messaging.util.NodeIdentity;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.worker.loop.DatagramEndpoint;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Remote client information
+ */
+public final class UDPRemoteClient extends RemoteClient {
+
+    private final String name;
+    private final String MAC;
+    private final InetAddress host;
+    private final int port;
+    private final InetSocketAddress target;
+    private final DatagramEndpoint endpoint;
+    private final WireFormat format;
+
+    /**
+     * Initialize the remote client
+     *
+     * @param client the client name
+     * @param m the client MAC address
+     * @param address the client address
+     * @param incoming_port the client port
+     * @param server_endpoint the server endpoint
+     * @param wire the negotiated wire format
+     */
+    public UDPRemoteClient(final String client, final String m, final InetAddress address, final int incoming_port, final DatagramEndpoint server_endpoint, final WireFormat wire) {
+        name = client;
+        MAC = m;
+        host = address;
+        port = incoming_port;
+        target = new InetSocketAddress(host, port);
+        endpoint = server_endpoint;
+        format = wire;
+    }
+
+    /**
+     * Get the client name
+     *
+     * @return the client name
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the client MAC address
+     *
+     * @return the client MAC address
+     */
+    @Override
+    public String getMAC() {
+        return MAC;
+    }
+
+    /**
+     * Get the client address
+     *
+     * @return the client address
+     */
+    @Override
+    public InetAddress getHost() {
+        return host;
+    }
+
+    /**
+     * Get the client port
+     *
+     * @return the client port
+     */
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Get the wire format negotiated with the client
+     *
+     * @return the client wire format
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Get if a message can be sent to the client
+     * without waiting for the previous ones to be
+     * sent. The server endpoint is shared by every
+     * client
+     *
+     * @return if the client is writable
+     */
+    @Override
+    public boolean isWritable() {
+        return endpoint.isWritable();
+    }
+
+    /**
+     * Send a message to the client
+     *
+     * @param message the message to send
+     * @return if the message could be sent
+     */
+    @Override
+    public boolean sendMessage(final MessageOutput message) {
+        try {
+            MessageOutput output = format.create(message, MergeType.DIFFERENCE);
+            //Clients only accept the messages that carry the server MAC
+            output.write("MAC", NodeIdentity.get());
+            output.write("COMMAND_ENABLED", false);
+
+            byte[] compile = endpoint.getMetrics().encode(output);
+
+            return endpoint.write(target, ByteBuffer.wrap(compile), null);
+        } catch (Throwable ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Send an already compiled message to the client
+     *
+     * @param message the message, compiled with the
+     *                client wire format
+     * @param done called once the message has been sent
+     *             or discarded
+     * @return if the message could be sent
+     */
+    public boolean write(final ByteBuffer message, final @Nullable Consumer<Boolean> done) {
+        return endpoint.write(target, message, done);
+    }
+}
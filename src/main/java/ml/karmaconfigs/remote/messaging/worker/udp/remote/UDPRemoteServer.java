@@ -0,0 +1,128 @@
+package ml.karmaconfigs.remote.messaging.worker.udp.remote;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.remote.RemoteServer;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import ml.karmaconfigs.remote.messaging.worker.loop.DatagramEndpoint;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Remote server information
+ */
+public final class UDPRemoteServer extends RemoteServer {
+
+    private final String MAC;
+    private final InetAddress host;
+    private final int port;
+    private final InetSocketAddress target;
+    private final DatagramEndpoint endpoint;
+    private final WireFormat format;
+
+    /**
+     * Initialize the remote server
+     *
+     * @param m the server MAC address
+     * @param address the server address
+     * @param incoming_port the server port
+     * @param client_endpoint the client endpoint
+     * @param wire the negotiated wire format
+     */
+    public UDPRemoteServer(final String m, final InetAddress address, final int incoming_port, final DatagramEndpoint client_endpoint, final WireFormat wire) {
+        MAC = m;
+        host = address;
+        port = incoming_port;
+        target = new InetSocketAddress(host, port);
+        endpoint = client_endpoint;
+        format = wire;
+    }
+
+    /**
+     * Get the server address
+     *
+     * @return the server address
+     */
+    @Override
+    public InetAddress getHost() {
+        return host;
+    }
+
+    /**
+     * Get the server MAC address
+     *
+     * @return the server MAC address
+     */
+    @Override
+    public String getMAC() {
+        return MAC;
+    }
+
+    /**
+     * Get the server port
+     *
+     * @return the server port
+     */
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Get the wire format negotiated with the server
+     *
+     * @return the server wire format
+     */
+    public WireFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Get if a message can be sent to the server
+     * without waiting for the previous ones to be
+     * sent
+     *
+     * @return if the server is writable
+     */
+    @Override
+    public boolean isWritable() {
+        return endpoint.isWritable();
+    }
+
+    /**
+     * Send a message to the server
+     *
+     * @param message the message to send
+     * @return if the message could be sent
+     */
+    @Override
+    public boolean sendMessage(final byte[] message) {
+        try {
+            MessageOutput output = format.create(message, MergeType.DIFFERENCE);
+            output.write("MAC", getMAC());
+            output.write("COMMAND_ENABLED", false);
+
+            byte[] compile = output.compile();
+
+            return endpoint.write(target, ByteBuffer.wrap(compile), null);
+        } catch (Throwable ex) {
+            return false;
+        }
+    }
+}
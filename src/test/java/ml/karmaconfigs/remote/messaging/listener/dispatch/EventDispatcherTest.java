@@ -0,0 +1,140 @@
+package ml.karmaconfigs.remote.messaging.listener.dispatch;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class EventDispatcherTest {
+
+    @Test
+    public void stripedDispatchKeepsTheOrder() throws InterruptedException {
+        EventDispatcher dispatcher = EventDispatcher.striped(2, 64);
+        List<Integer> calls = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            int event = i;
+            dispatcher.dispatch("client", () -> {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ignored) {}
+
+                calls.add(event);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++)
+            assertEquals(i, (int) calls.get(i));
+
+        assertEquals(0, dispatcher.getDropped());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void discardedEventsAreCounted() throws InterruptedException {
+        EventDispatcher dispatcher = EventDispatcher.pool(1, 1, OverflowPolicy.DISCARD);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        dispatcher.dispatch(null, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //One event fits in the queue, the rest are dropped
+        for (int i = 0; i < 4; i++)
+            dispatcher.dispatch(null, () -> {});
+
+        assertEquals(3, dispatcher.getDropped());
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void fullQueuesDropByDefault() throws InterruptedException {
+        EventDispatcher dispatcher = EventDispatcher.striped(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        dispatcher.dispatch("client", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        //The dispatching thread never waits for the busy listener
+        for (int i = 0; i < 4; i++)
+            dispatcher.dispatch("client", () -> {});
+
+        assertEquals(3, dispatcher.getDropped());
+        release.countDown();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void discardOldestKeepsTheNewestEvent() throws InterruptedException {
+        EventDispatcher dispatcher = EventDispatcher.pool(1, 1, OverflowPolicy.DISCARD_OLDEST);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<Integer> calls = Collections.synchronizedList(new ArrayList<>());
+
+        dispatcher.dispatch(null, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            int event = i;
+            dispatcher.dispatch(null, () -> {
+                calls.add(event);
+                done.countDown();
+            });
+        }
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(2), calls);
+        assertEquals(2, dispatcher.getDropped());
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void inlineDispatchRunsInTheCaller() {
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = new ArrayList<>();
+
+        EventDispatcher.inline().dispatch("client", () -> threads.add(Thread.currentThread()));
+        assertEquals(Collections.singletonList(caller), threads);
+    }
+}
@@ -0,0 +1,144 @@
+package ml.karmaconfigs.remote.messaging.remote;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ClientRegistryTest {
+
+    @Test
+    public void clientsAreIndexedByAddressNameAndMAC() {
+        ClientRegistry<TestClient> registry = new ClientRegistry<>();
+        TestClient first = new TestClient("first", "mac-a", 1000);
+        TestClient second = new TestClient("second", "mac-a", 1001);
+
+        assertNull(registry.put(ClientRegistry.address(first), first));
+        assertNull(registry.put(ClientRegistry.address(second), second));
+
+        assertSame(first, registry.get(ClientRegistry.address(first)));
+        assertEquals(Collections.singleton(first), registry.byName("first"));
+        assertEquals(new HashSet<>(Arrays.asList(first, second)), registry.byMAC("mac-a"));
+        assertEquals(Collections.singleton(second), registry.find("second"));
+        assertEquals(2, registry.find("mac-a").size());
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void renamingReplacesTheIndexedName() {
+        ClientRegistry<TestClient> registry = new ClientRegistry<>();
+        TestClient original = new TestClient("original", "mac-a", 1000);
+        String address = ClientRegistry.address(original);
+        registry.put(address, original);
+
+        //A rename registers a new client at the same address
+        TestClient renamed = new TestClient("renamed", "mac-b", 1000);
+        assertSame(original, registry.put(address, renamed));
+
+        assertTrue(registry.byName("original").isEmpty());
+        assertTrue(registry.byMAC("mac-a").isEmpty());
+        assertTrue(registry.find("original").isEmpty());
+        assertEquals(Collections.singleton(renamed), registry.byName("renamed"));
+        assertEquals(Collections.singleton(renamed), registry.byMAC("mac-b"));
+        assertSame(renamed, registry.get(address));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void removingKeepsTheOtherClientsIndexed() {
+        ClientRegistry<TestClient> registry = new ClientRegistry<>();
+        TestClient first = new TestClient("shared", "mac-a", 1000);
+        TestClient second = new TestClient("shared", "mac-a", 1001);
+        registry.put(ClientRegistry.address(first), first);
+        registry.put(ClientRegistry.address(second), second);
+
+        assertSame(first, registry.remove(ClientRegistry.address(first)));
+        assertNull(registry.remove(ClientRegistry.address(first)));
+
+        assertNull(registry.get(ClientRegistry.address(first)));
+        assertEquals(Collections.singleton(second), registry.byName("shared"));
+        assertEquals(Collections.singleton(second), registry.byMAC("mac-a"));
+
+        registry.remove(ClientRegistry.address(second));
+        assertTrue(registry.byName("shared").isEmpty());
+        assertTrue(registry.byMAC("mac-a").isEmpty());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void lookupsCantModifyTheRegistry() {
+        ClientRegistry<TestClient> registry = new ClientRegistry<>();
+        TestClient client = new TestClient("client", null, 1000);
+        registry.put(ClientRegistry.address(client), client);
+
+        Set<TestClient> named = registry.byName("client");
+        assertTrue(registry.byMAC(null).isEmpty());
+
+        registry.clear();
+        assertTrue(registry.byName("client").isEmpty());
+        assertEquals(0, registry.size());
+
+        try {
+            named.clear();
+            fail("The lookup result can be modified");
+        } catch (UnsupportedOperationException ignored) {}
+    }
+
+    private final static class TestClient extends RemoteClient {
+
+        private final String name;
+        private final String mac;
+        private final int port;
+
+        private TestClient(final String client, final String m, final int incoming_port) {
+            name = client;
+            mac = m;
+            port = incoming_port;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getMAC() {
+            return mac;
+        }
+
+        @Override
+        public InetAddress getHost() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public int getPort() {
+            return port;
+        }
+
+        @Override
+        public boolean sendMessage(final MessageOutput message) {
+            return false;
+        }
+    }
+}
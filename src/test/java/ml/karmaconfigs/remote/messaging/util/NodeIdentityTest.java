@@ -0,0 +1,37 @@
+package ml.karmaconfigs.remote.messaging.util;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NodeIdentityTest {
+
+    @Test
+    public void identityIsCached() {
+        String identity = NodeIdentity.get();
+
+        assertNotNull(identity);
+        assertTrue(identity, identity.matches("([0-9A-F]{2}:){5}[0-9A-F]{2}") || NodeIdentity.isFallback());
+        assertSame(identity, NodeIdentity.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void fallbackIsRejectedOnceResolved() {
+        NodeIdentity.get();
+        NodeIdentity.setFallback("custom-node");
+    }
+}
@@ -0,0 +1,173 @@
+package ml.karmaconfigs.remote.messaging.util.ack;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.MessageBinaryOutput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AckTrackerTest {
+
+    @Test
+    public void eachMessageIsAcknowledged() {
+        AckTracker tracker = new AckTracker(AckPolicy.each());
+
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(tracker.received());
+            assertEquals(1, tracker.getPending());
+            assertEquals(i, tracker.acknowledge());
+        }
+
+        assertEquals(-1, tracker.acknowledge());
+    }
+
+    @Test
+    public void cumulativeAcksEveryBatch() {
+        AckTracker tracker = new AckTracker(AckPolicy.cumulative(3, 0));
+
+        assertFalse(tracker.received());
+        assertFalse(tracker.received());
+        assertTrue(tracker.received());
+        assertEquals(3, tracker.acknowledge());
+
+        assertFalse(tracker.received());
+        assertFalse(tracker.schedule());
+        assertEquals(1, tracker.getPending());
+    }
+
+    @Test
+    public void cumulativeAcksAfterTheInterval() throws InterruptedException {
+        AckTracker tracker = new AckTracker(AckPolicy.cumulative(100, 20));
+
+        assertFalse(tracker.received());
+        assertTrue(tracker.schedule());
+        assertFalse(tracker.schedule());
+
+        Thread.sleep(30);
+        assertTrue(tracker.received());
+        assertEquals(2, tracker.acknowledge());
+
+        //The ack cleared the scheduled flag
+        assertFalse(tracker.received());
+        assertTrue(tracker.schedule());
+    }
+
+    @Test
+    public void noneNeverAcks() {
+        AckTracker tracker = new AckTracker(AckPolicy.none());
+
+        for (int i = 0; i < 10; i++)
+            assertFalse(tracker.received());
+
+        assertEquals(0, tracker.getPending());
+        assertFalse(tracker.schedule());
+        assertEquals(-1, tracker.acknowledge());
+    }
+
+    @Test
+    public void requestsBeforeTheFirstMessageAreNotTracked() {
+        AckTracker tracker = new AckSessions(4).resume("client", "session", AckPolicy.each());
+
+        //The server only tracks unsequenced frames while the tracker is not sequenced
+        assertTrue(tracker.isSequenced());
+
+        assertTrue(tracker.sequence(1));
+        assertTrue(tracker.received());
+        assertEquals(1, tracker.acknowledge());
+    }
+
+    @Test
+    public void replayedMessagesAreDropped() {
+        AckTracker tracker = new AckTracker(AckPolicy.each(), true);
+
+        for (long sequence = 1; sequence <= 3; sequence++) {
+            assertTrue(tracker.sequence(sequence));
+            tracker.received();
+        }
+        assertEquals(3, tracker.acknowledge());
+
+        //The ack was lost, so the client replays the messages
+        assertFalse(tracker.sequence(2));
+        assertFalse(tracker.sequence(3));
+        assertEquals(3, tracker.acknowledge());
+        assertEquals(-1, tracker.acknowledge());
+
+        assertTrue(tracker.sequence(4));
+        assertTrue(tracker.received());
+        assertEquals(4, tracker.acknowledge());
+    }
+
+    @Test
+    public void lostSessionsAreResumed() {
+        AckSessions sessions = new AckSessions(4);
+        AckTracker tracker = sessions.resume("client", "session", AckPolicy.each());
+
+        assertTrue(tracker.sequence(1));
+        tracker.received();
+        sessions.retain("client", tracker);
+
+        AckTracker resumed = sessions.resume("other", "session", AckPolicy.each());
+        assertSame(tracker, resumed);
+        assertFalse(resumed.sequence(1));
+
+        assertNotSame(tracker, sessions.resume("client", "session", AckPolicy.each()));
+        assertFalse(sessions.resume("client", null, AckPolicy.each()).isSequenced());
+    }
+
+    @Test
+    public void sessionsResumedOnANewServerStartFromTheirSequence() {
+        AckTracker tracker = new AckSessions(4).resume("client", "session", AckPolicy.cumulative(10, 0));
+
+        assertTrue(tracker.sequence(5));
+        assertFalse(tracker.received());
+        assertEquals(1, tracker.getPending());
+        assertEquals(5, tracker.acknowledge());
+    }
+
+    @Test
+    public void messagesCantSkipUnreceivedOnes() {
+        AckTracker tracker = new AckTracker(AckPolicy.each(), true);
+
+        //A new tracker takes any sequence, the session may come from another server
+        assertTrue(tracker.follows(10));
+        assertTrue(tracker.sequence(10));
+        tracker.received();
+
+        assertTrue(tracker.follows(11));
+        assertTrue(tracker.follows(3));
+        assertFalse(tracker.follows(12));
+        assertEquals(10, tracker.acknowledge());
+    }
+
+    @Test
+    public void policyIsSentWithTheConnectRequest() {
+        AckPolicy[] policies = {AckPolicy.none(), AckPolicy.each(), AckPolicy.cumulative(16, 50)};
+        for (AckPolicy policy : policies) {
+            MessageOutput output = new MessageBinaryOutput();
+            policy.write(output);
+
+            AckPolicy read = AckPolicy.read(WireFormat.read(output.compile()));
+            assertNotNull(read);
+            assertEquals(policy.getMode(), read.getMode());
+            assertEquals(policy.getMessages(), read.getMessages());
+            assertEquals(policy.getInterval(), read.getInterval());
+        }
+
+        assertNull(AckPolicy.read(WireFormat.read(new MessageBinaryOutput().compile())));
+    }
+}
@@ -0,0 +1,68 @@
+package ml.karmaconfigs.remote.messaging.util.admission;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+public class AdmissionTrackerTest {
+
+    private static InetSocketAddress remote(final int port) {
+        return new InetSocketAddress("127.0.0.1", port);
+    }
+
+    @Test
+    public void connectionsOverTheLimitAreDeclined() {
+        AdmissionTracker tracker = new AdmissionTracker(AdmissionPolicy.unlimited().connections(2));
+
+        assertNull(tracker.admit(remote(1)));
+        assertNull(tracker.admit(remote(2)));
+        assertNotNull(tracker.admit(remote(3)));
+        assertEquals(2, tracker.getConnections());
+        assertEquals(1, tracker.getDeclined());
+
+        tracker.release(remote(1));
+        assertNull(tracker.admit(remote(3)));
+    }
+
+    @Test
+    public void connectionsOverTheMACLimitAreDeclined() {
+        AdmissionTracker tracker = new AdmissionTracker(AdmissionPolicy.unlimited().perMAC(1));
+
+        assertNull(tracker.admit(remote(1)));
+        assertNull(tracker.admit(remote(2)));
+        assertNull(tracker.identify(remote(1), "00-00"));
+        assertNull(tracker.identify(remote(1), "00-00"));
+        assertNotNull(tracker.identify(remote(2), "00-00"));
+
+        tracker.release(remote(1));
+        assertNull(tracker.identify(remote(2), "00-00"));
+    }
+
+    @Test
+    public void connectionsWithoutMACAreDeclined() {
+        AdmissionTracker tracker = new AdmissionTracker(AdmissionPolicy.unlimited());
+
+        assertNull(tracker.admit(remote(1)));
+        assertNotNull(tracker.identify(remote(1), null));
+        assertEquals(1, tracker.getDeclined());
+
+        tracker.release(remote(1));
+        assertEquals(0, tracker.getConnections());
+    }
+}
@@ -0,0 +1,108 @@
+package ml.karmaconfigs.remote.messaging.util.buffer;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void buffersAreReused() {
+        ByteBuffer buffer = BufferPool.acquire(1000);
+        assertTrue(buffer.isDirect());
+        assertEquals(1024, buffer.capacity());
+
+        buffer.put((byte) 1);
+        BufferPool.release(buffer);
+
+        ByteBuffer reused = BufferPool.acquire(512);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+
+        BufferPool.release(reused);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleReleaseFails() {
+        BufferPool.debug(true);
+        try {
+            ByteBuffer buffer = BufferPool.acquire(4096);
+            BufferPool.release(buffer);
+            BufferPool.release(buffer);
+        } finally {
+            BufferPool.debug(false);
+        }
+    }
+
+    @Test
+    public void doubleReleaseDoesNotShareTheBuffer() {
+        BufferPool.debug(true);
+        try {
+            ByteBuffer buffer = BufferPool.acquire(16 * 1024);
+            BufferPool.release(buffer);
+
+            try {
+                BufferPool.release(buffer);
+                fail("The buffer has been released twice");
+            } catch (IllegalStateException ignored) {}
+
+            ByteBuffer first = BufferPool.acquire(16 * 1024);
+            ByteBuffer second = BufferPool.acquire(16 * 1024);
+            assertNotSame(first, second);
+
+            BufferPool.release(first);
+            BufferPool.release(second);
+        } finally {
+            BufferPool.debug(false);
+        }
+    }
+
+    @Test
+    public void buffersReleasedByOtherThreadsAreReused() throws InterruptedException {
+        //Fill this thread cache, so the rest of the buffers go to the shared arena
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            buffers.add(BufferPool.acquire(64 * 1024));
+
+        Thread thread = new Thread(() -> buffers.forEach(BufferPool::release));
+        thread.start();
+        thread.join();
+
+        Map<ByteBuffer, Boolean> acquired = new IdentityHashMap<>();
+        for (int i = 0; i < 20; i++)
+            assertNull(acquired.put(BufferPool.acquire(64 * 1024), true));
+
+        acquired.keySet().forEach(BufferPool::release);
+    }
+
+    @Test
+    public void largeBuffersAreNotPooled() {
+        ByteBuffer buffer = BufferPool.acquire(BufferPool.MAX_SIZE + 1);
+        assertEquals(BufferPool.MAX_SIZE + 1, buffer.capacity());
+
+        BufferPool.release(buffer);
+        BufferPool.release(buffer);
+        assertNotSame(buffer, BufferPool.acquire(BufferPool.MAX_SIZE + 1));
+    }
+}
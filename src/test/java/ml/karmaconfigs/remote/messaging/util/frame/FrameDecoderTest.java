@@ -0,0 +1,171 @@
+package ml.karmaconfigs.remote.messaging.util.frame;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameDecoderTest {
+
+    private static byte[] payload(final int length, final int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++)
+            data[i] = (byte) (seed + i);
+
+        return data;
+    }
+
+    private static ByteBuffer join(final ByteBuffer... frames) {
+        int size = 0;
+        for (ByteBuffer frame : frames)
+            size += frame.remaining();
+
+        ByteBuffer joined = ByteBuffer.allocate(size);
+        for (ByteBuffer frame : frames)
+            joined.put(frame.duplicate());
+
+        joined.flip();
+        return joined;
+    }
+
+    private static List<byte[]> decode(final FrameDecoder decoder) throws FrameException {
+        List<byte[]> frames = new ArrayList<>();
+        decoder.decode((frame) -> frames.add(FrameCodec.payload(frame)));
+
+        return frames;
+    }
+
+    @Test
+    public void varIntRoundTrip() throws FrameException {
+        int[] values = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152, 268435455, 268435456, Integer.MAX_VALUE};
+        for (int value : values) {
+            ByteBuffer buffer = ByteBuffer.allocate(5);
+            FrameCodec.writeVarInt(buffer, value);
+            assertEquals(FrameCodec.varIntSize(value), buffer.position());
+
+            buffer.flip();
+            assertEquals(value, FrameCodec.readVarInt(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+    }
+
+    @Test
+    public void incompleteVarIntLeavesThePosition() throws FrameException {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{(byte) 0x80, (byte) 0x80});
+        assertEquals(-1, FrameCodec.readVarInt(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test(expected = FrameException.class)
+    public void tooLongVarIntIsRejected() throws FrameException {
+        FrameCodec.readVarInt(ByteBuffer.wrap(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0}));
+    }
+
+    @Test
+    public void coalescedFramesAreSplit() throws FrameException {
+        byte[] first = payload(10, 1);
+        byte[] empty = new byte[0];
+        byte[] second = payload(300, 2);
+
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.feed(join(FrameCodec.encode(first), FrameCodec.encode(empty), FrameCodec.encode(second)));
+
+        List<byte[]> frames = decode(decoder);
+        assertEquals(3, frames.size());
+        assertArrayEquals(first, frames.get(0));
+        assertArrayEquals(empty, frames.get(1));
+        assertArrayEquals(second, frames.get(2));
+        assertTrue(decode(decoder).isEmpty());
+    }
+
+    @Test
+    public void framesSplitAcrossReadsAreJoined() throws FrameException {
+        byte[] first = payload(200, 3);
+        byte[] second = payload(5, 4);
+        ByteBuffer wire = join(FrameCodec.encode(first), FrameCodec.encode(second));
+
+        FrameDecoder decoder = new FrameDecoder(16, FrameCodec.MAX_FRAME);
+        List<byte[]> frames = new ArrayList<>();
+        while (wire.hasRemaining()) {
+            //One byte per read, so the length prefix is split too
+            ByteBuffer read = wire.slice();
+            read.limit(1);
+            wire.position(wire.position() + 1);
+
+            decoder.feed(read);
+            frames.addAll(decode(decoder));
+        }
+
+        assertEquals(2, frames.size());
+        assertArrayEquals(first, frames.get(0));
+        assertArrayEquals(second, frames.get(1));
+    }
+
+    @Test
+    public void decodedFramesStayValid() throws FrameException {
+        FrameDecoder decoder = new FrameDecoder(32, FrameCodec.MAX_FRAME);
+        List<ByteBuffer> frames = new ArrayList<>();
+
+        for (int i = 0; i < 50; i++) {
+            decoder.feed(FrameCodec.encode(payload(i, i)));
+            decoder.decode(frames::add);
+        }
+
+        assertEquals(50, frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            ByteBuffer frame = frames.get(i);
+            assertTrue(frame.isReadOnly());
+            assertArrayEquals(payload(i, i), FrameCodec.payload(frame));
+        }
+    }
+
+    @Test
+    public void framesLargerThanTheBufferAreDecoded() throws FrameException {
+        byte[] large = payload(100000, 5);
+
+        FrameDecoder decoder = new FrameDecoder(64, FrameCodec.MAX_FRAME);
+        ByteBuffer wire = FrameCodec.encode(large);
+
+        int chunk = 4096;
+        List<byte[]> frames = new ArrayList<>();
+        while (wire.hasRemaining()) {
+            ByteBuffer read = wire.slice();
+            read.limit(Math.min(chunk, wire.remaining()));
+            wire.position(wire.position() + read.limit());
+
+            decoder.feed(read);
+            frames.addAll(decode(decoder));
+        }
+
+        assertEquals(1, frames.size());
+        assertArrayEquals(large, frames.get(0));
+    }
+
+    @Test(expected = FrameException.class)
+    public void oversizedFramesAreRejected() throws FrameException {
+        FrameDecoder decoder = new FrameDecoder(64, 100);
+        ByteBuffer header = ByteBuffer.allocate(5);
+        FrameCodec.writeVarInt(header, 101);
+        header.flip();
+
+        decoder.feed(header);
+        decode(decoder);
+    }
+}
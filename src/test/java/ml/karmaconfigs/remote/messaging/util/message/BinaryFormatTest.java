@@ -0,0 +1,168 @@
+package ml.karmaconfigs.remote.messaging.util.message;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.type.DataType;
+import ml.karmaconfigs.remote.messaging.util.message.type.MergeType;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BinaryFormatTest {
+
+    private static MessageOutput sample(final MessageOutput output) {
+        output.write("STRING", "h\u00e9llo w\u00f6rld \u2713");
+        output.write("EMPTY", "");
+        output.write("TRUE", true);
+        output.write("FALSE", false);
+        output.write("INT", -12345);
+        output.write("LONG", Long.MIN_VALUE);
+        output.write("SHORT", (short) 321);
+        output.write("BYTE", (byte) -7);
+        output.write("FLOAT", 1.5f);
+        output.write("DOUBLE", -12.345d);
+        output.write("BIG_INTEGER", new BigInteger("123456789012345678901234567890"));
+        output.write("BIG_DECIMAL", new BigDecimal("-3.14159265358979323846"));
+        output.write("CHARS", 'a', 'b', '\u00f1');
+        output.write("BYTES", new byte[]{0, 1, -1, 127, -128});
+        output.writeSerializable("LIST", new ArrayList<>(Arrays.asList(1, 2, 3)));
+
+        return output;
+    }
+
+    private static void verify(final MessageInput input) {
+        assertEquals("h\u00e9llo w\u00f6rld \u2713", input.getString("STRING"));
+        assertEquals("", input.getString("EMPTY"));
+        assertTrue(input.getBoolean("TRUE"));
+        assertFalse(input.getBoolean("FALSE"));
+        assertEquals(-12345, input.getNumber("INT"));
+        assertEquals(Long.MIN_VALUE, input.getNumber("LONG"));
+        assertEquals((short) 321, input.getNumber("SHORT"));
+        assertEquals((byte) -7, input.getNumber("BYTE"));
+        assertEquals(1.5f, input.getNumber("FLOAT"));
+        assertEquals(-12.345d, input.getNumber("DOUBLE"));
+        assertEquals(new BigInteger("123456789012345678901234567890"), input.getNumber("BIG_INTEGER"));
+        assertEquals(new BigDecimal("-3.14159265358979323846"), input.getNumber("BIG_DECIMAL"));
+        assertArrayEquals(new char[]{'a', 'b', '\u00f1'}, input.getCharacters("CHARS"));
+        assertArrayEquals(new byte[]{0, 1, -1, 127, -128}, input.getBytes("BYTES"));
+        assertEquals(Arrays.asList(1, 2, 3), input.getSerialized("LIST"));
+
+        assertNull(input.getString("MISSING"));
+        assertNull(input.getNumber("MISSING"));
+        assertFalse(input.getBoolean("MISSING"));
+    }
+
+    @Test
+    public void binaryRoundTrip() {
+        byte[] compiled = sample(new MessageBinaryOutput()).compile();
+
+        assertTrue(MessageBinaryOutput.isBinary(compiled));
+        assertEquals(WireFormat.BINARY, WireFormat.of(compiled));
+
+        MessageInput input = WireFormat.read(compiled);
+        assertTrue(input instanceof MessageBinaryInput);
+        verify(input);
+    }
+
+    @Test
+    public void serializedRoundTrip() {
+        byte[] compiled = sample(new MessageDataOutput()).compile();
+
+        assertFalse(MessageBinaryOutput.isBinary(compiled));
+        assertEquals(WireFormat.SERIALIZED, WireFormat.of(compiled));
+        verify(WireFormat.read(compiled));
+    }
+
+    @Test
+    public void binaryMessagesAreReadInPlace() {
+        byte[] compiled = sample(new MessageBinaryOutput()).compile();
+
+        //The message is read from the middle of a larger buffer, as frames are
+        ByteBuffer buffer = ByteBuffer.allocate(compiled.length + 20);
+        buffer.position(10);
+        buffer.put(compiled);
+        buffer.flip();
+        buffer.position(10);
+
+        MessageInput input = WireFormat.read(buffer.asReadOnlyBuffer());
+        verify(input);
+
+        ByteBuffer bytes = input.getBuffer("BYTES");
+        assertNotNull(bytes);
+        assertTrue(bytes.isReadOnly());
+        assertEquals(5, bytes.remaining());
+        assertEquals(-128, bytes.get(4));
+    }
+
+    @Test
+    public void lazyInputLoadsTheWholeMessage() {
+        MessageInput input = WireFormat.read(sample(new MessageBinaryOutput()).compile());
+        MessageOutput output = input.getOutput();
+
+        assertTrue(output.contains("STRING", DataType.SEQUENCE));
+        assertTrue(output.contains("LONG", DataType.NUMBER));
+        assertTrue(output.contains("BYTES", DataType.BYTE));
+        verify(WireFormat.read(output.compile()));
+    }
+
+    @Test
+    public void mergedMessagesKeepTheirOwnValues() {
+        MessageOutput user = new MessageBinaryOutput();
+        user.write("NAME", "user");
+        user.write("VALUE", 1);
+
+        MessageOutput merged = WireFormat.BINARY.create(user.compile(), MergeType.DIFFERENCE);
+        merged.write("NAME", "system");
+        merged.write("SEQUENCE", 5L);
+
+        MessageInput input = WireFormat.read(merged.compile());
+        assertEquals("system", input.getString("NAME"));
+        assertEquals(1, input.getNumber("VALUE"));
+        assertEquals(5L, input.getNumber("SEQUENCE"));
+    }
+
+    @Test
+    public void serializedMessagesCanBeMergedIntoBinary() {
+        MessageOutput user = new MessageDataOutput();
+        user.write("VALUE", 42);
+
+        MessageOutput merged = WireFormat.BINARY.create(user.compile(), MergeType.DIFFERENCE);
+        merged.write("MAC", "00-00");
+
+        MessageInput input = WireFormat.read(merged.compile());
+        assertTrue(input instanceof MessageBinaryInput);
+        assertEquals(42, input.getNumber("VALUE"));
+        assertEquals("00-00", input.getString("MAC"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedMessagesAreRejected() {
+        byte[] compiled = sample(new MessageBinaryOutput()).compile();
+        new MessageBinaryInput(Arrays.copyOf(compiled, compiled.length - 3));
+    }
+
+    @Test
+    public void invalidMessagesAreNotLoaded() {
+        assertNull(MessageBinaryOutput.load(new byte[]{BinaryFormat.MAGIC, 5, 0}));
+        assertNull(MessageBinaryOutput.load("not binary".getBytes()));
+    }
+}
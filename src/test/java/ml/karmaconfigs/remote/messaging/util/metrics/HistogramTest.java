@@ -0,0 +1,96 @@
+package ml.karmaconfigs.remote.messaging.util.metrics;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        Histogram.Snapshot snapshot = new Histogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getMean(), 0);
+        assertEquals(0, snapshot.getP99());
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < Histogram.SUB_BUCKETS; i++)
+            histogram.record(i);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(Histogram.SUB_BUCKETS, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(Histogram.SUB_BUCKETS - 1, snapshot.getMax());
+        assertEquals((Histogram.SUB_BUCKETS - 1) / 2d, snapshot.getMean(), 0.0001);
+        assertEquals(Histogram.SUB_BUCKETS / 2 - 1, snapshot.getP50());
+    }
+
+    @Test
+    public void percentilesAreWithinTheBucketError() {
+        Histogram histogram = new Histogram();
+        for (long i = 1; i <= 100000; i++)
+            histogram.record(i * 1000);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        long[] expected = {50000000L, 99000000L, 99900000L};
+        long[] actual = {snapshot.getP50(), snapshot.getP99(), snapshot.getP999()};
+        for (int i = 0; i < expected.length; i++) {
+            double error = Math.abs(actual[i] - expected[i]) / (double) expected[i];
+            assertTrue(actual[i] + " is too far from " + expected[i], error <= 1d / Histogram.SUB_BUCKETS);
+        }
+
+        assertTrue(snapshot.getP50() <= snapshot.getP99());
+        assertTrue(snapshot.getP99() <= snapshot.getP999());
+        assertEquals(100000000L, snapshot.getPercentile(100));
+        assertTrue(snapshot.getPercentile(0) - 1000 <= 1000 / Histogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void percentilesStayBetweenMinAndMax() {
+        Histogram histogram = new Histogram();
+        histogram.record(1000);
+        histogram.record(1001);
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.getMin());
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        assertEquals(Long.MAX_VALUE, snapshot.getPercentile(100));
+        assertTrue(snapshot.getP50() >= 1000 && snapshot.getP50() - 1000 <= 1000 / Histogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void resetClearsEveryValue() {
+        Histogram histogram = new Histogram();
+        histogram.record(42);
+        histogram.reset();
+        histogram.record(7);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(7, snapshot.getMin());
+        assertEquals(7, snapshot.getMax());
+        assertEquals(7, snapshot.getP999());
+    }
+}
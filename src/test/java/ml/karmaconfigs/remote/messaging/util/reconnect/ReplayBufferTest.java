@@ -0,0 +1,98 @@
+package ml.karmaconfigs.remote.messaging.util.reconnect;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReplayBufferTest {
+
+    private static ByteBuffer frame(final int value) {
+        ByteBuffer frame = ByteBuffer.allocate(4);
+        frame.putInt(value);
+        frame.flip();
+
+        return frame;
+    }
+
+    @Test
+    public void acknowledgedFramesAreDiscarded() {
+        ReplayBuffer buffer = new ReplayBuffer(10);
+        for (int i = 1; i <= 5; i++)
+            buffer.add(i, frame(i));
+
+        buffer.acknowledge(3);
+        assertEquals(2, buffer.size());
+
+        List<ByteBuffer> pending = buffer.pending();
+        assertEquals(4, pending.get(0).getInt());
+        assertEquals(5, pending.get(1).getInt());
+
+        //Replaying doesn't consume the kept frames
+        assertEquals(4, buffer.pending().get(0).getInt());
+    }
+
+    @Test
+    public void fullBufferRejectsNewFrames() {
+        ReplayBuffer buffer = new ReplayBuffer(2);
+        assertTrue(buffer.accepts());
+        buffer.add(1, frame(1));
+        buffer.add(2, frame(2));
+
+        assertTrue(buffer.isFull());
+        assertFalse(buffer.accepts());
+        assertFalse(buffer.accepts());
+        assertEquals(2, buffer.getRejected());
+
+        //The oldest frames are kept, the server may have never received them
+        assertEquals(1, buffer.pending().get(0).getInt());
+
+        buffer.acknowledge(1);
+        assertFalse(buffer.isFull());
+        assertTrue(buffer.accepts());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addingToAFullBufferFails() {
+        ReplayBuffer buffer = new ReplayBuffer(1);
+        buffer.add(1, frame(1));
+        buffer.add(2, frame(2));
+    }
+
+    @Test
+    public void emptyBufferKeepsNothing() {
+        ReplayBuffer buffer = new ReplayBuffer(0);
+        buffer.add(1, frame(1));
+
+        assertTrue(buffer.accepts());
+        assertFalse(buffer.isFull());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void replayNeedsAReplayBuffer() {
+        ReconnectPolicy policy = ReconnectPolicy.backoff(100, 1000, TimeUnit.MILLISECONDS);
+
+        assertFalse(ReconnectPolicy.none().isReplaying());
+        assertEquals(policy.getReplay() > 0, policy.isReplaying());
+        assertFalse(policy.replay(0).isReplaying());
+        assertTrue(policy.replay(16).isReplaying());
+    }
+}
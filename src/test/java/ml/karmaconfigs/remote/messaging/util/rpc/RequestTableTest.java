@@ -0,0 +1,185 @@
+package ml.karmaconfigs.remote.messaging.util.rpc;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.message.MessageDataOutput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageInput;
+import ml.karmaconfigs.remote.messaging.util.message.MessageOutput;
+import ml.karmaconfigs.remote.messaging.util.message.type.WireFormat;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RequestTableTest {
+
+    private static MessageInput response(final String value) {
+        MessageOutput output = new MessageDataOutput();
+        output.write("VALUE", value);
+
+        return WireFormat.read(output.compile());
+    }
+
+    private static MessageInput error(final String reason) {
+        MessageOutput output = new MessageDataOutput();
+        output.write("RESPONSE_ERROR", reason);
+
+        return WireFormat.read(output.compile());
+    }
+
+    /**
+     * Wait for the result of a request
+     *
+     * @param request the request
+     * @param response the response the request completed with
+     * @param error the error the request completed with
+     * @param calls the amount of times the result completed
+     */
+    private static void await(final Request request, final AtomicReference<MessageInput> response,
+                              final AtomicReference<Throwable> error, final AtomicInteger calls) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        request.getResult().whenComplete((result, ex) -> {
+            response.set(result);
+            error.set(ex);
+            calls.incrementAndGet();
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void responsesCompleteTheirRequest() throws InterruptedException {
+        RequestTable table = new RequestTable();
+        Request first = table.create(0, TimeUnit.MILLISECONDS);
+        Request second = table.create(0, TimeUnit.MILLISECONDS);
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals(2, table.size());
+
+        //Responses can arrive in any order
+        assertTrue(table.complete(second.getId(), response("second")));
+        assertTrue(table.complete(first.getId(), response("first")));
+        assertEquals(0, table.size());
+
+        AtomicReference<MessageInput> response = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        await(first, response, error, calls);
+
+        assertNull(error.get());
+        assertEquals("first", response.get().getString("VALUE"));
+        assertTrue(first.isDone());
+    }
+
+    @Test
+    public void errorResponsesFailTheRequest() throws InterruptedException {
+        RequestTable table = new RequestTable();
+        Request request = table.create(0, TimeUnit.MILLISECONDS);
+        assertTrue(table.complete(request.getId(), error("Not allowed")));
+
+        AtomicReference<MessageInput> response = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        await(request, response, error, calls);
+
+        assertNull(response.get());
+        assertTrue(error.get() instanceof IOException);
+        assertEquals("Not allowed", error.get().getMessage());
+    }
+
+    @Test
+    public void requestsTimeOut() throws InterruptedException {
+        RequestTable table = new RequestTable();
+        Request request = table.create(50, TimeUnit.MILLISECONDS);
+
+        AtomicReference<MessageInput> response = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        await(request, response, error, calls);
+
+        assertTrue(error.get() instanceof TimeoutException);
+        assertTrue(request.isDone());
+        assertEquals(0, table.size());
+
+        //The response arrived after the timeout
+        assertFalse(table.complete(request.getId(), response("late")));
+        Thread.sleep(50);
+        assertNull(response.get());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void cancelledRequestsIgnoreTheirResponse() throws InterruptedException {
+        RequestTable table = new RequestTable();
+        Request request = table.create(100, TimeUnit.MILLISECONDS);
+
+        assertTrue(request.cancel());
+        assertFalse(request.cancel());
+        assertEquals(0, table.size());
+
+        AtomicReference<MessageInput> response = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        await(request, response, error, calls);
+
+        assertTrue(error.get() instanceof CancellationException);
+        assertFalse(table.complete(request.getId(), response("late")));
+
+        //Neither the response nor the cancelled timeout complete it again
+        Thread.sleep(200);
+        assertNull(response.get());
+        assertTrue(error.get() instanceof CancellationException);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void failAllFailsEveryPendingRequest() throws InterruptedException {
+        RequestTable table = new RequestTable();
+        Request answered = table.create(0, TimeUnit.MILLISECONDS);
+        Request first = table.create(0, TimeUnit.MILLISECONDS);
+        Request second = table.create(1, TimeUnit.MINUTES);
+        assertTrue(table.complete(answered.getId(), response("answered")));
+
+        table.failAll("Connection closed");
+        assertEquals(0, table.size());
+
+        for (Request request : new Request[]{first, second}) {
+            AtomicReference<MessageInput> response = new AtomicReference<>();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            AtomicInteger calls = new AtomicInteger();
+            await(request, response, error, calls);
+
+            assertTrue(error.get() instanceof IOException);
+            assertEquals("Connection closed", error.get().getMessage());
+            assertFalse(table.complete(request.getId(), response("late")));
+        }
+
+        //The answered request keeps its response
+        AtomicReference<MessageInput> response = new AtomicReference<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicInteger calls = new AtomicInteger();
+        await(answered, response, error, calls);
+
+        assertNull(error.get());
+        assertEquals("answered", response.get().getString("VALUE"));
+    }
+}
@@ -0,0 +1,330 @@
+package ml.karmaconfigs.remote.messaging.worker.loop;
+
+/*
+ * GNU LESSER GENERAL PUBLIC LICENSE
+ * Version 2.1, February 1999
+ * <p>
+ * Copyright (C) 1991, 1999 Free Software Foundation, Inc.
+ * 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ * Everyone is permitted to copy and distribute verbatim copies
+ * of this license document, but changing it is not allowed.
+ * <p>
+ * [This is the first released version of the Lesser GPL.  It also counts
+ * as the successor of the GNU Library Public License, version 2, hence
+ * the version number 2.1.]
+ */
+
+import ml.karmaconfigs.remote.messaging.util.Delivery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DatagramEndpointTest {
+
+    private EventLoop loop;
+    private Relay relay;
+    private DatagramEndpoint sender;
+    private DatagramEndpoint receiver;
+
+    private final List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger corrupt = new AtomicInteger(0);
+    private final AtomicInteger lost = new AtomicInteger(0);
+    private final AtomicInteger unreachable = new AtomicInteger(0);
+    private final AtomicInteger expired = new AtomicInteger(0);
+
+    @Before
+    public void setUp() throws IOException {
+        loop = new EventLoop("Datagram test");
+    }
+
+    @After
+    public void tearDown() {
+        if (sender != null)
+            sender.close();
+        if (receiver != null)
+            receiver.close();
+        if (relay != null)
+            relay.close();
+
+        loop.shutdown();
+    }
+
+    /**
+     * Open the sender and receiver endpoints, every datagram
+     * between them goes through the relay
+     *
+     * @param drop drop every nth datagram to the receiver, 0 to not drop
+     * @param swap swap every nth datagram to the receiver with the next one, 0 to not swap
+     * @param delivery the sender delivery
+     * @param expected the amount of messages received or lost to wait for
+     * @return the latch released once the expected messages are received or lost
+     */
+    private CountDownLatch open(final int drop, final int swap, final Delivery delivery, final int expected) throws IOException {
+        CountDownLatch done = new CountDownLatch(expected);
+
+        DatagramChannel receiving = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        receiver = new DatagramEndpoint(loop, receiving, new DatagramListener() {
+            @Override
+            public void received(final DatagramEndpoint endpoint, final InetSocketAddress from, final ByteBuffer data) {
+                received.add(data.getInt());
+                for (int i = 0; data.hasRemaining(); i++) {
+                    if (data.get() != (byte) i)
+                        corrupt.incrementAndGet();
+                }
+
+                done.countDown();
+            }
+
+            @Override
+            public void lost(final DatagramEndpoint endpoint, final InetSocketAddress from, final int amount) {
+                lost.addAndGet(amount);
+                for (int i = 0; i < amount; i++)
+                    done.countDown();
+            }
+
+            @Override
+            public void expired(final DatagramEndpoint endpoint, final InetSocketAddress peer) {
+                expired.incrementAndGet();
+            }
+
+            @Override
+            public void closed(final DatagramEndpoint endpoint) {}
+        });
+        receiver.open();
+
+        relay = new Relay((InetSocketAddress) receiving.getLocalAddress(), drop, swap);
+
+        DatagramChannel sending = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        sender = new DatagramEndpoint(loop, sending, new DatagramListener() {
+            @Override
+            public void received(final DatagramEndpoint endpoint, final InetSocketAddress from, final ByteBuffer data) {}
+
+            @Override
+            public void unreachable(final DatagramEndpoint endpoint, final InetSocketAddress peer) {
+                unreachable.incrementAndGet();
+            }
+
+            @Override
+            public void closed(final DatagramEndpoint endpoint) {}
+        });
+        sender.delivery(delivery);
+        sender.watermarks(1 << 24, 1 << 25);
+        sender.open();
+
+        return done;
+    }
+
+    private static ByteBuffer message(final int number, final int size) {
+        ByteBuffer data = ByteBuffer.allocate(4 + size);
+        data.putInt(number);
+        for (int i = 0; i < size; i++)
+            data.put((byte) i);
+        data.flip();
+
+        return data;
+    }
+
+    private void send(final int amount, final int size) {
+        for (int i = 0; i < amount; i++)
+            assertTrue(sender.write(relay.getAddress(), message(i, size), null));
+    }
+
+    @Test
+    public void orderedMessagesSurviveLossAndReordering() throws Exception {
+        CountDownLatch done = open(7, 5, Delivery.ORDERED, 300);
+        send(300, 32);
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        for (int i = 0; i < 300; i++)
+            assertEquals(i, (int) received.get(i));
+
+        assertTrue(sender.getRetransmitted() > 0);
+        assertEquals(0, corrupt.get());
+        assertEquals(0, lost.get());
+        assertEquals(0, unreachable.get());
+    }
+
+    @Test
+    public void unorderedMessagesAreAllDelivered() throws Exception {
+        CountDownLatch done = open(4, 3, Delivery.UNORDERED, 200);
+        send(200, 32);
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+
+        List<Integer> sorted = new ArrayList<>(received);
+        Collections.sort(sorted);
+        for (int i = 0; i < 200; i++)
+            assertEquals(i, (int) sorted.get(i));
+
+        assertTrue(sender.getRetransmitted() > 0);
+        assertEquals(0, corrupt.get());
+    }
+
+    @Test
+    public void fragmentsAreRetransmitted() throws Exception {
+        CountDownLatch done = open(9, 4, Delivery.ORDERED, 20);
+        sender.mtu(500);
+        send(20, 4000);
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++)
+            assertEquals(i, (int) received.get(i));
+
+        assertTrue(sender.getRetransmitted() > 0);
+        assertEquals(0, corrupt.get());
+    }
+
+    @Test
+    public void sequencedMessagesDropLateOnes() throws Exception {
+        CountDownLatch done = open(0, 4, Delivery.UNRELIABLE, 100);
+        send(100, 32);
+
+        assertTrue(done.await(20, TimeUnit.SECONDS));
+        for (int i = 1; i < received.size(); i++)
+            assertTrue(received.get(i) > received.get(i - 1));
+
+        //Every swapped datagram arrives after a newer one, so it's dropped and counted as lost
+        assertTrue(lost.get() > 0);
+        assertEquals(100, received.size() + lost.get());
+        assertEquals(0, sender.getRetransmitted());
+    }
+
+    @Test
+    public void silentPeersExpire() throws Exception {
+        CountDownLatch done = open(0, 0, Delivery.UNRELIABLE, 1);
+        receiver.expiry(200, TimeUnit.MILLISECONDS);
+        send(1, 32);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, expired.get());
+
+        long start = System.currentTimeMillis();
+        while (expired.get() == 0 && System.currentTimeMillis() - start < 5000)
+            Thread.sleep(20);
+
+        assertEquals(1, expired.get());
+    }
+
+    /**
+     * Forwards the datagrams between the sender and the receiver,
+     * dropping and swapping some of those sent to the receiver
+     */
+    private final static class Relay {
+
+        private final DatagramSocket front;
+        private final DatagramSocket back;
+        private final InetSocketAddress target;
+        private final int drop;
+        private final int swap;
+
+        private volatile InetSocketAddress source = null;
+        private volatile boolean operative = true;
+
+        /**
+         * Initialize the relay
+         *
+         * @param receiver the receiver address
+         * @param dropEvery drop every nth datagram, 0 to not drop
+         * @param swapEvery swap every nth datagram with the next one, 0 to not swap
+         * @throws IOException if the relay sockets can't be opened
+         */
+        private Relay(final InetSocketAddress receiver, final int dropEvery, final int swapEvery) throws IOException {
+            front = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            back = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            target = receiver;
+            drop = dropEvery;
+            swap = swapEvery;
+
+            Thread forward = new Thread(this::forward, "Relay forward");
+            forward.setDaemon(true);
+            forward.start();
+
+            Thread backward = new Thread(this::backward, "Relay backward");
+            backward.setDaemon(true);
+            backward.start();
+        }
+
+        private InetSocketAddress getAddress() {
+            return (InetSocketAddress) front.getLocalSocketAddress();
+        }
+
+        private void forward() {
+            DatagramPacket held = null;
+            int count = 0;
+
+            try {
+                front.setSoTimeout(20);
+                while (operative) {
+                    DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+                    try {
+                        front.receive(packet);
+                    } catch (SocketTimeoutException ex) {
+                        //Nothing came after the held datagram, so it's sent alone
+                        if (held != null) {
+                            back.send(held);
+                            held = null;
+                        }
+                        continue;
+                    }
+
+                    source = (InetSocketAddress) packet.getSocketAddress();
+                    packet.setSocketAddress(target);
+                    count++;
+
+                    if (drop > 0 && count % drop == 0)
+                        continue;
+
+                    if (held != null) {
+                        back.send(packet);
+                        back.send(held);
+                        held = null;
+                    } else {
+                        if (swap > 0 && count % swap == 0) {
+                            held = packet;
+                        } else {
+                            back.send(packet);
+                        }
+                    }
+                }
+            } catch (IOException ignored) {}
+        }
+
+        private void backward() {
+            try {
+                while (operative) {
+                    DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+                    back.receive(packet);
+
+                    InetSocketAddress address = source;
+                    if (address != null) {
+                        packet.setSocketAddress(address);
+                        front.send(packet);
+                    }
+                }
+            } catch (IOException ignored) {}
+        }
+
+        private void close() {
+            operative = false;
+            front.close();
+            back.close();
+        }
+    }
+}